@@ -0,0 +1,29 @@
+package caceresenzo.libs.youtube.api;
+
+import java.io.IOException;
+
+/**
+ * Thrown when no api key has enough quota left to send a request in time.
+ * 
+ * @author Enzo CACERES
+ */
+public class QuotaExceededException extends IOException {
+	
+	/* Variables */
+	private final String method;
+	
+	/* Constructor */
+	public QuotaExceededException(String method, String message) {
+		super(message);
+		
+		this.method = method;
+	}
+	
+	/**
+	 * @return Api method that could not be requested
+	 */
+	public String getMethod() {
+		return method;
+	}
+	
+}
\ No newline at end of file
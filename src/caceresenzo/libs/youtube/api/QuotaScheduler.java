@@ -0,0 +1,661 @@
+package caceresenzo.libs.youtube.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import caceresenzo.libs.youtube.Constants;
+import caceresenzo.libs.youtube.network.HttpStatusException;
+import caceresenzo.libs.youtube.network.TransportResponse;
+
+/**
+ * Scheduler of the api requests over a pool of api keys, every {@link YoutubeApi} getting its key from one.
+ * <p/>
+ * Every method has a quota cost. A key serves a request if its token bucket, limiting its rate, and its daily quota both have enough units left; among those, the key with the most daily quota left is chosen, so the load rotates across the pool. Requests that can not be served yet wait in their priority lane: batch requests only go once no interactive one is waiting, and never use the share of the daily quota reserved to interactive requests.
+ * <p/>
+ * A key answered with a quota error is parked: until the daily reset (midnight, pacific time) for an exhausted daily quota, or for a short while for a rate limit. A request waiting longer than the maximum wait fails with a {@link QuotaExceededException}.
+ * <p/>
+ * The {@link #getDefault() default scheduler} has no local budget: its key has an {@link #UNLIMITED_QUOTA unlimited quota} and an {@link #UNLIMITED_RATE unlimited rate}, so it is only parked by the quota errors of the server. Local budgets are for the schedulers built explicitly.
+ * 
+ * @author Enzo CACERES
+ */
+public class QuotaScheduler {
+	
+	/* Constants */
+	public static final long UNLIMITED_QUOTA = Long.MAX_VALUE;
+	public static final double UNLIMITED_RATE = Double.POSITIVE_INFINITY;
+	public static final int DEFAULT_COST = 1;
+	public static final long DEFAULT_DAILY_QUOTA = 10000;
+	public static final double DEFAULT_RATE = 50;
+	public static final int DEFAULT_BURST = 100;
+	public static final double DEFAULT_INTERACTIVE_RESERVE = 0.1;
+	public static final long DEFAULT_RATE_LIMIT_PARKING = TimeUnit.SECONDS.toMillis(30);
+	public static final long DEFAULT_MAX_WAIT = TimeUnit.MINUTES.toMillis(1);
+	public static final ZoneId QUOTA_ZONE = ZoneId.of("America/Los_Angeles");
+	
+	/* Private Constants */
+	private static final ScheduledExecutorService SCHEDULER;
+	private static final Map<String, Integer> DEFAULT_COSTS;
+	private static final Pattern REASON_PATTERN = Pattern.compile("\"reason\"\\s*:\\s*\"(\\w+)\"");
+	private static final int STATUS_FORBIDDEN = 403;
+	private static final int STATUS_TOO_MANY_REQUESTS = 429;
+	
+	static {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+			Thread thread = new Thread(runnable, "youtube-quota-scheduler");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		
+		SCHEDULER = scheduler;
+		
+		/* Read operations, see the quota calculator of the data api */
+		Map<String, Integer> costs = new HashMap<>();
+		costs.put("search", 100);
+		costs.put("captions", 50);
+		
+		DEFAULT_COSTS = Collections.unmodifiableMap(costs);
+	}
+	
+	/* Variables */
+	private final List<Key> keys;
+	private final Map<String, Integer> costs;
+	private final double interactiveReserve;
+	private final long rateLimitParking, maxWait;
+	private final Map<Priority, Queue<Waiter>> lanes;
+	private ScheduledFuture<?> wakeUp;
+	private long wakeUpAt;
+	
+	/* Constructor */
+	private QuotaScheduler(Builder builder) {
+		this.keys = new ArrayList<>();
+		this.costs = new HashMap<>(DEFAULT_COSTS);
+		this.interactiveReserve = builder.interactiveReserve;
+		this.rateLimitParking = builder.rateLimitParking;
+		this.maxWait = builder.maxWait;
+		this.lanes = new EnumMap<>(Priority.class);
+		
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, Long> entry : builder.keys.entrySet()) {
+			keys.add(new Key(entry.getKey(), entry.getValue(), builder.rate, builder.burst, now));
+		}
+		
+		costs.putAll(builder.costs);
+		
+		for (Priority priority : Priority.values()) {
+			lanes.put(priority, new ArrayDeque<>());
+		}
+	}
+	
+	/**
+	 * @param method
+	 *            Api method, like <code>playlistItems</code>
+	 * @return Quota cost of a request to this method
+	 */
+	public int getCost(String method) {
+		return costs.getOrDefault(method, DEFAULT_COST);
+	}
+	
+	/**
+	 * Wait for a key able to serve a request.
+	 * 
+	 * @param method
+	 *            Api method, for its cost
+	 * @param priority
+	 *            Lane of the request
+	 * @return A future of the key to use, its quota already consumed, completed exceptionally with a {@link QuotaExceededException} if no key can serve the request in time
+	 */
+	public CompletableFuture<String> acquire(String method, Priority priority) {
+		long now = System.currentTimeMillis();
+		Waiter waiter = new Waiter(method, getCost(method), maxWait > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxWait);
+		
+		synchronized (this) {
+			lanes.get(priority).add(waiter);
+		}
+		
+		drain();
+		
+		return waiter.future;
+	}
+	
+	/**
+	 * Look for a quota error in a response, and park the key if there is one.
+	 * <p/>
+	 * Only a <code>403</code> or a <code>429</code> is read, and then closed. A <code>403</code> that is not about the quota is thrown.
+	 * 
+	 * @param key
+	 *            Key used by the request
+	 * @param response
+	 *            Response of the request
+	 * @return true if the key has been parked and the request should be retried with another key, false if the response has been left untouched
+	 * @throws IOException
+	 *             If the response is another error whose body has been read
+	 */
+	public boolean checkQuota(String key, TransportResponse response) throws IOException {
+		int statusCode = response.getStatusCode();
+		
+		if (statusCode != STATUS_FORBIDDEN && statusCode != STATUS_TOO_MANY_REQUESTS) {
+			return false;
+		}
+		
+		boolean daily = false, rate = statusCode == STATUS_TOO_MANY_REQUESTS;
+		
+		Matcher matcher = REASON_PATTERN.matcher(response.readString(StandardCharsets.UTF_8));
+		while (matcher.find()) {
+			switch (matcher.group(1)) {
+				case "quotaExceeded":
+				case "dailyLimitExceeded": {
+					daily = true;
+					break;
+				}
+				
+				case "rateLimitExceeded":
+				case "userRateLimitExceeded": {
+					rate = true;
+					break;
+				}
+				
+				default: {
+					break;
+				}
+			}
+		}
+		
+		if (!daily && !rate) {
+			throw new HttpStatusException(response.getUrl(), statusCode);
+		}
+		
+		park(key, daily);
+		
+		return true;
+	}
+	
+	/**
+	 * @return Unmodifiable keys of the pool, in the order they have been added
+	 */
+	public List<String> getKeys() {
+		List<String> values = new ArrayList<>(keys.size());
+		
+		for (Key key : keys) {
+			values.add(key.value);
+		}
+		
+		return Collections.unmodifiableList(values);
+	}
+	
+	/**
+	 * @param key
+	 *            Api key
+	 * @return Daily quota left to the key, or -1 if not in the pool
+	 */
+	public synchronized long getRemainingQuota(String key) {
+		Key state = find(key);
+		
+		if (state == null) {
+			return -1;
+		}
+		
+		state.refresh(System.currentTimeMillis());
+		return state.getRemaining();
+	}
+	
+	/**
+	 * @param key
+	 *            Api key
+	 * @return If the key is parked after a quota error
+	 */
+	public synchronized boolean isParked(String key) {
+		Key state = find(key);
+		
+		return state != null && state.parkedUntil > System.currentTimeMillis();
+	}
+	
+	/**
+	 * @return Count of requests waiting for a key
+	 */
+	public synchronized int getWaitingCount() {
+		int count = 0;
+		
+		for (Queue<Waiter> lane : lanes.values()) {
+			count += lane.size();
+		}
+		
+		return count;
+	}
+	
+	private void park(String key, boolean daily) {
+		synchronized (this) {
+			Key state = find(key);
+			
+			if (state != null) {
+				long now = System.currentTimeMillis();
+				state.refresh(now);
+				
+				if (daily) {
+					state.used = state.dailyQuota;
+					state.parkedUntil = state.resetAt;
+				} else {
+					state.tokens = 0;
+					state.parkedUntil = Math.max(state.parkedUntil, now + rateLimitParking);
+				}
+			}
+		}
+		
+		drain();
+	}
+	
+	/**
+	 * Give keys to the waiting requests, by order of priority, then plan the next pass if some are still waiting.
+	 */
+	private void drain() {
+		List<Runnable> completions = new ArrayList<>();
+		
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			long wait = -1;
+			
+			for (Key key : keys) {
+				key.refresh(now);
+			}
+			
+			lanes: for (Priority priority : Priority.values()) {
+				Queue<Waiter> lane = lanes.get(priority);
+				
+				while (!lane.isEmpty()) {
+					Waiter waiter = lane.peek();
+					
+					if (waiter.future.isDone()) {
+						lane.poll();
+						continue;
+					}
+					
+					Key key = pick(waiter.cost, priority, now);
+					if (key != null) {
+						lane.poll();
+						key.consume(waiter.cost);
+						
+						completions.add(() -> waiter.future.complete(key.value));
+						continue;
+					}
+					
+					long readyIn = readyIn(waiter.cost, priority, now);
+					if (readyIn > waiter.deadline - now) {
+						lane.poll();
+						
+						QuotaExceededException exception = new QuotaExceededException(waiter.method, "No api key can serve " + waiter.method + " (cost " + waiter.cost + ") in time");
+						completions.add(() -> waiter.future.completeExceptionally(exception));
+						continue;
+					}
+					
+					/* The lower lanes wait too, they would take the units the head of this one is waiting for */
+					wait = readyIn;
+					break lanes;
+				}
+			}
+			
+			if (wait >= 0) {
+				scheduleWakeUp(now + Math.max(1, wait), now);
+			}
+		}
+		
+		for (Runnable completion : completions) {
+			completion.run();
+		}
+	}
+	
+	/**
+	 * Plan a pass, unless an earlier one is already planned. A pass whose time has come is the one running, it does not count.
+	 */
+	private void scheduleWakeUp(long at, long now) {
+		if (wakeUp != null && !wakeUp.isDone() && wakeUpAt > now && wakeUpAt <= at) {
+			return;
+		}
+		
+		if (wakeUp != null) {
+			wakeUp.cancel(false);
+		}
+		
+		wakeUpAt = at;
+		wakeUp = SCHEDULER.schedule(this::drain, at - now, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @return The key able to serve now with the most daily quota left, or null if none
+	 */
+	private Key pick(int cost, Priority priority, long now) {
+		Key best = null;
+		
+		for (Key key : keys) {
+			if (key.readyIn(cost, reserve(key, priority), now) == 0 && (best == null || key.getRemaining() > best.getRemaining())) {
+				best = key;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * @return Milliseconds before a key can serve, or {@link Long#MAX_VALUE} if the pool is empty
+	 */
+	private long readyIn(int cost, Priority priority, long now) {
+		long readyIn = Long.MAX_VALUE;
+		
+		for (Key key : keys) {
+			readyIn = Math.min(readyIn, key.readyIn(cost, reserve(key, priority), now));
+		}
+		
+		return readyIn;
+	}
+	
+	private long reserve(Key key, Priority priority) {
+		return priority == Priority.BATCH ? (long) Math.ceil(key.dailyQuota * interactiveReserve) : 0;
+	}
+	
+	private Key find(String value) {
+		for (Key key : keys) {
+			if (key.value.equals(value)) {
+				return key;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return The scheduler used by default, with the library key only, without any local budget: it only wait after a quota error of the server
+	 */
+	public static QuotaScheduler getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+	
+	private static long nextReset(long now) {
+		return Instant.ofEpochMilli(now).atZone(QUOTA_ZONE).toLocalDate().plusDays(1).atStartOfDay(QUOTA_ZONE).toInstant().toEpochMilli();
+	}
+	
+	/**
+	 * Lane of a request.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static enum Priority {
+		
+		/** A user is waiting for the result, always served first */
+		INTERACTIVE, //
+		/** Background work, served when no interactive request is waiting */
+		BATCH;
+		
+	}
+	
+	/**
+	 * Quota state of an api key.
+	 */
+	private static class Key {
+		
+		/* Variables */
+		private final String value;
+		private final long dailyQuota;
+		private final double ratePerMillisecond;
+		private final boolean throttled;
+		private final int burst;
+		private double tokens;
+		private long lastRefill, used, resetAt, parkedUntil;
+		
+		/* Constructor */
+		private Key(String value, long dailyQuota, double rate, int burst, long now) {
+			this.value = value;
+			this.dailyQuota = dailyQuota;
+			this.ratePerMillisecond = rate / 1000;
+			this.throttled = rate != UNLIMITED_RATE;
+			this.burst = burst;
+			this.tokens = burst;
+			this.lastRefill = now;
+			this.resetAt = nextReset(now);
+		}
+		
+		private void refresh(long now) {
+			if (throttled) {
+				tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerMillisecond);
+			}
+			lastRefill = now;
+			
+			if (now >= resetAt) {
+				used = 0;
+				resetAt = nextReset(now);
+			}
+		}
+		
+		private void consume(int cost) {
+			if (throttled) {
+				tokens -= cost;
+			}
+			used += cost;
+		}
+		
+		private long getRemaining() {
+			return dailyQuota - used;
+		}
+		
+		/**
+		 * @return Milliseconds before the key can serve the cost, 0 if it can now
+		 */
+		private long readyIn(int cost, long reserve, long now) {
+			if (getRemaining() - reserve < cost) {
+				return resetAt - now;
+			}
+			
+			long readyIn = Math.max(0, parkedUntil - now);
+			
+			/* A cost above the burst would never fit, the bucket then only has to be full */
+			double needed = Math.min(cost, burst);
+			if (throttled && tokens < needed) {
+				readyIn = Math.max(readyIn, (long) Math.ceil((needed - tokens) / ratePerMillisecond));
+			}
+			
+			return readyIn;
+		}
+		
+	}
+	
+	/**
+	 * Request waiting for a key.
+	 */
+	private static class Waiter {
+		
+		/* Variables */
+		private final String method;
+		private final int cost;
+		private final long deadline;
+		private final CompletableFuture<String> future;
+		
+		/* Constructor */
+		private Waiter(String method, int cost, long deadline) {
+			this.method = method;
+			this.cost = cost;
+			this.deadline = deadline;
+			this.future = new CompletableFuture<>();
+		}
+		
+	}
+	
+	private static class DefaultHolder {
+		
+		/* Private Constants */
+		private static final QuotaScheduler INSTANCE = new Builder().key(Constants.GOOGLE_KEY, UNLIMITED_QUOTA).rate(UNLIMITED_RATE).build();
+		
+	}
+	
+	/**
+	 * Builder for {@link QuotaScheduler}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private final Map<String, Long> keys = new LinkedHashMap<>();
+		private final Map<String, Integer> costs = new HashMap<>();
+		private long dailyQuota = DEFAULT_DAILY_QUOTA;
+		private double rate = DEFAULT_RATE;
+		private int burst = DEFAULT_BURST;
+		private double interactiveReserve = DEFAULT_INTERACTIVE_RESERVE;
+		private long rateLimitParking = DEFAULT_RATE_LIMIT_PARKING;
+		private long maxWait = DEFAULT_MAX_WAIT;
+		
+		/**
+		 * Add a key to the pool, with the default daily quota.
+		 * 
+		 * @return Itself
+		 */
+		public Builder key(String key) {
+			return key(key, dailyQuota);
+		}
+		
+		/**
+		 * Add a key to the pool.
+		 * 
+		 * @param dailyQuota
+		 *            Units the key can use per day, or {@link QuotaScheduler#UNLIMITED_QUOTA} to only stop after a quota error of the server
+		 * @return Itself
+		 */
+		public Builder key(String key, long dailyQuota) {
+			if (dailyQuota <= 0) {
+				throw new IllegalArgumentException("The daily quota must be positive");
+			}
+			
+			keys.put(key, dailyQuota);
+			
+			return this;
+		}
+		
+		/**
+		 * Daily quota of the keys added after this call. Default: {@value QuotaScheduler#DEFAULT_DAILY_QUOTA} units
+		 * 
+		 * @return Itself
+		 */
+		public Builder dailyQuota(long dailyQuota) {
+			if (dailyQuota <= 0) {
+				throw new IllegalArgumentException("The daily quota must be positive");
+			}
+			
+			this.dailyQuota = dailyQuota;
+			
+			return this;
+		}
+		
+		/**
+		 * Override the quota cost of a method. Default: {@value QuotaScheduler#DEFAULT_COST} unit, 100 for <code>search</code> and 50 for <code>captions</code>
+		 * 
+		 * @return Itself
+		 */
+		public Builder cost(String method, int cost) {
+			if (cost < 0) {
+				throw new IllegalArgumentException("The cost can not be negative");
+			}
+			
+			costs.put(method, cost);
+			
+			return this;
+		}
+		
+		/**
+		 * Units per second refilling the bucket of every key, or {@link QuotaScheduler#UNLIMITED_RATE} to not limit the rate locally. Default: {@value QuotaScheduler#DEFAULT_RATE}
+		 * 
+		 * @return Itself
+		 */
+		public Builder rate(double rate) {
+			if (rate <= 0) {
+				throw new IllegalArgumentException("The rate must be positive");
+			}
+			
+			this.rate = rate;
+			
+			return this;
+		}
+		
+		/**
+		 * Capacity of the bucket of every key, the units a key can use at once after being idle. Default: {@value QuotaScheduler#DEFAULT_BURST}
+		 * 
+		 * @return Itself
+		 */
+		public Builder burst(int burst) {
+			if (burst <= 0) {
+				throw new IllegalArgumentException("The burst must be positive");
+			}
+			
+			this.burst = burst;
+			
+			return this;
+		}
+		
+		/**
+		 * Share of the daily quota of every key that batch requests can not use. Default: {@value QuotaScheduler#DEFAULT_INTERACTIVE_RESERVE}
+		 * 
+		 * @return Itself
+		 */
+		public Builder interactiveReserve(double interactiveReserve) {
+			if (interactiveReserve < 0 || interactiveReserve > 1) {
+				throw new IllegalArgumentException("The interactive reserve must be between 0 and 1");
+			}
+			
+			this.interactiveReserve = interactiveReserve;
+			
+			return this;
+		}
+		
+		/**
+		 * Time a key is parked after a rate limit error. Default: {@value QuotaScheduler#DEFAULT_RATE_LIMIT_PARKING} milliseconds
+		 * 
+		 * @return Itself
+		 */
+		public Builder rateLimitParking(long parking, TimeUnit unit) {
+			this.rateLimitParking = unit.toMillis(parking);
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum time a request waits for a key before failing. Default: {@value QuotaScheduler#DEFAULT_MAX_WAIT} milliseconds
+		 * 
+		 * @return Itself
+		 */
+		public Builder maxWait(long maxWait, TimeUnit unit) {
+			this.maxWait = unit.toMillis(maxWait);
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new scheduler with this configuration
+		 * @throws IllegalStateException
+		 *             If no key has been added
+		 */
+		public QuotaScheduler build() {
+			if (keys.isEmpty()) {
+				throw new IllegalStateException("At least one api key is required");
+			}
+			
+			return new QuotaScheduler(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -1,42 +1,82 @@
 package caceresenzo.libs.youtube.api;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import caceresenzo.libs.json.JsonObject;
 import caceresenzo.libs.json.parser.JsonParser;
-import caceresenzo.libs.network.Downloader;
-import caceresenzo.libs.youtube.Constants;
+import caceresenzo.libs.youtube.api.QuotaScheduler.Priority;
+import caceresenzo.libs.youtube.common.JsonReader;
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
 
 public class YoutubeApi<R> {
 	
 	/* Constants */
 	public static final String API_URL = "https://www.googleapis.com/youtube/v3/";
 	
+	/* Private Constants */
+	private static final int STATUS_NOT_MODIFIED = 304;
+	private static final int MAX_QUOTA_ATTEMPTS = 8;
+	
 	/* Parameters Constants */
 	public static final String PARAMETERS_KEY = "key";
+	public static final String PARAMETERS_FIELDS = "fields";
 	
 	/* Variables */
 	private final String method;
+	private HttpTransport transport;
+	private QuotaScheduler scheduler;
+	private Priority priority;
 	
 	/* Constructor */
 	protected YoutubeApi(String method) {
 		this.method = method;
+		this.transport = HttpClientTransport.getShared();
+		this.scheduler = QuotaScheduler.getDefault();
+		this.priority = Priority.INTERACTIVE;
+	}
+	
+	/**
+	 * @return Api method, like <code>playlistItems</code>
+	 */
+	public String getMethod() {
+		return method;
 	}
 	
+	/**
+	 * @return Base url of this method, with the first key of this api's {@link #getScheduler() scheduler}; no quota is consumed
+	 * @deprecated The requests now take their key from the scheduler and are built with {@link #forgeBaseApiUrl(String)}, so overriding this method does not change their url anymore.
+	 */
+	@Deprecated
 	public String forgeBaseApiUrl() {
-		return API_URL + method + "?" + PARAMETERS_KEY + "=" + Constants.GOOGLE_KEY;
+		return forgeBaseApiUrl(scheduler.getKeys().get(0));
+	}
+	
+	/**
+	 * @param key
+	 *            Api key
+	 * @return Base url of this method, with the given key
+	 */
+	public String forgeBaseApiUrl(String key) {
+		return API_URL + method + "?" + PARAMETERS_KEY + "=" + key;
 	}
 	
 	protected Map<String, Object> getParameters() {
 		return new HashMap<>();
 	}
 	
-	protected JsonObject download(Map<String, Object> parameters) throws Exception {
-		String url = forgeBaseApiUrl();
+	protected String forgeApiUrl(Map<String, Object> parameters, String key) throws Exception {
+		String url = forgeBaseApiUrl(key);
 		
 		if (parameters != null && !parameters.isEmpty()) {
 			StringBuilder builder = new StringBuilder(url);
@@ -52,11 +92,252 @@ public class YoutubeApi<R> {
 			url = builder.toString();
 		}
 		
-		return (JsonObject) new JsonParser().parse(Downloader.webget(url, Charset.forName("UTF-8")));
+		return url;
+	}
+	
+	protected JsonObject download(Map<String, Object> parameters) throws Exception {
+		return send(parameters, null, YoutubeApi::parse);
+	}
+	
+	/**
+	 * Same as {@link #download(Map)}, without blocking the caller: the response is read and parsed on the transport's thread.
+	 * 
+	 * @param parameters
+	 *            Request parameters
+	 * @return A future of the parsed response, completed exceptionally with a {@link CompletionException} if the request failed
+	 */
+	protected CompletableFuture<JsonObject> downloadAsync(Map<String, Object> parameters) {
+		return sendAsync(parameters, null, YoutubeApi::parse, 1);
+	}
+	
+	/**
+	 * Same as {@link #download(Map)}, but the response is decoded while it is read, without building a json tree nor a string of the whole body.
+	 * 
+	 * @param parameters
+	 *            Request parameters
+	 * @param decoder
+	 *            Decoder reading the response
+	 * @return The decoded response
+	 * @throws Exception
+	 *             If the request failed or the response is malformed
+	 */
+	protected <T> T download(Map<String, Object> parameters, Decoder<T> decoder) throws Exception {
+		return download(parameters, decoder, null);
+	}
+	
+	/**
+	 * Conditional version of {@link #download(Map, Decoder)}: the resource is only sent back if its etag is not the given one anymore.
+	 * 
+	 * @param parameters
+	 *            Request parameters
+	 * @param decoder
+	 *            Decoder reading the response
+	 * @param etag
+	 *            Etag of the version already known, null to always download
+	 * @return The decoded response, or null if the resource has not been modified
+	 * @throws Exception
+	 *             If the request failed or the response is malformed
+	 */
+	protected <T> T download(Map<String, Object> parameters, Decoder<T> decoder, String etag) throws Exception {
+		return send(parameters, etag, (response) -> decodeIfModified(response, decoder));
+	}
+	
+	/**
+	 * Same as {@link #download(Map, Decoder)}, without blocking the caller: the response is decoded on the transport's thread.
+	 * 
+	 * @param parameters
+	 *            Request parameters
+	 * @param decoder
+	 *            Decoder reading the response
+	 * @return A future of the decoded response, completed exceptionally with a {@link CompletionException} if the request failed
+	 */
+	protected <T> CompletableFuture<T> downloadAsync(Map<String, Object> parameters, Decoder<T> decoder) {
+		return downloadAsync(parameters, decoder, null);
+	}
+	
+	/**
+	 * Same as {@link #download(Map, Decoder, String)}, without blocking the caller.
+	 * 
+	 * @param parameters
+	 *            Request parameters
+	 * @param decoder
+	 *            Decoder reading the response
+	 * @param etag
+	 *            Etag of the version already known, null to always download
+	 * @return A future of the decoded response, or of null if the resource has not been modified, completed exceptionally with a {@link CompletionException} if the request failed
+	 */
+	protected <T> CompletableFuture<T> downloadAsync(Map<String, Object> parameters, Decoder<T> decoder, String etag) {
+		return sendAsync(parameters, etag, (response) -> decodeIfModified(response, decoder), 1);
+	}
+	
+	/**
+	 * Send a request with a key given by the scheduler, retrying with another one while the keys are out of quota.
+	 */
+	private <T> T send(Map<String, Object> parameters, String etag, ResponseReader<T> reader) throws Exception {
+		for (int attempt = 1;; attempt++) {
+			String key;
+			try {
+				key = scheduler.acquire(method, priority).join();
+			} catch (CompletionException exception) {
+				if (exception.getCause() instanceof Exception) {
+					throw (Exception) exception.getCause();
+				}
+				
+				throw exception;
+			}
+			
+			try (TransportResponse response = transport.send(forgeRequest(parameters, etag, key))) {
+				if (!scheduler.checkQuota(key, response)) {
+					return reader.read(response);
+				}
+			}
+			
+			if (attempt == MAX_QUOTA_ATTEMPTS) {
+				throw new QuotaExceededException(method, "Still out of quota after " + attempt + " attempts");
+			}
+		}
+	}
+	
+	private <T> CompletableFuture<T> sendAsync(Map<String, Object> parameters, String etag, ResponseReader<T> reader, int attempt) {
+		return scheduler.acquire(method, priority).thenCompose((key) -> {
+			TransportRequest request;
+			try {
+				request = forgeRequest(parameters, etag, key);
+			} catch (Exception exception) {
+				throw new CompletionException(exception);
+			}
+			
+			return transport.sendAsync(request).thenCompose((response) -> {
+				try (response) {
+					if (!scheduler.checkQuota(key, response)) {
+						return CompletableFuture.completedFuture(reader.read(response));
+					}
+				} catch (Exception exception) {
+					throw new CompletionException(exception);
+				}
+				
+				if (attempt == MAX_QUOTA_ATTEMPTS) {
+					throw new CompletionException(new QuotaExceededException(method, "Still out of quota after " + attempt + " attempts"));
+				}
+				
+				return sendAsync(parameters, etag, reader, attempt + 1);
+			});
+		});
+	}
+	
+	private TransportRequest forgeRequest(Map<String, Object> parameters, String etag, String key) throws Exception {
+		TransportRequest request = new TransportRequest(forgeApiUrl(parameters, key));
+		
+		if (etag != null) {
+			request.header(TransportRequest.HEADER_IF_NONE_MATCH, etag);
+		}
+		
+		return request;
+	}
+	
+	private static JsonObject parse(TransportResponse response) throws Exception {
+		return (JsonObject) new JsonParser().parse(response.requireSuccessful().readString(StandardCharsets.UTF_8));
+	}
+	
+	private static <T> T decodeIfModified(TransportResponse response, Decoder<T> decoder) throws IOException {
+		if (response.getStatusCode() == STATUS_NOT_MODIFIED) {
+			return null;
+		}
+		
+		return decoder.decode(new JsonReader(response.requireSuccessful().getBody()));
+	}
+	
+	/**
+	 * Change the scheduler giving the api keys to this request.
+	 * 
+	 * @param scheduler
+	 *            New scheduler, {@link QuotaScheduler#getDefault()} by default
+	 * @return Itself
+	 */
+	public YoutubeApi<R> setScheduler(QuotaScheduler scheduler) {
+		this.scheduler = scheduler;
+		
+		return this;
+	}
+	
+	/**
+	 * @return Scheduler giving the api keys to this request
+	 */
+	public QuotaScheduler getScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * Change the lane of this request in its scheduler.
+	 * 
+	 * @param priority
+	 *            New priority, {@link Priority#INTERACTIVE} by default
+	 * @return Itself
+	 */
+	public YoutubeApi<R> setPriority(Priority priority) {
+		this.priority = priority;
+		
+		return this;
+	}
+	
+	/**
+	 * @return Lane of this request in its scheduler
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * Change the transport used by this request.
+	 * 
+	 * @param transport
+	 *            New transport, {@link HttpClientTransport#getShared()} by default
+	 * @return Itself
+	 */
+	public YoutubeApi<R> setTransport(HttpTransport transport) {
+		this.transport = transport;
+		
+		return this;
+	}
+	
+	/**
+	 * @return Transport used by this request
+	 */
+	public HttpTransport getTransport() {
+		return transport;
 	}
 	
 	public R execute() throws Exception {
 		return null;
 	}
 	
+	/**
+	 * Decode a response straight from its json stream.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	@FunctionalInterface
+	public static interface Decoder<T> {
+		
+		/**
+		 * @param reader
+		 *            Reader positioned before the response's root value
+		 * @return The decoded response
+		 * @throws IOException
+		 *             If the read failed or the json is malformed
+		 */
+		T decode(JsonReader reader) throws IOException;
+		
+	}
+	
+	/**
+	 * Read a response, the quota errors having been handled.
+	 */
+	@FunctionalInterface
+	private static interface ResponseReader<T> {
+		
+		T read(TransportResponse response) throws Exception;
+		
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package caceresenzo.libs.youtube.api.implementations;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import caceresenzo.libs.youtube.playlist.YoutubePlaylist;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+
+/**
+ * Lazy spliterator over every item of a playlist, fetching the pages as they are needed.
+ * <p/>
+ * Nothing is fetched before the first item is asked for. Once the consumer come back for a second item of a page, the next pages are requested in the background, up to the prefetch depth, so they are already there when the current one is done. A consumer that stop after the first item of a page (like <code>findFirst()</code>) never trigger any prefetch, and one that stop later waste at most the prefetch depth of pages; closing the stream cancel what has not been requested yet.
+ * <p/>
+ * The stream can be closed from another thread than the one consuming it: the consumer then see the end of the playlist instead of waiting for a cancelled page.
+ * 
+ * @author Enzo CACERES
+ */
+final class PlaylistItemSpliterator implements Spliterator<YoutubePlaylistItem> {
+	
+	/* Variables */
+	private final Function<String, CompletableFuture<YoutubePlaylist>> pageFetcher;
+	private final String firstPageToken;
+	private final int prefetchDepth;
+	private final Queue<CompletableFuture<YoutubePlaylist>> pages;
+	private CompletableFuture<YoutubePlaylist> lastRequested;
+	private Iterator<YoutubePlaylistItem> items;
+	private int taken;
+	private boolean ended;
+	private volatile boolean cancelled;
+	private long remaining;
+	
+	/* Constructor */
+	/**
+	 * @param pageFetcher
+	 *            Function fetching a page by its token (null for the first one) without blocking
+	 * @param firstPageToken
+	 *            Token of the page to start at, null for the first one
+	 * @param prefetchDepth
+	 *            Maximum count of pages fetched ahead of the one being consumed, 0 to only fetch a page once the previous one is consumed
+	 */
+	PlaylistItemSpliterator(Function<String, CompletableFuture<YoutubePlaylist>> pageFetcher, String firstPageToken, int prefetchDepth) {
+		if (prefetchDepth < 0) {
+			throw new IllegalArgumentException("The prefetch depth can not be negative");
+		}
+		
+		this.pageFetcher = pageFetcher;
+		this.firstPageToken = firstPageToken;
+		this.prefetchDepth = prefetchDepth;
+		this.pages = new ConcurrentLinkedQueue<>();
+		this.items = Collections.emptyIterator();
+		this.remaining = Long.MAX_VALUE;
+	}
+	
+	@Override
+	public boolean tryAdvance(Consumer<? super YoutubePlaylistItem> action) {
+		if (cancelled) {
+			return false;
+		}
+		
+		while (!items.hasNext()) {
+			YoutubePlaylist page = nextPage();
+			if (page == null) {
+				return false;
+			}
+			
+			items = page.getItems() != null ? page.getItems().iterator() : Collections.emptyIterator();
+			taken = 0;
+			
+			if (page.getTotalResults() != YoutubePlaylist.NO_RESULTS && remaining == Long.MAX_VALUE) {
+				remaining = page.getTotalResults();
+			}
+			
+			if (!page.hasNextPage()) {
+				ended = true;
+			}
+		}
+		
+		YoutubePlaylistItem item = items.next();
+		if (remaining != Long.MAX_VALUE && remaining > 0) {
+			remaining--;
+		}
+		
+		/* Delayed to the second item of the page, so a single lookup never fetch more */
+		if (++taken == 2) {
+			prefetch();
+		}
+		
+		action.accept(item);
+		
+		return true;
+	}
+	
+	/**
+	 * @return Next page, waiting for it if not there yet, or null if there is no more
+	 */
+	private YoutubePlaylist nextPage() {
+		CompletableFuture<YoutubePlaylist> future = pages.poll();
+		
+		if (future == null) {
+			if (!request()) {
+				return null;
+			}
+			
+			/* Emptied by a concurrent cancel */
+			if ((future = pages.poll()) == null) {
+				return null;
+			}
+		}
+		
+		YoutubePlaylist page;
+		try {
+			page = future.join();
+		} catch (CancellationException exception) {
+			if (cancelled) {
+				return null;
+			}
+			
+			throw exception;
+		}
+		
+		if (page == null) {
+			ended = true;
+		}
+		
+		return page;
+	}
+	
+	/**
+	 * Request pages until the prefetch depth is reached.
+	 */
+	private void prefetch() {
+		while (pages.size() < prefetchDepth) {
+			if (!request()) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Request the page following the last requested one. Page tokens being only known once the previous page is there, the request is chained after it.
+	 * 
+	 * @return If a page has been requested, false if the playlist has been fully requested
+	 */
+	private boolean request() {
+		if (ended || cancelled) {
+			return false;
+		}
+		
+		CompletableFuture<YoutubePlaylist> future;
+		if (lastRequested == null) {
+			future = pageFetcher.apply(firstPageToken);
+		} else {
+			future = lastRequested.thenCompose((page) -> page != null && page.hasNextPage() ? pageFetcher.apply(page.getNextPageToken()) : CompletableFuture.completedFuture(null));
+		}
+		
+		pages.add(future);
+		lastRequested = future;
+		
+		/* Cancelled while requesting, the cancel may have missed it */
+		if (cancelled) {
+			future.cancel(false);
+			pages.clear();
+			
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Stop requesting new pages, the ones already requested are cancelled if they have not started yet. Can be called from any thread.
+	 */
+	void cancel() {
+		cancelled = true;
+		
+		CompletableFuture<YoutubePlaylist> page;
+		while ((page = pages.poll()) != null) {
+			page.cancel(false);
+		}
+	}
+	
+	@Override
+	public Spliterator<YoutubePlaylistItem> trySplit() {
+		return null;
+	}
+	
+	@Override
+	public long estimateSize() {
+		return remaining;
+	}
+	
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+	
+}
\ No newline at end of file
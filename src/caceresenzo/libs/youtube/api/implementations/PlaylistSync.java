@@ -0,0 +1,364 @@
+package caceresenzo.libs.youtube.api.implementations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import caceresenzo.libs.youtube.api.QuotaScheduler;
+import caceresenzo.libs.youtube.api.QuotaScheduler.Priority;
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.playlist.PlaylistDelta;
+import caceresenzo.libs.youtube.playlist.PlaylistSnapshot;
+import caceresenzo.libs.youtube.playlist.PlaylistSnapshotStore;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylist;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+
+/**
+ * Incremental synchronization of playlists against the snapshots of a {@link PlaylistSnapshotStore}.
+ * <p/>
+ * Every page is requested with the etag it had during the last synchronization, so the unchanged ones are answered with an empty <code>304 Not Modified</code> and their items are taken from the snapshot. The new state is then compared to the snapshot, and only the added, removed and moved items are returned. The snapshot is only replaced once every page has been read, a failed synchronization leaves it untouched.
+ * 
+ * @author Enzo CACERES
+ */
+public class PlaylistSync {
+	
+	/* Variables */
+	private final PlaylistSnapshotStore store;
+	private final HttpTransport transport;
+	private final QuotaScheduler scheduler;
+	
+	/* Constructor */
+	private PlaylistSync(Builder builder) {
+		this.store = builder.store;
+		this.transport = builder.transport != null ? builder.transport : HttpClientTransport.getShared();
+		this.scheduler = builder.scheduler != null ? builder.scheduler : QuotaScheduler.getDefault();
+	}
+	
+	/**
+	 * Synchronize a playlist without blocking.
+	 * 
+	 * @param playlistId
+	 *            Playlist id
+	 * @return A future of the changes since the last synchronization, every item being added for the first one
+	 */
+	public CompletableFuture<PlaylistDelta> syncAsync(String playlistId) {
+		Run run = new Run(playlistId, store.load(playlistId));
+		
+		return fetch(run, null).thenApply((ignored) -> {
+			PlaylistDelta delta = run.computeDelta();
+			
+			/* Every page answered as not modified, the snapshot is still up to date */
+			if (run.fetchedPages != 0) {
+				try {
+					store.save(new PlaylistSnapshot(playlistId, run.pages));
+				} catch (Exception exception) {
+					throw new CompletionException(exception);
+				}
+			}
+			
+			return delta;
+		});
+	}
+	
+	/**
+	 * Blocking version of {@link #syncAsync(String)}.
+	 * 
+	 * @param playlistId
+	 *            Playlist id
+	 * @return The changes since the last synchronization
+	 * @throws Exception
+	 *             If a page could not be fetched or the snapshot could not be saved
+	 */
+	public PlaylistDelta sync(String playlistId) throws Exception {
+		try {
+			return syncAsync(playlistId).join();
+		} catch (CompletionException exception) {
+			if (exception.getCause() instanceof Exception) {
+				throw (Exception) exception.getCause();
+			}
+			
+			throw exception;
+		}
+	}
+	
+	/**
+	 * @return Store holding the snapshots
+	 */
+	public PlaylistSnapshotStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * Fetch a page if it changed, then the following ones.
+	 */
+	private CompletableFuture<Void> fetch(Run run, String pageToken) {
+		if (!run.seenTokens.add(String.valueOf(pageToken))) {
+			return CompletableFuture.failedFuture(new IllegalStateException("Page token loop in playlist " + run.playlistId + ": " + pageToken));
+		}
+		
+		PlaylistSnapshot.Page previous = run.previousPages.get(pageToken);
+		
+		YoutubePlaylistApi api = new YoutubePlaylistApi(run.playlistId, pageToken);
+		api.setTransport(transport);
+		api.setScheduler(scheduler);
+		api.setPriority(Priority.BATCH);
+		
+		return api.executeIfModifiedAsync(previous != null ? previous.getEtag() : null).thenCompose((playlist) -> {
+			String nextPageToken;
+			
+			if (playlist == null) {
+				if (previous == null) {
+					throw new IllegalStateException("Page " + pageToken + " of playlist " + run.playlistId + " not modified, but not known");
+				}
+				
+				run.notModified(previous);
+				nextPageToken = previous.getNextPageToken();
+			} else {
+				run.fetched(pageToken, playlist);
+				nextPageToken = playlist.getNextPageToken();
+			}
+			
+			if (nextPageToken == null) {
+				return CompletableFuture.completedFuture(null);
+			}
+			
+			return fetch(run, nextPageToken);
+		});
+	}
+	
+	/**
+	 * Compute the indexes of a longest increasing subsequence, the items keeping their relative order.
+	 * 
+	 * @param values
+	 *            Distinct values
+	 * @return Flags of the values being part of the subsequence
+	 */
+	static boolean[] longestIncreasingSubsequence(int[] values) {
+		int[] tails = new int[values.length];
+		int[] predecessors = new int[values.length];
+		int length = 0;
+		
+		for (int index = 0; index < values.length; index++) {
+			int low = 0, high = length;
+			
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				
+				if (values[tails[middle]] < values[index]) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			
+			predecessors[index] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = index;
+			
+			if (low == length) {
+				length++;
+			}
+		}
+		
+		boolean[] kept = new boolean[values.length];
+		for (int index = length > 0 ? tails[length - 1] : -1; index != -1; index = predecessors[index]) {
+			kept[index] = true;
+		}
+		
+		return kept;
+	}
+	
+	/**
+	 * State of a single synchronization.
+	 */
+	private static class Run {
+		
+		/* Variables */
+		private final String playlistId;
+		private final PlaylistSnapshot previous;
+		private final Map<String, PlaylistSnapshot.Page> previousPages;
+		private final Set<String> seenTokens;
+		private final List<PlaylistSnapshot.Page> pages;
+		private final List<YoutubePlaylistItem> items;
+		private int fetchedPages, notModifiedPages;
+		
+		/* Constructor */
+		private Run(String playlistId, PlaylistSnapshot previous) {
+			this.playlistId = playlistId;
+			this.previous = previous;
+			this.previousPages = new HashMap<>();
+			this.seenTokens = new HashSet<>();
+			this.pages = new ArrayList<>();
+			this.items = new ArrayList<>();
+			
+			if (previous != null) {
+				for (PlaylistSnapshot.Page page : previous.getPages()) {
+					previousPages.put(page.getPageToken(), page);
+				}
+			}
+		}
+		
+		private void notModified(PlaylistSnapshot.Page page) {
+			notModifiedPages++;
+			pages.add(page);
+			
+			for (PlaylistSnapshot.Entry entry : page.getEntries()) {
+				items.add(YoutubePlaylistItem.create(entry.getVideoId(), entry.getPosition()));
+			}
+		}
+		
+		private void fetched(String pageToken, YoutubePlaylist playlist) {
+			List<PlaylistSnapshot.Entry> entries = new ArrayList<>();
+			
+			if (playlist.getItems() != null) {
+				for (YoutubePlaylistItem item : playlist.getItems()) {
+					int position = item.getPosition() != YoutubePlaylistItem.NO_POSITION ? item.getPosition() : items.size();
+					
+					entries.add(new PlaylistSnapshot.Entry(item.getVideoId(), position));
+					items.add(item);
+				}
+			}
+			
+			fetchedPages++;
+			pages.add(new PlaylistSnapshot.Page(pageToken, playlist.getEtag(), playlist.getNextPageToken(), entries));
+		}
+		
+		private PlaylistDelta computeDelta() {
+			List<PlaylistSnapshot.Entry> oldEntries = previous != null ? previous.getEntries() : new ArrayList<>();
+			List<PlaylistSnapshot.Entry> newEntries = new ArrayList<>();
+			for (PlaylistSnapshot.Page page : pages) {
+				newEntries.addAll(page.getEntries());
+			}
+			
+			/* A video can be several times in a playlist, its occurrences are told apart by their rank */
+			List<String> oldKeys = toKeys(oldEntries);
+			List<String> newKeys = toKeys(newEntries);
+			
+			Map<String, Integer> oldIndexes = new HashMap<>();
+			for (int index = 0; index < oldKeys.size(); index++) {
+				oldIndexes.put(oldKeys.get(index), index);
+			}
+			
+			List<YoutubePlaylistItem> added = new ArrayList<>();
+			List<Integer> commonNewIndexes = new ArrayList<>();
+			List<Integer> commonOldIndexes = new ArrayList<>();
+			Set<Integer> keptOldIndexes = new HashSet<>();
+			
+			for (int index = 0; index < newKeys.size(); index++) {
+				Integer oldIndex = oldIndexes.get(newKeys.get(index));
+				
+				if (oldIndex == null) {
+					added.add(items.get(index));
+				} else {
+					commonNewIndexes.add(index);
+					commonOldIndexes.add(oldIndex);
+					keptOldIndexes.add(oldIndex);
+				}
+			}
+			
+			List<YoutubePlaylistItem> removed = new ArrayList<>();
+			for (int index = 0; index < oldEntries.size(); index++) {
+				if (!keptOldIndexes.contains(index)) {
+					PlaylistSnapshot.Entry entry = oldEntries.get(index);
+					
+					removed.add(YoutubePlaylistItem.create(entry.getVideoId(), entry.getPosition()));
+				}
+			}
+			
+			int[] values = new int[commonOldIndexes.size()];
+			for (int index = 0; index < values.length; index++) {
+				values[index] = commonOldIndexes.get(index);
+			}
+			
+			List<YoutubePlaylistItem> moved = new ArrayList<>();
+			boolean[] kept = longestIncreasingSubsequence(values);
+			for (int index = 0; index < kept.length; index++) {
+				if (!kept[index]) {
+					moved.add(items.get(commonNewIndexes.get(index)));
+				}
+			}
+			
+			return new PlaylistDelta(playlistId, added, removed, moved, fetchedPages, notModifiedPages);
+		}
+		
+		private static List<String> toKeys(List<PlaylistSnapshot.Entry> entries) {
+			Map<String, Integer> occurrences = new HashMap<>();
+			List<String> keys = new ArrayList<>(entries.size());
+			
+			for (PlaylistSnapshot.Entry entry : entries) {
+				int occurrence = occurrences.merge(entry.getVideoId(), 1, Integer::sum);
+				
+				keys.add(entry.getVideoId() + "#" + occurrence);
+			}
+			
+			return keys;
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link PlaylistSync}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private PlaylistSnapshotStore store = null;
+		private HttpTransport transport = null;
+		private QuotaScheduler scheduler = null;
+		
+		/**
+		 * Store of the snapshots, required.
+		 * 
+		 * @return Itself
+		 */
+		public Builder store(PlaylistSnapshotStore store) {
+			this.store = store;
+			
+			return this;
+		}
+		
+		/**
+		 * Transport used for the api requests. Default: {@link HttpClientTransport#getShared()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder transport(HttpTransport transport) {
+			this.transport = transport;
+			
+			return this;
+		}
+		
+		/**
+		 * Scheduler giving the api keys to the page requests, which are sent in its batch lane. Default: {@link QuotaScheduler#getDefault()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder scheduler(QuotaScheduler scheduler) {
+			this.scheduler = scheduler;
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new synchronizer with this configuration
+		 * @throws IllegalStateException
+		 *             If no store has been set
+		 */
+		public PlaylistSync build() {
+			if (store == null) {
+				throw new IllegalStateException("A snapshot store is required");
+			}
+			
+			return new PlaylistSync(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
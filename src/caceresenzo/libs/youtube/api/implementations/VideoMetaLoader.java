@@ -0,0 +1,392 @@
+package caceresenzo.libs.youtube.api.implementations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import caceresenzo.libs.youtube.api.QuotaScheduler;
+import caceresenzo.libs.youtube.api.QuotaScheduler.Priority;
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+import caceresenzo.libs.youtube.video.VideoMeta;
+
+/**
+ * Bulk loader of complete {@link VideoMeta}, through the <code>videos</code> api.
+ * <p/>
+ * The ids are sent by batches of {@value YoutubeVideosApi#MAX_VIDEO_IDS}, and up to <code>concurrency</code> batches are in flight at the same time, across every caller of the loader. Results are kept in a small LRU cache, and an id already being fetched by another caller is not requested twice, so videos shared by several playlists are only fetched once. Missing videos (deleted or private) are cached too.
+ * 
+ * @author Enzo CACERES
+ */
+public class VideoMetaLoader {
+	
+	/* Constants */
+	public static final int DEFAULT_CONCURRENCY = 4;
+	public static final int DEFAULT_CACHE_SIZE = 2048;
+	public static final long DEFAULT_CACHE_EXPIRY = TimeUnit.MINUTES.toMillis(10);
+	
+	/* Variables */
+	private final HttpTransport transport;
+	private final QuotaScheduler scheduler;
+	private final int concurrency;
+	private final long cacheExpiry;
+	private final Map<String, CacheEntry> cache;
+	private final ConcurrentMap<String, CompletableFuture<VideoMeta>> pendings;
+	private final Queue<Batch> batches;
+	private int runningBatches;
+	
+	/* Constructor */
+	public VideoMetaLoader() {
+		this(new Builder());
+	}
+	
+	/* Constructor */
+	private VideoMetaLoader(Builder builder) {
+		final int cacheSize = builder.cacheSize;
+		
+		this.transport = builder.transport != null ? builder.transport : HttpClientTransport.getShared();
+		this.scheduler = builder.scheduler != null ? builder.scheduler : QuotaScheduler.getDefault();
+		this.concurrency = builder.concurrency;
+		this.cacheExpiry = builder.cacheExpiry;
+		this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		this.pendings = new ConcurrentHashMap<>();
+		this.batches = new ArrayDeque<>();
+	}
+	
+	/**
+	 * Load the meta data of some videos, without blocking.
+	 * 
+	 * @param videoIds
+	 *            Ids of the videos, duplicates are only requested once
+	 * @return A future of the meta data by video id, missing videos are not in it
+	 */
+	public CompletableFuture<Map<String, VideoMeta>> loadAsync(Collection<String> videoIds) {
+		Map<String, CompletableFuture<VideoMeta>> futures = new LinkedHashMap<>();
+		Map<String, CompletableFuture<VideoMeta>> owned = new LinkedHashMap<>();
+		long now = System.currentTimeMillis();
+		
+		for (String videoId : new LinkedHashSet<>(videoIds)) {
+			if (videoId == null) {
+				continue;
+			}
+			
+			CacheEntry entry;
+			synchronized (cache) {
+				entry = cache.get(videoId);
+			}
+			
+			if (entry != null && entry.expireAt > now) {
+				futures.put(videoId, CompletableFuture.completedFuture(entry.videoMeta));
+				continue;
+			}
+			
+			CompletableFuture<VideoMeta> future = new CompletableFuture<>();
+			CompletableFuture<VideoMeta> existing = pendings.putIfAbsent(videoId, future);
+			
+			if (existing != null) {
+				futures.put(videoId, existing);
+			} else {
+				futures.put(videoId, future);
+				owned.put(videoId, future);
+			}
+		}
+		
+		List<String> ids = new ArrayList<>(owned.keySet());
+		for (int start = 0; start < ids.size(); start += YoutubeVideosApi.MAX_VIDEO_IDS) {
+			Batch batch = new Batch();
+			
+			for (String videoId : ids.subList(start, Math.min(start + YoutubeVideosApi.MAX_VIDEO_IDS, ids.size()))) {
+				batch.futures.put(videoId, owned.get(videoId));
+			}
+			
+			synchronized (batches) {
+				batches.add(batch);
+			}
+		}
+		
+		startBatches();
+		
+		return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).thenApply((ignored) -> {
+			Map<String, VideoMeta> videoMetas = new LinkedHashMap<>();
+			
+			for (Map.Entry<String, CompletableFuture<VideoMeta>> entry : futures.entrySet()) {
+				VideoMeta videoMeta = entry.getValue().join();
+				
+				if (videoMeta != null) {
+					videoMetas.put(entry.getKey(), videoMeta);
+				}
+			}
+			
+			return videoMetas;
+		});
+	}
+	
+	/**
+	 * Blocking version of {@link #loadAsync(Collection)}.
+	 * 
+	 * @param videoIds
+	 *            Ids of the videos
+	 * @return The meta data by video id, missing videos are not in it
+	 * @throws Exception
+	 *             If a batch failed
+	 */
+	public Map<String, VideoMeta> load(Collection<String> videoIds) throws Exception {
+		return join(loadAsync(videoIds));
+	}
+	
+	/**
+	 * Complete the meta data of some playlist items, without blocking. The playlist api don't give their length, view count and author, this fill them.
+	 * 
+	 * @param items
+	 *            Items to enrich
+	 * @return A future of the same items
+	 * @see VideoMeta#enrich(VideoMeta)
+	 */
+	public CompletableFuture<List<YoutubePlaylistItem>> enrichAsync(Collection<YoutubePlaylistItem> items) {
+		final List<YoutubePlaylistItem> list = new ArrayList<>(items);
+		List<String> videoIds = new ArrayList<>(list.size());
+		
+		for (YoutubePlaylistItem item : list) {
+			videoIds.add(item.getVideoId());
+		}
+		
+		return loadAsync(videoIds).thenApply((videoMetas) -> {
+			for (YoutubePlaylistItem item : list) {
+				VideoMeta details = videoMetas.get(item.getVideoId());
+				
+				if (details != null && item.getVideoMeta() != null) {
+					item.getVideoMeta().enrich(details);
+				}
+			}
+			
+			return list;
+		});
+	}
+	
+	/**
+	 * Blocking version of {@link #enrichAsync(Collection)}.
+	 * 
+	 * @param items
+	 *            Items to enrich
+	 * @throws Exception
+	 *             If a batch failed
+	 */
+	public void enrich(Collection<YoutubePlaylistItem> items) throws Exception {
+		join(enrichAsync(items));
+	}
+	
+	/**
+	 * Forget every cached video.
+	 */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+	
+	/**
+	 * Start the queued batches, as long as there is less than <code>concurrency</code> running.
+	 */
+	private void startBatches() {
+		while (true) {
+			Batch batch;
+			
+			synchronized (batches) {
+				if (runningBatches >= concurrency || batches.isEmpty()) {
+					return;
+				}
+				
+				batch = batches.poll();
+				runningBatches++;
+			}
+			
+			CompletableFuture<?> request;
+			try {
+				YoutubeVideosApi api = new YoutubeVideosApi(batch.futures.keySet());
+				api.setTransport(transport);
+				api.setScheduler(scheduler);
+				api.setPriority(Priority.BATCH);
+				
+				request = api.executeAsync().thenAccept((videoList) -> {
+					long expireAt = System.currentTimeMillis() + cacheExpiry;
+					Map<String, VideoMeta> found = new LinkedHashMap<>();
+					
+					for (VideoMeta videoMeta : videoList.getVideos()) {
+						found.put(videoMeta.getVideoId(), videoMeta);
+					}
+					
+					synchronized (cache) {
+						for (String videoId : batch.futures.keySet()) {
+							cache.put(videoId, new CacheEntry(found.get(videoId), expireAt));
+						}
+					}
+					
+					for (Map.Entry<String, CompletableFuture<VideoMeta>> entry : batch.futures.entrySet()) {
+						pendings.remove(entry.getKey(), entry.getValue());
+						entry.getValue().complete(found.get(entry.getKey()));
+					}
+				});
+			} catch (RuntimeException exception) {
+				request = CompletableFuture.failedFuture(exception);
+			}
+			
+			request.whenComplete((ignored, throwable) -> {
+				if (throwable != null) {
+					Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+					
+					for (Map.Entry<String, CompletableFuture<VideoMeta>> entry : batch.futures.entrySet()) {
+						pendings.remove(entry.getKey(), entry.getValue());
+						entry.getValue().completeExceptionally(cause);
+					}
+				}
+				
+				synchronized (batches) {
+					runningBatches--;
+				}
+				
+				startBatches();
+			});
+		}
+	}
+	
+	private static <T> T join(CompletableFuture<T> future) throws Exception {
+		try {
+			return future.join();
+		} catch (CompletionException exception) {
+			if (exception.getCause() instanceof Exception) {
+				throw (Exception) exception.getCause();
+			}
+			
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Ids requested together, with the futures of their callers.
+	 */
+	private static class Batch {
+		
+		/* Variables */
+		private final Map<String, CompletableFuture<VideoMeta>> futures = new LinkedHashMap<>();
+		
+	}
+	
+	/**
+	 * Cached meta data, null for a missing video.
+	 */
+	private static class CacheEntry {
+		
+		/* Variables */
+		private final VideoMeta videoMeta;
+		private final long expireAt;
+		
+		/* Constructor */
+		private CacheEntry(VideoMeta videoMeta, long expireAt) {
+			this.videoMeta = videoMeta;
+			this.expireAt = expireAt;
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link VideoMetaLoader}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private HttpTransport transport = null;
+		private QuotaScheduler scheduler = null;
+		private int concurrency = DEFAULT_CONCURRENCY;
+		private int cacheSize = DEFAULT_CACHE_SIZE;
+		private long cacheExpiry = DEFAULT_CACHE_EXPIRY;
+		
+		/**
+		 * Transport used for the api requests. Default: {@link HttpClientTransport#getShared()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder transport(HttpTransport transport) {
+			this.transport = transport;
+			
+			return this;
+		}
+		
+		/**
+		 * Scheduler giving the api keys to the batches, which are sent in its batch lane. Default: {@link QuotaScheduler#getDefault()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder scheduler(QuotaScheduler scheduler) {
+			this.scheduler = scheduler;
+			
+			return this;
+		}
+		
+		/**
+		 * Batches requested at the same time. Default: {@value VideoMetaLoader#DEFAULT_CONCURRENCY}
+		 * 
+		 * @return Itself
+		 */
+		public Builder concurrency(int concurrency) {
+			if (concurrency <= 0) {
+				throw new IllegalArgumentException("The concurrency must be positive");
+			}
+			
+			this.concurrency = concurrency;
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum count of cached videos, 0 to disable the cache. Default: {@value VideoMetaLoader#DEFAULT_CACHE_SIZE}
+		 * 
+		 * @return Itself
+		 */
+		public Builder cacheSize(int cacheSize) {
+			if (cacheSize < 0) {
+				throw new IllegalArgumentException("The cache size can not be negative");
+			}
+			
+			this.cacheSize = cacheSize;
+			
+			return this;
+		}
+		
+		/**
+		 * Time a video stay cached, its view count changing over time. Default: {@value VideoMetaLoader#DEFAULT_CACHE_EXPIRY} milliseconds
+		 * 
+		 * @return Itself
+		 */
+		public Builder cacheExpiry(long expiry, TimeUnit unit) {
+			this.cacheExpiry = unit.toMillis(expiry);
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new loader with this configuration
+		 */
+		public VideoMetaLoader build() {
+			return new VideoMetaLoader(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
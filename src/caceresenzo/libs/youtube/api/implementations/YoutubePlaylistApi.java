@@ -1,13 +1,28 @@
 package caceresenzo.libs.youtube.api.implementations;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import caceresenzo.libs.string.StringUtils;
 import caceresenzo.libs.youtube.api.YoutubeApi;
+import caceresenzo.libs.youtube.common.JsonReader;
 import caceresenzo.libs.youtube.playlist.YoutubePlaylist;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem.Property;
 
 public class YoutubePlaylistApi extends YoutubeApi<YoutubePlaylist> {
 	
+	/* Constants */
+	public static final int DEFAULT_PREFETCH_DEPTH = 1;
+	
 	/* Parameters Constants */
 	public static final String PARAMETERS_MAX_RESULTS = "maxResults";
 	public static final String PARAMETERS_PART = "part";
@@ -16,6 +31,7 @@ public class YoutubePlaylistApi extends YoutubeApi<YoutubePlaylist> {
 	
 	/* Variables */
 	private String playlistId, pageToken;
+	private Set<Property> properties;
 	
 	/* Constructor */
 	public YoutubePlaylistApi(String playlistId) {
@@ -28,6 +44,30 @@ public class YoutubePlaylistApi extends YoutubeApi<YoutubePlaylist> {
 		
 		this.playlistId = playlistId;
 		this.pageToken = pageToken;
+		this.properties = EnumSet.allOf(Property.class);
+	}
+	
+	/**
+	 * Restrict the item properties sent by the api and decoded, the smaller the selection, the smaller the response. The video id is always included.
+	 * 
+	 * @param properties
+	 *            Requested properties, every one by default
+	 * @return Itself
+	 */
+	public YoutubePlaylistApi properties(Property... properties) {
+		Set<Property> selection = EnumSet.of(Property.VIDEO_ID);
+		selection.addAll(Arrays.asList(properties));
+		
+		this.properties = selection;
+		
+		return this;
+	}
+	
+	/**
+	 * @return Unmodifiable requested item properties
+	 */
+	public Set<Property> getProperties() {
+		return Collections.unmodifiableSet(properties);
 	}
 	
 	@Override
@@ -43,12 +83,111 @@ public class YoutubePlaylistApi extends YoutubeApi<YoutubePlaylist> {
 			parameters.put(PARAMETERS_PAGE_TOKEN, pageToken);
 		}
 		
+		parameters.put(PARAMETERS_FIELDS, forgeFields());
+		
 		return parameters;
 	}
 	
+	/**
+	 * @return Projection of the response on the page informations and the requested item properties
+	 */
+	private String forgeFields() {
+		StringBuilder builder = new StringBuilder("kind,etag,prevPageToken,nextPageToken,pageInfo,items(kind");
+		
+		for (Property property : properties) {
+			for (String field : property.getFields()) {
+				builder.append(",").append(field);
+			}
+		}
+		
+		return builder.append(")").toString();
+	}
+	
 	@Override
 	public YoutubePlaylist execute() throws Exception {
-		return YoutubePlaylist.fromJson(download(getParameters()));
+		return download(getParameters(), this::decode);
+	}
+	
+	/**
+	 * Fetch this page without blocking.
+	 * 
+	 * @return A future of the page
+	 */
+	public CompletableFuture<YoutubePlaylist> executeAsync() {
+		return downloadAsync(getParameters(), this::decode);
+	}
+	
+	/**
+	 * Fetch this page only if it changed.
+	 * 
+	 * @param etag
+	 *            Etag of the version already known, see {@link YoutubePlaylist#getEtag()}
+	 * @return The page, or null if it has not been modified
+	 * @throws Exception
+	 *             If the request failed
+	 */
+	public YoutubePlaylist executeIfModified(String etag) throws Exception {
+		return download(getParameters(), this::decode, etag);
+	}
+	
+	/**
+	 * Fetch this page only if it changed, without blocking.
+	 * 
+	 * @param etag
+	 *            Etag of the version already known, see {@link YoutubePlaylist#getEtag()}
+	 * @return A future of the page, or of null if it has not been modified
+	 */
+	public CompletableFuture<YoutubePlaylist> executeIfModifiedAsync(String etag) {
+		return downloadAsync(getParameters(), this::decode, etag);
+	}
+	
+	private YoutubePlaylist decode(JsonReader reader) throws IOException {
+		return YoutubePlaylist.fromJson(reader, properties);
+	}
+	
+	/**
+	 * @return A lazy stream over every item of the playlist, starting at this page, with a prefetch depth of {@value #DEFAULT_PREFETCH_DEPTH}
+	 * @see #stream(int)
+	 */
+	public Stream<YoutubePlaylistItem> stream() {
+		return stream(DEFAULT_PREFETCH_DEPTH);
+	}
+	
+	/**
+	 * Create a lazy stream over every item of the playlist, starting at this page. Pages are fetched as the stream is consumed, the next ones being requested in the background while the current one is processed.
+	 * <p/>
+	 * Closing the stream stops the prefetch. A failed page fetch is thrown as a {@link java.util.concurrent.CompletionException} by the terminal operation.
+	 * 
+	 * @param prefetchDepth
+	 *            Maximum count of pages fetched ahead of the one being consumed, 0 to disable the prefetch
+	 * @return A new sequential stream
+	 */
+	public Stream<YoutubePlaylistItem> stream(int prefetchDepth) {
+		PlaylistItemSpliterator spliterator = createSpliterator(prefetchDepth);
+		
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
+	}
+	
+	/**
+	 * @param prefetchDepth
+	 *            Maximum count of pages fetched ahead of the one being consumed, 0 to disable the prefetch
+	 * @return A lazy spliterator over every item of the playlist, starting at this page
+	 * @see #stream(int)
+	 */
+	public Spliterator<YoutubePlaylistItem> spliterator(int prefetchDepth) {
+		return createSpliterator(prefetchDepth);
+	}
+	
+	private PlaylistItemSpliterator createSpliterator(int prefetchDepth) {
+		return new PlaylistItemSpliterator((token) -> {
+			YoutubePlaylistApi page = new YoutubePlaylistApi(playlistId, token);
+			page.setTransport(getTransport());
+			page.setScheduler(getScheduler());
+			page.setPriority(getPriority());
+			page.properties = properties;
+			
+			return page.executeAsync();
+		}, pageToken, prefetchDepth);
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package caceresenzo.libs.youtube.api.implementations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import caceresenzo.libs.youtube.api.YoutubeApi;
+import caceresenzo.libs.youtube.video.YoutubeVideoList;
+
+public class YoutubeVideosApi extends YoutubeApi<YoutubeVideoList> {
+	
+	/* Constants */
+	public static final int MAX_VIDEO_IDS = 50;
+	public static final String FIELDS = "kind,items(kind,id,snippet(title,description,channelId,channelTitle,liveBroadcastContent,thumbnails/maxres/url),contentDetails/duration,statistics/viewCount)";
+	
+	/* Parameters Constants */
+	public static final String PARAMETERS_MAX_RESULTS = "maxResults";
+	public static final String PARAMETERS_PART = "part";
+	public static final String PARAMETERS_ID = "id";
+	
+	/* Variables */
+	private final List<String> videoIds;
+	
+	/* Constructor */
+	/**
+	 * @param videoIds
+	 *            Ids of the videos, up to {@value #MAX_VIDEO_IDS}
+	 * @throws IllegalArgumentException
+	 *             If there is no id or too many
+	 */
+	public YoutubeVideosApi(Collection<String> videoIds) {
+		super("videos");
+		
+		if (videoIds.isEmpty() || videoIds.size() > MAX_VIDEO_IDS) {
+			throw new IllegalArgumentException("Between 1 and " + MAX_VIDEO_IDS + " video ids can be requested at once, got " + videoIds.size());
+		}
+		
+		this.videoIds = new ArrayList<>(videoIds);
+	}
+	
+	@Override
+	protected Map<String, Object> getParameters() {
+		Map<String, Object> parameters = super.getParameters();
+		
+		parameters.put(PARAMETERS_MAX_RESULTS, MAX_VIDEO_IDS);
+		parameters.put(PARAMETERS_PART, "snippet,contentDetails,statistics");
+		
+		parameters.put(PARAMETERS_ID, String.join(",", videoIds));
+		parameters.put(PARAMETERS_FIELDS, FIELDS);
+		
+		return parameters;
+	}
+	
+	@Override
+	public YoutubeVideoList execute() throws Exception {
+		return download(getParameters(), YoutubeVideoList::fromJson);
+	}
+	
+	/**
+	 * Fetch the videos without blocking.
+	 * 
+	 * @return A future of the videos
+	 */
+	public CompletableFuture<YoutubeVideoList> executeAsync() {
+		return downloadAsync(getParameters(), YoutubeVideoList::fromJson);
+	}
+	
+	/**
+	 * @return Requested video ids
+	 */
+	public List<String> getVideoIds() {
+		return videoIds;
+	}
+	
+}
\ No newline at end of file
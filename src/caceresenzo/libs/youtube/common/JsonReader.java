@@ -0,0 +1,612 @@
+package caceresenzo.libs.youtube.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming pull parser of UTF-8 json, reading straight from a byte stream.
+ * <p/>
+ * Unlike a tree parser, nothing is built but what the caller asks for: values are read one token at a time, and {@link #skipValue()} goes over a whole subtree without creating any string or object. Usage mirror the document structure:
+ * 
+ * <pre>
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ * 	switch (reader.nextName()) {
+ * 		case "title": {
+ * 			title = reader.nextString();
+ * 			break;
+ * 		}
+ * 
+ * 		default: {
+ * 			reader.skipValue();
+ * 			break;
+ * 		}
+ * 	}
+ * }
+ * reader.endObject();
+ * </pre>
+ * 
+ * @author Enzo CACERES
+ */
+public final class JsonReader implements Closeable {
+	
+	/* Private Constants */
+	private static final int BUFFER_SIZE = 8192;
+	
+	private static final int SCOPE_EMPTY_DOCUMENT = 0;
+	private static final int SCOPE_NONEMPTY_DOCUMENT = 1;
+	private static final int SCOPE_EMPTY_ARRAY = 2;
+	private static final int SCOPE_NONEMPTY_ARRAY = 3;
+	private static final int SCOPE_EMPTY_OBJECT = 4;
+	private static final int SCOPE_DANGLING_NAME = 5;
+	private static final int SCOPE_NONEMPTY_OBJECT = 6;
+	
+	/* Variables */
+	private final InputStream inputStream;
+	private final byte[] buffer;
+	private final StringBuilder builder;
+	private int position, limit;
+	private long offset;
+	private int[] scopes;
+	private int depth;
+	private Token peeked;
+	
+	/* Constructor */
+	public JsonReader(InputStream inputStream) {
+		this.inputStream = inputStream;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.builder = new StringBuilder();
+		this.scopes = new int[32];
+		this.scopes[depth++] = SCOPE_EMPTY_DOCUMENT;
+	}
+	
+	/**
+	 * @return Kind of the next token, without consuming it
+	 * @throws IOException
+	 *             If the read failed or the json is malformed
+	 */
+	public Token peek() throws IOException {
+		if (peeked == null) {
+			peeked = doPeek();
+		}
+		
+		return peeked;
+	}
+	
+	/**
+	 * @return If the current object or array has another element
+	 * @throws IOException
+	 *             If the read failed or the json is malformed
+	 */
+	public boolean hasNext() throws IOException {
+		Token token = peek();
+		
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+	
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+		push(SCOPE_EMPTY_OBJECT);
+	}
+	
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+		depth--;
+	}
+	
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+		push(SCOPE_EMPTY_ARRAY);
+	}
+	
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+		depth--;
+	}
+	
+	/**
+	 * @return Next property name
+	 * @throws IOException
+	 *             If the read failed, the json is malformed or the next token is not a name
+	 */
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		
+		return readString();
+	}
+	
+	/**
+	 * @return Next string, or the literal of the next number
+	 * @throws IOException
+	 *             If the read failed, the json is malformed or the next token is not a string nor a number
+	 */
+	public String nextString() throws IOException {
+		Token token = peek();
+		
+		if (token == Token.STRING) {
+			peeked = null;
+			return readString();
+		} else if (token == Token.NUMBER) {
+			peeked = null;
+			return readLiteral();
+		}
+		
+		throw syntaxError("Expected a string but was " + token);
+	}
+	
+	/**
+	 * @return Next string, or null if the next token is null
+	 * @throws IOException
+	 *             If the read failed, the json is malformed or the next token is not a string, a number nor null
+	 */
+	public String nextStringOrNull() throws IOException {
+		if (peek() == Token.NULL) {
+			nextNull();
+			return null;
+		}
+		
+		return nextString();
+	}
+	
+	/**
+	 * @return Next number, youtube sending some of them (like the view count) as strings, they are accepted too
+	 * @throws IOException
+	 *             If the read failed, the json is malformed or the next token is not an integer
+	 */
+	public long nextLong() throws IOException {
+		String literal = nextString();
+		
+		try {
+			return Long.parseLong(literal);
+		} catch (NumberFormatException exception) {
+			throw syntaxError("Expected a long but was " + literal);
+		}
+	}
+	
+	/**
+	 * @return Next number
+	 * @throws IOException
+	 *             If the read failed, the json is malformed or the next token is not an int
+	 */
+	public int nextInt() throws IOException {
+		long value = nextLong();
+		
+		if (value != (int) value) {
+			throw syntaxError("Expected an int but was " + value);
+		}
+		
+		return (int) value;
+	}
+	
+	public boolean nextBoolean() throws IOException {
+		expect(Token.BOOLEAN);
+		
+		String literal = readLiteral();
+		if (literal.equals("true")) {
+			return true;
+		} else if (literal.equals("false")) {
+			return false;
+		}
+		
+		throw syntaxError("Expected a boolean but was " + literal);
+	}
+	
+	public void nextNull() throws IOException {
+		expect(Token.NULL);
+		
+		String literal = readLiteral();
+		if (!literal.equals("null")) {
+			throw syntaxError("Expected null but was " + literal);
+		}
+	}
+	
+	/**
+	 * Skip the next value, with all its children if it is an object or an array. Nothing is decoded.
+	 * 
+	 * @throws IOException
+	 *             If the read failed or the json is malformed
+	 */
+	public void skipValue() throws IOException {
+		int count = 0;
+		
+		do {
+			Token token = peek();
+			peeked = null;
+			
+			switch (token) {
+				case BEGIN_OBJECT: {
+					push(SCOPE_EMPTY_OBJECT);
+					count++;
+					break;
+				}
+				
+				case BEGIN_ARRAY: {
+					push(SCOPE_EMPTY_ARRAY);
+					count++;
+					break;
+				}
+				
+				case END_OBJECT:
+				case END_ARRAY: {
+					depth--;
+					count--;
+					break;
+				}
+				
+				case NAME:
+				case STRING: {
+					skipString();
+					break;
+				}
+				
+				case NUMBER:
+				case BOOLEAN:
+				case NULL: {
+					skipLiteral();
+					break;
+				}
+				
+				default: {
+					throw syntaxError("Can not skip " + token);
+				}
+			}
+		} while (count != 0);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+	
+	private void expect(Token expected) throws IOException {
+		Token token = peek();
+		
+		if (token != expected) {
+			throw syntaxError("Expected " + expected + " but was " + token);
+		}
+		
+		peeked = null;
+	}
+	
+	private void push(int scope) {
+		if (depth == scopes.length) {
+			int[] grown = new int[depth * 2];
+			System.arraycopy(scopes, 0, grown, 0, depth);
+			scopes = grown;
+		}
+		
+		scopes[depth++] = scope;
+	}
+	
+	private Token doPeek() throws IOException {
+		int scope = scopes[depth - 1];
+		
+		switch (scope) {
+			case SCOPE_EMPTY_ARRAY: {
+				scopes[depth - 1] = SCOPE_NONEMPTY_ARRAY;
+				
+				int character = nextNonWhitespace();
+				if (character == ']') {
+					return Token.END_ARRAY;
+				} else if (character == -1) {
+					throw syntaxError("Unterminated array");
+				}
+				
+				position--;
+				return peekValue();
+			}
+			
+			case SCOPE_NONEMPTY_ARRAY: {
+				int character = nextNonWhitespace();
+				if (character == ']') {
+					return Token.END_ARRAY;
+				} else if (character != ',') {
+					throw syntaxError("Unterminated array");
+				}
+				
+				return peekValue();
+			}
+			
+			case SCOPE_EMPTY_OBJECT:
+			case SCOPE_NONEMPTY_OBJECT: {
+				int character = nextNonWhitespace();
+				
+				if (character == '}') {
+					return Token.END_OBJECT;
+				}
+				
+				if (scope == SCOPE_NONEMPTY_OBJECT) {
+					if (character != ',') {
+						throw syntaxError("Unterminated object");
+					}
+					
+					character = nextNonWhitespace();
+				}
+				
+				if (character != '"') {
+					throw syntaxError("Expected a name");
+				}
+				
+				scopes[depth - 1] = SCOPE_DANGLING_NAME;
+				return Token.NAME;
+			}
+			
+			case SCOPE_DANGLING_NAME: {
+				if (nextNonWhitespace() != ':') {
+					throw syntaxError("Expected ':'");
+				}
+				
+				scopes[depth - 1] = SCOPE_NONEMPTY_OBJECT;
+				return peekValue();
+			}
+			
+			case SCOPE_EMPTY_DOCUMENT: {
+				scopes[depth - 1] = SCOPE_NONEMPTY_DOCUMENT;
+				return peekValue();
+			}
+			
+			default: {
+				if (nextNonWhitespace() != -1) {
+					throw syntaxError("Expected the end of the document");
+				}
+				
+				return Token.END_DOCUMENT;
+			}
+		}
+	}
+	
+	private Token peekValue() throws IOException {
+		int character = nextNonWhitespace();
+		
+		switch (character) {
+			case '{': {
+				return Token.BEGIN_OBJECT;
+			}
+			
+			case '[': {
+				return Token.BEGIN_ARRAY;
+			}
+			
+			case '"': {
+				return Token.STRING;
+			}
+			
+			case 't':
+			case 'f': {
+				position--;
+				return Token.BOOLEAN;
+			}
+			
+			case 'n': {
+				position--;
+				return Token.NULL;
+			}
+			
+			case -1: {
+				throw syntaxError("Unexpected end of the document");
+			}
+			
+			default: {
+				if (character != '-' && (character < '0' || character > '9')) {
+					throw syntaxError("Unexpected character '" + (char) character + "'");
+				}
+				
+				position--;
+				return Token.NUMBER;
+			}
+		}
+	}
+	
+	/**
+	 * Read a string whose opening quote has been consumed, decoding the escapes and the UTF-8 sequences.
+	 */
+	private String readString() throws IOException {
+		builder.setLength(0);
+		
+		while (true) {
+			int character = nextByte();
+			
+			if (character == '"') {
+				return builder.toString();
+			} else if (character == '\\') {
+				builder.append(readEscape());
+			} else if (character == -1) {
+				throw syntaxError("Unterminated string");
+			} else if (character < 0x80) {
+				builder.append((char) character);
+			} else {
+				builder.appendCodePoint(readUtf8(character));
+			}
+		}
+	}
+	
+	private void skipString() throws IOException {
+		while (true) {
+			int character = nextByte();
+			
+			if (character == '"') {
+				return;
+			} else if (character == '\\') {
+				nextByte();
+			} else if (character == -1) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+	
+	private char readEscape() throws IOException {
+		int character = nextByte();
+		
+		switch (character) {
+			case 'b': {
+				return '\b';
+			}
+			
+			case 'f': {
+				return '\f';
+			}
+			
+			case 'n': {
+				return '\n';
+			}
+			
+			case 'r': {
+				return '\r';
+			}
+			
+			case 't': {
+				return '\t';
+			}
+			
+			case 'u': {
+				int value = 0;
+				for (int index = 0; index < 4; index++) {
+					int digit = Character.digit(nextByte(), 16);
+					if (digit == -1) {
+						throw syntaxError("Malformed unicode escape");
+					}
+					
+					value = (value << 4) | digit;
+				}
+				
+				return (char) value;
+			}
+			
+			case -1: {
+				throw syntaxError("Unterminated escape");
+			}
+			
+			default: {
+				return (char) character;
+			}
+		}
+	}
+	
+	private int readUtf8(int lead) throws IOException {
+		int length, codePoint;
+		
+		if ((lead & 0xE0) == 0xC0) {
+			length = 1;
+			codePoint = lead & 0x1F;
+		} else if ((lead & 0xF0) == 0xE0) {
+			length = 2;
+			codePoint = lead & 0x0F;
+		} else if ((lead & 0xF8) == 0xF0) {
+			length = 3;
+			codePoint = lead & 0x07;
+		} else {
+			return 0xFFFD;
+		}
+		
+		for (int index = 0; index < length; index++) {
+			int next = nextByte();
+			if ((next & 0xC0) != 0x80) {
+				return 0xFFFD;
+			}
+			
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+		
+		return Character.isValidCodePoint(codePoint) ? codePoint : 0xFFFD;
+	}
+	
+	private String readLiteral() throws IOException {
+		builder.setLength(0);
+		
+		while (true) {
+			int character = nextByte();
+			
+			if (isLiteralEnd(character)) {
+				if (character != -1) {
+					position--;
+				}
+				
+				return builder.toString();
+			}
+			
+			builder.append((char) character);
+		}
+	}
+	
+	private void skipLiteral() throws IOException {
+		while (true) {
+			int character = nextByte();
+			
+			if (isLiteralEnd(character)) {
+				if (character != -1) {
+					position--;
+				}
+				
+				return;
+			}
+		}
+	}
+	
+	private static boolean isLiteralEnd(int character) {
+		switch (character) {
+			case -1:
+			case ',':
+			case ':':
+			case ']':
+			case '}':
+			case ' ':
+			case '\t':
+			case '\r':
+			case '\n': {
+				return true;
+			}
+			
+			default: {
+				return false;
+			}
+		}
+	}
+	
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			int character = nextByte();
+			
+			if (character != ' ' && character != '\t' && character != '\r' && character != '\n') {
+				return character;
+			}
+		}
+	}
+	
+	/**
+	 * @return Next byte, or -1 at the end of the stream; one byte can always be pushed back by decrementing the position
+	 */
+	private int nextByte() throws IOException {
+		if (position == limit) {
+			if (limit != 0) {
+				/* Keep the last byte so it can still be pushed back */
+				buffer[0] = buffer[limit - 1];
+				offset += limit - 1;
+				position = limit = 1;
+			}
+			
+			int read = inputStream.read(buffer, limit, buffer.length - limit);
+			if (read <= 0) {
+				return -1;
+			}
+			
+			limit += read;
+		}
+		
+		return buffer[position++] & 0xFF;
+	}
+	
+	private IOException syntaxError(String message) {
+		return new IOException(message + " at offset " + (offset + position));
+	}
+	
+	/**
+	 * Kind of json token.
+	 */
+	public static enum Token {
+		
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT;
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package caceresenzo.libs.youtube.download;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Append-only record of the chunks already written to a file, so an interrupted download can be resumed.
+ * <p/>
+ * The first line describes the download (format, length and chunk size); a journal with another description belongs to another download and is started over. Every following line is the index of a completed chunk, a truncated last line is dropped.
+ * 
+ * @author Enzo CACERES
+ */
+final class DownloadJournal implements Closeable {
+	
+	/* Variables */
+	private final Path file;
+	private final BitSet completed;
+	private final BufferedWriter writer;
+	
+	/* Constructor */
+	private DownloadJournal(Path file, BitSet completed, BufferedWriter writer) {
+		this.file = file;
+		this.completed = completed;
+		this.writer = writer;
+	}
+	
+	/**
+	 * @return Indexes of the chunks already written, not updated by {@link #markDone(int)}
+	 */
+	BitSet getCompleted() {
+		return (BitSet) completed.clone();
+	}
+	
+	/**
+	 * Record a chunk as fully written.
+	 * 
+	 * @param chunk
+	 *            Chunk index
+	 * @throws IOException
+	 *             If the journal could not be written
+	 */
+	synchronized void markDone(int chunk) throws IOException {
+		completed.set(chunk);
+		
+		writer.write(chunk + "\n");
+		writer.flush();
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+	
+	/**
+	 * Close and delete the journal, once the download is complete.
+	 */
+	void delete() throws IOException {
+		close();
+		Files.deleteIfExists(file);
+	}
+	
+	/**
+	 * Open a journal, resuming it if it describes the same download.
+	 * 
+	 * @param file
+	 *            Journal file
+	 * @param description
+	 *            Single line description of the download
+	 * @param resume
+	 *            false to start over whatever the journal contains, when the downloaded file is gone
+	 * @return An opened journal
+	 * @throws IOException
+	 *             If the journal could not be read or created
+	 */
+	static DownloadJournal open(Path file, String description, boolean resume) throws IOException {
+		BitSet completed = new BitSet();
+		long completeLength = 0;
+		
+		if (resume && Files.exists(file)) {
+			byte[] content = Files.readAllBytes(file);
+			
+			/* Everything after the last line feed is a line partially written before a crash */
+			for (int index = content.length - 1; index >= 0; index--) {
+				if (content[index] == '\n') {
+					completeLength = index + 1;
+					break;
+				}
+			}
+			
+			String[] lines = new String(content, 0, (int) completeLength, StandardCharsets.UTF_8).split("\n");
+			resume = completeLength != 0 && description.equals(lines[0]);
+			
+			for (int index = 1; resume && index < lines.length; index++) {
+				try {
+					completed.set(Integer.parseInt(lines[index].trim()));
+				} catch (NumberFormatException | IndexOutOfBoundsException exception) {
+					;
+				}
+			}
+		} else {
+			resume = false;
+		}
+		
+		if (!resume) {
+			completed.clear();
+			
+			BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			writer.write(description + "\n");
+			writer.flush();
+			
+			return new DownloadJournal(file, completed, writer);
+		}
+		
+		/* Drop the partial line, appending after it would turn a fragment like "12" of "123" into a valid entry */
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(completeLength);
+		}
+		
+		BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		
+		return new DownloadJournal(file, completed, writer);
+	}
+	
+}
\ No newline at end of file
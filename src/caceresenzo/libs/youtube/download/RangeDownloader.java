@@ -0,0 +1,488 @@
+package caceresenzo.libs.youtube.download;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpStatusException;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.network.RetryBackoff;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Downloader of a {@link YoutubeVideo} over several connections.
+ * <p/>
+ * The file is split in chunks fetched with range requests, several at the same time, and written directly at their offset in the preallocated output file. Every completed chunk is recorded in a journal next to the file, so calling {@link #download(YoutubeVideo, Path)} again after an interruption only fetches the missing chunks.
+ * <p/>
+ * If the server refuses the url partway through, because it expired, a fresh one is asked to the {@link UrlRefresher} and the download continues where it stopped.
+ * 
+ * @author Enzo CACERES
+ */
+public class RangeDownloader {
+	
+	/* Constants */
+	public static final int DEFAULT_CONNECTIONS = 4;
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+	public static final String JOURNAL_EXTENSION = ".journal";
+	
+	/* Private Constants */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_URL_REFRESHES = 3;
+	private static final RetryBackoff CHUNK_BACKOFF = new RetryBackoff(5, 250, 4000, TimeUnit.MILLISECONDS);
+	private static final Pattern PATTERN_CONTENT_LENGTH = Pattern.compile("[?&]clen=(\\d+)");
+	private static final Pattern PATTERN_CONTENT_RANGE_TOTAL = Pattern.compile("/(\\d+)\\s*$");
+	
+	/* Variables */
+	private final HttpTransport transport;
+	private final int connections, chunkSize;
+	private final UrlRefresher refresher;
+	private final ProgressListener listener;
+	
+	/* Constructor */
+	public RangeDownloader() {
+		this(new Builder());
+	}
+	
+	/* Constructor */
+	private RangeDownloader(Builder builder) {
+		this.transport = builder.transport != null ? builder.transport : HttpClientTransport.getShared();
+		this.connections = builder.connections;
+		this.chunkSize = builder.chunkSize;
+		this.refresher = builder.refresher;
+		this.listener = builder.listener;
+	}
+	
+	/**
+	 * Download a video into a file, resuming a previous download of the same video and format if its journal is found.
+	 * 
+	 * @param video
+	 *            Video to download
+	 * @param file
+	 *            Output file, its journal is the same path followed by {@value #JOURNAL_EXTENSION}
+	 * @return Bytes fetched by this call, less than the file size if it has been resumed
+	 * @throws IOException
+	 *             If a chunk could not be downloaded, or the file could not be written
+	 * @throws InterruptedException
+	 *             If interrupted, the download can be resumed later
+	 */
+	public long download(YoutubeVideo video, Path file) throws IOException, InterruptedException {
+		Download download = new Download(video);
+		long length = findLength(download);
+		
+		/* Without range support, the whole file is a single chunk */
+		long chunkSize = download.rangeSupported ? this.chunkSize : Math.max(1, length);
+		int chunkCount = (int) ((length + chunkSize - 1) / chunkSize);
+		
+		Path journalFile = file.resolveSibling(file.getFileName() + JOURNAL_EXTENSION);
+		String description = video.getFormat().getItag() + " " + length + " " + chunkSize;
+		
+		DownloadJournal journal = DownloadJournal.open(journalFile, description, Files.exists(file));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			preallocate(channel, length);
+			
+			BitSet completed = journal.getCompleted();
+			Queue<Chunk> remaining = new ConcurrentLinkedQueue<>();
+			long alreadyDownloaded = 0;
+			
+			for (int index = 0; index < chunkCount; index++) {
+				long start = index * chunkSize;
+				long end = Math.min(length, start + chunkSize) - 1;
+				
+				if (completed.get(index)) {
+					alreadyDownloaded += end - start + 1;
+				} else {
+					remaining.add(new Chunk(index, start, end));
+				}
+			}
+			
+			download.progress.set(alreadyDownloaded);
+			runWorkers(download, channel, journal, remaining, length);
+			
+			channel.force(false);
+		} catch (IOException | InterruptedException | RuntimeException exception) {
+			journal.close();
+			throw exception;
+		}
+		
+		journal.delete();
+		
+		return download.fetched.get();
+	}
+	
+	private void runWorkers(final Download download, final FileChannel channel, final DownloadJournal journal, final Queue<Chunk> remaining, final long length) throws IOException, InterruptedException {
+		int workerCount = Math.min(connections, remaining.size());
+		if (workerCount == 0) {
+			return;
+		}
+		
+		final AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount, (runnable) -> {
+			Thread thread = new Thread(runnable, "youtube-download-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+		try {
+			for (int index = 0; index < workerCount; index++) {
+				completionService.submit(() -> {
+					Chunk chunk;
+					while ((chunk = remaining.poll()) != null) {
+						if (Thread.interrupted()) {
+							throw new InterruptedException();
+						}
+						
+						downloadChunk(download, channel, chunk, length);
+						
+						/* The chunk is only recorded once its data is durable */
+						channel.force(false);
+						journal.markDone(chunk.index);
+					}
+					
+					return null;
+				});
+			}
+			
+			for (int index = 0; index < workerCount; index++) {
+				try {
+					completionService.take().get();
+				} catch (ExecutionException exception) {
+					Throwable cause = exception.getCause();
+					
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					
+					throw new IOException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private void downloadChunk(Download download, final FileChannel channel, final Chunk chunk, final long length) throws IOException, InterruptedException {
+		withRetries(download, (url) -> {
+			TransportRequest request = new TransportRequest(url).header(TransportRequest.HEADER_RANGE, "bytes=" + chunk.position + "-" + chunk.end);
+			
+			try (TransportResponse response = transport.send(request).requireSuccessful()) {
+				if (response.getStatusCode() != 206 && (chunk.position != 0 || chunk.end != length - 1)) {
+					throw new IOException("Server ignored the range request of " + url);
+				}
+				
+				copy(download, response.getBody(), channel, chunk);
+			}
+			
+			return null;
+		});
+	}
+	
+	/**
+	 * Write a response body at the chunk position, advancing it, until the end of the chunk.
+	 */
+	private void copy(Download download, InputStream input, FileChannel channel, Chunk chunk) throws IOException {
+		byte[] bytes = new byte[BUFFER_SIZE];
+		
+		while (chunk.position <= chunk.end) {
+			int read = input.read(bytes, 0, (int) Math.min(bytes.length, chunk.end - chunk.position + 1));
+			if (read == -1) {
+				throw new EOFException("Response ended " + (chunk.end - chunk.position + 1) + " bytes early");
+			}
+			
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+			while (buffer.hasRemaining()) {
+				chunk.position += channel.write(buffer, chunk.position);
+			}
+			
+			download.fetched.addAndGet(read);
+			long progress = download.progress.addAndGet(read);
+			
+			if (listener != null) {
+				listener.onProgress(download.video, progress, download.length);
+			}
+		}
+	}
+	
+	/**
+	 * Find the file length, from the url if possible, or with a one byte range request.
+	 */
+	private long findLength(final Download download) throws IOException, InterruptedException {
+		Matcher matcher = PATTERN_CONTENT_LENGTH.matcher(download.getUrl());
+		if (matcher.find()) {
+			return download.length = Long.parseLong(matcher.group(1));
+		}
+		
+		return withRetries(download, (url) -> {
+			TransportRequest request = new TransportRequest(url).header(TransportRequest.HEADER_RANGE, "bytes=0-0");
+			
+			try (TransportResponse response = transport.send(request).requireSuccessful()) {
+				String header = response.getStatusCode() == 206 ? response.getHeader(TransportResponse.HEADER_CONTENT_RANGE) : response.getHeader(TransportResponse.HEADER_CONTENT_LENGTH);
+				Matcher lengthMatcher = header != null ? PATTERN_CONTENT_RANGE_TOTAL.matcher("/" + header.trim()) : null;
+				
+				if (lengthMatcher == null || !lengthMatcher.find()) {
+					throw new IOException("Unknown length of " + url);
+				}
+				
+				download.rangeSupported = response.getStatusCode() == 206;
+				return download.length = Long.parseLong(lengthMatcher.group(1));
+			}
+		});
+	}
+	
+	/**
+	 * Run a request, refreshing the url when it is refused, and retrying with a backoff on other failures.
+	 */
+	private <T> T withRetries(Download download, Attempt<T> attempt) throws IOException, InterruptedException {
+		IOException failure = null;
+		
+		for (int retry = 0; retry < CHUNK_BACKOFF.getMaxAttempts();) {
+			String url = download.getUrl();
+			
+			try {
+				return attempt.run(url);
+			} catch (HttpStatusException exception) {
+				int statusCode = exception.getStatusCode();
+				
+				if ((statusCode == 403 || statusCode == 410) && download.refresh(url)) {
+					continue;
+				}
+				
+				/* Retrying a client error will not change anything */
+				if (statusCode >= 400 && statusCode < 500 && statusCode != 429) {
+					throw exception;
+				}
+				
+				failure = exception;
+			} catch (IOException exception) {
+				failure = exception;
+			}
+			
+			if (++retry < CHUNK_BACKOFF.getMaxAttempts()) {
+				CHUNK_BACKOFF.await(retry - 1);
+			}
+		}
+		
+		throw failure;
+	}
+	
+	private static void preallocate(FileChannel channel, long length) throws IOException {
+		if (channel.size() > length) {
+			channel.truncate(length);
+		} else if (channel.size() < length && length > 0) {
+			/* Extending the file with its last byte, sparse when the file system allow it */
+			channel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+		}
+	}
+	
+	/**
+	 * State of a single {@link RangeDownloader#download(YoutubeVideo, Path)} call, shared by its workers.
+	 */
+	private class Download {
+		
+		/* Variables */
+		private final YoutubeVideo video;
+		private final AtomicLong fetched, progress;
+		private volatile String url;
+		private volatile long length;
+		private volatile boolean rangeSupported;
+		private int refreshes;
+		
+		/* Constructor */
+		private Download(YoutubeVideo video) {
+			this.video = video;
+			this.fetched = new AtomicLong();
+			this.progress = new AtomicLong();
+			this.url = video.getUrl();
+			this.rangeSupported = true;
+		}
+		
+		private String getUrl() {
+			return url;
+		}
+		
+		/**
+		 * Replace a refused url, only once when several workers see it refused.
+		 * 
+		 * @return If there is a new url to try
+		 */
+		private synchronized boolean refresh(String refusedUrl) throws IOException, InterruptedException {
+			if (!refusedUrl.equals(url)) {
+				return true;
+			}
+			
+			if (refresher == null || refreshes >= MAX_URL_REFRESHES) {
+				return false;
+			}
+			
+			refreshes++;
+			
+			String fresh = refresher.refresh(video);
+			if (fresh == null || fresh.equals(refusedUrl)) {
+				return false;
+			}
+			
+			url = fresh;
+			return true;
+		}
+		
+	}
+	
+	/**
+	 * Byte range of the file.
+	 */
+	private static class Chunk {
+		
+		/* Variables */
+		private final int index;
+		private final long end;
+		private long position;
+		
+		/* Constructor */
+		private Chunk(int index, long start, long end) {
+			this.index = index;
+			this.position = start;
+			this.end = end;
+		}
+		
+	}
+	
+	/**
+	 * Single try of a request.
+	 */
+	@FunctionalInterface
+	private static interface Attempt<T> {
+		
+		T run(String url) throws IOException, InterruptedException;
+		
+	}
+	
+	/**
+	 * Listener of the download progress, called from the download threads.
+	 */
+	@FunctionalInterface
+	public static interface ProgressListener {
+		
+		/**
+		 * @param video
+		 *            Video being downloaded
+		 * @param downloadedBytes
+		 *            Bytes written to the file so far, including the ones of a resumed download
+		 * @param totalBytes
+		 *            File length
+		 */
+		void onProgress(YoutubeVideo video, long downloadedBytes, long totalBytes);
+		
+	}
+	
+	/**
+	 * Builder for {@link RangeDownloader}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private HttpTransport transport = null;
+		private int connections = DEFAULT_CONNECTIONS;
+		private int chunkSize = DEFAULT_CHUNK_SIZE;
+		private UrlRefresher refresher = null;
+		private ProgressListener listener = null;
+		
+		/**
+		 * Transport used for the range requests. Default: {@link HttpClientTransport#getShared()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder transport(HttpTransport transport) {
+			this.transport = transport;
+			
+			return this;
+		}
+		
+		/**
+		 * Chunks downloaded at the same time. Default: {@value RangeDownloader#DEFAULT_CONNECTIONS}
+		 * 
+		 * @return Itself
+		 */
+		public Builder connections(int connections) {
+			if (connections <= 0) {
+				throw new IllegalArgumentException("The connection count must be positive");
+			}
+			
+			this.connections = connections;
+			
+			return this;
+		}
+		
+		/**
+		 * Size of a range request. Default: {@value RangeDownloader#DEFAULT_CHUNK_SIZE} bytes
+		 * 
+		 * @return Itself
+		 */
+		public Builder chunkSize(int chunkSize) {
+			if (chunkSize <= 0) {
+				throw new IllegalArgumentException("The chunk size must be positive");
+			}
+			
+			this.chunkSize = chunkSize;
+			
+			return this;
+		}
+		
+		/**
+		 * Source of fresh urls when they expire during a download, see {@link UrlRefresher#reextract(caceresenzo.libs.youtube.extractor.YouTubeExtractionEngine, String, boolean, boolean)}. Default: none, the download fails
+		 * 
+		 * @return Itself
+		 */
+		public Builder refresher(UrlRefresher refresher) {
+			this.refresher = refresher;
+			
+			return this;
+		}
+		
+		/**
+		 * Listener of the download progress. Default: none
+		 * 
+		 * @return Itself
+		 */
+		public Builder listener(ProgressListener listener) {
+			this.listener = listener;
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new downloader with this configuration
+		 */
+		public RangeDownloader build() {
+			return new RangeDownloader(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package caceresenzo.libs.youtube.download;
+
+import java.io.IOException;
+
+import caceresenzo.libs.youtube.extractor.ExtractionResult;
+import caceresenzo.libs.youtube.extractor.YouTubeExtractionEngine;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Source of a fresh url, used by a {@link RangeDownloader} when the url of a video expires before the end of the download.
+ * 
+ * @author Enzo CACERES
+ */
+@FunctionalInterface
+public interface UrlRefresher {
+	
+	/**
+	 * @param video
+	 *            Video being downloaded, with its original url
+	 * @return A fresh url of the same format, or null if none could be found
+	 * @throws IOException
+	 *             If the new url could not be found
+	 * @throws InterruptedException
+	 *             If interrupted while finding it
+	 */
+	String refresh(YoutubeVideo video) throws IOException, InterruptedException;
+	
+	/**
+	 * Refresh the urls by extracting the video again, bypassing the engine's result cache.
+	 * 
+	 * @param engine
+	 *            Engine to extract with
+	 * @param youtubeLink
+	 *            the youtube page link or video id
+	 * @param parseDashManifest
+	 *            true if the dash manifest should be downloaded and parsed, needed to refresh DASH only formats
+	 * @param includeWebM
+	 *            true if WebM streams should be extracted
+	 * @return A refresher extracting the video again
+	 */
+	static UrlRefresher reextract(YouTubeExtractionEngine engine, String youtubeLink, boolean parseDashManifest, boolean includeWebM) {
+		return (video) -> {
+			engine.evictResult(youtubeLink);
+			
+			ExtractionResult result = engine.extract(youtubeLink, parseDashManifest, includeWebM);
+			if (!result.hasVideos()) {
+				return null;
+			}
+			
+			YoutubeVideo fresh = result.getVideos().get(video.getFormat().getItag());
+			return fresh != null ? fresh.getUrl() : null;
+		};
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,211 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import caceresenzo.libs.youtube.video.DashRepresentation;
+
+/**
+ * Streaming parser of the DASH manifests (MPD).
+ * <p/>
+ * The document is read with a StAX cursor, without building any tree: every representation is reported as soon as its closing tag is read, with the attributes inherited from its adaptation set.
+ * 
+ * @author Enzo CACERES
+ */
+final class DashManifestParser {
+	
+	/* Private Constants */
+	private static final XMLInputFactory INPUT_FACTORY;
+	
+	static {
+		INPUT_FACTORY = XMLInputFactory.newInstance();
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+	}
+	
+	private static final String TAG_ADAPTATION_SET = "AdaptationSet";
+	private static final String TAG_REPRESENTATION = "Representation";
+	private static final String TAG_BASE_URL = "BaseURL";
+	private static final String TAG_SEGMENT_BASE = "SegmentBase";
+	private static final String TAG_INITIALIZATION = "Initialization";
+	
+	/**
+	 * Parse a whole manifest.
+	 * 
+	 * @param inputStream
+	 *            Manifest stream, not closed
+	 * @param handler
+	 *            Handler called for every representation with a base url
+	 * @throws IOException
+	 *             If the read failed or the document is not valid xml
+	 */
+	static void parse(InputStream inputStream, RepresentationHandler handler) throws IOException {
+		XMLStreamReader reader = null;
+		
+		try {
+			reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+			
+			String adaptationMimeType = null, adaptationCodecs = null;
+			RepresentationBuilder representation = null;
+			
+			while (reader.hasNext()) {
+				int event = reader.next();
+				
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					
+					if (TAG_ADAPTATION_SET.equals(name)) {
+						adaptationMimeType = attribute(reader, "mimeType");
+						adaptationCodecs = attribute(reader, "codecs");
+					} else if (TAG_REPRESENTATION.equals(name)) {
+						representation = new RepresentationBuilder(reader, adaptationMimeType, adaptationCodecs);
+					} else if (representation != null) {
+						if (TAG_BASE_URL.equals(name)) {
+							representation.baseUrl = reader.getElementText().trim();
+						} else if (TAG_SEGMENT_BASE.equals(name)) {
+							long[] range = parseRange(attribute(reader, "indexRange"));
+							
+							representation.indexRangeStart = range[0];
+							representation.indexRangeEnd = range[1];
+						} else if (TAG_INITIALIZATION.equals(name)) {
+							long[] range = parseRange(attribute(reader, "range"));
+							
+							representation.initRangeStart = range[0];
+							representation.initRangeEnd = range[1];
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = reader.getLocalName();
+					
+					if (TAG_REPRESENTATION.equals(name) && representation != null) {
+						if (representation.baseUrl != null && !representation.baseUrl.isEmpty()) {
+							handler.onRepresentation(representation.build(), representation.baseUrl);
+						}
+						
+						representation = null;
+					} else if (TAG_ADAPTATION_SET.equals(name)) {
+						adaptationMimeType = adaptationCodecs = null;
+					}
+				}
+			}
+		} catch (XMLStreamException exception) {
+			throw new IOException("Invalid DASH manifest", exception);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException exception) {
+					;
+				}
+			}
+		}
+	}
+	
+	private static String attribute(XMLStreamReader reader, String name) {
+		return reader.getAttributeValue(null, name);
+	}
+	
+	private static long parseLong(String value) {
+		if (value == null) {
+			return DashRepresentation.UNSPECIFIED;
+		}
+		
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException exception) {
+			return DashRepresentation.UNSPECIFIED;
+		}
+	}
+	
+	/**
+	 * @return Frame rate rounded to the nearest integer, <code>30000/1001</code> fractions included
+	 */
+	private static int parseFrameRate(String value) {
+		if (value == null) {
+			return DashRepresentation.UNSPECIFIED;
+		}
+		
+		int slash = value.indexOf('/');
+		if (slash == -1) {
+			return (int) parseLong(value);
+		}
+		
+		long numerator = parseLong(value.substring(0, slash)), denominator = parseLong(value.substring(slash + 1));
+		if (numerator <= 0 || denominator <= 0) {
+			return DashRepresentation.UNSPECIFIED;
+		}
+		
+		return (int) Math.round((double) numerator / denominator);
+	}
+	
+	/**
+	 * @return Start and end (inclusive) of a <code>start-end</code> byte range, {@link DashRepresentation#UNSPECIFIED} if not valid
+	 */
+	private static long[] parseRange(String value) {
+		long[] range = { DashRepresentation.UNSPECIFIED, DashRepresentation.UNSPECIFIED };
+		
+		if (value != null) {
+			int dash = value.indexOf('-');
+			
+			if (dash != -1) {
+				long start = parseLong(value.substring(0, dash)), end = parseLong(value.substring(dash + 1));
+				
+				if (start >= 0 && end >= start) {
+					range[0] = start;
+					range[1] = end;
+				}
+			}
+		}
+		
+		return range;
+	}
+	
+	/**
+	 * Called for every representation found.
+	 */
+	interface RepresentationHandler {
+		
+		void onRepresentation(DashRepresentation representation, String baseUrl);
+		
+	}
+	
+	/**
+	 * Representation being read.
+	 */
+	private static class RepresentationBuilder {
+		
+		/* Variables */
+		private final String id, mimeType, codecs;
+		private final long bandwidth;
+		private final int width, height, frameRate, audioSamplingRate;
+		private long initRangeStart, initRangeEnd, indexRangeStart, indexRangeEnd;
+		private String baseUrl;
+		
+		/* Constructor */
+		private RepresentationBuilder(XMLStreamReader reader, String adaptationMimeType, String adaptationCodecs) {
+			String mimeType = attribute(reader, "mimeType"), codecs = attribute(reader, "codecs");
+			
+			this.id = attribute(reader, "id");
+			this.mimeType = mimeType != null ? mimeType : adaptationMimeType;
+			this.codecs = codecs != null ? codecs : adaptationCodecs;
+			this.bandwidth = parseLong(attribute(reader, "bandwidth"));
+			this.width = (int) parseLong(attribute(reader, "width"));
+			this.height = (int) parseLong(attribute(reader, "height"));
+			this.frameRate = parseFrameRate(attribute(reader, "frameRate"));
+			this.audioSamplingRate = (int) parseLong(attribute(reader, "audioSamplingRate"));
+			this.initRangeStart = this.initRangeEnd = this.indexRangeStart = this.indexRangeEnd = DashRepresentation.UNSPECIFIED;
+		}
+		
+		private DashRepresentation build() {
+			return new DashRepresentation(id, mimeType, codecs, bandwidth, width, height, frameRate, audioSamplingRate, initRangeStart, initRangeEnd, indexRangeStart, indexRangeEnd);
+		}
+		
+	}
+	
+}
\ No newline at end of file
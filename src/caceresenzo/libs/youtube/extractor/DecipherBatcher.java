@@ -0,0 +1,188 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batching stage for signatures that have to go through the script engine.
+ * <p/>
+ * Signatures of concurrent extractions sharing the same player js file are collected into a single batch, deciphered in one pass, then routed back to each caller. A batch is flushed as soon as it reaches the maximum batch size, or when the maximum linger time has elapsed since its first signature.
+ * 
+ * @author Enzo CACERES
+ */
+final class DecipherBatcher {
+	
+	/* Private Constants */
+	private static final ScheduledExecutorService SCHEDULER;
+	private static final ExecutorService FLUSHER;
+	
+	static {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+			Thread thread = new Thread(runnable, "youtube-decipher-batcher");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		
+		SCHEDULER = scheduler;
+		
+		/* Lingering batches are deciphered off the scheduler thread, so a slow script engine never delay the other batches timers */
+		FLUSHER = Executors.newCachedThreadPool((runnable) -> {
+			Thread thread = new Thread(runnable, "youtube-decipher-flusher");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+	}
+	
+	/* Variables */
+	private final int maxBatchSize;
+	private final long maxLinger;
+	private final BatchDecipherer decipherer;
+	private final ConcurrentMap<String, Batch> pendings;
+	
+	/* Constructor */
+	DecipherBatcher(int maxBatchSize, long maxLinger, TimeUnit unit, BatchDecipherer decipherer) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("The max batch size must be positive");
+		}
+		
+		this.maxBatchSize = maxBatchSize;
+		this.maxLinger = unit.toNanos(maxLinger);
+		this.decipherer = decipherer;
+		this.pendings = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Submit signatures to be deciphered with the next batch of their player js file.
+	 * 
+	 * @param function
+	 *            Decipher function to use
+	 * @param encSignatures
+	 *            Enciphered signatures
+	 * @return A future completed with the result of this request only
+	 */
+	CompletableFuture<DecipherResult> submit(final DecipherFunction function, String[] encSignatures) {
+		final PendingRequest request = new PendingRequest(encSignatures);
+		final Batch[] filled = new Batch[1];
+		
+		pendings.compute(function.jsFileName, (jsFileName, batch) -> {
+			if (batch == null) {
+				batch = new Batch(function);
+				
+				final Batch scheduled = batch;
+				batch.lingerFuture = SCHEDULER.schedule(() -> {
+					if (pendings.remove(jsFileName, scheduled)) {
+						FLUSHER.execute(() -> flush(scheduled));
+					}
+				}, maxLinger, TimeUnit.NANOSECONDS);
+			}
+			
+			batch.requests.add(request);
+			batch.signatureCount += request.encSignatures.length;
+			
+			if (batch.signatureCount >= maxBatchSize) {
+				batch.lingerFuture.cancel(false);
+				filled[0] = batch;
+				
+				return null;
+			}
+			
+			return batch;
+		});
+		
+		if (filled[0] != null) {
+			flush(filled[0]);
+		}
+		
+		return request.future;
+	}
+	
+	private void flush(Batch batch) {
+		String[] encSignatures = new String[batch.signatureCount];
+		int offset = 0;
+		for (PendingRequest request : batch.requests) {
+			System.arraycopy(request.encSignatures, 0, encSignatures, offset, request.encSignatures.length);
+			offset += request.encSignatures.length;
+		}
+		
+		DecipherResult result;
+		try {
+			result = decipherer.decipher(batch.function, encSignatures);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			result = DecipherResult.failure("Interrupted while deciphering", exception);
+		} catch (RuntimeException exception) {
+			result = DecipherResult.failure("Batch failed", exception);
+		}
+		
+		offset = 0;
+		for (PendingRequest request : batch.requests) {
+			if (result.isSuccessful()) {
+				String[] signatures = new String[request.encSignatures.length];
+				System.arraycopy(result.getSignatures(), offset, signatures, 0, signatures.length);
+				offset += signatures.length;
+				
+				request.future.complete(DecipherResult.success(signatures));
+			} else {
+				request.future.complete(result);
+			}
+		}
+	}
+	
+	/**
+	 * Decipher a whole batch in a single pass.
+	 */
+	interface BatchDecipherer {
+		
+		DecipherResult decipher(DecipherFunction function, String[] encSignatures) throws InterruptedException;
+		
+	}
+	
+	/**
+	 * Signatures of a single caller.
+	 */
+	private static class PendingRequest {
+		
+		/* Variables */
+		private final String[] encSignatures;
+		private final CompletableFuture<DecipherResult> future;
+		
+		/* Constructor */
+		private PendingRequest(String[] encSignatures) {
+			this.encSignatures = encSignatures;
+			this.future = new CompletableFuture<>();
+		}
+		
+	}
+	
+	/**
+	 * Requests collected for a player js file.
+	 */
+	private static class Batch {
+		
+		/* Variables */
+		private final DecipherFunction function;
+		private final List<PendingRequest> requests;
+		private int signatureCount;
+		private ScheduledFuture<?> lingerFuture;
+		
+		/* Constructor */
+		private Batch(DecipherFunction function) {
+			this.function = function;
+			this.requests = new ArrayList<>();
+		}
+		
+	}
+	
+}
\ No newline at end of file
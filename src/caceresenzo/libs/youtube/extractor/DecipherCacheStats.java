@@ -0,0 +1,63 @@
+package caceresenzo.libs.youtube.extractor;
+
+/**
+ * Snapshot of the decipher function cache counters.
+ * 
+ * @author Enzo CACERES
+ */
+public final class DecipherCacheStats {
+	
+	/* Variables */
+	private final long memoryHits, diskHits, misses, diskWrites;
+	
+	/* Constructor */
+	DecipherCacheStats(long memoryHits, long diskHits, long misses, long diskWrites) {
+		this.memoryHits = memoryHits;
+		this.diskHits = diskHits;
+		this.misses = misses;
+		this.diskWrites = diskWrites;
+	}
+	
+	/**
+	 * @return Lookups answered from memory
+	 */
+	public long getMemoryHits() {
+		return memoryHits;
+	}
+	
+	/**
+	 * @return Lookups answered from disk, including the functions written by other processes
+	 */
+	public long getDiskHits() {
+		return diskHits;
+	}
+	
+	/**
+	 * @return Lookups that needed a player js download
+	 */
+	public long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return Functions written to disk
+	 */
+	public long getDiskWrites() {
+		return diskWrites;
+	}
+	
+	/**
+	 * @return Ratio of lookups that didn't need a download, between 0 and 1
+	 */
+	public double getHitRate() {
+		long lookups = memoryHits + diskHits + misses;
+		
+		return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+	}
+	
+	@Override
+	public String toString() {
+		return "DecipherCacheStats[memoryHits=" + memoryHits + ", diskHits=" + diskHits + ", misses=" + misses + ", diskWrites=" + diskWrites + "]";
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package caceresenzo.libs.youtube.extractor;
+
+/**
+ * Immutable snapshot of the decipher function extracted from a player js file.
+ * 
+ * @author Enzo CACERES
+ */
+class DecipherFunction {
+	
+	/* Variables */
+	final String jsFileName, functionName, functions;
+	final DecipherProgram program;
+	
+	/* Constructor */
+	DecipherFunction(String jsFileName, String functionName, String functions) {
+		this.jsFileName = jsFileName;
+		this.functionName = functionName;
+		this.functions = functions;
+		this.program = DecipherProgram.compile(functionName, functions);
+	}
+	
+	/**
+	 * @return If the function is complete and can be used to decipher signatures
+	 */
+	boolean isUsable() {
+		return jsFileName != null && functionName != null && functions != null;
+	}
+	
+	/**
+	 * @return If the function has been compiled to a {@link DecipherProgram} and don't need any script engine
+	 */
+	boolean isCompiled() {
+		return program != null;
+	}
+	
+	/**
+	 * @param jsFileName
+	 *            Player js file name
+	 * @return If this function has been extracted from this player file
+	 */
+	boolean isFrom(String jsFileName) {
+		return this.jsFileName != null && this.jsFileName.equals(jsFileName);
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,411 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import caceresenzo.libs.logger.Logger;
+
+/**
+ * Two tier cache of the decipher functions, keyed by player js file name.
+ * <p/>
+ * The first tier is an in-memory map, the second is a directory holding one file per player version. Files are written to a temporary file then atomically renamed, so they are read without any lock, and the writes are serialized by a lock file, so several processes of the same host can share the directory. A missing version is loaded under an exclusive lock of its own lock file: when the player rotate, only the first process of the host download the new js file, the others wait for the lock then find it on disk.
+ * <p/>
+ * There is a single instance per directory and JVM, so every engine using the same cache directory also share the memory tier.
+ * 
+ * @author Enzo CACERES
+ */
+final class DecipherFunctionCache {
+	
+	/* Constants */
+	static final String DIRECTORY_NAME = "decipher_js_functs";
+	static final int MAX_VERSIONS = 8;
+	static final long TIME_TO_LIVE = TimeUnit.DAYS.toMillis(14);
+	
+	/* Private Constants */
+	private static final String LOCK_FILE_NAME = ".lock";
+	private static final String FILE_EXTENSION = ".funct";
+	private static final String VERSION_LOCK_EXTENSION = FILE_EXTENSION + LOCK_FILE_NAME;
+	private static final ConcurrentMap<Path, DecipherFunctionCache> INSTANCES = new ConcurrentHashMap<>();
+	
+	/* Variables */
+	private final Path directory;
+	private final Object writeLock;
+	private final SingleFlight<String, DecipherFunction> loads;
+	private final ConcurrentMap<String, Entry> memory;
+	private final AtomicReference<DecipherFunction> latest;
+	private final AtomicLong memoryHits, diskHits, misses, diskWrites;
+	
+	/* Constructor */
+	private DecipherFunctionCache(Path directory) {
+		this.directory = directory;
+		this.writeLock = new Object();
+		this.loads = new SingleFlight<>();
+		this.memory = new ConcurrentHashMap<>();
+		this.latest = new AtomicReference<>();
+		this.memoryHits = new AtomicLong();
+		this.diskHits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.diskWrites = new AtomicLong();
+	}
+	
+	/**
+	 * Get a function, from memory first, then from the disk.
+	 * 
+	 * @param jsFileName
+	 *            Player js file name
+	 * @return The cached function, or null if not cached or expired
+	 */
+	DecipherFunction get(String jsFileName) {
+		return lookup(jsFileName, true);
+	}
+	
+	/**
+	 * Same as {@link #get(String)}, but without counting the lookup in the stats.
+	 */
+	DecipherFunction peek(String jsFileName) {
+		return lookup(jsFileName, false);
+	}
+	
+	private DecipherFunction lookup(String jsFileName, boolean count) {
+		Entry entry = memory.get(jsFileName);
+		
+		if (entry != null && !entry.isExpired()) {
+			if (count) {
+				memoryHits.incrementAndGet();
+			}
+			return entry.function;
+		}
+		
+		entry = directory != null ? readFromDisk(jsFileName) : null;
+		
+		if (entry == null) {
+			if (count) {
+				misses.incrementAndGet();
+			}
+			return null;
+		}
+		
+		if (count) {
+			diskHits.incrementAndGet();
+		}
+		remember(entry);
+		
+		return entry.function;
+	}
+	
+	/**
+	 * Most recent function, used when the player js file name could not be found.
+	 * 
+	 * @return The most recently cached function, from memory or disk, or null if none
+	 */
+	DecipherFunction getLatest() {
+		DecipherFunction function = latest.get();
+		
+		if (function == null && directory != null) {
+			String jsFileName = findLatestOnDisk();
+			
+			if (jsFileName != null) {
+				function = peek(jsFileName);
+			}
+		}
+		
+		return function;
+	}
+	
+	/**
+	 * Cache a freshly extracted function, in memory and on disk.
+	 * 
+	 * @param function
+	 *            Usable function
+	 */
+	void put(DecipherFunction function) {
+		remember(new Entry(function, System.currentTimeMillis()));
+		
+		if (directory != null) {
+			writeToDisk(function);
+		}
+	}
+	
+	/**
+	 * Get a function, or load it if no process of the host has cached it yet.
+	 * <p/>
+	 * Concurrent calls for the same version are coalesced, and the load is done under an exclusive lock of the version's lock file, with the disk checked again once it is held. File locks are held by the whole JVM, hence the coalescing before asking for it.
+	 * 
+	 * @param jsFileName
+	 *            Player js file name
+	 * @param loader
+	 *            Loader of the function, only called on a miss
+	 * @return The cached or loaded function, or null if the loader didn't find it
+	 * @throws IOException
+	 *             If the lock or the load failed
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the lock or loading
+	 */
+	DecipherFunction getOrLoad(final String jsFileName, final Loader loader) throws IOException, InterruptedException {
+		return loads.execute(jsFileName, () -> {
+			if (directory == null) {
+				return load(jsFileName, loader);
+			}
+			
+			Files.createDirectories(directory);
+			
+			/* Closing the channel release the lock */
+			try (FileChannel lockChannel = FileChannel.open(directory.resolve(toFileName(jsFileName) + LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				lockChannel.lock();
+				
+				return load(jsFileName, loader);
+			}
+		});
+	}
+	
+	private DecipherFunction load(String jsFileName, Loader loader) throws IOException, InterruptedException {
+		/* May have been cached by another process while waiting for the lock */
+		DecipherFunction function = peek(jsFileName);
+		
+		if (function == null) {
+			function = loader.load();
+			
+			if (function != null) {
+				put(function);
+			}
+		}
+		
+		return function;
+	}
+	
+	private void remember(Entry entry) {
+		memory.put(entry.function.jsFileName, entry);
+		latest.set(entry.function);
+		
+		while (memory.size() > MAX_VERSIONS) {
+			Map.Entry<String, Entry> oldest = null;
+			
+			for (Map.Entry<String, Entry> candidate : memory.entrySet()) {
+				if (oldest == null || candidate.getValue().cachedAt < oldest.getValue().cachedAt) {
+					oldest = candidate;
+				}
+			}
+			
+			if (oldest == null || !memory.remove(oldest.getKey(), oldest.getValue())) {
+				break;
+			}
+		}
+	}
+	
+	private Entry readFromDisk(String jsFileName) {
+		Path file = directory.resolve(toFileName(jsFileName));
+		
+		try {
+			long cachedAt = Files.getLastModifiedTime(file).toMillis();
+			if (isExpired(cachedAt)) {
+				return null;
+			}
+			
+			try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String decipherJsFileName = reader.readLine();
+				String decipherFunctionName = reader.readLine();
+				String decipherFunctions = reader.readLine();
+				
+				DecipherFunction function = new DecipherFunction(decipherJsFileName, decipherFunctionName, decipherFunctions);
+				return function.isUsable() && function.isFrom(jsFileName) ? new Entry(function, cachedAt) : null;
+			}
+		} catch (NoSuchFileException exception) {
+			return null;
+		} catch (IOException exception) {
+			Logger.exception(exception, "Failed to read cached decipher function of " + jsFileName);
+			return null;
+		}
+	}
+	
+	private void writeToDisk(DecipherFunction function) {
+		/* File locks are held by the whole JVM, the threads of this one are serialized before asking for it */
+		synchronized (writeLock) {
+			writeToDiskLocked(function);
+		}
+	}
+	
+	private void writeToDiskLocked(DecipherFunction function) {
+		try {
+			Files.createDirectories(directory);
+			
+			/* Closing the channel release the lock */
+			try (FileChannel lockChannel = openLockChannel()) {
+				lockChannel.lock();
+				
+				Path temporary = Files.createTempFile(directory, "write", ".tmp");
+				
+				try {
+					try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+						writer.write(function.jsFileName + "\n");
+						writer.write(function.functionName + "\n");
+						writer.write(function.functions);
+					}
+					
+					Path file = directory.resolve(toFileName(function.jsFileName));
+					try {
+						Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+					} catch (AtomicMoveNotSupportedException exception) {
+						Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+					}
+				} finally {
+					Files.deleteIfExists(temporary);
+				}
+				
+				diskWrites.incrementAndGet();
+				prune();
+			}
+		} catch (IOException exception) {
+			Logger.exception(exception, "Failed to cache decipher function of " + function.jsFileName);
+		}
+	}
+	
+	/**
+	 * Delete the expired versions, and the oldest ones above {@link #MAX_VERSIONS}. Must be called with the exclusive lock held.
+	 */
+	private void prune() throws IOException {
+		List<File> files = listFunctionFiles();
+		files.sort((first, second) -> Long.compare(second.lastModified(), first.lastModified()));
+		
+		for (int index = 0; index < files.size(); index++) {
+			File file = files.get(index);
+			
+			if (index >= MAX_VERSIONS || isExpired(file.lastModified())) {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+		
+		/* Version lock files are never written, so an old one belong to a version long gone */
+		List<Path> versionLocks;
+		try (Stream<Path> paths = Files.list(directory)) {
+			versionLocks = paths.filter((path) -> path.getFileName().toString().endsWith(VERSION_LOCK_EXTENSION)).collect(Collectors.toList());
+		}
+		
+		for (Path versionLock : versionLocks) {
+			if (isExpired(versionLock.toFile().lastModified())) {
+				Files.deleteIfExists(versionLock);
+			}
+		}
+	}
+	
+	private String findLatestOnDisk() {
+		try {
+			File newest = null;
+			
+			for (File file : listFunctionFiles()) {
+				if (!isExpired(file.lastModified()) && (newest == null || file.lastModified() > newest.lastModified())) {
+					newest = file;
+				}
+			}
+			
+			if (newest == null) {
+				return null;
+			}
+			
+			try (BufferedReader reader = Files.newBufferedReader(newest.toPath(), StandardCharsets.UTF_8)) {
+				return reader.readLine();
+			}
+		} catch (IOException exception) {
+			return null;
+		}
+	}
+	
+	private List<File> listFunctionFiles() throws IOException {
+		List<File> files = new ArrayList<>();
+		
+		if (Files.isDirectory(directory)) {
+			try (Stream<Path> paths = Files.list(directory)) {
+				paths.filter((path) -> path.getFileName().toString().endsWith(FILE_EXTENSION)).forEach((path) -> files.add(path.toFile()));
+			}
+		}
+		
+		return files;
+	}
+	
+	private FileChannel openLockChannel() throws IOException {
+		Files.createDirectories(directory);
+		
+		return FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+	
+	/**
+	 * @return Hit and miss counters of this cache
+	 */
+	DecipherCacheStats getStats() {
+		return new DecipherCacheStats(memoryHits.get(), diskHits.get(), misses.get(), diskWrites.get());
+	}
+	
+	private static String toFileName(String jsFileName) {
+		return jsFileName.replaceAll("[^A-Za-z0-9._-]", "_") + FILE_EXTENSION;
+	}
+	
+	private static boolean isExpired(long cachedAt) {
+		return System.currentTimeMillis() - cachedAt >= TIME_TO_LIVE;
+	}
+	
+	/**
+	 * Get the cache of a directory, creating it if needed.
+	 * 
+	 * @param cacheDirectory
+	 *            Engine's cache directory, or null to only cache in memory
+	 * @return The cache shared by every engine using this directory
+	 */
+	static DecipherFunctionCache forDirectory(String cacheDirectory) {
+		if (cacheDirectory == null) {
+			return new DecipherFunctionCache(null);
+		}
+		
+		Path directory = new File(cacheDirectory, DIRECTORY_NAME).toPath().toAbsolutePath().normalize();
+		return INSTANCES.computeIfAbsent(directory, DecipherFunctionCache::new);
+	}
+	
+	/**
+	 * Load of a function missing from the cache.
+	 */
+	interface Loader {
+		
+		DecipherFunction load() throws IOException, InterruptedException;
+		
+	}
+	
+	/**
+	 * Function kept in memory.
+	 */
+	private static class Entry {
+		
+		/* Variables */
+		private final DecipherFunction function;
+		private final long cachedAt;
+		
+		/* Constructor */
+		private Entry(DecipherFunction function, long cachedAt) {
+			this.function = function;
+			this.cachedAt = cachedAt;
+		}
+		
+		private boolean isExpired() {
+			return DecipherFunctionCache.isExpired(cachedAt);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compact Java version of a player's signature decipher function.
+ * <p/>
+ * The decipher function of the player only call methods of an helper object that are either a reverse, a splice (removing the first characters) or a swap (of the first character with another one). Those calls are compiled once per player version into an operation array, then run directly on a <code>char[]</code>.
+ * 
+ * @author Enzo CACERES
+ */
+final class DecipherProgram {
+	
+	/* Operations */
+	static final int OPERATION_REVERSE = 0;
+	static final int OPERATION_SPLICE = 1;
+	static final int OPERATION_SWAP = 2;
+	
+	/* Patterns */
+	private static final Pattern patMainFunctionBody = Pattern.compile("\\(([\\w$]+)\\)\\{([^}]*)\\}");
+	private static final Pattern patHelperCall = Pattern.compile("^([\\w$]+)(?:\\.([\\w$]+)|\\[\"([\\w$]+)\"\\])\\(([\\w$]+),(\\d+)\\)$");
+	private static final Pattern patHelperMethod = Pattern.compile("\"?([\\w$]+)\"?:function\\(([\\w$]+)(?:,([\\w$]+))?\\)\\{([^}]*)\\}");
+	
+	/* Variables */
+	private final int[] operations;
+	
+	/* Constructor */
+	private DecipherProgram(int[] operations) {
+		this.operations = operations;
+	}
+	
+	/**
+	 * Decipher a signature.
+	 * 
+	 * @param signature
+	 *            Enciphered signature
+	 * @return Deciphered signature
+	 */
+	String decipher(String signature) {
+		char[] chars = signature.toCharArray();
+		int start = 0, length = chars.length;
+		
+		for (int index = 0; index < operations.length; index += 2) {
+			int argument = operations[index + 1];
+			
+			switch (operations[index]) {
+				case OPERATION_REVERSE: {
+					for (int left = start, right = start + length - 1; left < right; left++, right--) {
+						char swap = chars[left];
+						chars[left] = chars[right];
+						chars[right] = swap;
+					}
+					break;
+				}
+				
+				case OPERATION_SPLICE: {
+					int removed = Math.min(argument, length);
+					start += removed;
+					length -= removed;
+					break;
+				}
+				
+				case OPERATION_SWAP: {
+					if (length != 0) {
+						int target = start + argument % length;
+						char swap = chars[start];
+						chars[start] = chars[target];
+						chars[target] = swap;
+					}
+					break;
+				}
+				
+				default: {
+					throw new IllegalStateException("Unknown operation: " + operations[index]);
+				}
+			}
+		}
+		
+		return new String(chars, start, length);
+	}
+	
+	/**
+	 * @return Operation count
+	 */
+	int size() {
+		return operations.length / 2;
+	}
+	
+	/**
+	 * Compile a decipher function extracted from a player js file.
+	 * 
+	 * @param functionName
+	 *            Main decipher function name
+	 * @param functions
+	 *            Main function and its helpers, as extracted from the player
+	 * @return A compiled program, or null if any of the operation has not been recognized
+	 */
+	static DecipherProgram compile(String functionName, String functions) {
+		if (functionName == null || functions == null) {
+			return null;
+		}
+		
+		int mainIndex = functions.indexOf(functionName + "=function(");
+		if (mainIndex == -1) {
+			mainIndex = functions.indexOf("function " + functionName + "(");
+		}
+		if (mainIndex == -1) {
+			return null;
+		}
+		
+		Matcher matcher = patMainFunctionBody.matcher(functions);
+		if (!matcher.find(mainIndex)) {
+			return null;
+		}
+		
+		String parameter = matcher.group(1);
+		String[] statements = matcher.group(2).split(";");
+		
+		Map<String, Map<String, Integer>> helpers = new HashMap<>();
+		int[] operations = new int[statements.length * 2];
+		int count = 0;
+		
+		for (String statement : statements) {
+			statement = statement.trim();
+			
+			if (statement.isEmpty() || statement.equals(parameter + "=" + parameter + ".split(\"\")") || statement.equals("return " + parameter + ".join(\"\")")) {
+				continue;
+			}
+			
+			Matcher callMatcher = patHelperCall.matcher(statement);
+			if (!callMatcher.matches() || !callMatcher.group(4).equals(parameter)) {
+				return null;
+			}
+			
+			String helperName = callMatcher.group(1);
+			String methodName = callMatcher.group(2) != null ? callMatcher.group(2) : callMatcher.group(3);
+			
+			Map<String, Integer> helper = helpers.get(helperName);
+			if (helper == null) {
+				helper = compileHelper(helperName, functions);
+				
+				if (helper == null) {
+					return null;
+				}
+				
+				helpers.put(helperName, helper);
+			}
+			
+			Integer operation = helper.get(methodName);
+			if (operation == null) {
+				return null;
+			}
+			
+			operations[count++] = operation;
+			operations[count++] = Integer.parseInt(callMatcher.group(5));
+		}
+		
+		if (count != operations.length) {
+			int[] trimmed = new int[count];
+			System.arraycopy(operations, 0, trimmed, 0, count);
+			operations = trimmed;
+		}
+		
+		return new DecipherProgram(operations);
+	}
+	
+	private static Map<String, Integer> compileHelper(String helperName, String functions) {
+		String definition = "var " + helperName + "={";
+		int startIndex = functions.indexOf(definition);
+		if (startIndex == -1) {
+			return null;
+		}
+		startIndex += definition.length();
+		
+		int endIndex = startIndex;
+		for (int braces = 1; endIndex < functions.length() && braces != 0; endIndex++) {
+			if (functions.charAt(endIndex) == '{')
+				braces++;
+			else if (functions.charAt(endIndex) == '}')
+				braces--;
+		}
+		
+		Map<String, Integer> methods = new HashMap<>();
+		Matcher matcher = patHelperMethod.matcher(functions.substring(startIndex, endIndex));
+		while (matcher.find()) {
+			int operation = recognizeOperation(matcher.group(2), matcher.group(3), matcher.group(4));
+			
+			if (operation == -1) {
+				return null;
+			}
+			
+			methods.put(matcher.group(1), operation);
+		}
+		
+		return methods;
+	}
+	
+	private static int recognizeOperation(String array, String argument, String body) {
+		body = body.replace(" ", "");
+		
+		if (body.equals(array + ".reverse()")) {
+			return OPERATION_REVERSE;
+		}
+		
+		if (argument == null) {
+			return -1;
+		}
+		
+		if (body.equals(array + ".splice(0," + argument + ")")) {
+			return OPERATION_SPLICE;
+		}
+		
+		if (body.startsWith("var") && body.contains(array + "[0]=" + array + "[" + argument + "%" + array + ".length]")) {
+			return OPERATION_SWAP;
+		}
+		
+		return -1;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package caceresenzo.libs.youtube.extractor;
+
+/**
+ * Result of a signature deciphering, either the deciphered signatures or the reason of the failure.
+ * 
+ * @author Enzo CACERES
+ */
+final class DecipherResult {
+	
+	/* Variables */
+	private final String[] signatures;
+	private final String failureReason;
+	private final Throwable cause;
+	
+	/* Constructor */
+	private DecipherResult(String[] signatures, String failureReason, Throwable cause) {
+		this.signatures = signatures;
+		this.failureReason = failureReason;
+		this.cause = cause;
+	}
+	
+	/**
+	 * @return If the signatures have been deciphered
+	 */
+	boolean isSuccessful() {
+		return signatures != null;
+	}
+	
+	/**
+	 * @return Deciphered signatures, in the same order as the enciphered ones, or null if failed
+	 */
+	String[] getSignatures() {
+		return signatures;
+	}
+	
+	/**
+	 * @return Why the deciphering failed, or null if successful
+	 */
+	String getFailureReason() {
+		return failureReason;
+	}
+	
+	/**
+	 * @return Exception that made the deciphering fail, if any
+	 */
+	Throwable getCause() {
+		return cause;
+	}
+	
+	@Override
+	public String toString() {
+		if (isSuccessful()) {
+			return "DecipherResult[signatures=" + signatures.length + "]";
+		}
+		
+		return "DecipherResult[failureReason=" + failureReason + ", cause=" + cause + "]";
+	}
+	
+	/**
+	 * @param signatures
+	 *            Deciphered signatures
+	 * @return A successful result
+	 */
+	static DecipherResult success(String[] signatures) {
+		return new DecipherResult(signatures, null, null);
+	}
+	
+	/**
+	 * @param failureReason
+	 *            Why it failed
+	 * @return A failed result
+	 */
+	static DecipherResult failure(String failureReason) {
+		return failure(failureReason, null);
+	}
+	
+	/**
+	 * @param failureReason
+	 *            Why it failed
+	 * @param cause
+	 *            Exception that made it fail
+	 * @return A failed result
+	 */
+	static DecipherResult failure(String failureReason, Throwable cause) {
+		return new DecipherResult(null, failureReason, cause);
+	}
+	
+}
\ No newline at end of file
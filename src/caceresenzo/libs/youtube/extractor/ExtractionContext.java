@@ -0,0 +1,85 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.util.Arrays;
+
+import caceresenzo.libs.youtube.format.FormatQuery;
+import caceresenzo.libs.youtube.format.YoutubeFormat;
+import caceresenzo.libs.youtube.video.VideoMeta;
+
+/**
+ * Per-request state of an extraction, never shared between threads.
+ * 
+ * @author Enzo CACERES
+ */
+class ExtractionContext {
+	
+	/* Variables */
+	final String videoId;
+	final boolean parseDashManifest, includeWebM, useHttp;
+	final FormatQuery[] queries;
+	VideoMeta videoMeta;
+	
+	/* Constructor */
+	ExtractionContext(String videoId, boolean parseDashManifest, boolean includeWebM, boolean useHttp, FormatQuery[] queries) {
+		this.videoId = videoId;
+		this.parseDashManifest = parseDashManifest;
+		this.includeWebM = includeWebM;
+		this.useHttp = useHttp;
+		this.queries = queries;
+	}
+	
+	/**
+	 * @param format
+	 *            Format of a stream, null if unknown
+	 * @return If the stream should be extracted, checked before decoding anything of it
+	 */
+	boolean accepts(YoutubeFormat format) {
+		if (format == null || (!includeWebM && format.getExtension().equals(YoutubeFormat.WEBM))) {
+			return false;
+		}
+		
+		if (queries == null) {
+			return true;
+		}
+		
+		for (FormatQuery query : queries) {
+			if (query.matches(format)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return If the extraction is restricted to the formats matched by some queries
+	 */
+	boolean isFiltered() {
+		return queries != null;
+	}
+	
+	/**
+	 * @return If DASH only formats may be accepted, so the manifest is worth downloading. Formats not known yet can be learned from the manifest, so only the kind of the queries is looked at.
+	 */
+	boolean acceptsDash() {
+		if (queries == null) {
+			return true;
+		}
+		
+		for (FormatQuery query : queries) {
+			if (query.getKind() != FormatQuery.Kind.MUXED) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return Key shared by every extraction that give the same result: same video and same options
+	 */
+	String getKey() {
+		return videoId + (parseDashManifest ? ":dash" : ":") + (includeWebM ? ":webm" : ":") + (useHttp ? ":http" : ":https") + (queries != null ? ":" + Arrays.toString(queries) : "");
+	}
+	
+}
\ No newline at end of file
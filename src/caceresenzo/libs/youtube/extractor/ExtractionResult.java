@@ -0,0 +1,50 @@
+package caceresenzo.libs.youtube.extractor;
+
+import caceresenzo.libs.array.SparseArray;
+import caceresenzo.libs.youtube.video.VideoMeta;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Result of a single video extraction
+ * 
+ * @author Enzo CACERES
+ */
+public class ExtractionResult {
+	
+	/* Variables */
+	private final SparseArray<YoutubeVideo> videos;
+	private final VideoMeta videoMeta;
+	
+	/* Constructor */
+	public ExtractionResult(SparseArray<YoutubeVideo> videos, VideoMeta videoMeta) {
+		this.videos = videos;
+		this.videoMeta = videoMeta;
+	}
+	
+	/**
+	 * @return Extracted videos mapped by itag, null if nothing has been found
+	 */
+	public SparseArray<YoutubeVideo> getVideos() {
+		return videos;
+	}
+	
+	/**
+	 * @return Video meta, null if the video info could not be parsed
+	 */
+	public VideoMeta getVideoMeta() {
+		return videoMeta;
+	}
+	
+	/**
+	 * @return If at least one video has been extracted
+	 */
+	public boolean hasVideos() {
+		return videos != null && videos.size() != 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "ExtractionResult[videos=" + (videos != null ? videos.size() : 0) + ", videoMeta=" + videoMeta + "]";
+	}
+	
+}
\ No newline at end of file
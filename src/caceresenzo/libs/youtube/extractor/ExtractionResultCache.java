@@ -0,0 +1,305 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import caceresenzo.libs.array.SparseArray;
+import caceresenzo.libs.youtube.video.VideoMeta;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Bounded cache of the extraction results, valid until the returned stream urls expire.
+ * <p/>
+ * Entries are spread over independent segments, each one being a small LRU map with its own lock, so concurrent lookups of different videos rarely wait on each other. The bounds (entry count and estimated size in bytes) are split evenly between the segments.
+ * 
+ * @author Enzo CACERES
+ */
+final class ExtractionResultCache {
+	
+	/* Private Constants */
+	private static final int SEGMENT_COUNT = 16;
+	private static final Pattern PATTERN_EXPIRE = Pattern.compile("[?&/]expire[=/](\\d+)");
+	
+	/* Estimated sizes, in bytes */
+	private static final int ENTRY_OVERHEAD = 128;
+	private static final int VIDEO_OVERHEAD = 64;
+	
+	/* Variables */
+	private final Segment[] segments;
+	private final long expiryMargin;
+	
+	/* Constructor */
+	ExtractionResultCache(int maxEntries, long maxBytes, long expiryMargin) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("The maximum entry count must be positive");
+		}
+		
+		int segmentCount = Math.min(SEGMENT_COUNT, maxEntries);
+		
+		this.segments = new Segment[segmentCount];
+		this.expiryMargin = expiryMargin;
+		
+		for (int index = 0; index < segmentCount; index++) {
+			int segmentEntries = maxEntries / segmentCount + (index < maxEntries % segmentCount ? 1 : 0);
+			long segmentBytes = maxBytes > 0 ? Math.max(1, maxBytes / segmentCount) : Long.MAX_VALUE;
+			
+			segments[index] = new Segment(segmentEntries, segmentBytes);
+		}
+	}
+	
+	/**
+	 * @param key
+	 *            Extraction key, see {@link ExtractionContext#getKey()}
+	 * @return A copy of the cached result, or null if not cached or expired
+	 */
+	ExtractionResult get(String key) {
+		Entry entry = segmentFor(key).get(key, System.currentTimeMillis());
+		
+		if (entry == null) {
+			return null;
+		}
+		
+		return new ExtractionResult(entry.videos.clone(), entry.videoMeta);
+	}
+	
+	/**
+	 * Cache a result, if it has videos with a known expiration.
+	 * 
+	 * @param key
+	 *            Extraction key, see {@link ExtractionContext#getKey()}
+	 * @param result
+	 *            Result to cache, copied
+	 */
+	void put(String key, ExtractionResult result) {
+		if (!result.hasVideos()) {
+			return;
+		}
+		
+		long expiration = findExpiration(result.getVideos());
+		if (expiration == Long.MAX_VALUE) {
+			return;
+		}
+		
+		long expiresAt = expiration - expiryMargin;
+		if (expiresAt <= System.currentTimeMillis()) {
+			return;
+		}
+		
+		Entry entry = new Entry(result.getVideos().clone(), result.getVideoMeta(), expiresAt, estimateSize(key, result));
+		segmentFor(key).put(key, entry);
+	}
+	
+	/**
+	 * Remove every entry of a video, whatever the options it was extracted with.
+	 * 
+	 * @param videoId
+	 *            Video id
+	 */
+	void removeVideo(String videoId) {
+		String prefix = videoId + ":";
+		
+		for (Segment segment : segments) {
+			segment.removeIf(prefix);
+		}
+	}
+	
+	/**
+	 * Remove every entry.
+	 */
+	void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+	
+	/**
+	 * @return Current entry count, expired ones included until they are looked up or evicted
+	 */
+	int size() {
+		int size = 0;
+		
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		
+		return size;
+	}
+	
+	private Segment segmentFor(String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		
+		return segments[(hash & 0x7FFFFFFF) % segments.length];
+	}
+	
+	/**
+	 * @return Earliest expiration of the videos urls in milliseconds since epoch, or {@link Long#MAX_VALUE} if none has one
+	 */
+	private static long findExpiration(SparseArray<YoutubeVideo> videos) {
+		long expiration = Long.MAX_VALUE;
+		
+		for (int index = 0; index < videos.size(); index++) {
+			YoutubeVideo video = videos.valueAt(index);
+			
+			if (video == null || video.getUrl() == null) {
+				continue;
+			}
+			
+			Matcher matcher = PATTERN_EXPIRE.matcher(video.getUrl());
+			if (matcher.find()) {
+				try {
+					expiration = Math.min(expiration, Long.parseLong(matcher.group(1)) * 1000);
+				} catch (NumberFormatException exception) {
+					;
+				}
+			}
+		}
+		
+		return expiration;
+	}
+	
+	private static long estimateSize(String key, ExtractionResult result) {
+		long size = ENTRY_OVERHEAD + key.length() * 2;
+		
+		SparseArray<YoutubeVideo> videos = result.getVideos();
+		for (int index = 0; index < videos.size(); index++) {
+			YoutubeVideo video = videos.valueAt(index);
+			
+			size += VIDEO_OVERHEAD + (video != null && video.getUrl() != null ? video.getUrl().length() * 2 : 0);
+		}
+		
+		VideoMeta videoMeta = result.getVideoMeta();
+		if (videoMeta != null) {
+			size += length(videoMeta.getTitle()) + length(videoMeta.getDescription()) + length(videoMeta.getAuthor());
+		}
+		
+		return size;
+	}
+	
+	private static long length(String string) {
+		return string != null ? string.length() * 2 : 0;
+	}
+	
+	/**
+	 * Cached result.
+	 */
+	private static class Entry {
+		
+		/* Variables */
+		private final SparseArray<YoutubeVideo> videos;
+		private final VideoMeta videoMeta;
+		private final long expiresAt, size;
+		
+		/* Constructor */
+		private Entry(SparseArray<YoutubeVideo> videos, VideoMeta videoMeta, long expiresAt, long size) {
+			this.videos = videos;
+			this.videoMeta = videoMeta;
+			this.expiresAt = expiresAt;
+			this.size = size;
+		}
+		
+	}
+	
+	/**
+	 * Independent LRU part of the cache.
+	 */
+	private static class Segment {
+		
+		/* Variables */
+		private final int maxEntries;
+		private final long maxBytes;
+		private final ReentrantLock lock;
+		private final LinkedHashMap<String, Entry> entries;
+		private long bytes;
+		
+		/* Constructor */
+		private Segment(int maxEntries, long maxBytes) {
+			this.maxEntries = maxEntries;
+			this.maxBytes = maxBytes;
+			this.lock = new ReentrantLock();
+			this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		}
+		
+		private Entry get(String key, long now) {
+			lock.lock();
+			try {
+				Entry entry = entries.get(key);
+				
+				if (entry != null && entry.expiresAt <= now) {
+					entries.remove(key);
+					bytes -= entry.size;
+					
+					return null;
+				}
+				
+				return entry;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		private void put(String key, Entry entry) {
+			lock.lock();
+			try {
+				Entry previous = entries.put(key, entry);
+				if (previous != null) {
+					bytes -= previous.size;
+				}
+				bytes += entry.size;
+				
+				/* Least recently used first */
+				Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+				while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+					Entry evicted = iterator.next().getValue();
+					
+					iterator.remove();
+					bytes -= evicted.size;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		private void removeIf(String keyPrefix) {
+			lock.lock();
+			try {
+				Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+				while (iterator.hasNext()) {
+					Map.Entry<String, Entry> entry = iterator.next();
+					
+					if (entry.getKey().startsWith(keyPrefix)) {
+						iterator.remove();
+						bytes -= entry.getValue().size;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		private void clear() {
+			lock.lock();
+			try {
+				entries.clear();
+				bytes = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		private int size() {
+			lock.lock();
+			try {
+				return entries.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * Bounded pool of JavaScript engines used when a decipher function can't be compiled to a {@link DecipherProgram}.
+ * <p/>
+ * Engines are created on demand up to the pool size and kept warm: each one evaluate (compiled if the engine is {@link Compilable}) the decipher functions of a player version only once, then every signature is a single {@link Invocable#invokeFunction(String, Object...)} call.
+ * 
+ * @author Enzo CACERES
+ */
+final class ScriptEnginePool {
+	
+	/* Private Constants */
+	private static final String ENGINE_NAME = "JavaScript";
+	
+	/* Variables */
+	private final ScriptEngineFactory factory;
+	private final int maximumSize;
+	private final AtomicInteger created;
+	private final BlockingQueue<PooledScriptEngine> idles;
+	
+	/* Constructor */
+	ScriptEnginePool(int maximumSize) {
+		ScriptEngine engine = new ScriptEngineManager().getEngineByName(ENGINE_NAME);
+		
+		this.factory = engine != null ? engine.getFactory() : null;
+		this.maximumSize = maximumSize;
+		this.created = new AtomicInteger();
+		this.idles = new LinkedBlockingQueue<>();
+		
+		if (engine != null) {
+			created.incrementAndGet();
+			idles.offer(new PooledScriptEngine(engine));
+		}
+	}
+	
+	/**
+	 * @return If a JavaScript engine is available on this JVM
+	 */
+	boolean isAvailable() {
+		return factory != null;
+	}
+	
+	/**
+	 * Acquire an engine, creating one if the pool is not full yet.
+	 * 
+	 * @param timeout
+	 *            Maximum time to wait for an engine to be released
+	 * @param unit
+	 *            Timeout's unit
+	 * @return An engine that must be given back with {@link #release(PooledScriptEngine)}, or null if none became available in time or no engine is available on this JVM
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	PooledScriptEngine acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		if (!isAvailable()) {
+			return null;
+		}
+		
+		PooledScriptEngine pooled = idles.poll();
+		if (pooled != null) {
+			return pooled;
+		}
+		
+		while (true) {
+			int count = created.get();
+			
+			if (count >= maximumSize) {
+				break;
+			}
+			
+			if (created.compareAndSet(count, count + 1)) {
+				return new PooledScriptEngine(factory.getScriptEngine());
+			}
+		}
+		
+		return idles.poll(timeout, unit);
+	}
+	
+	/**
+	 * Give back an engine to the pool.
+	 * 
+	 * @param pooled
+	 *            Previously acquired engine
+	 */
+	void release(PooledScriptEngine pooled) {
+		if (pooled != null) {
+			idles.offer(pooled);
+		}
+	}
+	
+	/**
+	 * @return Maximum engine count
+	 */
+	int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * A pooled engine with the player version it currently has loaded.
+	 */
+	static final class PooledScriptEngine {
+		
+		/* Variables */
+		private final ScriptEngine engine;
+		private String loadedJsFileName;
+		
+		/* Constructor */
+		private PooledScriptEngine(ScriptEngine engine) {
+			this.engine = engine;
+		}
+		
+		/**
+		 * Decipher a signature, loading the function into this engine first if it is from another player version.
+		 * 
+		 * @param function
+		 *            Decipher function
+		 * @param signature
+		 *            Enciphered signature
+		 * @return Deciphered signature
+		 * @throws ScriptException
+		 *             If the script failed
+		 * @throws NoSuchMethodException
+		 *             If the function is not defined by the script
+		 */
+		String decipher(DecipherFunction function, String signature) throws ScriptException, NoSuchMethodException {
+			if (function.jsFileName == null || !function.jsFileName.equals(loadedJsFileName)) {
+				load(function);
+			}
+			
+			return String.valueOf(((Invocable) engine).invokeFunction(function.functionName, signature));
+		}
+		
+		private void load(DecipherFunction function) throws ScriptException {
+			loadedJsFileName = null;
+			
+			Bindings bindings = engine.createBindings();
+			engine.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+			
+			if (engine instanceof Compilable) {
+				((Compilable) engine).compile(function.functions).eval(bindings);
+			} else {
+				engine.eval(function.functions, bindings);
+			}
+			
+			loadedJsFileName = function.jsFileName;
+		}
+		
+	}
+	
+}
\ No newline at end of file
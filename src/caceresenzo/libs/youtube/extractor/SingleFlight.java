@@ -0,0 +1,101 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesce concurrent calls for the same key into a single execution.
+ * <p/>
+ * The first caller of a key run the task, the ones arriving while it is running wait for it and get the same result (or exception). Once the task is over the key is forgotten, so nothing is cached: the next caller run the task again.
+ * 
+ * @author Enzo CACERES
+ */
+final class SingleFlight<K, V> {
+	
+	/* Variables */
+	private final ConcurrentMap<K, CompletableFuture<V>> flights;
+	
+	/* Constructor */
+	SingleFlight() {
+		this.flights = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Run the task, or wait for the one already running for this key.
+	 * <p/>
+	 * If the running task has been interrupted, the waiting callers don't inherit the interruption: one of them run the task again.
+	 * 
+	 * @param key
+	 *            Key of the task
+	 * @param task
+	 *            Task to run if none is running for this key
+	 * @return The task's result
+	 * @throws IOException
+	 *             If the task failed
+	 * @throws InterruptedException
+	 *             If interrupted while running or waiting
+	 */
+	V execute(K key, Task<V> task) throws IOException, InterruptedException {
+		while (true) {
+			CompletableFuture<V> flight = new CompletableFuture<>();
+			CompletableFuture<V> running = flights.putIfAbsent(key, flight);
+			
+			if (running == null) {
+				return run(key, flight, task);
+			}
+			
+			try {
+				return running.get();
+			} catch (ExecutionException exception) {
+				Throwable cause = exception.getCause();
+				
+				if (cause instanceof InterruptedException) {
+					continue;
+				} else if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+	}
+	
+	private V run(K key, CompletableFuture<V> flight, Task<V> task) throws IOException, InterruptedException {
+		try {
+			V value = task.run();
+			flight.complete(value);
+			
+			return value;
+		} catch (IOException | InterruptedException | RuntimeException | Error exception) {
+			flight.completeExceptionally(exception);
+			throw exception;
+		} finally {
+			flights.remove(key, flight);
+		}
+	}
+	
+	/**
+	 * @param key
+	 *            Key of the task
+	 * @return If a task is currently running for this key
+	 */
+	boolean isInFlight(K key) {
+		return flights.containsKey(key);
+	}
+	
+	/**
+	 * Coalesced task.
+	 */
+	interface Task<V> {
+		
+		V run() throws IOException, InterruptedException;
+		
+	}
+	
+}
\ No newline at end of file
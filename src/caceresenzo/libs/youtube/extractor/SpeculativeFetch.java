@@ -0,0 +1,124 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+
+/**
+ * Request sent ahead of time, before knowing if its response will be needed.
+ * <p/>
+ * The response is read on an executor as soon as it arrives. Cancelling a fetch drop its request, or close its response.
+ * 
+ * @author Enzo CACERES
+ */
+final class SpeculativeFetch<T> {
+	
+	/* Variables */
+	private final HttpTransport transport;
+	private final Executor executor;
+	private volatile CompletableFuture<TransportResponse> response;
+	private volatile boolean cancelled;
+	private CompletableFuture<T> result;
+	
+	/* Constructor */
+	private SpeculativeFetch(HttpTransport transport, Executor executor) {
+		this.transport = transport;
+		this.executor = executor;
+	}
+	
+	private CompletableFuture<T> send(TransportRequest request, final ResponseReader<T> reader) {
+		CompletableFuture<TransportResponse> pending = transport.sendAsync(request);
+		response = pending;
+		
+		if (cancelled) {
+			release(pending);
+		}
+		
+		return pending.thenApplyAsync((transportResponse) -> {
+			try (TransportResponse closing = transportResponse) {
+				return reader.read(closing.requireSuccessful());
+			} catch (IOException exception) {
+				throw new CompletionException(exception);
+			}
+		}, executor);
+	}
+	
+	/**
+	 * Wait for the value.
+	 * 
+	 * @return Read value
+	 * @throws IOException
+	 *             If the request or the read failed
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	T get() throws IOException, InterruptedException {
+		try {
+			return result.get();
+		} catch (ExecutionException exception) {
+			Throwable cause = exception.getCause();
+			
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+	
+	/**
+	 * Drop the request if it is still pending, or close the response if it is being read. Does nothing to an already read value.
+	 */
+	void cancel() {
+		cancelled = true;
+		result.cancel(false);
+		
+		CompletableFuture<TransportResponse> pending = response;
+		if (pending != null) {
+			release(pending);
+		}
+	}
+	
+	private static void release(CompletableFuture<TransportResponse> pending) {
+		if (!pending.cancel(false)) {
+			pending.thenAccept(TransportResponse::close);
+		}
+	}
+	
+	/**
+	 * Send a request ahead of time.
+	 * 
+	 * @param transport
+	 *            Transport to send the request with
+	 * @param request
+	 *            Request to send
+	 * @param reader
+	 *            Reader of the response, only called with successful responses that are closed after
+	 * @param executor
+	 *            Executor the response is read on
+	 * @return A new fetch
+	 */
+	static <T> SpeculativeFetch<T> start(HttpTransport transport, TransportRequest request, ResponseReader<T> reader, Executor executor) {
+		SpeculativeFetch<T> fetch = new SpeculativeFetch<>(transport, executor);
+		fetch.result = fetch.send(request, reader);
+		
+		return fetch;
+	}
+	
+	/**
+	 * Read a successful response into a value.
+	 */
+	interface ResponseReader<T> {
+		
+		T read(TransportResponse response) throws IOException;
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,357 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single pass tokenizer of the <code>url_encoded_fmt_stream_map</code> and <code>adaptive_fmts</code> data.
+ * <p/>
+ * Both the <code>get_video_info</code> query string (where the stream maps are encoded once more) and the watch page player config (where they are json strings) are supported. The tokenizer only keep index ranges over the original buffer, numbers are parsed in place and only the values asked for are decoded.
+ * 
+ * @author Enzo CACERES
+ */
+final class StreamMapTokenizer {
+	
+	/* Constants */
+	static final int NO_VALUE = -1;
+	
+	/* Private Constants */
+	private static final String[] SECTIONS = { "url_encoded_fmt_stream_map", "adaptive_fmts" };
+	
+	private static final int KEY_ITAG = 0;
+	private static final int KEY_SIGNATURE = 1;
+	private static final int KEY_URL = 2;
+	private static final int KEY_TYPE = 3;
+	private static final int KEY_BITRATE = 4;
+	private static final int KEY_SIZE = 5;
+	private static final int KEY_FPS = 6;
+	private static final String[] KEYS = { "itag", "s", "url", "type", "bitrate", "size", "fps" };
+	
+	/* Variables */
+	private final CharSequence source;
+	private final boolean encoded;
+	private final String entrySeparator, pairSeparator, keyValueSeparator;
+	private final int[] sections;
+	private final int[] ranges;
+	private int sectionIndex, position;
+	private byte[] decodeBuffer;
+	
+	/* Constructor */
+	private StreamMapTokenizer(CharSequence source, boolean encoded, int[] sections) {
+		this.source = source;
+		this.encoded = encoded;
+		this.entrySeparator = encoded ? "%2C" : ",";
+		this.pairSeparator = encoded ? "%26" : "&";
+		this.keyValueSeparator = encoded ? "%3D" : "=";
+		this.sections = sections;
+		this.ranges = new int[KEYS.length * 2];
+		this.sectionIndex = 0;
+		this.position = sections.length != 0 ? sections[0] : 0;
+	}
+	
+	/**
+	 * Move to the next stream entry.
+	 * 
+	 * @return If there was one
+	 */
+	boolean next() {
+		while (sectionIndex < sections.length) {
+			int sectionEnd = sections[sectionIndex + 1];
+			
+			if (position >= sectionEnd) {
+				sectionIndex += 2;
+				
+				if (sectionIndex < sections.length) {
+					position = sections[sectionIndex];
+				}
+				continue;
+			}
+			
+			int entryEnd = indexOf(source, entrySeparator, position, sectionEnd);
+			if (entryEnd == -1) {
+				entryEnd = sectionEnd;
+			}
+			
+			parseEntry(position, entryEnd);
+			position = entryEnd + entrySeparator.length();
+			
+			if (ranges[KEY_ITAG * 2] != NO_VALUE) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void parseEntry(int start, int end) {
+		for (int index = 0; index < ranges.length; index++) {
+			ranges[index] = NO_VALUE;
+		}
+		
+		while (start < end) {
+			int pairEnd = indexOf(source, pairSeparator, start, end);
+			if (pairEnd == -1) {
+				pairEnd = end;
+			}
+			
+			int keyEnd = indexOf(source, keyValueSeparator, start, pairEnd);
+			if (keyEnd != -1) {
+				for (int key = 0; key < KEYS.length; key++) {
+					if (ranges[key * 2] == NO_VALUE && regionEquals(source, start, keyEnd, KEYS[key])) {
+						ranges[key * 2] = keyEnd + keyValueSeparator.length();
+						ranges[key * 2 + 1] = pairEnd;
+						break;
+					}
+				}
+			}
+			
+			start = pairEnd + pairSeparator.length();
+		}
+	}
+	
+	/**
+	 * @return Current entry's itag, parsed in place
+	 */
+	int getItag() {
+		return (int) parseNumber(KEY_ITAG);
+	}
+	
+	/**
+	 * @return Current entry's enciphered signature, or null if not enciphered
+	 */
+	String getSignature() {
+		return decode(KEY_SIGNATURE);
+	}
+	
+	/**
+	 * @return Current entry's decoded url, or null if not present
+	 */
+	String getUrl() {
+		return decode(KEY_URL);
+	}
+	
+	/**
+	 * @return Current entry's decoded mime type (with codecs), or null if not present
+	 */
+	String getType() {
+		return decode(KEY_TYPE);
+	}
+	
+	/**
+	 * @return Current entry's decoded size (like <code>1280x720</code>), or null if not present
+	 */
+	String getSize() {
+		return decode(KEY_SIZE);
+	}
+	
+	/**
+	 * @return Current entry's bitrate in bit/s, or {@link #NO_VALUE}
+	 */
+	long getBitrate() {
+		return parseNumber(KEY_BITRATE);
+	}
+	
+	/**
+	 * @return Current entry's frames per second, or {@link #NO_VALUE}
+	 */
+	int getFps() {
+		return (int) parseNumber(KEY_FPS);
+	}
+	
+	private long parseNumber(int key) {
+		int start = ranges[key * 2], end = ranges[key * 2 + 1];
+		
+		if (start == NO_VALUE || start == end) {
+			return NO_VALUE;
+		}
+		
+		long value = 0;
+		for (int index = start; index < end; index++) {
+			char character = source.charAt(index);
+			
+			if (character < '0' || character > '9') {
+				return NO_VALUE;
+			}
+			
+			value = value * 10 + (character - '0');
+		}
+		
+		return value;
+	}
+	
+	private String decode(int key) {
+		int start = ranges[key * 2], end = ranges[key * 2 + 1];
+		
+		if (start == NO_VALUE) {
+			return null;
+		}
+		
+		String value = percentDecode(source, start, end);
+		if (encoded) {
+			value = percentDecode(value, 0, value.length());
+		}
+		
+		return value;
+	}
+	
+	private String percentDecode(CharSequence sequence, int start, int end) {
+		int index = start;
+		while (index < end) {
+			char character = sequence.charAt(index);
+			
+			if (character == '%' || character == '+') {
+				break;
+			}
+			index++;
+		}
+		
+		if (index == end) {
+			return sequence.subSequence(start, end).toString();
+		}
+		
+		StringBuilder builder = new StringBuilder(end - start);
+		builder.append(sequence, start, index);
+		
+		while (index < end) {
+			char character = sequence.charAt(index);
+			
+			if (character == '+') {
+				builder.append(' ');
+				index++;
+			} else if (character == '%') {
+				if (decodeBuffer == null) {
+					decodeBuffer = new byte[64];
+				}
+				
+				int count = 0;
+				while (index + 2 < end && sequence.charAt(index) == '%' && hexValue(sequence.charAt(index + 1)) != -1 && hexValue(sequence.charAt(index + 2)) != -1) {
+					if (count == decodeBuffer.length) {
+						byte[] grown = new byte[count * 2];
+						System.arraycopy(decodeBuffer, 0, grown, 0, count);
+						decodeBuffer = grown;
+					}
+					
+					decodeBuffer[count++] = (byte) ((hexValue(sequence.charAt(index + 1)) << 4) | hexValue(sequence.charAt(index + 2)));
+					index += 3;
+				}
+				
+				if (count == 0) {
+					builder.append(character);
+					index++;
+				} else {
+					builder.append(new String(decodeBuffer, 0, count, StandardCharsets.UTF_8));
+				}
+			} else {
+				builder.append(character);
+				index++;
+			}
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Create a tokenizer over a <code>get_video_info</code> response or a watch page player config.
+	 * 
+	 * @param source
+	 *            Source data, not copied
+	 * @return A new tokenizer, that will not return any entry if no stream map has been found
+	 */
+	static StreamMapTokenizer of(CharSequence source) {
+		int[] sections = findSections(source, "\"", "\":\"", "\"", false);
+		if (sections.length != 0) {
+			return new StreamMapTokenizer(source, false, sections);
+		}
+		
+		return new StreamMapTokenizer(source, true, findSections(source, "", "=", "&", true));
+	}
+	
+	/**
+	 * Create a tokenizer over already located, json-unescaped, stream map values.
+	 * 
+	 * @param source
+	 *            Source data, not copied
+	 * @param sections
+	 *            Start (inclusive) and end (exclusive) index pairs of every stream map value
+	 * @return A new tokenizer
+	 */
+	static StreamMapTokenizer of(CharSequence source, int[] sections) {
+		return new StreamMapTokenizer(source, false, sections);
+	}
+	
+	private static int[] findSections(CharSequence source, String prefix, String suffix, String terminator, boolean parameter) {
+		int[] sections = new int[SECTIONS.length * 2];
+		int count = 0;
+		
+		for (String section : SECTIONS) {
+			String key = prefix + section + suffix;
+			int from = 0, start;
+			
+			while ((start = indexOf(source, key, from, source.length())) != -1) {
+				if (!parameter || start == 0 || source.charAt(start - 1) == '&') {
+					break;
+				}
+				from = start + 1;
+			}
+			
+			if (start == -1) {
+				continue;
+			}
+			
+			start += key.length();
+			int end = indexOf(source, terminator, start, source.length());
+			
+			sections[count++] = start;
+			sections[count++] = end == -1 ? source.length() : end;
+		}
+		
+		if (count != sections.length) {
+			int[] trimmed = new int[count];
+			System.arraycopy(sections, 0, trimmed, 0, count);
+			sections = trimmed;
+		}
+		
+		return sections;
+	}
+	
+	private static int indexOf(CharSequence source, String target, int from, int to) {
+		char first = target.charAt(0);
+		int max = to - target.length();
+		
+		for (int index = from; index <= max; index++) {
+			if (source.charAt(index) == first && regionEquals(source, index, index + target.length(), target)) {
+				return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private static boolean regionEquals(CharSequence source, int start, int end, String target) {
+		if (end - start != target.length()) {
+			return false;
+		}
+		
+		for (int index = 0; index < target.length(); index++) {
+			if (source.charAt(start + index) != target.charAt(index)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static int hexValue(char character) {
+		if (character >= '0' && character <= '9') {
+			return character - '0';
+		}
+		if (character >= 'a' && character <= 'f') {
+			return character - 'a' + 10;
+		}
+		if (character >= 'A' && character <= 'F') {
+			return character - 'A' + 10;
+		}
+		
+		return -1;
+	}
+	
+}
\ No newline at end of file
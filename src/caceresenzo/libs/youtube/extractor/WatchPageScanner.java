@@ -0,0 +1,235 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming scanner of the youtube watch page.
+ * <p/>
+ * The page is read by chunks into a single reusable buffer and matched byte per byte against the few markers we are interested in. Only the values following those markers are kept, json-unescaped on the fly, and the scan stop as soon as everything has been found or the player config line is over, so the caller can close the connection without reading the rest of the page.
+ * 
+ * @author Enzo CACERES
+ */
+final class WatchPageScanner {
+	
+	/* Values */
+	static final int VALUE_STREAM_MAP = 0;
+	static final int VALUE_ADAPTIVE_FMTS = 1;
+	static final int VALUE_DASH_MPD = 2;
+	static final int VALUE_JS_FILE = 3;
+	
+	/* Private Constants */
+	private static final int BUFFER_SIZE = 16 * 1024;
+	
+	private static final String JS_FILE_PREFIX = "player";
+	private static final byte[][] MARKERS = { //
+			"\"url_encoded_fmt_stream_map\":\"".getBytes(), //
+			"\"adaptive_fmts\":\"".getBytes(), //
+			"\"dashmpd\":\"".getBytes(), //
+			("jsbin\\/" + JS_FILE_PREFIX).getBytes(), //
+	};
+	private static final int[][] FAILURES = new int[MARKERS.length][];
+	
+	static {
+		for (int marker = 0; marker < MARKERS.length; marker++) {
+			byte[] pattern = MARKERS[marker];
+			int[] failure = new int[pattern.length];
+			
+			for (int index = 1, length = 0; index < pattern.length; index++) {
+				while (length > 0 && pattern[index] != pattern[length]) {
+					length = failure[length - 1];
+				}
+				if (pattern[index] == pattern[length]) {
+					length++;
+				}
+				failure[index] = length;
+			}
+			
+			FAILURES[marker] = failure;
+		}
+	}
+	
+	/* Variables */
+	private final boolean needDashManifest;
+	private final byte[] buffer;
+	private final StringBuilder values;
+	private final int[] ranges;
+	private long bytesRead;
+	
+	/* Constructor */
+	WatchPageScanner(boolean needDashManifest) {
+		this.needDashManifest = needDashManifest;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.values = new StringBuilder();
+		this.ranges = new int[MARKERS.length * 2];
+		
+		reset();
+	}
+	
+	/**
+	 * Scan a watch page, returning as soon as every needed value has been found.
+	 * 
+	 * @param inputStream
+	 *            Page's stream, not closed
+	 * @throws IOException
+	 *             If the read failed
+	 */
+	void scan(InputStream inputStream) throws IOException {
+		int[] progresses = new int[MARKERS.length];
+		int capturing = -1, escape = 0, unicode = 0;
+		int read;
+		
+		while ((read = inputStream.read(buffer)) != -1) {
+			bytesRead += read;
+			
+			for (int index = 0; index < read; index++) {
+				byte current = buffer[index];
+				
+				if (capturing != -1) {
+					if (escape == 0) {
+						if (current == '\\') {
+							escape = 1;
+						} else if (current == '"') {
+							ranges[capturing * 2 + 1] = values.length();
+							capturing = -1;
+							
+							if (isComplete()) {
+								return;
+							}
+						} else {
+							values.append((char) (current & 0xFF));
+						}
+					} else if (escape == 1) {
+						if (current == 'u') {
+							escape = 2;
+							unicode = 0;
+						} else {
+							values.append(current == 'n' ? '\n' : (char) (current & 0xFF));
+							escape = 0;
+						}
+					} else {
+						unicode = (unicode << 4) | Character.digit((char) current, 16);
+						
+						if (++escape == 6) {
+							values.append((char) unicode);
+							escape = 0;
+						}
+					}
+					continue;
+				}
+				
+				if (current == '\n' && has(VALUE_STREAM_MAP)) {
+					/* Everything is on the player config line */
+					return;
+				}
+				
+				for (int marker = 0; marker < MARKERS.length; marker++) {
+					if (ranges[marker * 2] != -1) {
+						continue;
+					}
+					
+					byte[] pattern = MARKERS[marker];
+					int progress = progresses[marker];
+					
+					while (progress > 0 && current != pattern[progress]) {
+						progress = FAILURES[marker][progress - 1];
+					}
+					if (current == pattern[progress]) {
+						progress++;
+					}
+					
+					if (progress == pattern.length) {
+						progresses[marker] = 0;
+						capturing = marker;
+						ranges[marker * 2] = values.length();
+						
+						if (marker == VALUE_JS_FILE) {
+							values.append(JS_FILE_PREFIX);
+						}
+						break;
+					}
+					
+					progresses[marker] = progress;
+				}
+			}
+		}
+	}
+	
+	private boolean isComplete() {
+		return has(VALUE_STREAM_MAP) && has(VALUE_ADAPTIVE_FMTS) && has(VALUE_JS_FILE) && (!needDashManifest || has(VALUE_DASH_MPD));
+	}
+	
+	/**
+	 * Forget everything that has been found, keeping the buffers.
+	 */
+	void reset() {
+		values.setLength(0);
+		bytesRead = 0;
+		
+		for (int index = 0; index < ranges.length; index++) {
+			ranges[index] = -1;
+		}
+	}
+	
+	/**
+	 * @param value
+	 *            One of the <code>VALUE_*</code> constants
+	 * @return If the value has been completely found
+	 */
+	boolean has(int value) {
+		return ranges[value * 2 + 1] != -1;
+	}
+	
+	/**
+	 * @param value
+	 *            One of the <code>VALUE_*</code> constants
+	 * @return The unescaped value, or null if not found
+	 */
+	String get(int value) {
+		if (!has(value)) {
+			return null;
+		}
+		
+		return values.substring(ranges[value * 2], ranges[value * 2 + 1]);
+	}
+	
+	/**
+	 * @return Player js file name (like <code>player-vflXXXX/en_US/base.js</code>), or null if not found
+	 */
+	String getJsFileName() {
+		String value = get(VALUE_JS_FILE);
+		
+		if (value == null) {
+			return null;
+		}
+		
+		int end = value.indexOf(".js");
+		return end == -1 ? null : value.substring(0, end + 3);
+	}
+	
+	/**
+	 * @return A tokenizer over the found stream maps, directly on the scanner's buffer, or null if no stream map has been found
+	 */
+	StreamMapTokenizer createTokenizer() {
+		if (!has(VALUE_STREAM_MAP)) {
+			return null;
+		}
+		
+		int[] sections;
+		if (has(VALUE_ADAPTIVE_FMTS)) {
+			sections = new int[] { ranges[VALUE_STREAM_MAP * 2], ranges[VALUE_STREAM_MAP * 2 + 1], ranges[VALUE_ADAPTIVE_FMTS * 2], ranges[VALUE_ADAPTIVE_FMTS * 2 + 1] };
+		} else {
+			sections = new int[] { ranges[VALUE_STREAM_MAP * 2], ranges[VALUE_STREAM_MAP * 2 + 1] };
+		}
+		
+		return StreamMapTokenizer.of(values, sections);
+	}
+	
+	/**
+	 * @return Bytes read from the page during the last scan
+	 */
+	long getBytesRead() {
+		return bytesRead;
+	}
+	
+}
\ No newline at end of file
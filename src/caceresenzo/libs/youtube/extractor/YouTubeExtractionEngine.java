@@ -0,0 +1,1028 @@
+package caceresenzo.libs.youtube.extractor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import caceresenzo.libs.array.SparseArray;
+import caceresenzo.libs.logger.Logger;
+import caceresenzo.libs.youtube.format.FormatIndex;
+import caceresenzo.libs.youtube.format.FormatRegistry;
+import caceresenzo.libs.youtube.format.FormatQuery;
+import caceresenzo.libs.youtube.format.YoutubeFormat;
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpStatusException;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.network.RetryBackoff;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+import caceresenzo.libs.youtube.video.VideoMeta;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Thread-safe extraction engine.
+ * <p/>
+ * The configuration is immutable and every per-request state is confined into an {@link ExtractionContext}, so a single instance can (and should) be shared by every thread doing extractions. The decipher functions extracted from the player js files are immutable {@link DecipherFunction}, kept in a {@link DecipherFunctionCache} shared by every engine using the same cache directory.
+ * 
+ * @author Enzo CACERES
+ */
+public final class YouTubeExtractionEngine {
+	
+	/* Constants */
+	public static final String DEFAULT_CACHE_DIRECTORY = "./cache/";
+	public static final long DEFAULT_DECIPHER_TIMEOUT = 7000;
+	public static final long DEFAULT_RESULT_EXPIRY_MARGIN = 300000;
+	
+	static boolean LOGGING = false;
+	
+	/* Private Constants */
+	private final static boolean CACHING = true;
+	
+	private static final RetryBackoff DASH_PARSE_BACKOFF = new RetryBackoff(5, 50, 1000, TimeUnit.MILLISECONDS);
+	
+	private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/40.0.2214.115 Safari/537.36";
+	private static final String STREAM_MAP_STRING = "url_encoded_fmt_stream_map";
+	private static final String WATCH_PAGE_URL = "https://youtube.com/watch?v=";
+	private static final String PLAYER_JS_URL = "https://s.ytimg.com/yts/jsbin/";
+	
+	private static final Pattern patYouTubePageLink = Pattern.compile("(http|https)://(www\\.|m.|)youtube\\.com/watch\\?v=(.+?)( |\\z|&)");
+	private static final Pattern patYouTubeShortLink = Pattern.compile("(http|https)://(www\\.|)youtu.be/(.+?)( |\\z|&)");
+	
+	private static final Pattern patDashManifest1 = Pattern.compile("dashmpd=(.+?)(&|\\z)");
+	private static final Pattern patDashManifestEncSig = Pattern.compile("/s/([0-9A-F|.]{10,}?)(/|\\z)");
+	private static final Pattern patDashItag = Pattern.compile("itag/([0-9]+?)/");
+	
+	private static final Pattern patTitle = Pattern.compile("title=(.*?)(&|\\z)");
+	private static final Pattern patAuthor = Pattern.compile("author=(.+?)(&|\\z)");
+	private static final Pattern patChannelId = Pattern.compile("ucid=(.+?)(&|\\z)");
+	private static final Pattern patLength = Pattern.compile("length_seconds=(\\d+?)(&|\\z)");
+	private static final Pattern patViewCount = Pattern.compile("view_count=(\\d+?)(&|\\z)");
+	private static final Pattern patStatusOk = Pattern.compile("status=ok(&|,|\\z)");
+	
+	private static final Pattern patHlsvp = Pattern.compile("hlsvp=(.+?)(&|\\z)");
+	private static final Pattern patHlsItag = Pattern.compile("/itag/(\\d+?)/");
+	
+	private static final Pattern patIsSigEnc = Pattern.compile("s%3D([0-9A-F|.]{10,}?)(%26|%2C)");
+	
+	private static final Pattern patVariableFunction = Pattern.compile("([{; =])([a-zA-Z$][a-zA-Z0-9$]{0,2})\\.([a-zA-Z$][a-zA-Z0-9$]{0,2})\\(");
+	private static final Pattern patFunction = Pattern.compile("([{; =])([a-zA-Z$_][a-zA-Z0-9$]{0,2})\\(");
+	
+	private static final Pattern patSignatureDecFunction = Pattern.compile("(\\w+)\\s*=\\s*function\\((\\w+)\\).\\s*\\2=\\s*\\2\\.split\\(\"\"\\)\\s*;");
+	
+	
+	/* Variables */
+	private final String cacheDirPath;
+	private final boolean useHttp;
+	private final long decipherTimeout;
+	private final DecipherBatcher decipherBatcher;
+	private final DecipherFunctionCache decipherCache;
+	private final HttpTransport transport;
+	private final boolean speculativeFetch;
+	private final ExtractionResultCache resultCache;
+	private final FormatRegistry formatRegistry;
+	private final SingleFlight<String, ExtractionResult> extractionFlights;
+	private final SingleFlight<String, DecipherFunction> playerJsFlights;
+	
+	/* Constructor */
+	public YouTubeExtractionEngine() {
+		this(new Builder());
+	}
+	
+	/* Constructor */
+	private YouTubeExtractionEngine(Builder builder) {
+		this.cacheDirPath = new File(builder.cacheDirectory).getAbsolutePath();
+		this.useHttp = builder.useHttp;
+		this.decipherTimeout = TimeUnit.MILLISECONDS.toNanos(builder.decipherTimeout);
+		this.decipherBatcher = builder.decipherBatchSize > 0 ? new DecipherBatcher(builder.decipherBatchSize, builder.decipherBatchLinger, TimeUnit.MILLISECONDS, (function, signatures) -> decipherViaScriptEngine(function, signatures, System.nanoTime() + decipherTimeout)) : null;
+		this.decipherCache = DecipherFunctionCache.forDirectory(CACHING ? cacheDirPath : null);
+		this.transport = builder.transport != null ? builder.transport : HttpClientTransport.getShared();
+		this.speculativeFetch = builder.speculativeFetch;
+		this.resultCache = builder.resultCacheEntries > 0 ? new ExtractionResultCache(builder.resultCacheEntries, builder.resultCacheBytes, builder.resultExpiryMargin) : null;
+		this.formatRegistry = builder.formatRegistry != null ? builder.formatRegistry : FormatRegistry.getDefault();
+		this.extractionFlights = new SingleFlight<>();
+		this.playerJsFlights = new SingleFlight<>();
+	}
+	
+	/**
+	 * Extract a video on the caller's thread.
+	 * <p/>
+	 * Concurrent extractions of the same video with the same options are coalesced: only the first one hit the network, the others wait for it and get a copy of its result.
+	 * 
+	 * @param youtubeLink
+	 *            the youtube page link or video id
+	 * @param parseDashManifest
+	 *            true if the dash manifest should be downloaded and parsed
+	 * @param includeWebM
+	 *            true if WebM streams should be extracted
+	 * @return Extraction result, with null videos if nothing has been found
+	 * @throws IllegalArgumentException
+	 *             If the link is not a valid youtube link or video id
+	 * @throws IOException
+	 *             If a network error occurred
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting for a script engine
+	 */
+	public ExtractionResult extract(String youtubeLink, boolean parseDashManifest, boolean includeWebM) throws IOException, InterruptedException {
+		return extract(youtubeLink, parseDashManifest, includeWebM, useHttp);
+	}
+	
+	/**
+	 * Same as {@link #extract(String, boolean, boolean)} but with an explicit protocol.
+	 */
+	ExtractionResult extract(String youtubeLink, boolean parseDashManifest, boolean includeWebM, boolean useHttp) throws IOException, InterruptedException {
+		return extract(youtubeLink, parseDashManifest, includeWebM, useHttp, null);
+	}
+	
+	/**
+	 * Same as {@link #extract(String, boolean, boolean)}, but only extract the streams matched by at least one of the queries.
+	 * <p/>
+	 * The filter is applied while reading the stream maps: the url and signature of the other streams are never decoded nor deciphered, and the DASH manifest is not downloaded if no DASH format is wanted. The bandwidth of the queries is ignored, select among the result with {@link FormatIndex#select(FormatQuery, SparseArray)}. Itags unknown to the format registry are learned first, so they can match too.
+	 * 
+	 * @param youtubeLink
+	 *            the youtube page link or video id
+	 * @param parseDashManifest
+	 *            true if the dash manifest should be downloaded and parsed
+	 * @param includeWebM
+	 *            true if WebM streams should be extracted
+	 * @param queries
+	 *            Wanted formats
+	 * @return Extraction result, with null videos if nothing has been found
+	 * @see #extract(String, boolean, boolean)
+	 */
+	public ExtractionResult extract(String youtubeLink, boolean parseDashManifest, boolean includeWebM, FormatQuery... queries) throws IOException, InterruptedException {
+		return extract(youtubeLink, parseDashManifest, includeWebM, useHttp, queries.length != 0 ? queries.clone() : null);
+	}
+	
+	private ExtractionResult extract(String youtubeLink, boolean parseDashManifest, boolean includeWebM, boolean useHttp, FormatQuery[] queries) throws IOException, InterruptedException {
+		String videoId = extractVideoId(youtubeLink);
+		
+		if (videoId == null) {
+			throw new IllegalArgumentException("Wrong YouTube link format");
+		}
+		
+		final ExtractionContext context = new ExtractionContext(videoId, parseDashManifest, includeWebM, useHttp, queries);
+		final String key = context.getKey();
+		
+		if (resultCache != null) {
+			ExtractionResult cached = resultCache.get(key);
+			
+			if (cached != null) {
+				return cached;
+			}
+		}
+		
+		/* Concurrent extractions of the same video share the same requests */
+		ExtractionResult result = extractionFlights.execute(key, () -> {
+			SparseArray<YoutubeVideo> videos = getStreamUrls(context);
+			ExtractionResult extracted = new ExtractionResult(videos, context.videoMeta);
+			
+			if (resultCache != null) {
+				resultCache.put(key, extracted);
+			}
+			
+			return extracted;
+		});
+		
+		return new ExtractionResult(result.getVideos() != null ? result.getVideos().clone() : null, result.getVideoMeta());
+	}
+	
+	/**
+	 * Forget the cached extraction results of a video, whatever the options they were extracted with. Does nothing if the result cache is disabled.
+	 * <p/>
+	 * Useful when the urls of a result have been refused by the server before their expiration.
+	 * 
+	 * @param youtubeLink
+	 *            the youtube page link or video id
+	 */
+	public void evictResult(String youtubeLink) {
+		String videoId = extractVideoId(youtubeLink);
+		
+		if (resultCache != null && videoId != null) {
+			resultCache.removeVideo(videoId);
+		}
+	}
+	
+	/**
+	 * Forget every cached extraction result, does nothing if the result cache is disabled.
+	 */
+	public void clearResultCache() {
+		if (resultCache != null) {
+			resultCache.clear();
+		}
+	}
+	
+	/**
+	 * Start an extraction on the provided {@link Executor}.
+	 * <p/>
+	 * The network calls are plain blocking I/O without any monitor held, so a virtual thread executor can be used to unmount them from their carrier while they wait.
+	 * 
+	 * @param youtubeLink
+	 *            the youtube page link or video id
+	 * @param parseDashManifest
+	 *            true if the dash manifest should be downloaded and parsed
+	 * @param includeWebM
+	 *            true if WebM streams should be extracted
+	 * @param executor
+	 *            executor used to run the extraction
+	 * @return A future completed with the {@link ExtractionResult}, or exceptionally with an {@link IllegalArgumentException} if the link is not valid or the {@link IOException} that made the extraction fail
+	 */
+	public CompletableFuture<ExtractionResult> extractAsync(String youtubeLink, boolean parseDashManifest, boolean includeWebM, Executor executor) {
+		return extractAsync(youtubeLink, parseDashManifest, includeWebM, useHttp, executor);
+	}
+	
+	/**
+	 * Same as {@link #extractAsync(String, boolean, boolean, Executor)} but with an explicit protocol.
+	 */
+	CompletableFuture<ExtractionResult> extractAsync(final String youtubeLink, final boolean parseDashManifest, final boolean includeWebM, final boolean useHttp, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return extract(youtubeLink, parseDashManifest, includeWebM, useHttp);
+			} catch (IOException | InterruptedException exception) {
+				throw new CompletionException(exception);
+			}
+		}, executor);
+	}
+	
+	/**
+	 * Extract the video id from a youtube page link, a short link, or return the input if it already is an id.
+	 * 
+	 * @param youtubeLink
+	 *            Source link
+	 * @return The video id, or null if the link is not valid
+	 */
+	public static String extractVideoId(String youtubeLink) {
+		if (youtubeLink == null) {
+			return null;
+		}
+		
+		Matcher matcher = patYouTubePageLink.matcher(youtubeLink);
+		if (matcher.find()) {
+			return matcher.group(3);
+		}
+		
+		matcher = patYouTubeShortLink.matcher(youtubeLink);
+		if (matcher.find()) {
+			return matcher.group(3);
+		} else if (youtubeLink.matches("\\p{Graph}+?")) {
+			return youtubeLink;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return Absolute path of the cache directory
+	 */
+	public String getCacheDirectory() {
+		return cacheDirPath;
+	}
+	
+	/**
+	 * @return Hit and miss counters of the decipher function cache, shared by every engine using the same cache directory
+	 */
+	public DecipherCacheStats getDecipherCacheStats() {
+		return decipherCache.getStats();
+	}
+	
+	/**
+	 * @return If the returned urls use HTTP instead of HTTPS by default
+	 */
+	public boolean isDefaultHttpProtocol() {
+		return useHttp;
+	}
+	
+	/**
+	 * @return Transport used for every request of this engine
+	 */
+	public HttpTransport getTransport() {
+		return transport;
+	}
+	
+	/**
+	 * @return Registry the formats are looked up in, and the unknown itags learned by
+	 */
+	public FormatRegistry getFormatRegistry() {
+		return formatRegistry;
+	}
+	
+	/**
+	 * Send a request through the transport, with the browser user agent.
+	 * 
+	 * @param url
+	 *            Target url
+	 * @return A successful response, that must be closed
+	 * @throws IOException
+	 *             If the request failed or the response is not successful
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	private TransportResponse open(String url) throws IOException, InterruptedException {
+		return transport.send(createRequest(url)).requireSuccessful();
+	}
+	
+	private static TransportRequest createRequest(String url) {
+		return new TransportRequest(url).header(TransportRequest.HEADER_USER_AGENT, USER_AGENT);
+	}
+	
+	private SparseArray<YoutubeVideo> getStreamUrls(ExtractionContext context) throws IOException, InterruptedException {
+		if (!speculativeFetch) {
+			return getStreamUrls(context, null);
+		}
+		
+		/* Fetched in parallel of get_video_info, dropped if the video turn out to not be enciphered */
+		SpeculativeFetch<WatchPageScanner> watchPageFetch = SpeculativeFetch.start(transport, createRequest(WATCH_PAGE_URL + context.videoId), (response) -> {
+			WatchPageScanner scanner = scanWatchPage(context, response);
+			prefetchDecipherFunction(scanner.getJsFileName());
+			
+			return scanner;
+		}, SpeculationExecutorHolder.EXECUTOR);
+		
+		try {
+			return getStreamUrls(context, watchPageFetch);
+		} finally {
+			watchPageFetch.cancel();
+		}
+	}
+	
+	private WatchPageScanner scanWatchPage(ExtractionContext context, TransportResponse response) throws IOException {
+		WatchPageScanner scanner = new WatchPageScanner(context.parseDashManifest);
+		
+		/* Closing the response early drop the connection, the rest of the page is not needed */
+		try (TransportResponse closing = response) {
+			scanner.scan(closing.getBody());
+		}
+		if (LOGGING)
+			Logger.debug("Watch page scanned, bytes read: " + scanner.getBytesRead());
+		
+		return scanner;
+	}
+	
+	private SparseArray<YoutubeVideo> getStreamUrls(ExtractionContext context, SpeculativeFetch<WatchPageScanner> watchPageFetch) throws IOException, InterruptedException {
+		String videoId = context.videoId;
+		
+		String ytInfoUrl = (context.useHttp) ? "http://" : "https://";
+		ytInfoUrl += "www.youtube.com/get_video_info?video_id=" + videoId + "&eurl=" + URLEncoder.encode("https://youtube.googleapis.com/v/" + videoId, "UTF-8");
+		
+		String dashMpdUrl = null;
+		String streamMap;
+		if (LOGGING)
+			Logger.debug("infoUrl: " + ytInfoUrl);
+		try (TransportResponse response = open(ytInfoUrl); BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+			streamMap = reader.readLine();
+		}
+		Matcher mat;
+		String curJsFileName = null;
+		SparseArray<String> encSignatures = null;
+		StreamMapTokenizer tokenizer = null;
+		
+		parseVideoMeta(context, streamMap);
+		
+		if (context.videoMeta.isLiveStream()) {
+			mat = patHlsvp.matcher(streamMap);
+			if (mat.find()) {
+				String hlsvp = URLDecoder.decode(mat.group(1), "UTF-8");
+				SparseArray<YoutubeVideo> ytFiles = new SparseArray<>();
+				
+				try (TransportResponse response = open(hlsvp); BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (line.startsWith("https://") || line.startsWith("http://")) {
+							mat = patHlsItag.matcher(line);
+							if (mat.find()) {
+								int itag = Integer.parseInt(mat.group(1));
+								YoutubeFormat format = formatRegistry.get(itag);
+								
+								if (!context.isFiltered() || context.accepts(format)) {
+									ytFiles.put(itag, new YoutubeVideo(format, line));
+								}
+							}
+						}
+					}
+				}
+				
+				if (ytFiles.size() == 0) {
+					if (LOGGING)
+						Logger.debug(streamMap);
+					return null;
+				}
+				return ytFiles;
+			}
+			return null;
+		}
+		
+		// "use_cipher_signature" disappeared, we check whether at least one ciphered signature
+		// exists int the stream_map.
+		boolean sigEnc = true, statusFail = false;
+		if (streamMap != null && streamMap.contains(STREAM_MAP_STRING)) {
+			String streamMapSub = streamMap.substring(streamMap.indexOf(STREAM_MAP_STRING));
+			mat = patIsSigEnc.matcher(streamMapSub);
+			if (!mat.find()) {
+				sigEnc = false;
+				
+				if (!patStatusOk.matcher(streamMap).find())
+					statusFail = true;
+			}
+		}
+		
+		// Some videos are using a ciphered signature we need to get the
+		// deciphering js-file from the youtubepage.
+		if (sigEnc || statusFail) {
+			// Get the video directly from the youtubepage
+			if (LOGGING)
+				Logger.debug("Get from youtube page");
+			
+			WatchPageScanner scanner;
+			if (watchPageFetch != null) {
+				scanner = watchPageFetch.get();
+			} else {
+				scanner = scanWatchPage(context, open(WATCH_PAGE_URL + videoId));
+			}
+			
+			encSignatures = new SparseArray<>();
+			tokenizer = scanner.createTokenizer();
+			curJsFileName = scanner.getJsFileName();
+			
+			if (context.parseDashManifest) {
+				dashMpdUrl = scanner.get(WatchPageScanner.VALUE_DASH_MPD);
+				if (dashMpdUrl != null) {
+					mat = patDashManifestEncSig.matcher(dashMpdUrl);
+					if (mat.find()) {
+						encSignatures.append(0, mat.group(1));
+					} else {
+						dashMpdUrl = null;
+					}
+				}
+			}
+		} else {
+			if (context.parseDashManifest) {
+				mat = patDashManifest1.matcher(streamMap);
+				if (mat.find()) {
+					dashMpdUrl = URLDecoder.decode(mat.group(1), "UTF-8");
+				}
+			}
+		}
+		
+		if (tokenizer == null) {
+			tokenizer = StreamMapTokenizer.of(streamMap);
+		}
+		SparseArray<YoutubeVideo> ytFiles = new SparseArray<>();
+		while (tokenizer.next()) {
+			int itag = tokenizer.getItag();
+			if (LOGGING)
+				Logger.debug("Itag found:" + itag);
+			
+			/* Checked before anything of the stream is decoded */
+			YoutubeFormat format = formatRegistry.get(itag);
+			if (format == null && (format = formatRegistry.learn(itag, tokenizer.getType(), tokenizer.getSize(), tokenizer.getFps(), tokenizer.getBitrate())) == null) {
+				if (LOGGING)
+					Logger.debug("Itag not in list and not describable:" + itag);
+				continue;
+			} else if (!context.accepts(format)) {
+				continue;
+			}
+			
+			if (curJsFileName != null) {
+				String encSignature = tokenizer.getSignature();
+				if (encSignature != null) {
+					encSignatures.append(itag, encSignature);
+				}
+			}
+			
+			String url = tokenizer.getUrl();
+			if (url != null) {
+				ytFiles.put(itag, new YoutubeVideo(format, url));
+			}
+		}
+		
+		if (encSignatures != null) {
+			if (LOGGING)
+				Logger.debug("Decipher signatures: " + encSignatures.size() + ", videos: " + ytFiles.size());
+			DecipherResult decipherResult = decipherSignature(curJsFileName, encSignatures);
+			if (!decipherResult.isSuccessful()) {
+				if (LOGGING)
+					Logger.error("Failed to decipher signatures: " + decipherResult.getFailureReason());
+				return null;
+			} else {
+				String[] sigs = decipherResult.getSignatures();
+				for (int i = 0; i < encSignatures.size() && i < sigs.length; i++) {
+					int key = encSignatures.keyAt(i);
+					if (key == 0) {
+						dashMpdUrl = dashMpdUrl.replace("/s/" + encSignatures.get(key), "/signature/" + sigs[i]);
+					} else {
+						YoutubeVideo video = ytFiles.get(key);
+						ytFiles.put(key, new YoutubeVideo(video.getFormat(), video.getUrl() + "&signature=" + sigs[i]));
+					}
+				}
+			}
+		}
+		
+		if (context.parseDashManifest && dashMpdUrl != null && context.acceptsDash()) {
+			for (int i = 0; i < DASH_PARSE_BACKOFF.getMaxAttempts(); i++) {
+				if (i != 0) {
+					DASH_PARSE_BACKOFF.await(i - 1);
+				}
+				
+				try {
+					// It sometimes fails to connect for no apparent reason. We just retry.
+					parseDashManifest(context, dashMpdUrl, ytFiles);
+					break;
+				} catch (HttpStatusException exception) {
+					if (LOGGING)
+						Logger.debug("Failed to get dash manifest " + (i + 1) + ": " + exception.getStatusCode());
+					
+					/* Retrying a client error will not change anything */
+					if (exception.getStatusCode() / 100 == 4 && exception.getStatusCode() != 429) {
+						break;
+					}
+				} catch (IOException io) {
+					if (LOGGING)
+						Logger.debug("Failed to parse dash manifest " + (i + 1));
+				}
+			}
+		}
+		
+		if (ytFiles.size() == 0) {
+			if (LOGGING)
+				Logger.debug(streamMap);
+			return null;
+		}
+		return ytFiles;
+	}
+	
+	private DecipherResult decipherSignature(String jsFileName, final SparseArray<String> encSignatures) throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + decipherTimeout;
+		DecipherFunction function;
+		
+		if (jsFileName == null) {
+			// Assume the functions don't change that much
+			function = decipherCache.getLatest();
+			
+			if (function == null) {
+				return DecipherResult.failure("No player js file found");
+			}
+		} else {
+			function = decipherCache.get(jsFileName);
+			
+			if (function == null) {
+				/* Join the speculative download if one is running */
+				function = fetchDecipherFunction(jsFileName);
+				
+				if (function == null) {
+					return DecipherResult.failure("Decipher function not found in " + jsFileName);
+				}
+			}
+		}
+		
+		String[] signatures = new String[encSignatures.size()];
+		for (int i = 0; i < signatures.length; i++) {
+			signatures[i] = encSignatures.valueAt(i);
+		}
+		
+		return decipher(function, signatures, deadline);
+	}
+	
+	/**
+	 * Download and cache the decipher function of a player version, sharing the download with the concurrent callers asking for the same version, and with the other processes using the same cache directory.
+	 */
+	private DecipherFunction fetchDecipherFunction(final String jsFileName) throws IOException, InterruptedException {
+		return playerJsFlights.execute(jsFileName, () -> decipherCache.getOrLoad(jsFileName, () -> extractDecipherFunction(jsFileName)));
+	}
+	
+	/**
+	 * Start downloading a player version in background if it is not cached yet, so it may be ready once the stream map turn out to be enciphered.
+	 */
+	private void prefetchDecipherFunction(final String jsFileName) {
+		if (jsFileName == null || playerJsFlights.isInFlight(jsFileName) || decipherCache.peek(jsFileName) != null) {
+			return;
+		}
+		
+		SpeculationExecutorHolder.EXECUTOR.execute(() -> {
+			try {
+				fetchDecipherFunction(jsFileName);
+			} catch (IOException | RuntimeException exception) {
+				/* The extraction download it again if it needs it */
+				if (LOGGING)
+					Logger.debug("Speculative player js fetch failed: " + exception);
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+	
+	private DecipherFunction extractDecipherFunction(String decipherJsFileName) throws IOException, InterruptedException {
+		String decipherFunctUrl = PLAYER_JS_URL + decipherJsFileName;
+		
+		if (LOGGING)
+			Logger.debug("Decipher FunctURL: " + decipherFunctUrl);
+		return parseDecipherFunction(decipherJsFileName, open(decipherFunctUrl));
+	}
+	
+	private DecipherFunction parseDecipherFunction(String decipherJsFileName, TransportResponse response) throws IOException {
+		String javascriptFile;
+		try (TransportResponse closing = response; BufferedReader reader = new BufferedReader(new InputStreamReader(closing.getBody(), StandardCharsets.UTF_8))) {
+			StringBuilder sb = new StringBuilder("");
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line);
+				sb.append(" ");
+			}
+			javascriptFile = sb.toString();
+		}
+		
+		Matcher mat = patSignatureDecFunction.matcher(javascriptFile);
+		if (!mat.find()) {
+			return null;
+		}
+		
+		String decipherFunctionName = mat.group(1);
+		if (LOGGING)
+			Logger.debug("Decipher Functname: " + decipherFunctionName);
+		
+		Pattern patMainVariable = Pattern.compile("(var |\\s|,|;)" + decipherFunctionName.replace("$", "\\$") + "(=function\\((.{1,3})\\)\\{)");
+		
+		String mainDecipherFunct;
+		
+		mat = patMainVariable.matcher(javascriptFile);
+		if (mat.find()) {
+			mainDecipherFunct = "var " + decipherFunctionName + mat.group(2);
+		} else {
+			Pattern patMainFunction = Pattern.compile("function " + decipherFunctionName.replace("$", "\\$") + "(\\((.{1,3})\\)\\{)");
+			mat = patMainFunction.matcher(javascriptFile);
+			if (!mat.find())
+				return null;
+			mainDecipherFunct = "function " + decipherFunctionName + mat.group(2);
+		}
+		
+		int startIndex = mat.end();
+		
+		for (int braces = 1, i = startIndex; i < javascriptFile.length(); i++) {
+			if (braces == 0 && startIndex + 5 < i) {
+				mainDecipherFunct += javascriptFile.substring(startIndex, i) + ";";
+				break;
+			}
+			if (javascriptFile.charAt(i) == '{')
+				braces++;
+			else if (javascriptFile.charAt(i) == '}')
+				braces--;
+		}
+		String decipherFunctions = mainDecipherFunct;
+		// Search the main function for extra functions and variables
+		// needed for deciphering
+		// Search for variables
+		mat = patVariableFunction.matcher(mainDecipherFunct);
+		while (mat.find()) {
+			String variableDef = "var " + mat.group(2) + "={";
+			if (decipherFunctions.contains(variableDef)) {
+				continue;
+			}
+			startIndex = javascriptFile.indexOf(variableDef) + variableDef.length();
+			for (int braces = 1, i = startIndex; i < javascriptFile.length(); i++) {
+				if (braces == 0) {
+					decipherFunctions += variableDef + javascriptFile.substring(startIndex, i) + ";";
+					break;
+				}
+				if (javascriptFile.charAt(i) == '{')
+					braces++;
+				else if (javascriptFile.charAt(i) == '}')
+					braces--;
+			}
+		}
+		// Search for functions
+		mat = patFunction.matcher(mainDecipherFunct);
+		while (mat.find()) {
+			String functionDef = "function " + mat.group(2) + "(";
+			if (decipherFunctions.contains(functionDef)) {
+				continue;
+			}
+			startIndex = javascriptFile.indexOf(functionDef) + functionDef.length();
+			for (int braces = 0, i = startIndex; i < javascriptFile.length(); i++) {
+				if (braces == 0 && startIndex + 5 < i) {
+					decipherFunctions += functionDef + javascriptFile.substring(startIndex, i) + ";";
+					break;
+				}
+				if (javascriptFile.charAt(i) == '{')
+					braces++;
+				else if (javascriptFile.charAt(i) == '}')
+					braces--;
+			}
+		}
+		
+		if (LOGGING)
+			Logger.debug("Decipher Function: " + decipherFunctions);
+		
+		return new DecipherFunction(decipherJsFileName, decipherFunctionName, decipherFunctions);
+	}
+	
+	private void parseDashManifest(final ExtractionContext context, String dashMpdUrl, SparseArray<YoutubeVideo> ytFiles) throws IOException, InterruptedException {
+		final SparseArray<YoutubeVideo> dashFiles = new SparseArray<>();
+		
+		try (TransportResponse response = open(dashMpdUrl)) {
+			DashManifestParser.parse(response.getBody(), (representation, url) -> {
+				Matcher matcher = patDashItag.matcher(url);
+				if (!matcher.find()) {
+					return;
+				}
+				
+				int itag = Integer.parseInt(matcher.group(1));
+				YoutubeFormat format = formatRegistry.get(itag);
+				if (format == null && representation.getMimeType() != null && representation.getCodecs() != null) {
+					format = formatRegistry.learn(itag, representation.getMimeType() + "; codecs=\"" + representation.getCodecs() + "\"", representation.getHeight(), representation.getFrameRate(), representation.getBandwidth());
+				}
+				
+				if (!context.accepts(format)) {
+					return;
+				}
+				
+				dashFiles.put(itag, new YoutubeVideo(format, url, representation));
+			});
+		}
+		
+		/* Only added once the whole manifest has been read, so a failed attempt don't leave half of it */
+		for (int i = 0; i < dashFiles.size(); i++) {
+			ytFiles.put(dashFiles.keyAt(i), dashFiles.valueAt(i));
+		}
+	}
+	
+	private void parseVideoMeta(ExtractionContext context, String getVideoInfo) throws UnsupportedEncodingException {
+		String title = null, author = null, channelId = null;
+		long viewCount = 0, length = 0;
+		boolean isLiveStream = false;
+		
+		Matcher matcher = patTitle.matcher(getVideoInfo);
+		if (matcher.find()) {
+			title = URLDecoder.decode(matcher.group(1), "UTF-8");
+		}
+		
+		matcher = patHlsvp.matcher(getVideoInfo);
+		if (matcher.find()) {
+			isLiveStream = true;
+		}
+		
+		matcher = patAuthor.matcher(getVideoInfo);
+		if (matcher.find()) {
+			author = URLDecoder.decode(matcher.group(1), "UTF-8");
+		}
+		
+		matcher = patChannelId.matcher(getVideoInfo);
+		if (matcher.find()) {
+			channelId = matcher.group(1);
+		}
+		
+		matcher = patLength.matcher(getVideoInfo);
+		if (matcher.find()) {
+			length = Long.parseLong(matcher.group(1));
+		}
+		
+		matcher = patViewCount.matcher(getVideoInfo);
+		if (matcher.find()) {
+			viewCount = Long.parseLong(matcher.group(1));
+		}
+		
+		context.videoMeta = new VideoMeta(context.videoId, title, null, author, channelId, length, viewCount, isLiveStream);
+	}
+	
+	private DecipherResult decipher(DecipherFunction function, String[] encSignatures, long deadline) throws InterruptedException {
+		if (!function.isCompiled()) {
+			if (LOGGING)
+				Logger.debug("Decipher function not recognized, falling back to the script engine");
+			
+			if (decipherBatcher == null) {
+				return decipherViaScriptEngine(function, encSignatures, deadline);
+			}
+			
+			try {
+				return decipherBatcher.submit(function, encSignatures).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException exception) {
+				return DecipherResult.failure("Timed out waiting for the batch", exception);
+			} catch (ExecutionException exception) {
+				return DecipherResult.failure("Batch failed", exception.getCause());
+			}
+		}
+		
+		String[] signatures = new String[encSignatures.length];
+		for (int i = 0; i < signatures.length; i++) {
+			signatures[i] = function.program.decipher(encSignatures[i]);
+		}
+		
+		return DecipherResult.success(signatures);
+	}
+	
+	private DecipherResult decipherViaScriptEngine(DecipherFunction function, String[] encSignatures, long deadline) throws InterruptedException {
+		ScriptEnginePool.PooledScriptEngine pooled = ScriptEnginePoolHolder.POOL.acquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		
+		if (pooled == null) {
+			return DecipherResult.failure(ScriptEnginePoolHolder.POOL.isAvailable() ? "Timed out waiting for a script engine" : "No script engine available");
+		}
+		
+		try {
+			String[] signatures = new String[encSignatures.length];
+			for (int i = 0; i < signatures.length; i++) {
+				if (System.nanoTime() - deadline > 0) {
+					return DecipherResult.failure("Timed out while deciphering");
+				}
+				
+				signatures[i] = pooled.decipher(function, encSignatures[i]);
+			}
+			
+			return DecipherResult.success(signatures);
+		} catch (Exception exception) {
+			return DecipherResult.failure("Script failed", exception);
+		} finally {
+			ScriptEnginePoolHolder.POOL.release(pooled);
+		}
+	}
+	
+	/**
+	 * Lazy holder of the script engine pool, only created if a decipher function can't be compiled.
+	 */
+	private static class ScriptEnginePoolHolder {
+		
+		/* Constants */
+		private static final ScriptEnginePool POOL = new ScriptEnginePool(Runtime.getRuntime().availableProcessors());
+		
+	}
+	
+	/**
+	 * Lazy holder of the executor reading the speculative responses.
+	 */
+	private static class SpeculationExecutorHolder {
+		
+		/* Constants */
+		private static final AtomicInteger COUNT = new AtomicInteger();
+		private static final Executor EXECUTOR = Executors.newCachedThreadPool((runnable) -> {
+			Thread thread = new Thread(runnable, "youtube-speculative-" + COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+	}
+	
+	/**
+	 * Builder for immutable {@link YouTubeExtractionEngine} configurations.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private String cacheDirectory = DEFAULT_CACHE_DIRECTORY;
+		private boolean useHttp = false;
+		private long decipherTimeout = DEFAULT_DECIPHER_TIMEOUT;
+		private int decipherBatchSize = 0;
+		private long decipherBatchLinger = 0;
+		private HttpTransport transport = null;
+		private boolean speculativeFetch = false;
+		private int resultCacheEntries = 0;
+		private long resultCacheBytes = 0;
+		private long resultExpiryMargin = DEFAULT_RESULT_EXPIRY_MARGIN;
+		private FormatRegistry formatRegistry = null;
+		
+		/**
+		 * Directory used to cache the decipher functions. Default: {@value YouTubeExtractionEngine#DEFAULT_CACHE_DIRECTORY}
+		 * 
+		 * @return Itself
+		 */
+		public Builder cacheDirectory(String cacheDirectory) {
+			this.cacheDirectory = cacheDirectory;
+			
+			return this;
+		}
+		
+		/**
+		 * Set default protocol of the returned urls to HTTP instead of HTTPS. HTTP may be blocked in some regions so HTTPS is the default value.
+		 * <p/>
+		 * Note: Enciphered videos require HTTPS so they are not affected by this.
+		 * 
+		 * @return Itself
+		 */
+		public Builder defaultHttpProtocol(boolean useHttp) {
+			this.useHttp = useHttp;
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum time spent deciphering the signatures of a video (player js excluded), the extraction fail as soon as it is exceeded. Default: {@value YouTubeExtractionEngine#DEFAULT_DECIPHER_TIMEOUT} milliseconds
+		 * 
+		 * @return Itself
+		 */
+		public Builder decipherTimeout(long timeout, TimeUnit unit) {
+			this.decipherTimeout = unit.toMillis(timeout);
+			
+			return this;
+		}
+		
+		/**
+		 * Batch the signatures that need the script engine across concurrent extractions using the same player js file, so they are all deciphered in one pass. Default: disabled
+		 * <p/>
+		 * Note: Signatures deciphered by a compiled {@link DecipherProgram} are never batched, they don't need to.
+		 * 
+		 * @param maxBatchSize
+		 *            Signature count that trigger an immediate flush
+		 * @param maxLinger
+		 *            Maximum time a signature wait for its batch to be filled
+		 * @param unit
+		 *            Linger time's unit
+		 * @return Itself
+		 */
+		public Builder decipherBatching(int maxBatchSize, long maxLinger, TimeUnit unit) {
+			this.decipherBatchSize = maxBatchSize;
+			this.decipherBatchLinger = unit.toMillis(maxLinger);
+			
+			return this;
+		}
+		
+		/**
+		 * Transport used for every request of the engine. Default: {@link HttpClientTransport#getShared()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder transport(HttpTransport transport) {
+			this.transport = transport;
+			
+			return this;
+		}
+		
+		/**
+		 * Fetch the watch page in parallel of <code>get_video_info</code>, and the player js as soon as its file name is known, instead of waiting to know if they are needed. An unused watch page is dropped, a player js is cached for the next extractions. Default: disabled
+		 * <p/>
+		 * Note: This cut the latency of the enciphered videos roughly in half, at the cost of a wasted watch page request for the others.
+		 * 
+		 * @return Itself
+		 */
+		public Builder speculativeFetch(boolean speculativeFetch) {
+			this.speculativeFetch = speculativeFetch;
+			
+			return this;
+		}
+		
+		/**
+		 * Cache the extraction results until their stream urls expire (as given by their <code>expire</code> parameter) minus a safety margin. Results without any expiration are never cached. Default: disabled
+		 * <p/>
+		 * Note: The cached videos are copied for every caller, so they can be modified freely.
+		 * 
+		 * @param maxEntries
+		 *            Maximum cached result count, the least recently used are evicted first
+		 * @param maxBytes
+		 *            Maximum estimated memory size of the cache in bytes, or 0 to only bound the entry count
+		 * @return Itself
+		 */
+		public Builder resultCache(int maxEntries, long maxBytes) {
+			if (maxEntries <= 0) {
+				throw new IllegalArgumentException("The maximum entry count must be positive");
+			}
+			
+			this.resultCacheEntries = maxEntries;
+			this.resultCacheBytes = maxBytes;
+			
+			return this;
+		}
+		
+		/**
+		 * Time removed from the url expiration to get the time a result stay cached, so the returned urls are still valid for a while. Default: {@value YouTubeExtractionEngine#DEFAULT_RESULT_EXPIRY_MARGIN} milliseconds
+		 * 
+		 * @return Itself
+		 */
+		public Builder resultExpiryMargin(long margin, TimeUnit unit) {
+			this.resultExpiryMargin = unit.toMillis(margin);
+			
+			return this;
+		}
+		
+		/**
+		 * Registry the formats are looked up in, the itags missing from it are described from the stream map or the DASH manifest and learned. Give a registry backed by a file to keep them for the next startup. Default: {@link FormatRegistry#getDefault()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder formatRegistry(FormatRegistry formatRegistry) {
+			this.formatRegistry = formatRegistry;
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new engine with this configuration
+		 */
+		public YouTubeExtractionEngine build() {
+			return new YouTubeExtractionEngine(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
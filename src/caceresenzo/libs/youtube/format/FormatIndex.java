@@ -0,0 +1,334 @@
+package caceresenzo.libs.youtube.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import caceresenzo.libs.array.SparseArray;
+import caceresenzo.libs.youtube.video.DashRepresentation;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Immutable index of formats, answering {@link FormatQuery} without scanning.
+ * <p/>
+ * Formats are ranked from the best to the worst (height, then fps, then audio bitrate). Since the heights are sorted, the height bounds of a query are two binary searches giving a range of ranks. Every other criteria (kind, codecs, extension, HLS) is a precomputed bitmask over the ranks, so a query is a few <code>AND</code> of words and the best match is the lowest set bit in the range. Nothing is allocated while selecting.
+ * 
+ * @author Enzo CACERES
+ */
+public final class FormatIndex {
+	
+	/* Variables */
+	private final YoutubeFormat[] ranked;
+	private final int[] heights;
+	private final int[] rankByItag;
+	private final long[] all, notHls, empty;
+	private final long[][] kindMasks, videoCodecMasks, audioCodecMasks;
+	private final Map<String, long[]> extensionMasks;
+	
+	/* Constructor */
+	private FormatIndex(List<YoutubeFormat> formats) {
+		List<YoutubeFormat> sorted = new ArrayList<>(formats);
+		Collections.sort(sorted, (first, second) -> {
+			int comparison = Integer.compare(second.getHeight(), first.getHeight());
+			if (comparison == 0) {
+				comparison = Integer.compare(second.getFps(), first.getFps());
+			}
+			if (comparison == 0) {
+				comparison = Integer.compare(second.getAudioBitrate(), first.getAudioBitrate());
+			}
+			
+			return comparison != 0 ? comparison : Integer.compare(first.getItag(), second.getItag());
+		});
+		
+		int count = sorted.size();
+		int words = (count + 63) >>> 6;
+		int maxItag = 0;
+		
+		this.ranked = sorted.toArray(new YoutubeFormat[count]);
+		this.heights = new int[count];
+		this.all = new long[words];
+		this.notHls = new long[words];
+		this.empty = new long[words];
+		this.kindMasks = new long[FormatQuery.Kind.values().length][words];
+		this.videoCodecMasks = new long[VideoCodec.values().length][words];
+		this.audioCodecMasks = new long[AudioCodec.values().length][words];
+		this.extensionMasks = new HashMap<>();
+		
+		for (int rank = 0; rank < count; rank++) {
+			YoutubeFormat format = ranked[rank];
+			int word = rank >>> 6;
+			long bit = 1L << rank;
+			
+			heights[rank] = format.getHeight();
+			maxItag = Math.max(maxItag, format.getItag());
+			
+			all[word] |= bit;
+			kindMasks[FormatQuery.Kind.ANY.ordinal()][word] |= bit;
+			kindMasks[FormatQuery.Kind.of(format).ordinal()][word] |= bit;
+			videoCodecMasks[format.getVideoCodec().ordinal()][word] |= bit;
+			audioCodecMasks[format.getAudioCodec().ordinal()][word] |= bit;
+			extensionMasks.computeIfAbsent(format.getExtension(), (extension) -> new long[words])[word] |= bit;
+			
+			if (!format.isHlsContent()) {
+				notHls[word] |= bit;
+			}
+		}
+		
+		this.rankByItag = new int[maxItag + 1];
+		Arrays.fill(rankByItag, -1);
+		for (int rank = 0; rank < count; rank++) {
+			rankByItag[ranked[rank].getItag()] = rank;
+		}
+	}
+	
+	/**
+	 * @param itag
+	 *            Format itag
+	 * @return The indexed format, or null if unknown
+	 */
+	public YoutubeFormat get(int itag) {
+		int rank = itag >= 0 && itag < rankByItag.length ? rankByItag[itag] : -1;
+		
+		return rank != -1 ? ranked[rank] : null;
+	}
+	
+	/**
+	 * @return Indexed format count
+	 */
+	public int size() {
+		return ranked.length;
+	}
+	
+	/**
+	 * Select the best format matching a query, among every indexed format.
+	 * 
+	 * @param query
+	 *            Query to run
+	 * @return The best matching format, or null if none
+	 */
+	public YoutubeFormat select(FormatQuery query) {
+		int rank = find(query, null, bandwidthLimit(query), 0);
+		
+		return rank != -1 ? ranked[rank] : null;
+	}
+	
+	/**
+	 * Select the best video matching a query, among the extracted ones.
+	 * 
+	 * @param query
+	 *            Query to run
+	 * @param videos
+	 *            Extracted videos, by itag
+	 * @return The best matching video, or null if none
+	 */
+	public YoutubeVideo select(FormatQuery query, SparseArray<YoutubeVideo> videos) {
+		int rank = find(query, videos, bandwidthLimit(query), 0);
+		
+		return rank != -1 ? videos.get(ranked[rank].getItag()) : null;
+	}
+	
+	/**
+	 * Select the best video only and audio only pair, for example the best VP9 video and the best Opus audio, whose total bandwidth fit a limit.
+	 * <p/>
+	 * The best video is preferred: the videos are tried from the best to the worst, each with the best audio that still fit in the remaining bandwidth.
+	 * 
+	 * @param videoQuery
+	 *            Query of the video stream
+	 * @param audioQuery
+	 *            Query of the audio stream
+	 * @param videos
+	 *            Extracted videos, by itag
+	 * @param maxBandwidth
+	 *            Maximum total bandwidth in kbit/s, or {@link FormatQuery#UNSPECIFIED}
+	 * @return The best pair, or null if none
+	 */
+	public Pair selectPair(FormatQuery videoQuery, FormatQuery audioQuery, SparseArray<YoutubeVideo> videos, int maxBandwidth) {
+		long limit = maxBandwidth != FormatQuery.UNSPECIFIED ? maxBandwidth * 1000L : Long.MAX_VALUE;
+		long videoLimit = Math.min(limit, bandwidthLimit(videoQuery));
+		
+		for (int videoRank = find(videoQuery, videos, videoLimit, 0); videoRank != -1; videoRank = find(videoQuery, videos, videoLimit, videoRank + 1)) {
+			YoutubeVideo video = videos.get(ranked[videoRank].getItag());
+			
+			int audioRank = find(audioQuery, videos, Math.min(limit - bandwidthOf(video, ranked[videoRank]), bandwidthLimit(audioQuery)), 0);
+			if (audioRank != -1) {
+				return new Pair(video, videos.get(ranked[audioRank].getItag()));
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @param start
+	 *            First rank to consider
+	 * @return Rank of the best match at or after the start, or -1
+	 */
+	private int find(FormatQuery query, SparseArray<YoutubeVideo> videos, long maxBandwidth, int start) {
+		int from = Math.max(start, query.maxHeight != FormatQuery.UNSPECIFIED ? firstAtMost(query.maxHeight) : 0);
+		int to = query.minHeight != FormatQuery.UNSPECIFIED ? firstAtMost(query.minHeight - 1) : ranked.length;
+		
+		long[] kind = kindMasks[query.kind.ordinal()];
+		long[] videoCodec = query.videoCodec != null ? videoCodecMasks[query.videoCodec.ordinal()] : all;
+		long[] audioCodec = query.audioCodec != null ? audioCodecMasks[query.audioCodec.ordinal()] : all;
+		long[] extension = query.extension != null ? extensionMasks.getOrDefault(query.extension, empty) : all;
+		long[] hls = query.includeHls ? all : notHls;
+		
+		for (int word = from >>> 6; from < to && word <= (to - 1) >>> 6; word++) {
+			long bits = kind[word] & videoCodec[word] & audioCodec[word] & extension[word] & hls[word];
+			
+			/* Restrict the word to the [from, to[ range */
+			if (word == from >>> 6) {
+				bits &= -1L << from;
+			}
+			if (word == (to - 1) >>> 6) {
+				bits &= -1L >>> (63 - ((to - 1) & 63));
+			}
+			
+			while (bits != 0) {
+				int rank = (word << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				
+				YoutubeFormat format = ranked[rank];
+				if (query.maxFps != FormatQuery.UNSPECIFIED && format.getFps() > query.maxFps) {
+					continue;
+				}
+				
+				YoutubeVideo video = null;
+				if (videos != null && (video = videos.get(format.getItag())) == null) {
+					continue;
+				}
+				
+				if (maxBandwidth != Long.MAX_VALUE && bandwidthOf(video, format) > maxBandwidth) {
+					continue;
+				}
+				
+				return rank;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * @return First rank whose height is lower or equal, heights being sorted in descending order
+	 */
+	private int firstAtMost(int height) {
+		int low = 0, high = heights.length;
+		
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			
+			if (heights[middle] > height) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		
+		return low;
+	}
+	
+	private static long bandwidthLimit(FormatQuery query) {
+		return query.maxBandwidth != FormatQuery.UNSPECIFIED ? query.maxBandwidth * 1000L : Long.MAX_VALUE;
+	}
+	
+	/**
+	 * @return Bandwidth in bit/s, from the DASH manifest or the audio bitrate, 0 if unknown
+	 */
+	private static long bandwidthOf(YoutubeVideo video, YoutubeFormat format) {
+		DashRepresentation representation = video != null ? video.getRepresentation() : null;
+		
+		if (representation != null && representation.getBandwidth() > 0) {
+			return representation.getBandwidth();
+		}
+		
+		return format.getAudioBitrate() > 0 ? format.getAudioBitrate() * 1000L : 0;
+	}
+	
+	/**
+	 * Build a new index with one more format, this one is left unchanged.
+	 * 
+	 * @param format
+	 *            Format to add, replacing the indexed one of the same itag
+	 * @return A new index
+	 */
+	FormatIndex with(YoutubeFormat format) {
+		List<YoutubeFormat> formats = new ArrayList<>(ranked.length + 1);
+		
+		for (YoutubeFormat indexed : ranked) {
+			if (indexed.getItag() != format.getItag()) {
+				formats.add(indexed);
+			}
+		}
+		formats.add(format);
+		
+		return new FormatIndex(formats);
+	}
+	
+	/**
+	 * Build an index.
+	 * 
+	 * @param formats
+	 *            Formats to index, by itag
+	 * @return A new index, not updated if the formats change
+	 */
+	public static FormatIndex of(SparseArray<YoutubeFormat> formats) {
+		List<YoutubeFormat> list = new ArrayList<>(formats.size());
+		
+		for (int index = 0; index < formats.size(); index++) {
+			if (formats.valueAt(index) != null) {
+				list.add(formats.valueAt(index));
+			}
+		}
+		
+		return new FormatIndex(list);
+	}
+	
+	/**
+	 * @return Current index of the default {@link FormatRegistry}, with the formats of {@link YoutubeFormat#FORMAT_MAP} and the ones learned so far
+	 */
+	public static FormatIndex getDefault() {
+		return FormatRegistry.getDefault().getIndex();
+	}
+	
+	/**
+	 * Video only and audio only streams selected together.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static final class Pair {
+		
+		/* Variables */
+		private final YoutubeVideo video, audio;
+		
+		/* Constructor */
+		private Pair(YoutubeVideo video, YoutubeVideo audio) {
+			this.video = video;
+			this.audio = audio;
+		}
+		
+		/**
+		 * @return Video only stream
+		 */
+		public YoutubeVideo getVideo() {
+			return video;
+		}
+		
+		/**
+		 * @return Audio only stream
+		 */
+		public YoutubeVideo getAudio() {
+			return audio;
+		}
+		
+		@Override
+		public String toString() {
+			return "FormatIndex.Pair[video=" + video + ", audio=" + audio + "]";
+		}
+		
+	}
+	
+}
\ No newline at end of file
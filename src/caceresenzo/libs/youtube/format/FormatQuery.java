@@ -0,0 +1,270 @@
+package caceresenzo.libs.youtube.format;
+
+/**
+ * Immutable description of the wanted formats, ran against a {@link FormatIndex}.
+ * <p/>
+ * For example, the best muxed mp4 up to 720p:
+ * 
+ * <pre>
+ * new FormatQuery.Builder().muxed().extension("mp4").maxHeight(720).build()
+ * </pre>
+ * 
+ * When several formats match, the best one has the highest height, then the highest fps, then the highest audio bitrate.
+ * 
+ * @author Enzo CACERES
+ */
+public final class FormatQuery {
+	
+	/* Constants */
+	public static final int UNSPECIFIED = -1;
+	public static final FormatQuery ANY = new Builder().build();
+	
+	/* Variables */
+	final Kind kind;
+	final VideoCodec videoCodec;
+	final AudioCodec audioCodec;
+	final String extension;
+	final int minHeight, maxHeight, maxFps, maxBandwidth;
+	final boolean includeHls;
+	
+	/* Constructor */
+	private FormatQuery(Builder builder) {
+		this.kind = builder.kind;
+		this.videoCodec = builder.videoCodec;
+		this.audioCodec = builder.audioCodec;
+		this.extension = builder.extension;
+		this.minHeight = builder.minHeight;
+		this.maxHeight = builder.maxHeight;
+		this.maxFps = builder.maxFps;
+		this.maxBandwidth = builder.maxBandwidth;
+		this.includeHls = builder.includeHls;
+	}
+	
+	/**
+	 * Check a single format, without looking at the bandwidth. Prefer a {@link FormatIndex} to search among many formats.
+	 * 
+	 * @param format
+	 *            Format to check
+	 * @return If the format is matched by this query
+	 */
+	public boolean matches(YoutubeFormat format) {
+		if (format == null || !kind.matches(format) || (!includeHls && format.isHlsContent())) {
+			return false;
+		}
+		
+		if ((videoCodec != null && format.getVideoCodec() != videoCodec) || (audioCodec != null && format.getAudioCodec() != audioCodec)) {
+			return false;
+		}
+		
+		if (extension != null && !extension.equals(format.getExtension())) {
+			return false;
+		}
+		
+		if ((minHeight != UNSPECIFIED && format.getHeight() < minHeight) || (maxHeight != UNSPECIFIED && format.getHeight() > maxHeight)) {
+			return false;
+		}
+		
+		return maxFps == UNSPECIFIED || format.getFps() <= maxFps;
+	}
+	
+	/**
+	 * @return Kind of stream
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * @return Maximum bandwidth in kbit/s, or {@link #UNSPECIFIED}
+	 */
+	public int getMaxBandwidth() {
+		return maxBandwidth;
+	}
+	
+	@Override
+	public String toString() {
+		return "FormatQuery[kind=" + kind + ", videoCodec=" + videoCodec + ", audioCodec=" + audioCodec + ", extension=" + extension + ", minHeight=" + minHeight + ", maxHeight=" + maxHeight + ", maxFps=" + maxFps + ", maxBandwidth=" + maxBandwidth + ", includeHls=" + includeHls + "]";
+	}
+	
+	/**
+	 * Kind of stream a format hold.
+	 */
+	public static enum Kind {
+		
+		/** Any stream */
+		ANY,
+		
+		/** Video and audio in the same stream */
+		MUXED,
+		
+		/** Video only DASH stream */
+		VIDEO_ONLY,
+		
+		/** Audio only DASH stream */
+		AUDIO_ONLY;
+		
+		/**
+		 * @return If a format is of this kind
+		 */
+		public boolean matches(YoutubeFormat format) {
+			return this == ANY || this == of(format);
+		}
+		
+		/**
+		 * @return Kind of a format, never {@link #ANY}
+		 */
+		public static Kind of(YoutubeFormat format) {
+			if (format.getAudioCodec() == AudioCodec.NONE) {
+				return VIDEO_ONLY;
+			} else if (format.getVideoCodec() == VideoCodec.NONE) {
+				return AUDIO_ONLY;
+			}
+			
+			return MUXED;
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link FormatQuery}, every criteria is optional.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private Kind kind = Kind.ANY;
+		private VideoCodec videoCodec = null;
+		private AudioCodec audioCodec = null;
+		private String extension = null;
+		private int minHeight = UNSPECIFIED, maxHeight = UNSPECIFIED, maxFps = UNSPECIFIED, maxBandwidth = UNSPECIFIED;
+		private boolean includeHls = false;
+		
+		/**
+		 * @return Itself
+		 */
+		public Builder kind(Kind kind) {
+			this.kind = kind;
+			
+			return this;
+		}
+		
+		/**
+		 * Only video and audio in the same stream.
+		 * 
+		 * @return Itself
+		 */
+		public Builder muxed() {
+			return kind(Kind.MUXED);
+		}
+		
+		/**
+		 * Only video only DASH streams.
+		 * 
+		 * @return Itself
+		 */
+		public Builder videoOnly() {
+			return kind(Kind.VIDEO_ONLY);
+		}
+		
+		/**
+		 * Only audio only DASH streams.
+		 * 
+		 * @return Itself
+		 */
+		public Builder audioOnly() {
+			return kind(Kind.AUDIO_ONLY);
+		}
+		
+		/**
+		 * @return Itself
+		 */
+		public Builder videoCodec(VideoCodec videoCodec) {
+			this.videoCodec = videoCodec;
+			
+			return this;
+		}
+		
+		/**
+		 * @return Itself
+		 */
+		public Builder audioCodec(AudioCodec audioCodec) {
+			this.audioCodec = audioCodec;
+			
+			return this;
+		}
+		
+		/**
+		 * @param extension
+		 *            Extension like "mp4" or {@link YoutubeFormat#WEBM}
+		 * @return Itself
+		 */
+		public Builder extension(String extension) {
+			this.extension = extension;
+			
+			return this;
+		}
+		
+		/**
+		 * @return Itself
+		 */
+		public Builder minHeight(int minHeight) {
+			this.minHeight = minHeight;
+			
+			return this;
+		}
+		
+		/**
+		 * @return Itself
+		 */
+		public Builder maxHeight(int maxHeight) {
+			this.maxHeight = maxHeight;
+			
+			return this;
+		}
+		
+		/**
+		 * @return Itself
+		 */
+		public Builder maxFps(int maxFps) {
+			this.maxFps = maxFps;
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum bandwidth in kbit/s. The DASH manifest bandwidth is used when known, else the audio bitrate; streams without any known bandwidth are not limited.
+		 * 
+		 * @return Itself
+		 */
+		public Builder maxBandwidth(int maxBandwidth) {
+			this.maxBandwidth = maxBandwidth;
+			
+			return this;
+		}
+		
+		/**
+		 * Include the HLS live stream formats. Default: false
+		 * 
+		 * @return Itself
+		 */
+		public Builder includeHls(boolean includeHls) {
+			this.includeHls = includeHls;
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new query with these criteria
+		 */
+		public FormatQuery build() {
+			if (kind == null) {
+				throw new IllegalArgumentException("The kind can not be null");
+			}
+			
+			return new FormatQuery(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,416 @@
+package caceresenzo.libs.youtube.format;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import caceresenzo.libs.logger.Logger;
+
+/**
+ * Registry of the known formats, seeded with {@link YoutubeFormat#FORMAT_MAP} and completed at runtime with the itags youtube start serving.
+ * <p/>
+ * An unknown itag is described from what the stream map or the DASH manifest tell about it (mime type and codecs, size, fps and bitrate). The registry publish a new {@link FormatIndex} for every learned format: the index is swapped copy-on-write with a compare-and-set, so the readers are never locked and always see a complete index. Learned formats can be saved to a file, and are loaded back by the next registry using it.
+ * 
+ * @author Enzo CACERES
+ */
+public final class FormatRegistry {
+	
+	/* Constants */
+	public static final int DEFAULT_FPS = 30;
+	
+	/* Private Constants */
+	private static final String HEADER = "# itag extension height fps videoCodec audioCodec audioBitrate dash";
+	private static final int FIELD_COUNT = 8;
+	
+	/* Variables */
+	private final AtomicReference<FormatIndex> index;
+	private final ConcurrentMap<Integer, YoutubeFormat> learned;
+	private final Path file;
+	
+	/* Constructor */
+	public FormatRegistry() {
+		this(null);
+	}
+	
+	/**
+	 * @param file
+	 *            File the learned formats are saved to and loaded from, null to keep them in memory only
+	 */
+	public FormatRegistry(Path file) {
+		this.index = new AtomicReference<>(FormatIndex.of(YoutubeFormat.FORMAT_MAP));
+		this.learned = new ConcurrentHashMap<>();
+		this.file = file;
+		
+		if (file != null) {
+			load();
+		}
+	}
+	
+	/**
+	 * @param itag
+	 *            Format itag
+	 * @return The known format, or null if unknown
+	 */
+	public YoutubeFormat get(int itag) {
+		return index.get().get(itag);
+	}
+	
+	/**
+	 * @return Index of every known format, not updated by the formats learned after
+	 */
+	public FormatIndex getIndex() {
+		return index.get();
+	}
+	
+	/**
+	 * Learn an itag from a stream map entry.
+	 * 
+	 * @param itag
+	 *            Format itag
+	 * @param type
+	 *            Mime type with codecs, like <code>video/mp4; codecs="avc1.640028"</code>
+	 * @param size
+	 *            Video size, like <code>1920x1080</code>, null for audio or if unknown
+	 * @param fps
+	 *            Frames per second, or a negative value if unknown
+	 * @param bitrate
+	 *            Bitrate in bit/s, or a negative value if unknown
+	 * @return The known format, the learned one, or null if it can not be described
+	 * @see #learn(int, String, int, int, long)
+	 */
+	public YoutubeFormat learn(int itag, String type, String size, int fps, long bitrate) {
+		return learn(itag, type, parseHeight(size), fps, bitrate);
+	}
+	
+	/**
+	 * Learn an itag, if not already known.
+	 * 
+	 * @param itag
+	 *            Format itag
+	 * @param type
+	 *            Mime type with codecs, like <code>audio/webm; codecs="opus"</code>
+	 * @param height
+	 *            Video height, or a negative value for audio or if unknown
+	 * @param fps
+	 *            Frames per second, or a negative value if unknown
+	 * @param bitrate
+	 *            Bitrate in bit/s, or a negative value if unknown
+	 * @return The known format, the learned one, or null if it can not be described
+	 */
+	public YoutubeFormat learn(int itag, String type, int height, int fps, long bitrate) {
+		YoutubeFormat known = get(itag);
+		if (known != null) {
+			return known;
+		}
+		
+		YoutubeFormat format = describe(itag, type, height, fps, bitrate);
+		if (format == null) {
+			return null;
+		}
+		
+		YoutubeFormat published = publish(format);
+		if (published == format) {
+			learned.put(itag, format);
+			
+			if (file != null) {
+				save();
+			}
+		}
+		
+		return published;
+	}
+	
+	/**
+	 * Publish a format in a new index, unless another thread already did for the same itag.
+	 * 
+	 * @return The published format
+	 */
+	private YoutubeFormat publish(YoutubeFormat format) {
+		while (true) {
+			FormatIndex current = index.get();
+			
+			YoutubeFormat existing = current.get(format.getItag());
+			if (existing != null) {
+				return existing;
+			}
+			
+			if (index.compareAndSet(current, current.with(format))) {
+				return format;
+			}
+		}
+	}
+	
+	/**
+	 * @return Formats learned at runtime or loaded from the file, by ascending itag
+	 */
+	public List<YoutubeFormat> getLearnedFormats() {
+		List<YoutubeFormat> formats = new ArrayList<>(learned.values());
+		formats.sort((first, second) -> Integer.compare(first.getItag(), second.getItag()));
+		
+		return Collections.unmodifiableList(formats);
+	}
+	
+	/**
+	 * @return File the learned formats are saved to, or null if none
+	 */
+	public Path getFile() {
+		return file;
+	}
+	
+	/**
+	 * Save the learned formats to the file, done automatically every time a format is learned. The file is written to a temporary file then renamed, so it is never half written.
+	 * 
+	 * @throws IllegalStateException
+	 *             If this registry has no file
+	 */
+	public synchronized void save() {
+		if (file == null) {
+			throw new IllegalStateException("This registry has no file");
+		}
+		
+		try {
+			Path directory = file.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			
+			Path temporary = Files.createTempFile(directory, "formats", ".tmp");
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+					writer.write(HEADER + "\n");
+					
+					for (YoutubeFormat format : getLearnedFormats()) {
+						writer.write(format.getItag() + " " + format.getExtension() + " " + format.getHeight() + " " + format.getFps() + " " + format.getVideoCodec() + " " + format.getAudioCodec() + " " + format.getAudioBitrate() + " " + format.isDashContainer() + "\n");
+					}
+				}
+				
+				try {
+					Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException exception) {
+					Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		} catch (IOException exception) {
+			Logger.exception(exception, "Failed to save learned formats to " + file);
+		}
+	}
+	
+	/**
+	 * Load the formats saved to the file, malformed lines and already known itags are ignored.
+	 */
+	private void load() {
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		
+		List<YoutubeFormat> formats = new ArrayList<>();
+		
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				
+				String[] fields = line.split(" ");
+				if (fields.length != FIELD_COUNT) {
+					continue;
+				}
+				
+				try {
+					formats.add(new YoutubeFormat(Integer.parseInt(fields[0]), fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), VideoCodec.valueOf(fields[4]), AudioCodec.valueOf(fields[5]), Integer.parseInt(fields[6]), Boolean.parseBoolean(fields[7]), false));
+				} catch (IllegalArgumentException exception) {
+					continue;
+				}
+			}
+		} catch (IOException exception) {
+			Logger.exception(exception, "Failed to load learned formats from " + file);
+			return;
+		}
+		
+		for (YoutubeFormat format : formats) {
+			if (publish(format) == format) {
+				learned.put(format.getItag(), format);
+			}
+		}
+	}
+	
+	/**
+	 * Describe a format from its mime type and codecs.
+	 * <p/>
+	 * The container give the extension (<code>mp4</code>, or <code>m4a</code> for audio only, <code>webm</code> and <code>3gp</code>), the codecs give the stream kind: a single codec is a DASH stream. The audio bitrate is only known for audio only streams, as the bitrate of a muxed stream is mostly the video's.
+	 * 
+	 * @param itag
+	 *            Format itag
+	 * @param type
+	 *            Mime type with codecs, like <code>video/webm; codecs="vp9"</code>
+	 * @param height
+	 *            Video height, or a negative value for audio or if unknown
+	 * @param fps
+	 *            Frames per second, or a negative value if unknown
+	 * @param bitrate
+	 *            Bitrate in bit/s, or a negative value if unknown
+	 * @return A new format, or null if the container or a codec is not supported
+	 */
+	public static YoutubeFormat describe(int itag, String type, int height, int fps, long bitrate) {
+		if (type == null) {
+			return null;
+		}
+		
+		String mimeType = type, codecs = null;
+		
+		int separator = type.indexOf(';');
+		if (separator != -1) {
+			mimeType = type.substring(0, separator);
+			
+			int codecsStart = type.indexOf("codecs=", separator);
+			if (codecsStart != -1) {
+				codecs = type.substring(codecsStart + "codecs=".length()).replace("\"", "");
+			}
+		}
+		
+		mimeType = mimeType.trim().toLowerCase(Locale.ROOT);
+		
+		int slash = mimeType.indexOf('/');
+		if (slash == -1 || codecs == null) {
+			return null;
+		}
+		
+		boolean audioType = mimeType.startsWith("audio");
+		VideoCodec videoCodec = VideoCodec.NONE;
+		AudioCodec audioCodec = AudioCodec.NONE;
+		int codecCount = 0;
+		
+		for (String codec : codecs.split(",")) {
+			codec = codec.trim().toLowerCase(Locale.ROOT);
+			if (codec.isEmpty()) {
+				continue;
+			}
+			
+			VideoCodec parsedVideo = parseVideoCodec(codec);
+			AudioCodec parsedAudio = parseAudioCodec(codec);
+			
+			if (parsedVideo != null && !audioType) {
+				videoCodec = parsedVideo;
+			} else if (parsedAudio != null) {
+				audioCodec = parsedAudio;
+			} else {
+				return null;
+			}
+			
+			codecCount++;
+		}
+		
+		if (codecCount == 0) {
+			return null;
+		}
+		
+		String extension;
+		switch (mimeType.substring(slash + 1)) {
+			case "mp4": {
+				extension = videoCodec == VideoCodec.NONE ? "m4a" : "mp4";
+				break;
+			}
+			
+			case "webm": {
+				extension = YoutubeFormat.WEBM;
+				break;
+			}
+			
+			case "3gpp": {
+				extension = "3gp";
+				break;
+			}
+			
+			default: {
+				return null;
+			}
+		}
+		
+		boolean audioOnly = videoCodec == VideoCodec.NONE;
+		
+		int formatHeight = !audioOnly && height > 0 ? height : YoutubeFormat.UNSPECIFIED_VIDEO_HEIGHT;
+		int formatFps = !audioOnly && fps > 0 ? fps : DEFAULT_FPS;
+		int audioBitrate = audioOnly && bitrate > 0 ? (int) (bitrate / 1000) : YoutubeFormat.UNSPECIFIED_AUDIO_BITRATE;
+		
+		return new YoutubeFormat(itag, extension, formatHeight, formatFps, videoCodec, audioCodec, audioBitrate, codecCount == 1, false);
+	}
+	
+	private static VideoCodec parseVideoCodec(String codec) {
+		if (codec.startsWith("avc1") || codec.startsWith("avc3")) {
+			return VideoCodec.H264;
+		} else if (codec.startsWith("vp9") || codec.startsWith("vp09")) {
+			return VideoCodec.VP9;
+		} else if (codec.startsWith("vp8")) {
+			return VideoCodec.VP8;
+		} else if (codec.startsWith("av01")) {
+			return VideoCodec.AV1;
+		} else if (codec.startsWith("mp4v")) {
+			return VideoCodec.MPEG4;
+		}
+		
+		return null;
+	}
+	
+	private static AudioCodec parseAudioCodec(String codec) {
+		if (codec.startsWith("mp4a")) {
+			return AudioCodec.AAC;
+		} else if (codec.startsWith("opus")) {
+			return AudioCodec.OPUS;
+		} else if (codec.startsWith("vorbis")) {
+			return AudioCodec.VORBIS;
+		} else if (codec.startsWith("mp3")) {
+			return AudioCodec.MP3;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @param size
+	 *            Video size, like <code>1280x720</code>
+	 * @return The height, or {@link YoutubeFormat#UNSPECIFIED_VIDEO_HEIGHT} if not parsable
+	 */
+	static int parseHeight(String size) {
+		if (size == null) {
+			return YoutubeFormat.UNSPECIFIED_VIDEO_HEIGHT;
+		}
+		
+		int separator = size.indexOf('x');
+		try {
+			return Integer.parseInt(size.substring(separator + 1).trim());
+		} catch (NumberFormatException exception) {
+			return YoutubeFormat.UNSPECIFIED_VIDEO_HEIGHT;
+		}
+	}
+	
+	/**
+	 * @return Registry shared by default, in memory only
+	 */
+	public static FormatRegistry getDefault() {
+		return DefaultHolder.REGISTRY;
+	}
+	
+	/**
+	 * Lazy holder of the default registry.
+	 */
+	private static class DefaultHolder {
+		
+		/* Constants */
+		private static final FormatRegistry REGISTRY = new FormatRegistry();
+		
+	}
+	
+}
\ No newline at end of file
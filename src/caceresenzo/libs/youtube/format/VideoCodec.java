@@ -2,6 +2,6 @@ package caceresenzo.libs.youtube.format;
 
 public enum VideoCodec {
 	
-	H263, H264, MPEG4, VP8, VP9, NONE
+	H263, H264, MPEG4, VP8, VP9, AV1, NONE
 
 }
\ No newline at end of file
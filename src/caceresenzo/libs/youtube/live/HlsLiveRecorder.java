@@ -0,0 +1,515 @@
+package caceresenzo.libs.youtube.live;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.network.RetryBackoff;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Recorder of a live stream, from one of its HLS variants (itags 91 to 96).
+ * <p/>
+ * The media playlist is polled at the rhythm asked by the HLS specification, only the segments with a media sequence above the last seen one are considered new. A playlist ending below the last seen sequence is a restarted stream: it is counted as a discontinuity and the recording resume from its live edge. New segments are downloaded in parallel into reused direct buffers, and written to the output strictly in order, as soon as every segment before them has been written.
+ * <p/>
+ * A recorder can only record once.
+ * 
+ * @author Enzo CACERES
+ */
+public class HlsLiveRecorder {
+	
+	/* Constants */
+	public static final int DEFAULT_PARALLELISM = 3;
+	public static final int DEFAULT_LIVE_EDGE_SEGMENTS = 3;
+	public static final int DEFAULT_MAX_PLAYLIST_FAILURES = 5;
+	
+	/* Private Constants */
+	private static final int INITIAL_BUFFER_SIZE = 512 * 1024;
+	private static final RetryBackoff SEGMENT_BACKOFF = new RetryBackoff(3, 200, 2000, TimeUnit.MILLISECONDS);
+	private static final RetryBackoff PLAYLIST_BACKOFF = new RetryBackoff(DEFAULT_MAX_PLAYLIST_FAILURES, 500, 5000, TimeUnit.MILLISECONDS);
+	
+	/* Variables */
+	private final HttpTransport transport;
+	private final int parallelism, liveEdgeSegments, maxPlaylistFailures;
+	private final Queue<ByteBuffer> buffers;
+	private final AtomicBoolean started;
+	private final CompletableFuture<Void> stopSignal;
+	private final AtomicLong segmentsWritten, bytesWritten, missedSegments, failedSegments, discontinuities, playlistRefreshes, playlistFailures, lastLag, maxLag, totalLag;
+	private final AtomicInteger pendingSegments;
+	
+	/* Constructor */
+	public HlsLiveRecorder() {
+		this(new Builder());
+	}
+	
+	/* Constructor */
+	private HlsLiveRecorder(Builder builder) {
+		this.transport = builder.transport != null ? builder.transport : HttpClientTransport.getShared();
+		this.parallelism = builder.parallelism;
+		this.liveEdgeSegments = builder.liveEdgeSegments;
+		this.maxPlaylistFailures = builder.maxPlaylistFailures;
+		this.buffers = new ConcurrentLinkedQueue<>();
+		this.started = new AtomicBoolean();
+		this.stopSignal = new CompletableFuture<>();
+		this.segmentsWritten = new AtomicLong();
+		this.bytesWritten = new AtomicLong();
+		this.missedSegments = new AtomicLong();
+		this.failedSegments = new AtomicLong();
+		this.discontinuities = new AtomicLong();
+		this.playlistRefreshes = new AtomicLong();
+		this.playlistFailures = new AtomicLong();
+		this.lastLag = new AtomicLong();
+		this.maxLag = new AtomicLong();
+		this.totalLag = new AtomicLong();
+		this.pendingSegments = new AtomicInteger();
+	}
+	
+	/**
+	 * Record a live stream into a file, replacing it.
+	 * 
+	 * @see #record(YoutubeVideo, WritableByteChannel)
+	 */
+	public LiveRecordingStats record(YoutubeVideo video, Path file) throws IOException, InterruptedException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return record(video, channel);
+		}
+	}
+	
+	/**
+	 * Record a live stream, blocking until the stream is over or {@link #stop()} is called.
+	 * 
+	 * @param video
+	 *            HLS video, as extracted from a live stream
+	 * @param channel
+	 *            Output, not closed
+	 * @return Final stats
+	 * @throws IllegalArgumentException
+	 *             If the video is not an HLS variant
+	 * @throws IllegalStateException
+	 *             If this recorder has already been used
+	 * @throws IOException
+	 *             If the output failed, or the playlist could not be refreshed too many times in a row
+	 * @throws InterruptedException
+	 *             If interrupted while recording
+	 */
+	public LiveRecordingStats record(YoutubeVideo video, WritableByteChannel channel) throws IOException, InterruptedException {
+		if (video.getFormat() == null || !video.getFormat().isHlsContent()) {
+			throw new IllegalArgumentException("Not an HLS video: " + video.getFormat());
+		}
+		
+		return record(video.getUrl(), channel);
+	}
+	
+	/**
+	 * Record a live stream from its media playlist url.
+	 * 
+	 * @see #record(YoutubeVideo, WritableByteChannel)
+	 */
+	public LiveRecordingStats record(String playlistUrl, WritableByteChannel channel) throws IOException, InterruptedException {
+		if (!started.compareAndSet(false, true)) {
+			throw new IllegalStateException("This recorder has already been used");
+		}
+		
+		final AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, (runnable) -> {
+			Thread thread = new Thread(runnable, "youtube-live-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		Deque<PendingSegment> pendings = new ArrayDeque<>();
+		long lastSequence = -1;
+		int failureCount = 0;
+		
+		try {
+			while (!isStopped()) {
+				long pollStart = System.nanoTime();
+				
+				HlsMediaPlaylist playlist;
+				try {
+					playlist = HlsMediaPlaylist.parse(playlistUrl, transport.send(new TransportRequest(playlistUrl)).requireSuccessful().readString(StandardCharsets.UTF_8));
+					
+					playlistRefreshes.incrementAndGet();
+					failureCount = 0;
+				} catch (IOException | IllegalArgumentException exception) {
+					playlistFailures.incrementAndGet();
+					
+					if (++failureCount >= maxPlaylistFailures) {
+						throw new IOException("Failed to refresh the playlist " + failureCount + " times in a row", exception);
+					}
+					
+					writeReady(pendings, channel, pollStart + TimeUnit.MILLISECONDS.toNanos(PLAYLIST_BACKOFF.computeDelay(failureCount - 1)), false);
+					continue;
+				}
+				
+				long discoveredAt = System.currentTimeMillis();
+				boolean changed = false, reset = false;
+				
+				/* The sequence restarted lower (stream restart, encoder reconnect), everything would be skipped forever */
+				if (lastSequence != -1 && !playlist.getSegments().isEmpty() && playlist.getLastSequence() < lastSequence) {
+					discontinuities.incrementAndGet();
+					lastSequence = -1;
+					reset = true;
+				}
+				
+				for (final HlsMediaPlaylist.Segment segment : playlist.getSegments()) {
+					if (lastSequence == -1) {
+						/* Start close to the live edge, like players do */
+						if (segment.sequence <= playlist.getLastSequence() - liveEdgeSegments) {
+							continue;
+						}
+					} else if (segment.sequence <= lastSequence) {
+						continue;
+					} else if (segment.sequence > lastSequence + 1) {
+						missedSegments.addAndGet(segment.sequence - lastSequence - 1);
+					}
+					
+					if (segment.discontinuity && !reset) {
+						discontinuities.incrementAndGet();
+					}
+					reset = false;
+					
+					pendings.add(new PendingSegment(discoveredAt, CompletableFuture.supplyAsync(() -> download(segment), executor)));
+					pendingSegments.incrementAndGet();
+					
+					lastSequence = segment.sequence;
+					changed = true;
+				}
+				
+				if (playlist.isEnded()) {
+					writeReady(pendings, channel, 0, true);
+					break;
+				}
+				
+				/* The playlist should be reloaded after a target duration, or half of it if it didn't change */
+				long interval = (long) (playlist.getTargetDuration() * (changed ? 1000 : 500));
+				writeReady(pendings, channel, pollStart + TimeUnit.MILLISECONDS.toNanos(interval), false);
+			}
+		} finally {
+			for (PendingSegment pending : pendings) {
+				pending.future.cancel(true);
+			}
+			
+			pendingSegments.set(0);
+			executor.shutdownNow();
+		}
+		
+		return getStats();
+	}
+	
+	/**
+	 * Write the segments that are ready, in order, then wait for the rest of the time left before the deadline.
+	 * 
+	 * @param drain
+	 *            Wait for every pending segment instead of stopping at the deadline
+	 */
+	private void writeReady(Deque<PendingSegment> pendings, WritableByteChannel channel, long deadline, boolean drain) throws IOException, InterruptedException {
+		while (!pendings.isEmpty()) {
+			PendingSegment head = pendings.peek();
+			
+			if (!head.future.isDone()) {
+				long remaining = deadline - System.nanoTime();
+				
+				if ((!drain && remaining <= 0) || isStopped()) {
+					return;
+				}
+				
+				try {
+					CompletableFuture<Object> either = CompletableFuture.anyOf(head.future, stopSignal);
+					
+					if (drain) {
+						either.get();
+					} else {
+						either.get(remaining, TimeUnit.NANOSECONDS);
+					}
+				} catch (TimeoutException exception) {
+					return;
+				} catch (ExecutionException exception) {
+					;
+				}
+				
+				if (!head.future.isDone()) {
+					return;
+				}
+			}
+			
+			pendings.poll();
+			pendingSegments.decrementAndGet();
+			
+			ByteBuffer buffer;
+			try {
+				buffer = head.future.join();
+			} catch (CompletionException | CancellationException exception) {
+				failedSegments.incrementAndGet();
+				continue;
+			}
+			
+			try {
+				int size = buffer.remaining();
+				
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				
+				long lag = System.currentTimeMillis() - head.discoveredAt;
+				segmentsWritten.incrementAndGet();
+				bytesWritten.addAndGet(size);
+				lastLag.set(lag);
+				maxLag.accumulateAndGet(lag, Math::max);
+				totalLag.addAndGet(lag);
+			} finally {
+				releaseBuffer(buffer);
+			}
+		}
+		
+		long remaining = deadline - System.nanoTime();
+		if (!drain && remaining > 0) {
+			try {
+				stopSignal.get(remaining, TimeUnit.NANOSECONDS);
+			} catch (TimeoutException | ExecutionException exception) {
+				;
+			}
+		}
+	}
+	
+	private ByteBuffer download(HlsMediaPlaylist.Segment segment) {
+		IOException failure = null;
+		
+		try {
+			for (int attempt = 0; attempt < SEGMENT_BACKOFF.getMaxAttempts(); attempt++) {
+				if (attempt != 0) {
+					SEGMENT_BACKOFF.await(attempt - 1);
+				}
+				
+				try (TransportResponse response = transport.send(new TransportRequest(segment.url)).requireSuccessful()) {
+					return readFully(response);
+				} catch (IOException exception) {
+					failure = exception;
+				}
+			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted");
+		}
+		
+		throw new CompletionException(failure);
+	}
+	
+	private ByteBuffer readFully(TransportResponse response) throws IOException {
+		String contentLength = response.getHeader(TransportResponse.HEADER_CONTENT_LENGTH);
+		int expectedSize = 0;
+		
+		if (contentLength != null) {
+			try {
+				expectedSize = Integer.parseInt(contentLength.trim());
+			} catch (NumberFormatException exception) {
+				;
+			}
+		}
+		
+		ByteBuffer buffer = acquireBuffer(Math.max(expectedSize, 1));
+		ReadableByteChannel input = Channels.newChannel(response.getBody());
+		ByteBuffer probe = ByteBuffer.allocate(1);
+		
+		/* Sized from the announced length, so a segment that match it fill the buffer exactly */
+		if (expectedSize > 0) {
+			buffer.limit(expectedSize);
+		}
+		
+		try {
+			while (true) {
+				if (!buffer.hasRemaining()) {
+					/* Probe a single byte for the end instead of growing a buffer that may already hold everything */
+					probe.clear();
+					
+					int read;
+					while ((read = input.read(probe)) == 0) {
+						;
+					}
+					
+					if (read == -1) {
+						break;
+					}
+					
+					if (buffer.limit() < buffer.capacity()) {
+						buffer.limit(buffer.capacity());
+					} else {
+						ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+						
+						buffer.flip();
+						grown.put(buffer);
+						releaseBuffer(buffer);
+						buffer = grown;
+					}
+					
+					probe.flip();
+					buffer.put(probe);
+					continue;
+				}
+				
+				if (input.read(buffer) == -1) {
+					break;
+				}
+			}
+		} catch (IOException exception) {
+			releaseBuffer(buffer);
+			throw exception;
+		}
+		
+		buffer.flip();
+		return buffer;
+	}
+	
+	private ByteBuffer acquireBuffer(int minimumCapacity) {
+		ByteBuffer buffer = buffers.poll();
+		
+		if (buffer == null || buffer.capacity() < minimumCapacity) {
+			return ByteBuffer.allocateDirect(Math.max(minimumCapacity, INITIAL_BUFFER_SIZE));
+		}
+		
+		buffer.clear();
+		return buffer;
+	}
+	
+	private void releaseBuffer(ByteBuffer buffer) {
+		/* Direct buffers are expensive to allocate, keep a few of them */
+		if (buffers.size() < parallelism * 2) {
+			buffers.offer(buffer);
+		}
+	}
+	
+	/**
+	 * Stop the recording, the segments not written yet are dropped. Can be called from any thread.
+	 */
+	public void stop() {
+		stopSignal.complete(null);
+	}
+	
+	/**
+	 * @return If {@link #stop()} has been called
+	 */
+	public boolean isStopped() {
+		return stopSignal.isDone();
+	}
+	
+	/**
+	 * @return Current stats, can be called while recording
+	 */
+	public LiveRecordingStats getStats() {
+		return new LiveRecordingStats(segmentsWritten.get(), bytesWritten.get(), missedSegments.get(), failedSegments.get(), discontinuities.get(), playlistRefreshes.get(), playlistFailures.get(), lastLag.get(), maxLag.get(), totalLag.get(), pendingSegments.get());
+	}
+	
+	/**
+	 * Segment being downloaded.
+	 */
+	private static class PendingSegment {
+		
+		/* Variables */
+		private final long discoveredAt;
+		private final CompletableFuture<ByteBuffer> future;
+		
+		/* Constructor */
+		private PendingSegment(long discoveredAt, CompletableFuture<ByteBuffer> future) {
+			this.discoveredAt = discoveredAt;
+			this.future = future;
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link HlsLiveRecorder}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private HttpTransport transport = null;
+		private int parallelism = DEFAULT_PARALLELISM;
+		private int liveEdgeSegments = DEFAULT_LIVE_EDGE_SEGMENTS;
+		private int maxPlaylistFailures = DEFAULT_MAX_PLAYLIST_FAILURES;
+		
+		/**
+		 * Transport used for the playlist and the segments. Default: {@link HttpClientTransport#getShared()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder transport(HttpTransport transport) {
+			this.transport = transport;
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum segments downloaded at the same time. Default: {@value HlsLiveRecorder#DEFAULT_PARALLELISM}
+		 * 
+		 * @return Itself
+		 */
+		public Builder parallelism(int parallelism) {
+			if (parallelism <= 0) {
+				throw new IllegalArgumentException("The parallelism must be positive");
+			}
+			
+			this.parallelism = parallelism;
+			
+			return this;
+		}
+		
+		/**
+		 * Segments already in the playlist that are recorded when starting. Default: {@value HlsLiveRecorder#DEFAULT_LIVE_EDGE_SEGMENTS}
+		 * 
+		 * @return Itself
+		 */
+		public Builder liveEdgeSegments(int liveEdgeSegments) {
+			this.liveEdgeSegments = Math.max(1, liveEdgeSegments);
+			
+			return this;
+		}
+		
+		/**
+		 * Consecutive playlist refresh failures that stop the recording. Default: {@value HlsLiveRecorder#DEFAULT_MAX_PLAYLIST_FAILURES}
+		 * 
+		 * @return Itself
+		 */
+		public Builder maxPlaylistFailures(int maxPlaylistFailures) {
+			this.maxPlaylistFailures = Math.max(1, maxPlaylistFailures);
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new recorder with this configuration
+		 */
+		public HlsLiveRecorder build() {
+			return new HlsLiveRecorder(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package caceresenzo.libs.youtube.live;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed HLS media playlist, only keeping what a recorder need.
+ * 
+ * @author Enzo CACERES
+ */
+final class HlsMediaPlaylist {
+	
+	/* Private Constants */
+	private static final String TAG_TARGET_DURATION = "#EXT-X-TARGETDURATION:";
+	private static final String TAG_MEDIA_SEQUENCE = "#EXT-X-MEDIA-SEQUENCE:";
+	private static final String TAG_SEGMENT_INFO = "#EXTINF:";
+	private static final String TAG_DISCONTINUITY = "#EXT-X-DISCONTINUITY";
+	private static final String TAG_END_LIST = "#EXT-X-ENDLIST";
+	
+	private static final double DEFAULT_TARGET_DURATION = 5;
+	
+	/* Variables */
+	private final double targetDuration;
+	private final long mediaSequence;
+	private final List<Segment> segments;
+	private final boolean ended;
+	
+	/* Constructor */
+	private HlsMediaPlaylist(double targetDuration, long mediaSequence, List<Segment> segments, boolean ended) {
+		this.targetDuration = targetDuration;
+		this.mediaSequence = mediaSequence;
+		this.segments = Collections.unmodifiableList(segments);
+		this.ended = ended;
+	}
+	
+	/**
+	 * @return Maximum segment duration in seconds
+	 */
+	double getTargetDuration() {
+		return targetDuration;
+	}
+	
+	/**
+	 * @return Sequence number of the first segment
+	 */
+	long getMediaSequence() {
+		return mediaSequence;
+	}
+	
+	/**
+	 * @return Segments, in sequence order
+	 */
+	List<Segment> getSegments() {
+		return segments;
+	}
+	
+	/**
+	 * @return Sequence number of the last segment, or <code>mediaSequence - 1</code> if there is none
+	 */
+	long getLastSequence() {
+		return mediaSequence + segments.size() - 1;
+	}
+	
+	/**
+	 * @return If the stream is over and the playlist will not change anymore
+	 */
+	boolean isEnded() {
+		return ended;
+	}
+	
+	/**
+	 * Parse a media playlist.
+	 * 
+	 * @param playlistUrl
+	 *            Url of the playlist, used to resolve relative segment urls
+	 * @param content
+	 *            Playlist content
+	 * @return Parsed playlist
+	 * @throws IllegalArgumentException
+	 *             If the content is not an HLS playlist
+	 */
+	static HlsMediaPlaylist parse(String playlistUrl, String content) {
+		if (!content.startsWith("#EXTM3U")) {
+			throw new IllegalArgumentException("Not an HLS playlist");
+		}
+		
+		URI base = URI.create(playlistUrl);
+		double targetDuration = DEFAULT_TARGET_DURATION;
+		long mediaSequence = 0;
+		List<Segment> segments = new ArrayList<>();
+		boolean ended = false;
+		
+		double duration = 0;
+		boolean discontinuity = false;
+		
+		for (String line : content.split("\r?\n")) {
+			line = line.trim();
+			
+			if (line.isEmpty()) {
+				continue;
+			} else if (line.startsWith(TAG_TARGET_DURATION)) {
+				targetDuration = parseNumber(line.substring(TAG_TARGET_DURATION.length()), DEFAULT_TARGET_DURATION);
+			} else if (line.startsWith(TAG_MEDIA_SEQUENCE)) {
+				mediaSequence = (long) parseNumber(line.substring(TAG_MEDIA_SEQUENCE.length()), 0);
+			} else if (line.startsWith(TAG_SEGMENT_INFO)) {
+				String value = line.substring(TAG_SEGMENT_INFO.length());
+				int comma = value.indexOf(',');
+				
+				duration = parseNumber(comma != -1 ? value.substring(0, comma) : value, 0);
+			} else if (line.startsWith(TAG_DISCONTINUITY)) {
+				discontinuity = true;
+			} else if (line.startsWith(TAG_END_LIST)) {
+				ended = true;
+			} else if (!line.startsWith("#")) {
+				String url = base.resolve(line).toString();
+				
+				segments.add(new Segment(mediaSequence + segments.size(), url, duration, discontinuity));
+				duration = 0;
+				discontinuity = false;
+			}
+		}
+		
+		return new HlsMediaPlaylist(targetDuration, mediaSequence, segments, ended);
+	}
+	
+	private static double parseNumber(String value, double defaultValue) {
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException exception) {
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * Media segment of a playlist.
+	 */
+	static final class Segment {
+		
+		/* Variables */
+		final long sequence;
+		final String url;
+		final double duration;
+		final boolean discontinuity;
+		
+		/* Constructor */
+		private Segment(long sequence, String url, double duration, boolean discontinuity) {
+			this.sequence = sequence;
+			this.url = url;
+			this.duration = duration;
+			this.discontinuity = discontinuity;
+		}
+		
+	}
+	
+}
\ No newline at end of file
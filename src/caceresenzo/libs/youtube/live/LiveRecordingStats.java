@@ -0,0 +1,121 @@
+package caceresenzo.libs.youtube.live;
+
+/**
+ * Snapshot of the counters of an {@link HlsLiveRecorder}.
+ * 
+ * @author Enzo CACERES
+ */
+public final class LiveRecordingStats {
+	
+	/* Variables */
+	private final long segmentsWritten, bytesWritten;
+	private final long missedSegments, failedSegments, discontinuities;
+	private final long playlistRefreshes, playlistFailures;
+	private final long lastLag, maxLag, totalLag;
+	private final int pendingSegments;
+	
+	/* Constructor */
+	LiveRecordingStats(long segmentsWritten, long bytesWritten, long missedSegments, long failedSegments, long discontinuities, long playlistRefreshes, long playlistFailures, long lastLag, long maxLag, long totalLag, int pendingSegments) {
+		this.segmentsWritten = segmentsWritten;
+		this.bytesWritten = bytesWritten;
+		this.missedSegments = missedSegments;
+		this.failedSegments = failedSegments;
+		this.discontinuities = discontinuities;
+		this.playlistRefreshes = playlistRefreshes;
+		this.playlistFailures = playlistFailures;
+		this.lastLag = lastLag;
+		this.maxLag = maxLag;
+		this.totalLag = totalLag;
+		this.pendingSegments = pendingSegments;
+	}
+	
+	/**
+	 * @return Segments written to the output
+	 */
+	public long getSegmentsWritten() {
+		return segmentsWritten;
+	}
+	
+	/**
+	 * @return Bytes written to the output
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	
+	/**
+	 * @return Segments that left the playlist before being seen, because the playlist was not refreshed fast enough
+	 */
+	public long getMissedSegments() {
+		return missedSegments;
+	}
+	
+	/**
+	 * @return Segments that could not be downloaded and have been skipped
+	 */
+	public long getFailedSegments() {
+		return failedSegments;
+	}
+	
+	/**
+	 * @return Glitches in the recording: missed and failed segments
+	 */
+	public long getGlitches() {
+		return missedSegments + failedSegments;
+	}
+	
+	/**
+	 * @return Discontinuities announced by the playlist
+	 */
+	public long getDiscontinuities() {
+		return discontinuities;
+	}
+	
+	/**
+	 * @return Successful playlist refreshes
+	 */
+	public long getPlaylistRefreshes() {
+		return playlistRefreshes;
+	}
+	
+	/**
+	 * @return Failed playlist refreshes
+	 */
+	public long getPlaylistFailures() {
+		return playlistFailures;
+	}
+	
+	/**
+	 * @return Time in milliseconds between the last written segment being seen in the playlist and being written
+	 */
+	public long getLastLag() {
+		return lastLag;
+	}
+	
+	/**
+	 * @return Maximum lag in milliseconds
+	 */
+	public long getMaxLag() {
+		return maxLag;
+	}
+	
+	/**
+	 * @return Average lag in milliseconds, 0 if nothing has been written
+	 */
+	public long getAverageLag() {
+		return segmentsWritten == 0 ? 0 : totalLag / segmentsWritten;
+	}
+	
+	/**
+	 * @return Segments seen in the playlist but not written yet
+	 */
+	public int getPendingSegments() {
+		return pendingSegments;
+	}
+	
+	@Override
+	public String toString() {
+		return "LiveRecordingStats[segmentsWritten=" + segmentsWritten + ", bytesWritten=" + bytesWritten + ", missedSegments=" + missedSegments + ", failedSegments=" + failedSegments + ", discontinuities=" + discontinuities + ", playlistRefreshes=" + playlistRefreshes + ", playlistFailures=" + playlistFailures + ", lastLag=" + lastLag + ", maxLag=" + maxLag + ", averageLag=" + getAverageLag() + ", pendingSegments=" + pendingSegments + "]";
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package caceresenzo.libs.youtube.mux;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Muxer of a video only and an audio only DASH stream into a single file, without re-encoding and without any external tool.
+ * <p/>
+ * H264 video with AAC audio give a fragmented MP4, VP9 video with Opus or Vorbis audio give a WebM, see {@link MuxContainer#of(caceresenzo.libs.youtube.format.YoutubeFormat, caceresenzo.libs.youtube.format.YoutubeFormat)}. Both inputs are read incrementally and interleaved by timestamp, only one fragment of each is held in memory, so the output is written while they are still downloading.
+ * 
+ * @author Enzo CACERES
+ */
+public class DashMuxer {
+	
+	/* Private Constants */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	/* Variables */
+	private final HttpTransport transport;
+	
+	/* Constructor */
+	public DashMuxer() {
+		this(HttpClientTransport.getShared());
+	}
+	
+	/* Constructor */
+	public DashMuxer(HttpTransport transport) {
+		this.transport = transport;
+	}
+	
+	/**
+	 * Download both streams at the same time and mux them into a file.
+	 * 
+	 * @see #mux(YoutubeVideo, YoutubeVideo, OutputStream)
+	 */
+	public MuxContainer mux(YoutubeVideo video, YoutubeVideo audio, Path file) throws IOException, InterruptedException {
+		try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+			return mux(video, audio, output);
+		}
+	}
+	
+	/**
+	 * Download both streams at the same time and mux them.
+	 * 
+	 * @param video
+	 *            Video only stream
+	 * @param audio
+	 *            Audio only stream
+	 * @param output
+	 *            Muxed output, not closed
+	 * @return The container written
+	 * @throws IllegalArgumentException
+	 *             If the streams can not be muxed together
+	 * @throws IOException
+	 *             If a download failed, a stream is not supported, or if the output failed
+	 * @throws InterruptedException
+	 *             If interrupted while connecting
+	 */
+	public MuxContainer mux(YoutubeVideo video, YoutubeVideo audio, OutputStream output) throws IOException, InterruptedException {
+		MuxContainer container = MuxContainer.of(video.getFormat(), audio.getFormat());
+		
+		try (TransportResponse videoResponse = transport.send(new TransportRequest(video.getUrl())).requireSuccessful(); TransportResponse audioResponse = transport.send(new TransportRequest(audio.getUrl())).requireSuccessful()) {
+			remux(container, videoResponse.getBody(), audioResponse.getBody(), output);
+		}
+		
+		return container;
+	}
+	
+	/**
+	 * Mux two already opened streams, like files downloaded with a {@link caceresenzo.libs.youtube.download.RangeDownloader}.
+	 * 
+	 * @param container
+	 *            Container of both streams
+	 * @param video
+	 *            Video only stream
+	 * @param audio
+	 *            Audio only stream
+	 * @param output
+	 *            Muxed output, not closed
+	 * @throws IOException
+	 *             If a stream could not be read or is not supported, or if the output failed
+	 */
+	public static void remux(MuxContainer container, InputStream video, InputStream audio, OutputStream output) throws IOException {
+		container.createRemuxer().remux(new BufferedInputStream(video, BUFFER_SIZE), new BufferedInputStream(audio, BUFFER_SIZE), output);
+	}
+	
+	/**
+	 * @return Transport used to download the streams
+	 */
+	public HttpTransport getTransport() {
+		return transport;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,401 @@
+package caceresenzo.libs.youtube.mux;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Remuxer of two fragmented MP4 (ISO BMFF) DASH streams into a single fragmented MP4.
+ * <p/>
+ * The output starts with the <code>ftyp</code> of the video stream and a <code>moov</code> declaring both tracks, followed by the <code>moof</code> and <code>mdat</code> pairs of both streams ordered by decode time. Fragments are copied as they are, only their sequence number, track id and absolute data offset (if any) are patched. The <code>sidx</code> index boxes are dropped, they would not describe the output.
+ * 
+ * @author Enzo CACERES
+ */
+final class Mp4Remuxer implements Remuxer {
+	
+	/* Private Constants */
+	private static final int VIDEO_TRACK_ID = 1;
+	private static final int AUDIO_TRACK_ID = 2;
+	
+	private static final int TFHD_BASE_DATA_OFFSET_PRESENT = 0x000001;
+	
+	@Override
+	public void remux(InputStream video, InputStream audio, OutputStream output) throws IOException {
+		Input videoInput = new Input(video, "video");
+		Input audioInput = new Input(audio, "audio");
+		
+		videoInput.readInitialization();
+		audioInput.readInitialization();
+		
+		byte[] moov = createMoov(videoInput, audioInput);
+		output.write(videoInput.ftyp);
+		output.write(moov);
+		
+		long position = videoInput.ftyp.length + moov.length;
+		int sequenceNumber = 1;
+		
+		Fragment videoFragment = videoInput.nextFragment();
+		Fragment audioFragment = audioInput.nextFragment();
+		
+		while (videoFragment != null || audioFragment != null) {
+			boolean isVideo = audioFragment == null || (videoFragment != null && videoFragment.time <= audioFragment.time);
+			Fragment fragment = isVideo ? videoFragment : audioFragment;
+			
+			fragment.patch(sequenceNumber++, isVideo ? VIDEO_TRACK_ID : AUDIO_TRACK_ID, position);
+			output.write(fragment.moof);
+			output.write(fragment.mdat);
+			position += fragment.moof.length + fragment.mdat.length;
+			
+			if (isVideo) {
+				videoFragment = videoInput.nextFragment();
+			} else {
+				audioFragment = audioInput.nextFragment();
+			}
+		}
+		
+		output.flush();
+	}
+	
+	/**
+	 * Build a <code>moov</code> with the movie header of the video stream, and the track of both streams.
+	 */
+	private static byte[] createMoov(Input videoInput, Input audioInput) {
+		byte[] mvhd = videoInput.mvhd.clone();
+		writeInt(mvhd, mvhd.length - 4, AUDIO_TRACK_ID + 1); /* next_track_ID */
+		
+		byte[] videoTrak = withTrackId(videoInput.trak, "tkhd", VIDEO_TRACK_ID);
+		byte[] audioTrak = withTrackId(audioInput.trak, "tkhd", AUDIO_TRACK_ID);
+		byte[] videoTrex = withTrackId(videoInput.trex, null, VIDEO_TRACK_ID);
+		byte[] audioTrex = withTrackId(audioInput.trex, null, AUDIO_TRACK_ID);
+		
+		byte[] mvex = concat("mvex", videoTrex, audioTrex);
+		return concat("moov", mvhd, videoTrak, audioTrak, mvex);
+	}
+	
+	/**
+	 * Copy a <code>trak</code> or a <code>trex</code> with another track id.
+	 * 
+	 * @param childType
+	 *            Type of the child holding the track id, null if it is the box itself
+	 */
+	private static byte[] withTrackId(byte[] box, String childType, int trackId) {
+		byte[] copy = box.clone();
+		
+		if (childType == null) {
+			/* trex: version and flags, then track_ID */
+			writeInt(copy, 12, trackId);
+		} else {
+			/* tkhd: version and flags, creation and modification times (64 bits in version 1), then track_ID */
+			int tkhd = findChild(copy, 0, childType);
+			writeInt(copy, tkhd + 12 + (copy[tkhd + 8] == 1 ? 16 : 8), trackId);
+		}
+		
+		return copy;
+	}
+	
+	private static byte[] concat(String type, byte[]... children) {
+		int size = 8;
+		for (byte[] child : children) {
+			size += child.length;
+		}
+		
+		byte[] box = new byte[size];
+		writeInt(box, 0, size);
+		System.arraycopy(type.getBytes(StandardCharsets.US_ASCII), 0, box, 4, 4);
+		
+		int offset = 8;
+		for (byte[] child : children) {
+			System.arraycopy(child, 0, box, offset, child.length);
+			offset += child.length;
+		}
+		
+		return box;
+	}
+	
+	/**
+	 * Find a direct child of a container box.
+	 * 
+	 * @param data
+	 *            Buffer holding the container
+	 * @param container
+	 *            Offset of the container in the buffer
+	 * @param type
+	 *            Child type
+	 * @return Offset of the first child of this type, or -1 if none
+	 */
+	static int findChild(byte[] data, int container, String type) {
+		return findChild(data, container, type, 0);
+	}
+	
+	/**
+	 * @param from
+	 *            Offset to start the search from, 0 to start from the first child
+	 */
+	private static int findChild(byte[] data, int container, String type, int from) {
+		int end = container + (int) boxSize(data, container);
+		int offset = from != 0 ? from : container + 8;
+		
+		while (offset + 8 <= end) {
+			long size = boxSize(data, offset);
+			if (size < 8 || offset + size > end) {
+				return -1;
+			}
+			
+			if (isType(data, offset, type)) {
+				return offset;
+			}
+			
+			offset += size;
+		}
+		
+		return -1;
+	}
+	
+	private static long boxSize(byte[] data, int offset) {
+		long size = readInt(data, offset) & 0xFFFFFFFFL;
+		
+		return size == 1 ? readLong(data, offset + 8) : size;
+	}
+	
+	private static boolean isType(byte[] data, int offset, String type) {
+		for (int index = 0; index < 4; index++) {
+			if (data[offset + 4 + index] != type.charAt(index)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	static int readInt(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+	
+	static long readLong(byte[] data, int offset) {
+		return ((readInt(data, offset) & 0xFFFFFFFFL) << 32) | (readInt(data, offset + 4) & 0xFFFFFFFFL);
+	}
+	
+	static void writeInt(byte[] data, int offset, int value) {
+		data[offset] = (byte) (value >>> 24);
+		data[offset + 1] = (byte) (value >>> 16);
+		data[offset + 2] = (byte) (value >>> 8);
+		data[offset + 3] = (byte) value;
+	}
+	
+	static void writeLong(byte[] data, int offset, long value) {
+		writeInt(data, offset, (int) (value >>> 32));
+		writeInt(data, offset + 4, (int) value);
+	}
+	
+	/**
+	 * One of the two streams, read box by box.
+	 */
+	private static class Input {
+		
+		/* Variables */
+		private final DataInputStream input;
+		private final String name;
+		private long position, boxPosition;
+		private byte[] ftyp, mvhd, trak, trex;
+		private long timescale;
+		
+		/* Constructor */
+		private Input(InputStream input, String name) {
+			this.input = new DataInputStream(input);
+			this.name = name;
+		}
+		
+		/**
+		 * Read everything up to the <code>moov</code>, included.
+		 */
+		private void readInitialization() throws IOException {
+			byte[] box;
+			
+			while ((box = readBox()) != null) {
+				if (isType(box, 0, "ftyp")) {
+					ftyp = box;
+				} else if (isType(box, 0, "moov")) {
+					readMoov(box);
+					break;
+				}
+			}
+			
+			if (ftyp == null || trak == null) {
+				throw new IOException("No initialization segment found in the " + name + " stream");
+			}
+		}
+		
+		private void readMoov(byte[] moov) throws IOException {
+			int mvhdOffset = findChild(moov, 0, "mvhd");
+			int trakOffset = findChild(moov, 0, "trak");
+			int mvexOffset = findChild(moov, 0, "mvex");
+			
+			if (mvhdOffset == -1 || trakOffset == -1) {
+				throw new IOException("Incomplete moov in the " + name + " stream");
+			}
+			
+			if (mvexOffset == -1) {
+				throw new IOException("The " + name + " stream is not a fragmented MP4");
+			}
+			
+			int trexOffset = findChild(moov, mvexOffset, "trex");
+			if (trexOffset == -1) {
+				throw new IOException("No trex in the " + name + " stream");
+			}
+			
+			mvhd = copyBox(moov, mvhdOffset);
+			trak = copyBox(moov, trakOffset);
+			trex = copyBox(moov, trexOffset);
+			
+			/* mdhd: version and flags, creation and modification times (64 bits in version 1), then timescale */
+			int mdia = findChild(trak, 0, "mdia");
+			int mdhd = mdia != -1 ? findChild(trak, mdia, "mdhd") : -1;
+			if (mdhd == -1) {
+				throw new IOException("No media header in the " + name + " stream");
+			}
+			
+			timescale = readInt(trak, mdhd + 12 + (trak[mdhd + 8] == 1 ? 16 : 8)) & 0xFFFFFFFFL;
+			if (timescale == 0) {
+				throw new IOException("Invalid timescale in the " + name + " stream");
+			}
+		}
+		
+		/**
+		 * @return The next <code>moof</code> and its <code>mdat</code>, or null at the end of the stream
+		 */
+		private Fragment nextFragment() throws IOException {
+			byte[] box;
+			
+			while ((box = readBox()) != null) {
+				if (!isType(box, 0, "moof")) {
+					continue;
+				}
+				
+				byte[] moof = box;
+				long moofPosition = boxPosition;
+				
+				while ((box = readBox()) != null) {
+					if (isType(box, 0, "mdat")) {
+						return new Fragment(moof, moofPosition, box, findDecodeTime(moof) / (double) timescale);
+					}
+				}
+				
+				throw new EOFException("Truncated fragment in the " + name + " stream");
+			}
+			
+			return null;
+		}
+		
+		private long findDecodeTime(byte[] moof) throws IOException {
+			int traf = findChild(moof, 0, "traf");
+			int tfdt = traf != -1 ? findChild(moof, traf, "tfdt") : -1;
+			
+			if (tfdt == -1) {
+				throw new IOException("No decode time in a fragment of the " + name + " stream");
+			}
+			
+			return moof[tfdt + 8] == 1 ? readLong(moof, tfdt + 12) : readInt(moof, tfdt + 12) & 0xFFFFFFFFL;
+		}
+		
+		/**
+		 * @return A whole box, header included, or null at the end of the stream
+		 */
+		private byte[] readBox() throws IOException {
+			int first = input.read();
+			if (first == -1) {
+				return null;
+			}
+			
+			byte[] header = new byte[16];
+			header[0] = (byte) first;
+			input.readFully(header, 1, 7);
+			
+			int headerSize = 8;
+			long size = readInt(header, 0) & 0xFFFFFFFFL;
+			
+			if (size == 1) {
+				input.readFully(header, 8, 8);
+				headerSize = 16;
+				size = readLong(header, 8);
+			} else if (size == 0) {
+				throw new IOException("Boxes extending to the end of the " + name + " stream are not supported");
+			}
+			
+			if (size < headerSize || size > MAX_FRAGMENT_SIZE) {
+				throw new IOException("Invalid box size " + size + " in the " + name + " stream");
+			}
+			
+			byte[] box = new byte[(int) size];
+			System.arraycopy(header, 0, box, 0, headerSize);
+			input.readFully(box, headerSize, box.length - headerSize);
+			
+			boxPosition = position;
+			position += size;
+			
+			return box;
+		}
+		
+		private static byte[] copyBox(byte[] data, int offset) {
+			byte[] box = new byte[(int) boxSize(data, offset)];
+			System.arraycopy(data, offset, box, 0, box.length);
+			
+			return box;
+		}
+		
+	}
+	
+	/**
+	 * A <code>moof</code> and its <code>mdat</code>.
+	 */
+	private static class Fragment {
+		
+		/* Variables */
+		private final byte[] moof, mdat;
+		private final long moofPosition;
+		private final double time;
+		
+		/* Constructor */
+		private Fragment(byte[] moof, long moofPosition, byte[] mdat, double time) {
+			this.moof = moof;
+			this.moofPosition = moofPosition;
+			this.mdat = mdat;
+			this.time = time;
+		}
+		
+		/**
+		 * Patch the fragment to its place in the output.
+		 * 
+		 * @param sequenceNumber
+		 *            Output sequence number
+		 * @param trackId
+		 *            Output track id
+		 * @param outputPosition
+		 *            Position of the <code>moof</code> in the output
+		 */
+		private void patch(int sequenceNumber, int trackId, long outputPosition) {
+			int mfhd = findChild(moof, 0, "mfhd");
+			if (mfhd != -1) {
+				writeInt(moof, mfhd + 12, sequenceNumber);
+			}
+			
+			for (int traf = findChild(moof, 0, "traf"); traf != -1; traf = findChild(moof, 0, "traf", traf + (int) boxSize(moof, traf))) {
+				int tfhd = findChild(moof, traf, "tfhd");
+				if (tfhd == -1) {
+					continue;
+				}
+				
+				writeInt(moof, tfhd + 12, trackId);
+				
+				/* Absolute offsets moves with the fragment */
+				if ((readInt(moof, tfhd + 8) & TFHD_BASE_DATA_OFFSET_PRESENT) != 0) {
+					writeLong(moof, tfhd + 16, readLong(moof, tfhd + 16) - moofPosition + outputPosition);
+				}
+			}
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package caceresenzo.libs.youtube.mux;
+
+import caceresenzo.libs.youtube.format.AudioCodec;
+import caceresenzo.libs.youtube.format.VideoCodec;
+import caceresenzo.libs.youtube.format.YoutubeFormat;
+
+/**
+ * Container a video only and an audio only DASH stream can be muxed into.
+ * 
+ * @author Enzo CACERES
+ */
+public enum MuxContainer {
+	
+	/** Fragmented MP4, for H264 video and AAC audio */
+	MP4("mp4"),
+	
+	/** WebM, for VP9 video and Opus or Vorbis audio */
+	WEBM("webm");
+	
+	/* Variables */
+	private final String extension;
+	
+	/* Constructor */
+	private MuxContainer(String extension) {
+		this.extension = extension;
+	}
+	
+	/**
+	 * @return File extension, without dot
+	 */
+	public String getExtension() {
+		return extension;
+	}
+	
+	/**
+	 * @return A new remuxer of this container
+	 */
+	Remuxer createRemuxer() {
+		switch (this) {
+			case MP4: {
+				return new Mp4Remuxer();
+			}
+			
+			case WEBM: {
+				return new WebmRemuxer();
+			}
+			
+			default: {
+				throw new IllegalStateException();
+			}
+		}
+	}
+	
+	/**
+	 * Find the container of a video only and audio only format pair.
+	 * 
+	 * @param videoFormat
+	 *            Video only format, like 137 or 248
+	 * @param audioFormat
+	 *            Audio only format, like 140 or 251
+	 * @return The container to mux them into
+	 * @throws IllegalArgumentException
+	 *             If a format is not of the expected kind, or the codecs can not be muxed together
+	 */
+	public static MuxContainer of(YoutubeFormat videoFormat, YoutubeFormat audioFormat) {
+		if (videoFormat == null || videoFormat.getVideoCodec() == VideoCodec.NONE || videoFormat.getAudioCodec() != AudioCodec.NONE) {
+			throw new IllegalArgumentException("Not a video only format: " + videoFormat);
+		}
+		
+		if (audioFormat == null || audioFormat.getAudioCodec() == AudioCodec.NONE || audioFormat.getVideoCodec() != VideoCodec.NONE) {
+			throw new IllegalArgumentException("Not an audio only format: " + audioFormat);
+		}
+		
+		VideoCodec videoCodec = videoFormat.getVideoCodec();
+		AudioCodec audioCodec = audioFormat.getAudioCodec();
+		
+		if (videoCodec == VideoCodec.H264 && audioCodec == AudioCodec.AAC) {
+			return MP4;
+		}
+		
+		if (videoCodec == VideoCodec.VP9 && (audioCodec == AudioCodec.OPUS || audioCodec == AudioCodec.VORBIS)) {
+			return WEBM;
+		}
+		
+		throw new IllegalArgumentException("Can not mux " + videoCodec + " with " + audioCodec);
+	}
+	
+}
\ No newline at end of file
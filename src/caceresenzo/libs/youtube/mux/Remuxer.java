@@ -0,0 +1,31 @@
+package caceresenzo.libs.youtube.mux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Combine a video only and an audio only stream of the same container, without re-encoding.
+ * <p/>
+ * Implementations read both inputs fragment by fragment and interleave them by timestamp, so at most one fragment (or cluster) of each input is held in memory, and the output can be written while both inputs are still being downloaded.
+ * 
+ * @author Enzo CACERES
+ */
+interface Remuxer {
+	
+	/* Constants */
+	static final int MAX_FRAGMENT_SIZE = 256 * 1024 * 1024;
+	
+	/**
+	 * @param video
+	 *            Video only stream
+	 * @param audio
+	 *            Audio only stream
+	 * @param output
+	 *            Muxed output, flushed but not closed
+	 * @throws IOException
+	 *             If an input could not be read, is not supported, or if the output failed
+	 */
+	void remux(InputStream video, InputStream audio, OutputStream output) throws IOException;
+	
+}
\ No newline at end of file
@@ -0,0 +1,453 @@
+package caceresenzo.libs.youtube.mux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Remuxer of two WebM (Matroska) DASH streams into a single WebM.
+ * <p/>
+ * The output has the EBML header and segment info of the video stream, a track list with both tracks, then the clusters of both streams ordered by timecode, with their blocks renumbered to the output tracks. The segment is written with an unknown size and without cues, so it can be streamed; players seek in it by scanning the clusters.
+ * 
+ * @author Enzo CACERES
+ */
+final class WebmRemuxer implements Remuxer {
+	
+	/* Private Constants */
+	private static final int ID_EBML = 0x1A45DFA3;
+	private static final int ID_SEGMENT = 0x18538067;
+	private static final int ID_INFO = 0x1549A966;
+	private static final int ID_TIMECODE_SCALE = 0x2AD7B1;
+	private static final int ID_TRACKS = 0x1654AE6B;
+	private static final int ID_TRACK_ENTRY = 0xAE;
+	private static final int ID_TRACK_NUMBER = 0xD7;
+	private static final int ID_TRACK_UID = 0x73C5;
+	private static final int ID_CLUSTER = 0x1F43B675;
+	private static final int ID_TIMECODE = 0xE7;
+	private static final int ID_SIMPLE_BLOCK = 0xA3;
+	private static final int ID_BLOCK_GROUP = 0xA0;
+	private static final int ID_BLOCK = 0xA1;
+	
+	private static final long UNKNOWN_SIZE = -1;
+	private static final long DEFAULT_TIMECODE_SCALE = 1000000;
+	
+	private static final int VIDEO_TRACK_NUMBER = 1;
+	private static final int AUDIO_TRACK_NUMBER = 2;
+	
+	@Override
+	public void remux(InputStream video, InputStream audio, OutputStream output) throws IOException {
+		Input videoInput = new Input(video, "video");
+		Input audioInput = new Input(audio, "audio");
+		
+		videoInput.readHeaders();
+		audioInput.readHeaders();
+		
+		if (videoInput.timecodeScale != audioInput.timecodeScale) {
+			throw new IOException("Different timecode scales: " + videoInput.timecodeScale + " and " + audioInput.timecodeScale);
+		}
+		
+		writeElement(output, ID_EBML, videoInput.ebmlHeader);
+		
+		/* Unknown size segment, so nothing has to be known in advance */
+		writeId(output, ID_SEGMENT);
+		output.write(new byte[] { 0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF });
+		
+		writeElement(output, ID_INFO, videoInput.info);
+		
+		ByteArrayOutputStream tracks = new ByteArrayOutputStream();
+		writeElement(tracks, ID_TRACK_ENTRY, renumberTrackEntry(videoInput.trackEntry, VIDEO_TRACK_NUMBER));
+		writeElement(tracks, ID_TRACK_ENTRY, renumberTrackEntry(audioInput.trackEntry, AUDIO_TRACK_NUMBER));
+		writeElement(output, ID_TRACKS, tracks.toByteArray());
+		
+		Cluster videoCluster = videoInput.nextCluster();
+		Cluster audioCluster = audioInput.nextCluster();
+		
+		while (videoCluster != null || audioCluster != null) {
+			boolean isVideo = audioCluster == null || (videoCluster != null && videoCluster.timecode <= audioCluster.timecode);
+			Cluster cluster = isVideo ? videoCluster : audioCluster;
+			
+			writeElement(output, ID_CLUSTER, renumberCluster(cluster.data, isVideo ? VIDEO_TRACK_NUMBER : AUDIO_TRACK_NUMBER));
+			
+			if (isVideo) {
+				videoCluster = videoInput.nextCluster();
+			} else {
+				audioCluster = audioInput.nextCluster();
+			}
+		}
+		
+		output.flush();
+	}
+	
+	/**
+	 * Copy a track entry with another track number, the uid is replaced too so both tracks have different ones.
+	 */
+	private static byte[] renumberTrackEntry(byte[] trackEntry, int trackNumber) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(trackEntry.length + 8);
+		EbmlReader reader = new EbmlReader(new ByteArrayInputStream(trackEntry));
+		
+		int id;
+		while ((id = reader.readId()) != -1) {
+			byte[] data = reader.readData(reader.readSize());
+			
+			if (id == ID_TRACK_NUMBER || id == ID_TRACK_UID) {
+				data = new byte[] { (byte) trackNumber };
+			}
+			
+			writeElement(output, id, data);
+		}
+		
+		return output.toByteArray();
+	}
+	
+	/**
+	 * Copy the content of a cluster, with every block moved to another track.
+	 */
+	private static byte[] renumberCluster(byte[] cluster, int trackNumber) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(cluster.length + 64);
+		EbmlReader reader = new EbmlReader(new ByteArrayInputStream(cluster));
+		
+		int id;
+		while ((id = reader.readId()) != -1) {
+			byte[] data = reader.readData(reader.readSize());
+			
+			if (id == ID_SIMPLE_BLOCK) {
+				data = renumberBlock(data, trackNumber);
+			} else if (id == ID_BLOCK_GROUP) {
+				data = renumberCluster(data, trackNumber);
+			} else if (id == ID_BLOCK) {
+				data = renumberBlock(data, trackNumber);
+			}
+			
+			writeElement(output, id, data);
+		}
+		
+		return output.toByteArray();
+	}
+	
+	/**
+	 * A block starts with its track number, as a variable size integer.
+	 */
+	private static byte[] renumberBlock(byte[] block, int trackNumber) throws IOException {
+		if (block.length == 0) {
+			throw new IOException("Empty block");
+		}
+		
+		int oldLength = vintLength(block[0] & 0xFF);
+		byte[] number = encodeSize(trackNumber);
+		
+		byte[] renumbered = new byte[block.length - oldLength + number.length];
+		System.arraycopy(number, 0, renumbered, 0, number.length);
+		System.arraycopy(block, oldLength, renumbered, number.length, block.length - oldLength);
+		
+		return renumbered;
+	}
+	
+	private static void writeElement(OutputStream output, int id, byte[] data) throws IOException {
+		writeId(output, id);
+		output.write(encodeSize(data.length));
+		output.write(data);
+	}
+	
+	/**
+	 * Ids keep their length marker, they are written as they are.
+	 */
+	private static void writeId(OutputStream output, int id) throws IOException {
+		for (int shift = (idLength(id) - 1) * 8; shift >= 0; shift -= 8) {
+			output.write(id >>> shift);
+		}
+	}
+	
+	private static int idLength(int id) {
+		if ((id & 0xFF000000) != 0) {
+			return 4;
+		} else if ((id & 0xFF0000) != 0) {
+			return 3;
+		} else if ((id & 0xFF00) != 0) {
+			return 2;
+		}
+		
+		return 1;
+	}
+	
+	/**
+	 * Encode a size with as few bytes as possible, the all ones value of each length being reserved for unknown sizes.
+	 */
+	private static byte[] encodeSize(long size) {
+		int length = 1;
+		while (length < 8 && size >= (1L << (7 * length)) - 1) {
+			length++;
+		}
+		
+		byte[] bytes = new byte[length];
+		for (int index = length - 1; index >= 0; index--) {
+			bytes[index] = (byte) size;
+			size >>>= 8;
+		}
+		
+		bytes[0] |= 0x80 >>> (length - 1);
+		return bytes;
+	}
+	
+	/**
+	 * @return Length of a variable size integer from its first byte, or 9 if invalid
+	 */
+	private static int vintLength(int first) {
+		return Integer.numberOfLeadingZeros(first) - 23;
+	}
+	
+	private static long readUnsigned(byte[] data) {
+		long value = 0;
+		
+		for (byte part : data) {
+			value = (value << 8) | (part & 0xFF);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Reader of EBML elements.
+	 */
+	private static class EbmlReader {
+		
+		/* Variables */
+		private final DataInputStream input;
+		
+		/* Constructor */
+		private EbmlReader(InputStream input) {
+			this.input = new DataInputStream(input);
+		}
+		
+		/**
+		 * @return The next element id, or -1 at the end of the stream
+		 */
+		private int readId() throws IOException {
+			int first = input.read();
+			if (first == -1) {
+				return -1;
+			}
+			
+			int length = vintLength(first);
+			if (length > 4) {
+				throw new IOException("Invalid element id");
+			}
+			
+			int id = first;
+			for (int index = 1; index < length; index++) {
+				id = (id << 8) | input.readUnsignedByte();
+			}
+			
+			return id;
+		}
+		
+		/**
+		 * @return Size of the element, or {@link WebmRemuxer#UNKNOWN_SIZE}
+		 */
+		private long readSize() throws IOException {
+			int first = input.readUnsignedByte();
+			
+			int length = vintLength(first);
+			if (length > 8) {
+				throw new IOException("Invalid element size");
+			}
+			
+			long mask = 0xFF >>> length;
+			long value = first & mask;
+			boolean allOnes = value == mask;
+			
+			for (int index = 1; index < length; index++) {
+				int part = input.readUnsignedByte();
+				
+				value = (value << 8) | part;
+				allOnes &= part == 0xFF;
+			}
+			
+			return allOnes ? UNKNOWN_SIZE : value;
+		}
+		
+		private byte[] readData(long size) throws IOException {
+			if (size == UNKNOWN_SIZE || size > MAX_FRAGMENT_SIZE) {
+				throw new IOException("Unsupported element size: " + size);
+			}
+			
+			byte[] data = new byte[(int) size];
+			input.readFully(data);
+			
+			return data;
+		}
+		
+		private void skip(long size) throws IOException {
+			if (size == UNKNOWN_SIZE) {
+				throw new IOException("Can not skip an element of unknown size");
+			}
+			
+			while (size > 0) {
+				int skipped = input.skipBytes((int) Math.min(size, Integer.MAX_VALUE));
+				
+				if (skipped <= 0) {
+					if (input.read() == -1) {
+						throw new EOFException();
+					}
+					skipped = 1;
+				}
+				
+				size -= skipped;
+			}
+		}
+		
+	}
+	
+	/**
+	 * One of the two streams, read element by element.
+	 */
+	private static class Input {
+		
+		/* Variables */
+		private final EbmlReader reader;
+		private final String name;
+		private byte[] ebmlHeader, info, trackEntry;
+		private long timecodeScale;
+		private Cluster pendingCluster;
+		
+		/* Constructor */
+		private Input(InputStream input, String name) {
+			this.reader = new EbmlReader(input);
+			this.name = name;
+			this.timecodeScale = DEFAULT_TIMECODE_SCALE;
+		}
+		
+		/**
+		 * Read everything up to the first cluster, which is kept for {@link #nextCluster()}.
+		 */
+		private void readHeaders() throws IOException {
+			if (reader.readId() != ID_EBML) {
+				throw new IOException("The " + name + " stream is not a WebM stream");
+			}
+			ebmlHeader = reader.readData(reader.readSize());
+			
+			if (reader.readId() != ID_SEGMENT) {
+				throw new IOException("No segment in the " + name + " stream");
+			}
+			
+			/* Its children are read until the end of the stream, whatever its size */
+			reader.readSize();
+			
+			int id;
+			while ((id = reader.readId()) != -1) {
+				long size = reader.readSize();
+				
+				if (id == ID_INFO) {
+					info = reader.readData(size);
+					readTimecodeScale();
+				} else if (id == ID_TRACKS) {
+					readTrackEntry(reader.readData(size));
+				} else if (id == ID_CLUSTER) {
+					pendingCluster = readCluster(size);
+					break;
+				} else {
+					reader.skip(size);
+				}
+			}
+			
+			if (info == null || trackEntry == null) {
+				throw new IOException("Incomplete headers in the " + name + " stream");
+			}
+		}
+		
+		private void readTimecodeScale() throws IOException {
+			EbmlReader infoReader = new EbmlReader(new ByteArrayInputStream(info));
+			
+			int id;
+			while ((id = infoReader.readId()) != -1) {
+				byte[] data = infoReader.readData(infoReader.readSize());
+				
+				if (id == ID_TIMECODE_SCALE) {
+					timecodeScale = readUnsigned(data);
+				}
+			}
+		}
+		
+		private void readTrackEntry(byte[] tracks) throws IOException {
+			EbmlReader tracksReader = new EbmlReader(new ByteArrayInputStream(tracks));
+			
+			int id;
+			while ((id = tracksReader.readId()) != -1) {
+				byte[] data = tracksReader.readData(tracksReader.readSize());
+				
+				if (id == ID_TRACK_ENTRY && trackEntry == null) {
+					trackEntry = data;
+				}
+			}
+		}
+		
+		/**
+		 * @return The next cluster, or null at the end of the stream
+		 */
+		private Cluster nextCluster() throws IOException {
+			if (pendingCluster != null) {
+				Cluster cluster = pendingCluster;
+				pendingCluster = null;
+				
+				return cluster;
+			}
+			
+			int id;
+			while ((id = reader.readId()) != -1) {
+				long size = reader.readSize();
+				
+				if (id == ID_CLUSTER) {
+					return readCluster(size);
+				}
+				
+				reader.skip(size);
+			}
+			
+			return null;
+		}
+		
+		private Cluster readCluster(long size) throws IOException {
+			if (size == UNKNOWN_SIZE) {
+				throw new IOException("Clusters of unknown size are not supported, in the " + name + " stream");
+			}
+			
+			byte[] data = reader.readData(size);
+			EbmlReader clusterReader = new EbmlReader(new ByteArrayInputStream(data));
+			
+			int id;
+			while ((id = clusterReader.readId()) != -1) {
+				long childSize = clusterReader.readSize();
+				
+				if (id == ID_TIMECODE) {
+					return new Cluster(data, readUnsigned(clusterReader.readData(childSize)));
+				}
+				
+				clusterReader.skip(childSize);
+			}
+			
+			throw new IOException("Cluster without timecode in the " + name + " stream");
+		}
+		
+	}
+	
+	/**
+	 * Content of a cluster, and its timecode.
+	 */
+	private static class Cluster {
+		
+		/* Variables */
+		private final byte[] data;
+		private final long timecode;
+		
+		/* Constructor */
+		private Cluster(byte[] data, long timecode) {
+			this.data = data;
+			this.timecode = timecode;
+		}
+		
+	}
+	
+}
\ No newline at end of file
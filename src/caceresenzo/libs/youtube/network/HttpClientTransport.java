@@ -0,0 +1,328 @@
+package caceresenzo.libs.youtube.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Default {@link HttpTransport}, backed by a single {@link HttpClient}.
+ * <p/>
+ * The client keep connections alive and pool them, and multiplex requests over HTTP/2 when the server supports it. On top of that, the number of requests in flight per host is limited: a request wait for a slot (without blocking any thread) and give it back when its response is closed.
+ * 
+ * @author Enzo CACERES
+ */
+public class HttpClientTransport implements HttpTransport {
+	
+	/* Constants */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+	public static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+	
+	/* Private Constants */
+	private static final String DNS_CACHE_TTL_PROPERTY = "networkaddress.cache.ttl";
+	private static final AtomicBoolean DNS_CACHE_TTL_SET = new AtomicBoolean();
+	
+	/* Variables */
+	private final HttpClient client;
+	private final int maxConnectionsPerHost;
+	private final Map<String, HostLimiter> limiters;
+	
+	/* Constructor */
+	public HttpClientTransport() {
+		this(new Builder());
+	}
+	
+	/* Constructor */
+	private HttpClientTransport(Builder builder) {
+		HttpClient.Builder clientBuilder = HttpClient.newBuilder() //
+				.version(builder.http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1) //
+				.followRedirects(HttpClient.Redirect.NORMAL) //
+				.connectTimeout(Duration.ofMillis(builder.connectTimeout));
+		
+		if (builder.executor != null) {
+			clientBuilder.executor(builder.executor);
+		}
+		
+		this.client = clientBuilder.build();
+		this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+		this.limiters = new ConcurrentHashMap<>();
+	}
+	
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException, InterruptedException {
+		CompletableFuture<TransportResponse> future = sendAsync(request);
+		
+		try {
+			return future.get();
+		} catch (InterruptedException exception) {
+			future.cancel(true);
+			throw exception;
+		} catch (ExecutionException exception) {
+			Throwable cause = exception.getCause();
+			
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(final TransportRequest request) {
+		final HttpRequest httpRequest;
+		try {
+			httpRequest = toHttpRequest(request);
+		} catch (IllegalArgumentException exception) {
+			CompletableFuture<TransportResponse> failed = new CompletableFuture<>();
+			failed.completeExceptionally(new IOException("Invalid request: " + request.getUrl(), exception));
+			
+			return failed;
+		}
+		
+		final HostLimiter limiter = limiters.computeIfAbsent(httpRequest.uri().getHost(), (host) -> new HostLimiter(maxConnectionsPerHost));
+		final CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+		
+		limiter.acquire(() -> {
+			if (future.isDone()) {
+				limiter.release();
+				return;
+			}
+			
+			client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream()).whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					limiter.release();
+					
+					Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+					future.completeExceptionally(cause instanceof IOException ? cause : new IOException(cause));
+					return;
+				}
+				
+				TransportResponse transportResponse = new TransportResponse(request.getUrl(), response.statusCode(), response.headers().map(), new ReleasingInputStream(response.body(), limiter));
+				if (!future.complete(transportResponse)) {
+					transportResponse.close();
+				}
+			});
+		});
+		
+		return future;
+	}
+	
+	private HttpRequest toHttpRequest(TransportRequest request) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl())).GET();
+		
+		for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+			builder.header(entry.getKey(), entry.getValue());
+		}
+		
+		if (request.getTimeout() != TransportRequest.NO_TIMEOUT) {
+			builder.timeout(Duration.ofMillis(request.getTimeout()));
+		}
+		
+		return builder.build();
+	}
+	
+	/**
+	 * @return Underlying client
+	 */
+	public HttpClient getClient() {
+		return client;
+	}
+	
+	/**
+	 * @return Transport shared by default by the whole library
+	 */
+	public static HttpClientTransport getShared() {
+		return SharedHolder.SHARED;
+	}
+	
+	/**
+	 * Set the time in seconds successful DNS lookups are cached for, by every transport and every other network user of the JVM.
+	 * <p/>
+	 * This is the JVM-wide <code>networkaddress.cache.ttl</code> security property, read by the JVM once: it can only be set once, at startup before the first lookup. The JVM default (30 seconds) is kept if never called.
+	 * 
+	 * @param seconds
+	 *            Cache duration, 0 to not cache, -1 to cache forever
+	 * @throws IllegalStateException
+	 *             If it has already been set
+	 */
+	public static void setDnsCacheTtl(int seconds) {
+		if (!DNS_CACHE_TTL_SET.compareAndSet(false, true)) {
+			throw new IllegalStateException("The DNS cache ttl can only be set once");
+		}
+		
+		Security.setProperty(DNS_CACHE_TTL_PROPERTY, String.valueOf(seconds));
+	}
+	
+	/**
+	 * Lazy holder of the shared transport.
+	 */
+	private static class SharedHolder {
+		
+		/* Constants */
+		private static final HttpClientTransport SHARED = new HttpClientTransport();
+		
+	}
+	
+	/**
+	 * Non-blocking limit of requests in flight for a single host.
+	 */
+	private static class HostLimiter {
+		
+		/* Variables */
+		private final Queue<Runnable> waitings;
+		private int available;
+		
+		/* Constructor */
+		private HostLimiter(int permits) {
+			this.waitings = new ArrayDeque<>();
+			this.available = permits;
+		}
+		
+		/**
+		 * Run the task right now if a slot is available, or as soon as one is released.
+		 */
+		private void acquire(Runnable task) {
+			synchronized (this) {
+				if (available == 0) {
+					waitings.add(task);
+					return;
+				}
+				
+				available--;
+			}
+			
+			task.run();
+		}
+		
+		private void release() {
+			Runnable next;
+			
+			synchronized (this) {
+				next = waitings.poll();
+				
+				if (next == null) {
+					available++;
+					return;
+				}
+			}
+			
+			next.run();
+		}
+		
+	}
+	
+	/**
+	 * Give back the host slot once the body is closed.
+	 */
+	private static class ReleasingInputStream extends FilterInputStream {
+		
+		/* Variables */
+		private final HostLimiter limiter;
+		private final AtomicBoolean released;
+		
+		/* Constructor */
+		private ReleasingInputStream(InputStream inputStream, HostLimiter limiter) {
+			super(inputStream);
+			
+			this.limiter = limiter;
+			this.released = new AtomicBoolean();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (released.compareAndSet(false, true)) {
+					limiter.release();
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link HttpClientTransport}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private boolean http2 = true;
+		private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+		private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+		private Executor executor;
+		
+		/**
+		 * Use HTTP/2 when the server supports it. Default: true
+		 * 
+		 * @return Itself
+		 */
+		public Builder http2(boolean http2) {
+			this.http2 = http2;
+			
+			return this;
+		}
+		
+		/**
+		 * Connection timeout in milliseconds. Default: {@value HttpClientTransport#DEFAULT_CONNECT_TIMEOUT}
+		 * 
+		 * @return Itself
+		 */
+		public Builder connectTimeout(long connectTimeout) {
+			this.connectTimeout = connectTimeout;
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum requests in flight per host, the others wait for a slot. Default: {@value HttpClientTransport#DEFAULT_MAX_CONNECTIONS_PER_HOST}
+		 * 
+		 * @return Itself
+		 */
+		public Builder maxConnectionsPerHost(int maxConnectionsPerHost) {
+			if (maxConnectionsPerHost <= 0) {
+				throw new IllegalArgumentException("The connection limit must be positive");
+			}
+			
+			this.maxConnectionsPerHost = maxConnectionsPerHost;
+			
+			return this;
+		}
+		
+		/**
+		 * Executor used by the client for its asynchronous tasks. Default: the client's own
+		 * 
+		 * @return Itself
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new transport with this configuration
+		 */
+		public HttpClientTransport build() {
+			return new HttpClientTransport(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
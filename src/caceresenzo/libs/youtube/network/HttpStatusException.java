@@ -0,0 +1,38 @@
+package caceresenzo.libs.youtube.network;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request has been answered with an unexpected status code.
+ * 
+ * @author Enzo CACERES
+ */
+public class HttpStatusException extends IOException {
+	
+	/* Variables */
+	private final String url;
+	private final int statusCode;
+	
+	/* Constructor */
+	public HttpStatusException(String url, int statusCode) {
+		super(String.format("Http status %s for url: %s", statusCode, url));
+		
+		this.url = url;
+		this.statusCode = statusCode;
+	}
+	
+	/**
+	 * @return Requested url
+	 */
+	public String getUrl() {
+		return url;
+	}
+	
+	/**
+	 * @return Received status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+}
\ No newline at end of file
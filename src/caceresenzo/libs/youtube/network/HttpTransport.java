@@ -0,0 +1,39 @@
+package caceresenzo.libs.youtube.network;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used for every http request made by the library, both by the extractor and the {@link caceresenzo.libs.youtube.api.YoutubeApi}.
+ * <p/>
+ * Implementations must be thread-safe. Every {@link TransportResponse} must be closed, some implementations keep a connection slot until then.
+ * 
+ * @author Enzo CACERES
+ */
+public interface HttpTransport {
+	
+	/**
+	 * Send a request and wait for the response headers.
+	 * 
+	 * @param request
+	 *            Request to send
+	 * @return The response, with a body yet to be read
+	 * @throws IOException
+	 *             If the request failed
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	public TransportResponse send(TransportRequest request) throws IOException, InterruptedException;
+	
+	/**
+	 * Send a request without blocking.
+	 * <p/>
+	 * Cancelling the returned future before its completion drop the request, closing the response after its completion drop the connection if the body has not been fully read.
+	 * 
+	 * @param request
+	 *            Request to send
+	 * @return A future completed with the response, or exceptionally with the {@link IOException} that made the request fail
+	 */
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request);
+	
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package caceresenzo.libs.youtube.network;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capped exponential backoff with full jitter.
+ * <p/>
+ * The delay before the retry <code>n</code> is a random value between 0 and <code>min(maxDelay, baseDelay * 2^n)</code>, so callers failing at the same time don't retry at the same time.
+ * 
+ * @author Enzo CACERES
+ */
+public final class RetryBackoff {
+	
+	/* Variables */
+	private final int maxAttempts;
+	private final long baseDelay, maxDelay;
+	
+	/* Constructor */
+	public RetryBackoff(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+		if (maxAttempts <= 0) {
+			throw new IllegalArgumentException("The attempt count must be positive");
+		}
+		
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = unit.toMillis(baseDelay);
+		this.maxDelay = unit.toMillis(maxDelay);
+	}
+	
+	/**
+	 * @return Maximum attempt count, the first one included
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+	
+	/**
+	 * @param retry
+	 *            Retry index, starting at 0
+	 * @return Random delay in milliseconds to wait before this retry
+	 */
+	public long computeDelay(int retry) {
+		long cap = Math.min(maxDelay, baseDelay << Math.min(retry, 30));
+		
+		return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+	}
+	
+	/**
+	 * Wait before a retry.
+	 * 
+	 * @param retry
+	 *            Retry index, starting at 0
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	public void await(int retry) throws InterruptedException {
+		long delay = computeDelay(retry);
+		
+		if (delay > 0) {
+			Thread.sleep(delay);
+		}
+	}
+	
+}
\ No newline at end of file
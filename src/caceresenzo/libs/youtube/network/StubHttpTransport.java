@@ -0,0 +1,168 @@
+package caceresenzo.libs.youtube.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process {@link HttpTransport} answering from registered handlers, to use the library offline.
+ * <p/>
+ * Handlers are matched by url prefix, the longest matching prefix wins. Unmatched requests are answered with a 404. Every request is recorded.
+ * 
+ * @author Enzo CACERES
+ */
+public class StubHttpTransport implements HttpTransport {
+	
+	/* Variables */
+	private final List<Route> routes;
+	private final List<TransportRequest> requests;
+	
+	/* Constructor */
+	public StubHttpTransport() {
+		this.routes = new CopyOnWriteArrayList<>();
+		this.requests = new CopyOnWriteArrayList<>();
+	}
+	
+	/**
+	 * Register an handler for every url starting with a prefix.
+	 * 
+	 * @param urlPrefix
+	 *            Url prefix
+	 * @param handler
+	 *            Handler answering the requests
+	 * @return Itself
+	 */
+	public StubHttpTransport register(String urlPrefix, StubHandler handler) {
+		routes.add(new Route(urlPrefix, handler));
+		
+		return this;
+	}
+	
+	/**
+	 * Always answer with the same body for every url starting with a prefix.
+	 * 
+	 * @param urlPrefix
+	 *            Url prefix
+	 * @param statusCode
+	 *            Status code
+	 * @param body
+	 *            UTF-8 body
+	 * @return Itself
+	 */
+	public StubHttpTransport respond(String urlPrefix, final int statusCode, String body) {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		
+		return register(urlPrefix, (request) -> response(request, statusCode, Collections.<String, String> emptyMap(), bytes));
+	}
+	
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+		requests.add(request);
+		
+		Route best = null;
+		for (Route route : routes) {
+			if (request.getUrl().startsWith(route.urlPrefix) && (best == null || route.urlPrefix.length() > best.urlPrefix.length())) {
+				best = route;
+			}
+		}
+		
+		if (best == null) {
+			return response(request, 404, Collections.<String, String> emptyMap(), new byte[0]);
+		}
+		
+		return best.handler.handle(request);
+	}
+	
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+		
+		try {
+			future.complete(send(request));
+		} catch (IOException exception) {
+			future.completeExceptionally(exception);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * @return Every request received so far
+	 */
+	public List<TransportRequest> getRequests() {
+		return new ArrayList<>(requests);
+	}
+	
+	/**
+	 * @param urlPrefix
+	 *            Url prefix
+	 * @return Number of request received for urls starting with a prefix
+	 */
+	public int countRequests(String urlPrefix) {
+		int count = 0;
+		
+		for (TransportRequest request : requests) {
+			if (request.getUrl().startsWith(urlPrefix)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Create a response for a request.
+	 * 
+	 * @param request
+	 *            Source request
+	 * @param statusCode
+	 *            Status code
+	 * @param headers
+	 *            Response headers
+	 * @param body
+	 *            Response body
+	 * @return A new response
+	 */
+	public static TransportResponse response(TransportRequest request, int statusCode, Map<String, String> headers, byte[] body) {
+		Map<String, List<String>> multiHeaders = new HashMap<>();
+		for (Map.Entry<String, String> entry : headers.entrySet()) {
+			multiHeaders.put(entry.getKey(), Collections.singletonList(entry.getValue()));
+		}
+		
+		return new TransportResponse(request.getUrl(), statusCode, multiHeaders, new ByteArrayInputStream(body));
+	}
+	
+	/**
+	 * Answer stub requests.
+	 */
+	public static interface StubHandler {
+		
+		public TransportResponse handle(TransportRequest request) throws IOException;
+		
+	}
+	
+	/**
+	 * Registered handler.
+	 */
+	private static class Route {
+		
+		/* Variables */
+		private final String urlPrefix;
+		private final StubHandler handler;
+		
+		/* Constructor */
+		private Route(String urlPrefix, StubHandler handler) {
+			this.urlPrefix = urlPrefix;
+			this.handler = handler;
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package caceresenzo.libs.youtube.network;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple GET request sent through an {@link HttpTransport}.
+ * 
+ * @author Enzo CACERES
+ */
+public class TransportRequest {
+	
+	/* Constants */
+	public static final String HEADER_USER_AGENT = "User-Agent";
+	public static final String HEADER_RANGE = "Range";
+	public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	
+	public static final long NO_TIMEOUT = 0;
+	
+	/* Variables */
+	private final String url;
+	private final Map<String, String> headers;
+	private long timeout;
+	
+	/* Constructor */
+	public TransportRequest(String url) {
+		this.url = url;
+		this.headers = new LinkedHashMap<>();
+		this.timeout = NO_TIMEOUT;
+	}
+	
+	/**
+	 * Set a request header.
+	 * 
+	 * @param name
+	 *            Header name
+	 * @param value
+	 *            Header value
+	 * @return Itself
+	 */
+	public TransportRequest header(String name, String value) {
+		headers.put(name, value);
+		
+		return this;
+	}
+	
+	/**
+	 * Set the maximum time to wait for the response headers.
+	 * 
+	 * @param timeout
+	 *            Timeout in milliseconds, {@link #NO_TIMEOUT} to wait forever
+	 * @return Itself
+	 */
+	public TransportRequest timeout(long timeout) {
+		this.timeout = timeout;
+		
+		return this;
+	}
+	
+	/**
+	 * @return Request url
+	 */
+	public String getUrl() {
+		return url;
+	}
+	
+	/**
+	 * @return Unmodifiable request headers
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * @param name
+	 *            Header name
+	 * @return Header value, or null if not set
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+	
+	/**
+	 * @return Timeout in milliseconds, or {@link #NO_TIMEOUT}
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+	
+	@Override
+	public String toString() {
+		return "TransportRequest[url=" + url + ", headers=" + headers + ", timeout=" + timeout + "]";
+	}
+	
+}
\ No newline at end of file
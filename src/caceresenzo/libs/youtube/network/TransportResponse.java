@@ -0,0 +1,167 @@
+package caceresenzo.libs.youtube.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response of an {@link HttpTransport}, must be closed once the body has been used.
+ * 
+ * @author Enzo CACERES
+ */
+public class TransportResponse implements Closeable {
+	
+	/* Constants */
+	public static final String HEADER_ETAG = "ETag";
+	public static final String HEADER_CONTENT_LENGTH = "Content-Length";
+	public static final String HEADER_CONTENT_RANGE = "Content-Range";
+	
+	/* Private Constants */
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	/* Variables */
+	private final String url;
+	private final int statusCode;
+	private final Map<String, List<String>> headers;
+	private final InputStream body;
+	
+	/* Constructor */
+	public TransportResponse(String url, int statusCode, Map<String, List<String>> headers, InputStream body) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		this.body = body;
+		
+		if (headers != null) {
+			for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+				if (entry.getKey() != null) {
+					this.headers.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return Url that has been requested
+	 */
+	public String getUrl() {
+		return url;
+	}
+	
+	/**
+	 * @return Http status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * @return If the status code is a 2xx
+	 */
+	public boolean isSuccessful() {
+		return statusCode >= 200 && statusCode < 300;
+	}
+	
+	/**
+	 * @return Unmodifiable response headers, with case insensitive names
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * @param name
+	 *            Header name, case insensitive
+	 * @return First value of the header, or null if not present
+	 */
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		
+		if (values == null || values.isEmpty()) {
+			return null;
+		}
+		
+		return values.get(0);
+	}
+	
+	/**
+	 * @return Response body, not buffered
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+	
+	/**
+	 * Read the whole body, then close the response.
+	 * 
+	 * @return Body bytes
+	 * @throws IOException
+	 *             If the read failed
+	 */
+	public byte[] readBytes() throws IOException {
+		try {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			
+			while ((read = body.read(buffer)) != -1) {
+				outputStream.write(buffer, 0, read);
+			}
+			
+			return outputStream.toByteArray();
+		} finally {
+			close();
+		}
+	}
+	
+	/**
+	 * Read the whole body as a string, then close the response.
+	 * 
+	 * @param charset
+	 *            Body charset
+	 * @return Body content
+	 * @throws IOException
+	 *             If the read failed
+	 */
+	public String readString(Charset charset) throws IOException {
+		return new String(readBytes(), charset);
+	}
+	
+	/**
+	 * Throw if the status code is not a 2xx, closing the response.
+	 * 
+	 * @return Itself
+	 * @throws HttpStatusException
+	 *             If not successful
+	 */
+	public TransportResponse requireSuccessful() throws HttpStatusException {
+		if (!isSuccessful()) {
+			close();
+			
+			throw new HttpStatusException(url, statusCode);
+		}
+		
+		return this;
+	}
+	
+	@Override
+	public void close() {
+		try {
+			body.close();
+		} catch (IOException exception) {
+			;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "TransportResponse[url=" + url + ", statusCode=" + statusCode + "]";
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package caceresenzo.libs.youtube.pipeline;
+
+import caceresenzo.libs.youtube.extractor.ExtractionResult;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+
+/**
+ * Outcome of the extraction of a playlist item, either a result or the failure of this item only.
+ * 
+ * @author Enzo CACERES
+ */
+public final class PlaylistExtraction {
+	
+	/* Variables */
+	private final long index;
+	private final YoutubePlaylistItem item;
+	private final ExtractionResult result;
+	private final Throwable failure;
+	
+	/* Constructor */
+	PlaylistExtraction(long index, YoutubePlaylistItem item, ExtractionResult result, Throwable failure) {
+		this.index = index;
+		this.item = item;
+		this.result = result;
+		this.failure = failure;
+	}
+	
+	/**
+	 * @return Index of the item in the playlist, starting at 0
+	 */
+	public long getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return Playlist item
+	 */
+	public YoutubePlaylistItem getItem() {
+		return item;
+	}
+	
+	/**
+	 * @return Extraction result, null if the extraction failed
+	 */
+	public ExtractionResult getResult() {
+		return result;
+	}
+	
+	/**
+	 * @return Why the extraction failed, or null if it did not
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * @return If the extraction did not fail
+	 */
+	public boolean isSuccessful() {
+		return failure == null;
+	}
+	
+	@Override
+	public String toString() {
+		return "PlaylistExtraction[index=" + index + ", item=" + item + ", result=" + result + ", failure=" + failure + "]";
+	}
+	
+}
\ No newline at end of file
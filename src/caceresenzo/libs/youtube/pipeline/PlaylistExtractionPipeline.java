@@ -0,0 +1,511 @@
+package caceresenzo.libs.youtube.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.stream.Stream;
+
+import caceresenzo.libs.youtube.api.QuotaScheduler;
+import caceresenzo.libs.youtube.api.QuotaScheduler.Priority;
+import caceresenzo.libs.youtube.api.implementations.YoutubePlaylistApi;
+import caceresenzo.libs.youtube.extractor.ExtractionResult;
+import caceresenzo.libs.youtube.extractor.YouTubeExtractionEngine;
+import caceresenzo.libs.youtube.extractor.YouTubeExtractor;
+import caceresenzo.libs.youtube.format.FormatQuery;
+import caceresenzo.libs.youtube.network.HttpClientTransport;
+import caceresenzo.libs.youtube.network.HttpTransport;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylist;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+
+/**
+ * Pipeline turning a whole playlist into extraction results, published as a {@link Flow.Publisher}.
+ * <p/>
+ * The playlist is read lazily page by page, and its items are extracted in parallel. Everything is bounded: at most <code>parallelism</code> extractions run at the same time, and at most <code>bufferSize</code> items are extracting or extracted but not delivered yet, so a slow subscriber slows the extractions down instead of piling results up. Nothing is read before the subscriber's first request.
+ * <p/>
+ * A failed extraction only fails its own item, delivered with its failure. Only a failure to read the playlist itself terminates the subscription with an error, once the items before it have been delivered.
+ * 
+ * @author Enzo CACERES
+ */
+public class PlaylistExtractionPipeline {
+	
+	/* Constants */
+	public static final int DEFAULT_PARALLELISM = 4;
+	public static final int DEFAULT_BUFFER_SIZE = 16;
+	
+	/* Variables */
+	private final YouTubeExtractionEngine engine;
+	private final HttpTransport transport;
+	private final QuotaScheduler scheduler;
+	private final Executor executor;
+	private final int parallelism, bufferSize, prefetchDepth;
+	private final boolean ordered, parseDashManifest, includeWebM;
+	private final FormatQuery[] queries;
+	
+	/* Constructor */
+	public PlaylistExtractionPipeline() {
+		this(new Builder());
+	}
+	
+	/* Constructor */
+	private PlaylistExtractionPipeline(Builder builder) {
+		this.engine = builder.engine != null ? builder.engine : new YouTubeExtractionEngine();
+		this.transport = builder.transport != null ? builder.transport : HttpClientTransport.getShared();
+		this.scheduler = builder.scheduler != null ? builder.scheduler : QuotaScheduler.getDefault();
+		this.executor = builder.executor != null ? builder.executor : YouTubeExtractor.DEFAULT_EXECUTOR;
+		this.parallelism = builder.parallelism;
+		this.bufferSize = Math.max(builder.bufferSize, builder.parallelism);
+		this.prefetchDepth = builder.prefetchDepth;
+		this.ordered = builder.ordered;
+		this.parseDashManifest = builder.parseDashManifest;
+		this.includeWebM = builder.includeWebM;
+		this.queries = builder.queries;
+	}
+	
+	/**
+	 * Create a cold publisher of a playlist: every subscriber reads and extracts the playlist on its own.
+	 * 
+	 * @param playlist
+	 *            Playlist id, or an url with a <code>list=</code> parameter
+	 * @return A new publisher
+	 */
+	public Flow.Publisher<PlaylistExtraction> publish(String playlist) {
+		final String playlistId = toPlaylistId(playlist);
+		
+		return (subscriber) -> {
+			YoutubePlaylistApi api = new YoutubePlaylistApi(playlistId);
+			api.setTransport(transport);
+			api.setScheduler(scheduler);
+			api.setPriority(Priority.BATCH);
+			
+			PipelineSubscription subscription = new PipelineSubscription(subscriber, api.stream(prefetchDepth));
+			subscriber.onSubscribe(subscription);
+		};
+	}
+	
+	/**
+	 * Extract a single item, blocking.
+	 */
+	private ExtractionResult extract(YoutubePlaylistItem item) throws Exception {
+		String videoId = item.getVideoId();
+		if (videoId == null) {
+			throw new IllegalArgumentException("Playlist item without video id: " + item);
+		}
+		
+		if (queries != null) {
+			return engine.extract(videoId, parseDashManifest, includeWebM, queries);
+		}
+		
+		return engine.extract(videoId, parseDashManifest, includeWebM);
+	}
+	
+	/**
+	 * @return Extraction engine
+	 */
+	public YouTubeExtractionEngine getEngine() {
+		return engine;
+	}
+	
+	/**
+	 * @return If items are delivered in playlist order
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+	
+	/**
+	 * @param playlist
+	 *            Playlist id, or an url with a <code>list=</code> parameter
+	 * @return The playlist id
+	 */
+	public static String toPlaylistId(String playlist) {
+		Matcher matcher = YoutubePlaylist.PLAYLIST_ID_MATCHER.matcher(playlist);
+		
+		return matcher.find() ? matcher.group(1) : playlist;
+	}
+	
+	/**
+	 * Subscription of a single subscriber.
+	 * <p/>
+	 * Every state change (request, extraction done) calls {@link #drain()}, and only one thread at a time run the drain loop, so the subscriber signals are serialized without holding a lock while calling it.
+	 */
+	private class PipelineSubscription implements Flow.Subscription {
+		
+		/* Variables */
+		private final Flow.Subscriber<? super PlaylistExtraction> subscriber;
+		private final Stream<YoutubePlaylistItem> stream;
+		private final Spliterator<YoutubePlaylistItem> source;
+		private final ReentrantLock sourceLock;
+		private final AtomicInteger wip;
+		private final Map<Long, PlaylistExtraction> completedByIndex;
+		private final Queue<PlaylistExtraction> completed;
+		private long demand, nextIndex, nextEmitted;
+		private int inFlight, buffered;
+		private boolean requested, sourceDone, cancelled, terminated;
+		private Throwable sourceError, requestError;
+		
+		/* Constructor */
+		private PipelineSubscription(Flow.Subscriber<? super PlaylistExtraction> subscriber, Stream<YoutubePlaylistItem> stream) {
+			this.subscriber = subscriber;
+			this.stream = stream;
+			this.source = stream.spliterator();
+			this.sourceLock = new ReentrantLock();
+			this.wip = new AtomicInteger();
+			this.completedByIndex = new HashMap<>();
+			this.completed = new ArrayDeque<>();
+		}
+		
+		@Override
+		public void request(long count) {
+			synchronized (this) {
+				if (count <= 0) {
+					requestError = new IllegalArgumentException("Requested count must be positive, got " + count);
+				} else {
+					demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+					requested = true;
+				}
+			}
+			
+			drain();
+		}
+		
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				completedByIndex.clear();
+				completed.clear();
+			}
+			
+			stream.close();
+		}
+		
+		/**
+		 * Pull the next item and extract it, on the executor. The items are pulled one at a time so their index follow the playlist order.
+		 */
+		private void extractNext() {
+			YoutubePlaylistItem[] holder = new YoutubePlaylistItem[1];
+			long index;
+			
+			/* A lock rather than a monitor, the pull may wait for a page and must not pin a virtual thread */
+			sourceLock.lock();
+			try {
+				synchronized (this) {
+					if (cancelled) {
+						inFlight--;
+						return;
+					}
+				}
+				
+				boolean advanced;
+				try {
+					advanced = source.tryAdvance((item) -> holder[0] = item);
+				} catch (CompletionException exception) {
+					onSourceEnd(exception.getCause() != null ? exception.getCause() : exception);
+					return;
+				} catch (RuntimeException | Error exception) {
+					onSourceEnd(exception);
+					return;
+				}
+				
+				if (!advanced) {
+					onSourceEnd(null);
+					return;
+				}
+				
+				synchronized (this) {
+					index = nextIndex++;
+				}
+			} finally {
+				sourceLock.unlock();
+			}
+			
+			YoutubePlaylistItem item = holder[0];
+			ExtractionResult result = null;
+			Throwable failure = null;
+			
+			try {
+				result = extract(item);
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				failure = exception;
+			} catch (Throwable throwable) {
+				/* Errors too (like from the script engine), or the item would never be delivered nor the pipeline terminated */
+				failure = throwable;
+			}
+			
+			PlaylistExtraction extraction = new PlaylistExtraction(index, item, result, failure);
+			
+			synchronized (this) {
+				inFlight--;
+				
+				if (!cancelled) {
+					buffered++;
+					
+					if (ordered) {
+						completedByIndex.put(index, extraction);
+					} else {
+						completed.add(extraction);
+					}
+				}
+			}
+			
+			drain();
+		}
+		
+		private void onSourceEnd(Throwable error) {
+			synchronized (this) {
+				inFlight--;
+				sourceDone = true;
+				
+				if (sourceError == null) {
+					sourceError = error;
+				}
+			}
+			
+			drain();
+		}
+		
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			
+			do {
+				while (true) {
+					PlaylistExtraction next = null;
+					Throwable error = null;
+					boolean complete = false;
+					int launches = 0;
+					
+					synchronized (this) {
+						if (cancelled || terminated) {
+							break;
+						}
+						
+						if (requestError != null) {
+							terminated = true;
+							error = requestError;
+							completedByIndex.clear();
+							completed.clear();
+						} else if (demand > 0) {
+							next = ordered ? completedByIndex.remove(nextEmitted) : completed.poll();
+							
+							if (next != null) {
+								demand--;
+								buffered--;
+								nextEmitted++;
+							}
+						}
+						
+						if (!terminated && next == null && sourceDone && inFlight == 0 && buffered == 0) {
+							terminated = true;
+							error = sourceError;
+							complete = error == null;
+						}
+						
+						/* Nothing is read before the first request */
+						if (!terminated && requested) {
+							while (!sourceDone && inFlight < parallelism && inFlight + buffered < bufferSize) {
+								inFlight++;
+								launches++;
+							}
+						}
+					}
+					
+					for (int launch = 0; launch < launches; launch++) {
+						executor.execute(this::extractNext);
+					}
+					
+					if (next != null) {
+						subscriber.onNext(next);
+					} else if (error != null) {
+						stream.close();
+						subscriber.onError(error);
+						break;
+					} else if (complete) {
+						stream.close();
+						subscriber.onComplete();
+						break;
+					} else {
+						break;
+					}
+				}
+			} while (wip.decrementAndGet() != 0);
+		}
+		
+	}
+	
+	/**
+	 * Builder for {@link PlaylistExtractionPipeline}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static class Builder {
+		
+		/* Variables */
+		private YouTubeExtractionEngine engine = null;
+		private HttpTransport transport = null;
+		private QuotaScheduler scheduler = null;
+		private Executor executor = null;
+		private int parallelism = DEFAULT_PARALLELISM;
+		private int bufferSize = DEFAULT_BUFFER_SIZE;
+		private int prefetchDepth = YoutubePlaylistApi.DEFAULT_PREFETCH_DEPTH;
+		private boolean ordered = true;
+		private boolean parseDashManifest = false;
+		private boolean includeWebM = true;
+		private FormatQuery[] queries = null;
+		
+		/**
+		 * Engine the items are extracted with. Default: a new engine
+		 * 
+		 * @return Itself
+		 */
+		public Builder engine(YouTubeExtractionEngine engine) {
+			this.engine = engine;
+			
+			return this;
+		}
+		
+		/**
+		 * Transport used to read the playlist. Default: {@link HttpClientTransport#getShared()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder transport(HttpTransport transport) {
+			this.transport = transport;
+			
+			return this;
+		}
+		
+		/**
+		 * Scheduler giving the api keys to the playlist requests, which are sent in its batch lane. Default: {@link QuotaScheduler#getDefault()}
+		 * 
+		 * @return Itself
+		 */
+		public Builder scheduler(QuotaScheduler scheduler) {
+			this.scheduler = scheduler;
+			
+			return this;
+		}
+		
+		/**
+		 * Executor the extractions run on, it must be able to run <code>parallelism</code> tasks at the same time. Default: {@link YouTubeExtractor#DEFAULT_EXECUTOR}
+		 * 
+		 * @return Itself
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			
+			return this;
+		}
+		
+		/**
+		 * Extractions running at the same time. Default: {@value PlaylistExtractionPipeline#DEFAULT_PARALLELISM}
+		 * 
+		 * @return Itself
+		 */
+		public Builder parallelism(int parallelism) {
+			if (parallelism <= 0) {
+				throw new IllegalArgumentException("The parallelism must be positive");
+			}
+			
+			this.parallelism = parallelism;
+			
+			return this;
+		}
+		
+		/**
+		 * Maximum count of items extracting or extracted but not delivered yet, raised to the parallelism if lower. With ordered delivery, a slow item hold the ones after it in this buffer. Default: {@value PlaylistExtractionPipeline#DEFAULT_BUFFER_SIZE}
+		 * 
+		 * @return Itself
+		 */
+		public Builder bufferSize(int bufferSize) {
+			if (bufferSize <= 0) {
+				throw new IllegalArgumentException("The buffer size must be positive");
+			}
+			
+			this.bufferSize = bufferSize;
+			
+			return this;
+		}
+		
+		/**
+		 * Playlist pages fetched ahead, 0 to disable. Default: {@value YoutubePlaylistApi#DEFAULT_PREFETCH_DEPTH}
+		 * 
+		 * @return Itself
+		 */
+		public Builder prefetchDepth(int prefetchDepth) {
+			if (prefetchDepth < 0) {
+				throw new IllegalArgumentException("The prefetch depth can not be negative");
+			}
+			
+			this.prefetchDepth = prefetchDepth;
+			
+			return this;
+		}
+		
+		/**
+		 * Deliver the items in playlist order, or as soon as they are extracted. Default: true
+		 * 
+		 * @return Itself
+		 */
+		public Builder ordered(boolean ordered) {
+			this.ordered = ordered;
+			
+			return this;
+		}
+		
+		/**
+		 * Default: false
+		 * 
+		 * @return Itself
+		 * @see YouTubeExtractionEngine#extract(String, boolean, boolean)
+		 */
+		public Builder parseDashManifest(boolean parseDashManifest) {
+			this.parseDashManifest = parseDashManifest;
+			
+			return this;
+		}
+		
+		/**
+		 * Default: true
+		 * 
+		 * @return Itself
+		 * @see YouTubeExtractionEngine#extract(String, boolean, boolean)
+		 */
+		public Builder includeWebM(boolean includeWebM) {
+			this.includeWebM = includeWebM;
+			
+			return this;
+		}
+		
+		/**
+		 * Only extract the formats matched by at least one query. Default: every format
+		 * 
+		 * @return Itself
+		 * @see YouTubeExtractionEngine#extract(String, boolean, boolean, FormatQuery...)
+		 */
+		public Builder queries(FormatQuery... queries) {
+			this.queries = queries != null && queries.length != 0 ? queries.clone() : null;
+			
+			return this;
+		}
+		
+		/**
+		 * @return A new pipeline with this configuration
+		 */
+		public PlaylistExtractionPipeline build() {
+			return new PlaylistExtractionPipeline(this);
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+package caceresenzo.libs.youtube.playlist;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes of a playlist since its last synchronization.
+ * <p/>
+ * Added and moved items are at their new position, removed ones at their old position. Only the items that really changed their order are moved: an item inserted at the top shifts the positions of every other item, but is the only change.
+ * <p/>
+ * Items coming from a page that has not been modified only know their video id and position.
+ * 
+ * @author Enzo CACERES
+ */
+public final class PlaylistDelta {
+	
+	/* Variables */
+	private final String playlistId;
+	private final List<YoutubePlaylistItem> added, removed, moved;
+	private final int fetchedPages, notModifiedPages;
+	
+	/* Constructor */
+	public PlaylistDelta(String playlistId, List<YoutubePlaylistItem> added, List<YoutubePlaylistItem> removed, List<YoutubePlaylistItem> moved, int fetchedPages, int notModifiedPages) {
+		this.playlistId = playlistId;
+		this.added = Collections.unmodifiableList(added);
+		this.removed = Collections.unmodifiableList(removed);
+		this.moved = Collections.unmodifiableList(moved);
+		this.fetchedPages = fetchedPages;
+		this.notModifiedPages = notModifiedPages;
+	}
+	
+	/**
+	 * @return Id of the playlist
+	 */
+	public String getPlaylistId() {
+		return playlistId;
+	}
+	
+	/**
+	 * @return Unmodifiable new items
+	 */
+	public List<YoutubePlaylistItem> getAdded() {
+		return added;
+	}
+	
+	/**
+	 * @return Unmodifiable items no longer in the playlist
+	 */
+	public List<YoutubePlaylistItem> getRemoved() {
+		return removed;
+	}
+	
+	/**
+	 * @return Unmodifiable items whose order changed
+	 */
+	public List<YoutubePlaylistItem> getMoved() {
+		return moved;
+	}
+	
+	/**
+	 * @return If nothing changed
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && moved.isEmpty();
+	}
+	
+	/**
+	 * @return Count of pages that have been downloaded
+	 */
+	public int getFetchedPages() {
+		return fetchedPages;
+	}
+	
+	/**
+	 * @return Count of pages answered as not modified, without any content
+	 */
+	public int getNotModifiedPages() {
+		return notModifiedPages;
+	}
+	
+	@Override
+	public String toString() {
+		return "PlaylistDelta[playlistId=" + playlistId + ", added=" + added.size() + ", removed=" + removed.size() + ", moved=" + moved.size() + ", fetchedPages=" + fetchedPages + ", notModifiedPages=" + notModifiedPages + "]";
+	}
+	
+}
\ No newline at end of file
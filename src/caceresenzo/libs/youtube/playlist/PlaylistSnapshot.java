@@ -0,0 +1,141 @@
+package caceresenzo.libs.youtube.playlist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact state of a playlist, as seen by the last synchronization: for every page, the token used to request it, its etag, and the ids and positions of its items.
+ * <p/>
+ * Instances are immutable.
+ * 
+ * @author Enzo CACERES
+ * @see PlaylistSnapshotStore
+ */
+public final class PlaylistSnapshot {
+	
+	/* Variables */
+	private final String playlistId;
+	private final List<Page> pages;
+	
+	/* Constructor */
+	public PlaylistSnapshot(String playlistId, List<Page> pages) {
+		this.playlistId = playlistId;
+		this.pages = Collections.unmodifiableList(new ArrayList<>(pages));
+	}
+	
+	/**
+	 * @return Id of the playlist
+	 */
+	public String getPlaylistId() {
+		return playlistId;
+	}
+	
+	/**
+	 * @return Unmodifiable pages, in order
+	 */
+	public List<Page> getPages() {
+		return pages;
+	}
+	
+	/**
+	 * @return Items of every page, in order
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> entries = new ArrayList<>();
+		
+		for (Page page : pages) {
+			entries.addAll(page.getEntries());
+		}
+		
+		return entries;
+	}
+	
+	@Override
+	public String toString() {
+		return "PlaylistSnapshot[playlistId=" + playlistId + ", pages=" + pages.size() + "]";
+	}
+	
+	/**
+	 * Page of a {@link PlaylistSnapshot}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static final class Page {
+		
+		/* Variables */
+		private final String pageToken, etag, nextPageToken;
+		private final List<Entry> entries;
+		
+		/* Constructor */
+		public Page(String pageToken, String etag, String nextPageToken, List<Entry> entries) {
+			this.pageToken = pageToken;
+			this.etag = etag;
+			this.nextPageToken = nextPageToken;
+			this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+		}
+		
+		/**
+		 * @return Token used to request the page, null for the first one
+		 */
+		public String getPageToken() {
+			return pageToken;
+		}
+		
+		/**
+		 * @return Etag of the page, or null if the api did not send any
+		 */
+		public String getEtag() {
+			return etag;
+		}
+		
+		/**
+		 * @return Token of the following page, or null for the last one
+		 */
+		public String getNextPageToken() {
+			return nextPageToken;
+		}
+		
+		/**
+		 * @return Unmodifiable items of the page
+		 */
+		public List<Entry> getEntries() {
+			return entries;
+		}
+		
+	}
+	
+	/**
+	 * Item of a {@link PlaylistSnapshot}.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static final class Entry {
+		
+		/* Variables */
+		private final String videoId;
+		private final int position;
+		
+		/* Constructor */
+		public Entry(String videoId, int position) {
+			this.videoId = videoId;
+			this.position = position;
+		}
+		
+		/**
+		 * @return Video id
+		 */
+		public String getVideoId() {
+			return videoId;
+		}
+		
+		/**
+		 * @return Position in the playlist
+		 */
+		public int getPosition() {
+			return position;
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package caceresenzo.libs.youtube.playlist;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import caceresenzo.libs.logger.Logger;
+
+/**
+ * Directory of {@link PlaylistSnapshot}, one file per playlist.
+ * <p/>
+ * A file starts with a header line, then every page is a line holding its token, etag, next token and item count, followed by one line per item with its video id and position. Fields are tab separated, and files are written to a temporary file then renamed, so a crash never leaves a partial snapshot.
+ * 
+ * @author Enzo CACERES
+ */
+public class PlaylistSnapshotStore {
+	
+	/* Private Constants */
+	private static final String HEADER = "playlist-snapshot 1";
+	private static final String PAGE = "page";
+	private static final String NONE = "-";
+	private static final String SEPARATOR = "\t";
+	private static final String FILE_EXTENSION = ".snapshot";
+	
+	/* Variables */
+	private final Path directory;
+	
+	/* Constructor */
+	public PlaylistSnapshotStore(Path directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * @return Directory holding the snapshots
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Read the snapshot of a playlist.
+	 * 
+	 * @param playlistId
+	 *            Playlist id
+	 * @return The snapshot, or null if there is none or if it is unreadable
+	 */
+	public PlaylistSnapshot load(String playlistId) {
+		Path file = directory.resolve(toFileName(playlistId));
+		
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String[] header = split(reader.readLine(), 2);
+			if (!HEADER.equals(header[0]) || !playlistId.equals(header[1])) {
+				throw new IOException("Not a snapshot of playlist " + playlistId);
+			}
+			
+			List<PlaylistSnapshot.Page> pages = new ArrayList<>();
+			
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] page = split(line, 5);
+				if (!PAGE.equals(page[0])) {
+					throw new IOException("Expected a page but got: " + line);
+				}
+				
+				int count = Integer.parseInt(page[4]);
+				List<PlaylistSnapshot.Entry> entries = new ArrayList<>(count);
+				
+				for (int index = 0; index < count; index++) {
+					String[] entry = split(reader.readLine(), 2);
+					
+					entries.add(new PlaylistSnapshot.Entry(entry[0], Integer.parseInt(entry[1])));
+				}
+				
+				pages.add(new PlaylistSnapshot.Page(fromField(page[1]), fromField(page[2]), fromField(page[3]), entries));
+			}
+			
+			return new PlaylistSnapshot(playlistId, pages);
+		} catch (NoSuchFileException exception) {
+			return null;
+		} catch (IOException | RuntimeException exception) {
+			Logger.exception(exception, "Failed to read the snapshot of playlist " + playlistId);
+			return null;
+		}
+	}
+	
+	/**
+	 * Write a snapshot, replacing the previous one of the same playlist.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to write
+	 * @throws IOException
+	 *             If the snapshot could not be written
+	 */
+	public void save(PlaylistSnapshot snapshot) throws IOException {
+		Files.createDirectories(directory);
+		
+		Path temporary = Files.createTempFile(directory, "write", ".tmp");
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				writer.write(HEADER + SEPARATOR + snapshot.getPlaylistId() + "\n");
+				
+				for (PlaylistSnapshot.Page page : snapshot.getPages()) {
+					writer.write(PAGE + SEPARATOR + toField(page.getPageToken()) + SEPARATOR + toField(page.getEtag()) + SEPARATOR + toField(page.getNextPageToken()) + SEPARATOR + page.getEntries().size() + "\n");
+					
+					for (PlaylistSnapshot.Entry entry : page.getEntries()) {
+						writer.write(entry.getVideoId() + SEPARATOR + entry.getPosition() + "\n");
+					}
+				}
+			}
+			
+			Path file = directory.resolve(toFileName(snapshot.getPlaylistId()));
+			try {
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException exception) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+	
+	/**
+	 * Delete the snapshot of a playlist, the next synchronization will see every item as added.
+	 * 
+	 * @param playlistId
+	 *            Playlist id
+	 * @throws IOException
+	 *             If the snapshot could not be deleted
+	 */
+	public void delete(String playlistId) throws IOException {
+		Files.deleteIfExists(directory.resolve(toFileName(playlistId)));
+	}
+	
+	private static String[] split(String line, int count) throws IOException {
+		if (line == null) {
+			throw new IOException("Truncated snapshot");
+		}
+		
+		String[] fields = line.split(SEPARATOR, -1);
+		if (fields.length != count) {
+			throw new IOException("Expected " + count + " fields but got: " + line);
+		}
+		
+		return fields;
+	}
+	
+	private static String toField(String value) {
+		return value != null ? value : NONE;
+	}
+	
+	private static String fromField(String field) {
+		return NONE.equals(field) ? null : field;
+	}
+	
+	/**
+	 * Playlist ids are made of letters, digits, dashes and underscores, anything else is replaced to stay in the directory.
+	 */
+	private static String toFileName(String playlistId) {
+		return playlistId.replaceAll("[^A-Za-z0-9_\\-]", "_") + FILE_EXTENSION;
+	}
+	
+}
\ No newline at end of file
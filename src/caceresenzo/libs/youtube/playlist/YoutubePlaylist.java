@@ -1,12 +1,15 @@
 package caceresenzo.libs.youtube.playlist;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import caceresenzo.libs.json.JsonArray;
 import caceresenzo.libs.json.JsonObject;
 import caceresenzo.libs.youtube.common.InvalidKindException;
+import caceresenzo.libs.youtube.common.JsonReader;
 import caceresenzo.libs.youtube.common.Kindable;
 
 /**
@@ -24,6 +27,7 @@ public class YoutubePlaylist implements Kindable {
 	public static final int NO_RESULTS = -1;
 	
 	/* Json Constants */
+	public static final String JSON_KEY_ETAG = "etag";
 	public static final String JSON_KEY_PREVIOUS_PAGE_TOKEN = "prevPageToken";
 	public static final String JSON_KEY_NEXT_PAGE_TOKEN = "nextPageToken";
 	
@@ -34,12 +38,14 @@ public class YoutubePlaylist implements Kindable {
 	public static final String JSON_KEY_ITEMS = "items";
 	
 	/* Variables */
+	private String etag;
 	private String previousPageToken, nextPageToken;
 	private int totalResults, resultsPerPage;
 	private List<YoutubePlaylistItem> items;
 	
 	/* Constructor */
-	private YoutubePlaylist(String previousPageToken, String nextPageToken, int totalResults, int resultsPerPage, List<YoutubePlaylistItem> items) {
+	private YoutubePlaylist(String etag, String previousPageToken, String nextPageToken, int totalResults, int resultsPerPage, List<YoutubePlaylistItem> items) {
+		this.etag = etag;
 		this.previousPageToken = previousPageToken;
 		this.nextPageToken = nextPageToken;
 		this.totalResults = totalResults;
@@ -70,6 +76,13 @@ public class YoutubePlaylist implements Kindable {
 		return actualCount < totalResults && nextPageToken != null;
 	}
 	
+	/**
+	 * @return Etag of this page, changing with its content, or null if not sent
+	 */
+	public String getEtag() {
+		return etag;
+	}
+	
 	/**
 	 * @return Previous page token
 	 */
@@ -126,6 +139,7 @@ public class YoutubePlaylist implements Kindable {
 			throw new InvalidKindException(KIND, kind);
 		}
 		
+		String etag = jsonObject.getString(JSON_KEY_ETAG);
 		String previousPageToken = jsonObject.getString(JSON_KEY_PREVIOUS_PAGE_TOKEN);
 		String nextPageToken = jsonObject.getString(JSON_KEY_NEXT_PAGE_TOKEN);
 		int totalResults = NO_RESULTS;
@@ -147,7 +161,101 @@ public class YoutubePlaylist implements Kindable {
 			}
 		}
 		
-		return new YoutubePlaylist(previousPageToken, nextPageToken, totalResults, resultsPerPage, items);
+		return new YoutubePlaylist(etag, previousPageToken, nextPageToken, totalResults, resultsPerPage, items);
+	}
+	
+	/**
+	 * Create a {@link YoutubePlaylist} instance straight from a json stream, without building a json tree. Unknown fields are skipped.
+	 * 
+	 * @param reader
+	 *            Reader positioned before the page object
+	 * @param properties
+	 *            Properties of the items to read
+	 * @return New instance
+	 * @throws IOException
+	 *             If the read failed or the json is malformed
+	 * @throws InvalidKindException
+	 *             If the kind is not valid
+	 * @see YoutubePlaylistItem#fromJson(JsonReader, Set)
+	 */
+	public static YoutubePlaylist fromJson(JsonReader reader, Set<YoutubePlaylistItem.Property> properties) throws IOException {
+		String kind = null, etag = null;
+		String previousPageToken = null, nextPageToken = null;
+		int totalResults = NO_RESULTS;
+		int resultsPerPage = NO_RESULTS;
+		List<YoutubePlaylistItem> items = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case JSON_KEY_KIND: {
+					kind = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_ETAG: {
+					etag = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_PREVIOUS_PAGE_TOKEN: {
+					previousPageToken = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_NEXT_PAGE_TOKEN: {
+					nextPageToken = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_PAGE_INFO: {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						switch (reader.nextName()) {
+							case JSON_KEY_PAGE_INFO_TOTAL_RESULTS: {
+								totalResults = reader.nextInt();
+								break;
+							}
+							
+							case JSON_KEY_PAGE_INFO_RESULTS_PER_PAGE: {
+								resultsPerPage = reader.nextInt();
+								break;
+							}
+							
+							default: {
+								reader.skipValue();
+								break;
+							}
+						}
+					}
+					reader.endObject();
+					break;
+				}
+				
+				case JSON_KEY_ITEMS: {
+					items = new ArrayList<>();
+					
+					reader.beginArray();
+					while (reader.hasNext()) {
+						items.add(YoutubePlaylistItem.fromJson(reader, properties));
+					}
+					reader.endArray();
+					break;
+				}
+				
+				default: {
+					reader.skipValue();
+					break;
+				}
+			}
+		}
+		reader.endObject();
+		
+		if (!KIND.equals(kind)) {
+			throw new InvalidKindException(KIND, kind);
+		}
+		
+		return new YoutubePlaylist(etag, previousPageToken, nextPageToken, totalResults, resultsPerPage, items);
 	}
 	
 }
\ No newline at end of file
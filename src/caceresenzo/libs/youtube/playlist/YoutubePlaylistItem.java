@@ -1,7 +1,11 @@
 package caceresenzo.libs.youtube.playlist;
 
+import java.io.IOException;
+import java.util.Set;
+
 import caceresenzo.libs.json.JsonObject;
 import caceresenzo.libs.youtube.common.InvalidKindException;
+import caceresenzo.libs.youtube.common.JsonReader;
 import caceresenzo.libs.youtube.common.Kindable;
 import caceresenzo.libs.youtube.video.Thumbnails;
 import caceresenzo.libs.youtube.video.VideoMeta;
@@ -70,6 +74,21 @@ public class YoutubePlaylistItem implements Kindable {
 		return KIND;
 	}
 	
+	/**
+	 * Create an item only knowing its video id and position, like the ones remembered by a {@link PlaylistSnapshot}.
+	 * 
+	 * @param videoId
+	 *            Video id
+	 * @param position
+	 *            Position in the playlist
+	 * @return New instance, with a video meta only holding the video id
+	 */
+	public static YoutubePlaylistItem create(String videoId, int position) {
+		VideoMeta videoMeta = new VideoMeta(videoId, null, null, null, null, VideoMeta.NO_VIDEO_LENGTH, VideoMeta.NO_VIEW_COUNT);
+		
+		return new YoutubePlaylistItem(videoId, videoMeta, position);
+	}
+	
 	public static YoutubePlaylistItem fromJson(JsonObject jsonObject) {
 		String kind = jsonObject.getString(JSON_KEY_KIND);
 		
@@ -105,4 +124,165 @@ public class YoutubePlaylistItem implements Kindable {
 		return new YoutubePlaylistItem(videoId, videoMeta, position);
 	}
 	
+	/**
+	 * Create a {@link YoutubePlaylistItem} instance straight from a json stream, the properties that are not requested are skipped without being decoded.
+	 * 
+	 * @param reader
+	 *            Reader positioned before the item object
+	 * @param properties
+	 *            Properties to read, the video id is always read
+	 * @return New instance
+	 * @throws IOException
+	 *             If the read failed or the json is malformed
+	 * @throws InvalidKindException
+	 *             If the kind is not valid
+	 */
+	public static YoutubePlaylistItem fromJson(JsonReader reader, Set<Property> properties) throws IOException {
+		String kind = null;
+		String videoId = null, title = null, description = null, channelTitle = null;
+		int position = NO_POSITION;
+		boolean hasThumbnails = false, hasMaximumResolution = false;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			
+			if (name.equals(JSON_KEY_KIND)) {
+				kind = reader.nextStringOrNull();
+				continue;
+			}
+			
+			if (!name.equals(JSON_KEY_DATA)) {
+				reader.skipValue();
+				continue;
+			}
+			
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case JSON_KEY_DATA_RESSOURCE_ID: {
+						reader.beginObject();
+						while (reader.hasNext()) {
+							if (reader.nextName().equals(JSON_KEY_DATA_RESSOURCE_ID_VIDEO_ID)) {
+								videoId = reader.nextStringOrNull();
+							} else {
+								reader.skipValue();
+							}
+						}
+						reader.endObject();
+						break;
+					}
+					
+					case JSON_KEY_DATA_TITLE: {
+						title = readString(reader, properties, Property.TITLE);
+						break;
+					}
+					
+					case JSON_KEY_DATA_DESCRIPTION: {
+						description = readString(reader, properties, Property.DESCRIPTION);
+						break;
+					}
+					
+					case JSON_KEY_DATA_CHANNEL_TITLE: {
+						channelTitle = readString(reader, properties, Property.CHANNEL_TITLE);
+						break;
+					}
+					
+					case JSON_KEY_DATA_POSITION: {
+						if (properties.contains(Property.POSITION)) {
+							position = reader.nextInt();
+						} else {
+							reader.skipValue();
+						}
+						break;
+					}
+					
+					case JSON_KEY_DATA_THUMBNAILS: {
+						if (!properties.contains(Property.THUMBNAILS)) {
+							reader.skipValue();
+							break;
+						}
+						
+						hasThumbnails = true;
+						
+						reader.beginObject();
+						while (reader.hasNext()) {
+							if (reader.nextName().equals(JSON_KEY_DATA_THUMBNAILS_RESOLUTION_MAXIMUM)) {
+								hasMaximumResolution = true;
+							}
+							
+							reader.skipValue();
+						}
+						reader.endObject();
+						break;
+					}
+					
+					default: {
+						reader.skipValue();
+						break;
+					}
+				}
+			}
+			reader.endObject();
+		}
+		reader.endObject();
+		
+		if (!KIND.equals(kind)) {
+			throw new InvalidKindException(KIND, kind);
+		}
+		
+		Thumbnails thumbnails = null;
+		if (hasThumbnails) {
+			thumbnails = new Thumbnails(videoId);
+			
+			if (!hasMaximumResolution) {
+				thumbnails.disableMaximumResolution();
+			}
+		}
+		
+		VideoMeta videoMeta = new VideoMeta(videoId, title, description, null, channelTitle, VideoMeta.NO_VIDEO_LENGTH, VideoMeta.NO_VIEW_COUNT, thumbnails);
+		
+		return new YoutubePlaylistItem(videoId, videoMeta, position);
+	}
+	
+	private static String readString(JsonReader reader, Set<Property> properties, Property property) throws IOException {
+		if (properties.contains(property)) {
+			return reader.nextStringOrNull();
+		}
+		
+		reader.skipValue();
+		return null;
+	}
+	
+	/**
+	 * Property of a playlist item that can be requested, only the requested ones are sent by the api and decoded.
+	 * 
+	 * @author Enzo CACERES
+	 */
+	public static enum Property {
+		
+		VIDEO_ID("snippet/resourceId/videoId"), //
+		TITLE("snippet/title"), //
+		DESCRIPTION("snippet/description"), //
+		CHANNEL_TITLE("snippet/channelTitle"), //
+		POSITION("snippet/position"), //
+		THUMBNAILS("snippet/thumbnails/default/url", "snippet/thumbnails/maxres/url");
+		
+		/* Variables */
+		private final String[] fields;
+		
+		/* Constructor */
+		private Property(String... fields) {
+			this.fields = fields;
+		}
+		
+		/**
+		 * @return Paths of the json fields of this property, in the syntax of the api's <code>fields</code> parameter
+		 */
+		public String[] getFields() {
+			return fields.clone();
+		}
+		
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package caceresenzo.libs.youtube.video;
+
+/**
+ * Metadata of a DASH manifest representation, attached to the {@link YoutubeVideo} extracted from it.
+ * 
+ * @author Enzo CACERES
+ */
+public class DashRepresentation {
+	
+	/* Constants */
+	public static final int UNSPECIFIED = -1;
+	
+	/* Variables */
+	private final String id, mimeType, codecs;
+	private final long bandwidth;
+	private final int width, height, frameRate, audioSamplingRate;
+	private final long initRangeStart, initRangeEnd, indexRangeStart, indexRangeEnd;
+	
+	/* Constructor */
+	public DashRepresentation(String id, String mimeType, String codecs, long bandwidth, int width, int height, int frameRate, int audioSamplingRate, long initRangeStart, long initRangeEnd, long indexRangeStart, long indexRangeEnd) {
+		this.id = id;
+		this.mimeType = mimeType;
+		this.codecs = codecs;
+		this.bandwidth = bandwidth;
+		this.width = width;
+		this.height = height;
+		this.frameRate = frameRate;
+		this.audioSamplingRate = audioSamplingRate;
+		this.initRangeStart = initRangeStart;
+		this.initRangeEnd = initRangeEnd;
+		this.indexRangeStart = indexRangeStart;
+		this.indexRangeEnd = indexRangeEnd;
+	}
+	
+	/**
+	 * @return Representation id, the itag for youtube manifests
+	 */
+	public String getId() {
+		return id;
+	}
+	
+	/**
+	 * @return Mime type, like <code>video/mp4</code>, or null if not specified
+	 */
+	public String getMimeType() {
+		return mimeType;
+	}
+	
+	/**
+	 * @return Codecs, like <code>avc1.4d401f</code>, or null if not specified
+	 */
+	public String getCodecs() {
+		return codecs;
+	}
+	
+	/**
+	 * @return Bandwidth in bit/s, or {@link #UNSPECIFIED}
+	 */
+	public long getBandwidth() {
+		return bandwidth;
+	}
+	
+	/**
+	 * @return Video width in pixel, or {@link #UNSPECIFIED} for audio
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * @return Video height in pixel, or {@link #UNSPECIFIED} for audio
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return Frames per second, or {@link #UNSPECIFIED}
+	 */
+	public int getFrameRate() {
+		return frameRate;
+	}
+	
+	/**
+	 * @return Audio sampling rate in Hz, or {@link #UNSPECIFIED} for video
+	 */
+	public int getAudioSamplingRate() {
+		return audioSamplingRate;
+	}
+	
+	/**
+	 * @return If the byte range of the initialization segment is known
+	 */
+	public boolean hasInitRange() {
+		return initRangeStart != UNSPECIFIED;
+	}
+	
+	/**
+	 * @return First byte of the initialization segment, or {@link #UNSPECIFIED}
+	 */
+	public long getInitRangeStart() {
+		return initRangeStart;
+	}
+	
+	/**
+	 * @return Last byte (inclusive) of the initialization segment, or {@link #UNSPECIFIED}
+	 */
+	public long getInitRangeEnd() {
+		return initRangeEnd;
+	}
+	
+	/**
+	 * @return If the byte range of the segment index is known
+	 */
+	public boolean hasIndexRange() {
+		return indexRangeStart != UNSPECIFIED;
+	}
+	
+	/**
+	 * @return First byte of the segment index (<code>sidx</code> or <code>Cues</code>), or {@link #UNSPECIFIED}
+	 */
+	public long getIndexRangeStart() {
+		return indexRangeStart;
+	}
+	
+	/**
+	 * @return Last byte (inclusive) of the segment index, or {@link #UNSPECIFIED}
+	 */
+	public long getIndexRangeEnd() {
+		return indexRangeEnd;
+	}
+	
+	@Override
+	public String toString() {
+		return "DashRepresentation[id=" + id + ", mimeType=" + mimeType + ", codecs=" + codecs + ", bandwidth=" + bandwidth + ", width=" + width + ", height=" + height + ", frameRate=" + frameRate + ", audioSamplingRate=" + audioSamplingRate + ", initRange=" + initRangeStart + "-" + initRangeEnd + ", indexRange=" + indexRangeStart + "-" + indexRangeEnd + "]";
+	}
+	
+}
\ No newline at end of file
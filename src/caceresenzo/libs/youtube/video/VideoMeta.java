@@ -116,6 +116,43 @@ public class VideoMeta {
 		return thumbnails;
 	}
 	
+	/**
+	 * Complete this meta data with the one fetched from the <code>videos</code> api. The values known by the details replace the current ones, as the playlist api only give a partial (and sometimes outdated) view of a video.
+	 * 
+	 * @param details
+	 *            Meta data of the same video
+	 * @return Itself
+	 * @throws IllegalArgumentException
+	 *             If the details are not of the same video
+	 */
+	public VideoMeta enrich(VideoMeta details) {
+		if (videoId != null && !videoId.equals(details.videoId)) {
+			throw new IllegalArgumentException("Can not enrich video " + videoId + " with the details of video " + details.videoId);
+		}
+		
+		if (details.title != null) {
+			title = details.title;
+		}
+		if (details.description != null) {
+			description = details.description;
+		}
+		if (details.author != null) {
+			author = details.author;
+		}
+		if (details.channelId != null) {
+			channelId = details.channelId;
+		}
+		if (details.videoLength != NO_VIDEO_LENGTH) {
+			videoLength = details.videoLength;
+		}
+		if (details.viewCount != NO_VIEW_COUNT) {
+			viewCount = details.viewCount;
+		}
+		isLiveStream = details.isLiveStream;
+		
+		return this;
+	}
+	
 	@Override
 	public String toString() {
 		return "VideoMeta[videoId=" + videoId + ", title=" + title + ", author=" + author + ", channelId=" + channelId + ", videoLength=" + videoLength + ", viewCount=" + viewCount + ", isLiveStream=" + isLiveStream + "]";
@@ -6,10 +6,16 @@ public class YoutubeVideo {
 	
 	private YoutubeFormat format;
 	private String url = "";
+	private DashRepresentation representation;
 	
 	public YoutubeVideo(YoutubeFormat format, String url) {
+		this(format, url, null);
+	}
+	
+	public YoutubeVideo(YoutubeFormat format, String url, DashRepresentation representation) {
 		this.format = format;
 		this.url = url;
+		this.representation = representation;
 	}
 	
 	/**
@@ -34,9 +40,16 @@ public class YoutubeVideo {
 		return format;
 	}
 	
+	/**
+	 * DASH manifest metadata (bandwidth, codecs, byte ranges...), null if the file has not been found in a manifest.
+	 */
+	public DashRepresentation getRepresentation() {
+		return representation;
+	}
+	
 	@Override
 	public String toString() {
-		return "YoutubeFile [format=" + format + ", url=" + url + "]";
+		return "YoutubeFile [format=" + format + ", url=" + url + ", representation=" + representation + "]";
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,305 @@
+package caceresenzo.libs.youtube.video;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import caceresenzo.libs.youtube.common.InvalidKindException;
+import caceresenzo.libs.youtube.common.JsonReader;
+import caceresenzo.libs.youtube.common.Kindable;
+
+/**
+ * Simple class to handle youtube's API result for Videos
+ * 
+ * @author Enzo CACERES
+ */
+public class YoutubeVideoList implements Kindable {
+	
+	/* Constants */
+	public static final String KIND = "youtube#videoListResponse";
+	public static final String ITEM_KIND = "youtube#video";
+	
+	public static final String LIVE_BROADCAST_CONTENT_LIVE = "live";
+	
+	/* Json Constants */
+	public static final String JSON_KEY_ITEMS = "items";
+	public static final String JSON_KEY_ITEM_ID = "id";
+	
+	public static final String JSON_KEY_ITEM_SNIPPET = "snippet";
+	public static final String JSON_KEY_ITEM_SNIPPET_TITLE = "title";
+	public static final String JSON_KEY_ITEM_SNIPPET_DESCRIPTION = "description";
+	public static final String JSON_KEY_ITEM_SNIPPET_CHANNEL_ID = "channelId";
+	public static final String JSON_KEY_ITEM_SNIPPET_CHANNEL_TITLE = "channelTitle";
+	public static final String JSON_KEY_ITEM_SNIPPET_LIVE_BROADCAST_CONTENT = "liveBroadcastContent";
+	public static final String JSON_KEY_ITEM_SNIPPET_THUMBNAILS = "thumbnails";
+	public static final String JSON_KEY_ITEM_SNIPPET_THUMBNAILS_RESOLUTION_MAXIMUM = "maxres";
+	
+	public static final String JSON_KEY_ITEM_CONTENT_DETAILS = "contentDetails";
+	public static final String JSON_KEY_ITEM_CONTENT_DETAILS_DURATION = "duration";
+	
+	public static final String JSON_KEY_ITEM_STATISTICS = "statistics";
+	public static final String JSON_KEY_ITEM_STATISTICS_VIEW_COUNT = "viewCount";
+	
+	/* Variables */
+	private final List<VideoMeta> videos;
+	
+	/* Constructor */
+	private YoutubeVideoList(List<VideoMeta> videos) {
+		this.videos = videos;
+	}
+	
+	/**
+	 * @return Meta data of the found videos, the deleted and private ones are missing
+	 */
+	public List<VideoMeta> getVideos() {
+		return videos;
+	}
+	
+	@Override
+	public String getItemKind() {
+		return KIND;
+	}
+	
+	/**
+	 * Create a {@link YoutubeVideoList} instance straight from a json stream, without building a json tree. Unknown fields are skipped.
+	 * 
+	 * @param reader
+	 *            Reader positioned before the response object
+	 * @return New instance
+	 * @throws IOException
+	 *             If the read failed or the json is malformed
+	 * @throws InvalidKindException
+	 *             If the kind is not valid
+	 */
+	public static YoutubeVideoList fromJson(JsonReader reader) throws IOException {
+		String kind = null;
+		List<VideoMeta> videos = new ArrayList<>();
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case JSON_KEY_KIND: {
+					kind = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_ITEMS: {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						videos.add(parseVideo(reader));
+					}
+					reader.endArray();
+					break;
+				}
+				
+				default: {
+					reader.skipValue();
+					break;
+				}
+			}
+		}
+		reader.endObject();
+		
+		if (!KIND.equals(kind)) {
+			throw new InvalidKindException(KIND, kind);
+		}
+		
+		return new YoutubeVideoList(Collections.unmodifiableList(videos));
+	}
+	
+	private static VideoMeta parseVideo(JsonReader reader) throws IOException {
+		String kind = null;
+		String videoId = null, title = null, description = null, author = null, channelId = null;
+		long videoLength = VideoMeta.NO_VIDEO_LENGTH, viewCount = VideoMeta.NO_VIEW_COUNT;
+		boolean isLiveStream = false, hasMaximumResolution = false;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case JSON_KEY_KIND: {
+					kind = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_ITEM_ID: {
+					videoId = reader.nextStringOrNull();
+					break;
+				}
+				
+				case JSON_KEY_ITEM_SNIPPET: {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						switch (reader.nextName()) {
+							case JSON_KEY_ITEM_SNIPPET_TITLE: {
+								title = reader.nextStringOrNull();
+								break;
+							}
+							
+							case JSON_KEY_ITEM_SNIPPET_DESCRIPTION: {
+								description = reader.nextStringOrNull();
+								break;
+							}
+							
+							case JSON_KEY_ITEM_SNIPPET_CHANNEL_TITLE: {
+								author = reader.nextStringOrNull();
+								break;
+							}
+							
+							case JSON_KEY_ITEM_SNIPPET_CHANNEL_ID: {
+								channelId = reader.nextStringOrNull();
+								break;
+							}
+							
+							case JSON_KEY_ITEM_SNIPPET_LIVE_BROADCAST_CONTENT: {
+								isLiveStream = LIVE_BROADCAST_CONTENT_LIVE.equals(reader.nextStringOrNull());
+								break;
+							}
+							
+							case JSON_KEY_ITEM_SNIPPET_THUMBNAILS: {
+								reader.beginObject();
+								while (reader.hasNext()) {
+									if (reader.nextName().equals(JSON_KEY_ITEM_SNIPPET_THUMBNAILS_RESOLUTION_MAXIMUM)) {
+										hasMaximumResolution = true;
+									}
+									
+									reader.skipValue();
+								}
+								reader.endObject();
+								break;
+							}
+							
+							default: {
+								reader.skipValue();
+								break;
+							}
+						}
+					}
+					reader.endObject();
+					break;
+				}
+				
+				case JSON_KEY_ITEM_CONTENT_DETAILS: {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (reader.nextName().equals(JSON_KEY_ITEM_CONTENT_DETAILS_DURATION)) {
+							videoLength = parseDuration(reader.nextStringOrNull());
+						} else {
+							reader.skipValue();
+						}
+					}
+					reader.endObject();
+					break;
+				}
+				
+				case JSON_KEY_ITEM_STATISTICS: {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (reader.nextName().equals(JSON_KEY_ITEM_STATISTICS_VIEW_COUNT)) {
+							/* Sent as a string, being an unsigned long */
+							try {
+								viewCount = Long.parseLong(reader.nextStringOrNull());
+							} catch (NumberFormatException exception) {
+								viewCount = VideoMeta.NO_VIEW_COUNT;
+							}
+						} else {
+							reader.skipValue();
+						}
+					}
+					reader.endObject();
+					break;
+				}
+				
+				default: {
+					reader.skipValue();
+					break;
+				}
+			}
+		}
+		reader.endObject();
+		
+		if (!ITEM_KIND.equals(kind)) {
+			throw new InvalidKindException(ITEM_KIND, kind);
+		}
+		
+		/* The projection only asks for the maximum resolution, its absence means it is not available */
+		Thumbnails thumbnails = new Thumbnails(videoId);
+		if (!hasMaximumResolution) {
+			thumbnails.disableMaximumResolution();
+		}
+		
+		return new VideoMeta(videoId, title, description, author, channelId, videoLength, viewCount, isLiveStream, thumbnails);
+	}
+	
+	/**
+	 * Parse an ISO 8601 duration, like <code>PT1H2M3S</code> or <code>P1DT2H</code>.
+	 * 
+	 * @param duration
+	 *            Duration to parse
+	 * @return Duration in seconds, or {@link VideoMeta#NO_VIDEO_LENGTH} if not parsable
+	 */
+	public static long parseDuration(String duration) {
+		if (duration == null || duration.isEmpty() || duration.charAt(0) != 'P') {
+			return VideoMeta.NO_VIDEO_LENGTH;
+		}
+		
+		long seconds = 0, value = 0;
+		boolean time = false, hasValue = false;
+		
+		for (int index = 1; index < duration.length(); index++) {
+			char character = duration.charAt(index);
+			
+			if (character >= '0' && character <= '9') {
+				value = value * 10 + (character - '0');
+				hasValue = true;
+				continue;
+			}
+			
+			if (character == 'T') {
+				time = true;
+				continue;
+			}
+			
+			if (!hasValue) {
+				return VideoMeta.NO_VIDEO_LENGTH;
+			}
+			
+			switch (character) {
+				case 'W': {
+					seconds += value * 7 * 86400;
+					break;
+				}
+				
+				case 'D': {
+					seconds += value * 86400;
+					break;
+				}
+				
+				case 'H': {
+					seconds += value * 3600;
+					break;
+				}
+				
+				case 'M': {
+					seconds += time ? value * 60 : value * 30 * 86400;
+					break;
+				}
+				
+				case 'S': {
+					seconds += value;
+					break;
+				}
+				
+				default: {
+					return VideoMeta.NO_VIDEO_LENGTH;
+				}
+			}
+			
+			value = 0;
+			hasValue = false;
+		}
+		
+		return seconds;
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+package caceresenzo.libs.youtube.api.implementations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import caceresenzo.libs.youtube.api.QuotaScheduler;
+import caceresenzo.libs.youtube.api.YoutubeApi;
+import caceresenzo.libs.youtube.network.StubHttpTransport;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+import caceresenzo.libs.youtube.playlist.PlaylistDelta;
+import caceresenzo.libs.youtube.playlist.PlaylistSnapshotStore;
+import caceresenzo.libs.youtube.playlist.YoutubePlaylistItem;
+
+/**
+ * Tests of the incremental playlist synchronization, against a stub of the playlist items api.
+ * 
+ * @author Enzo CACERES
+ */
+public class PlaylistSyncTest {
+	
+	/* Private Constants */
+	private static final String PLAYLIST_ID = "PLtest";
+	private static final int PAGE_SIZE = 50;
+	
+	/* Variables */
+	private List<String> videoIds;
+	private Path directory;
+	private StubHttpTransport transport;
+	private PlaylistSync sync;
+	private boolean unavailable;
+	
+	@Before
+	public void setUp() throws IOException {
+		videoIds = new ArrayList<>();
+		for (int index = 0; index < 120; index++) {
+			videoIds.add("v" + index);
+		}
+		
+		directory = Files.createTempDirectory("playlist-sync-test");
+		transport = new StubHttpTransport().register(YoutubeApi.API_URL + "playlistItems", this::serve);
+		sync = new PlaylistSync.Builder() //
+				.store(new PlaylistSnapshotStore(directory)) //
+				.transport(transport) //
+				.scheduler(new QuotaScheduler.Builder().key("test-key").build()) //
+				.build();
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Collections.reverseOrder()).collect(Collectors.toList())) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+	
+	@Test
+	public void testLongestIncreasingSubsequence() {
+		assertArrayEquals(new boolean[0], PlaylistSync.longestIncreasingSubsequence(new int[0]));
+		assertArrayEquals(new boolean[] { true, true, true }, PlaylistSync.longestIncreasingSubsequence(new int[] { 0, 1, 2 }));
+		assertArrayEquals(new boolean[] { false, true, true, true }, PlaylistSync.longestIncreasingSubsequence(new int[] { 3, 0, 1, 2 }));
+		assertArrayEquals(new boolean[] { true, true, true, false }, PlaylistSync.longestIncreasingSubsequence(new int[] { 1, 2, 3, 0 }));
+		assertArrayEquals(new boolean[] { true, false, false, true, true }, PlaylistSync.longestIncreasingSubsequence(new int[] { 0, 4, 2, 1, 3 }));
+		
+		/* Only one element of a fully reversed sequence can keep its place */
+		boolean[] kept = PlaylistSync.longestIncreasingSubsequence(new int[] { 4, 3, 2, 1, 0 });
+		int count = 0;
+		for (boolean value : kept) {
+			count += value ? 1 : 0;
+		}
+		assertEquals(1, count);
+	}
+	
+	@Test
+	public void testFirstSync() throws Exception {
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		assertEquals(videoIds, toVideoIds(delta.getAdded()));
+		assertTrue(delta.getRemoved().isEmpty());
+		assertTrue(delta.getMoved().isEmpty());
+		assertEquals(3, delta.getFetchedPages());
+		assertEquals(0, delta.getNotModifiedPages());
+	}
+	
+	@Test
+	public void testUnchanged() throws Exception {
+		sync.sync(PLAYLIST_ID);
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		assertTrue(delta.isEmpty());
+		assertEquals(0, delta.getFetchedPages());
+		assertEquals(3, delta.getNotModifiedPages());
+		
+		for (TransportRequest request : transport.getRequests().subList(3, 6)) {
+			assertTrue(request.getHeader(TransportRequest.HEADER_IF_NONE_MATCH) != null);
+		}
+	}
+	
+	@Test
+	public void testReplacedInLastPage() throws Exception {
+		sync.sync(PLAYLIST_ID);
+		videoIds.set(110, "new");
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		assertEquals(Collections.singletonList("new"), toVideoIds(delta.getAdded()));
+		assertEquals(Collections.singletonList("v110"), toVideoIds(delta.getRemoved()));
+		assertTrue(delta.getMoved().isEmpty());
+		assertEquals(1, delta.getFetchedPages());
+		assertEquals(2, delta.getNotModifiedPages());
+	}
+	
+	@Test
+	public void testMoved() throws Exception {
+		sync.sync(PLAYLIST_ID);
+		videoIds.add(3, videoIds.remove(100));
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		assertTrue(delta.getAdded().isEmpty());
+		assertTrue(delta.getRemoved().isEmpty());
+		assertEquals(Collections.singletonList("v100"), toVideoIds(delta.getMoved()));
+	}
+	
+	@Test
+	public void testPrependedAndTruncated() throws Exception {
+		sync.sync(PLAYLIST_ID);
+		videoIds.add(0, "top");
+		videoIds.subList(100, videoIds.size()).clear();
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		/* Shifting every item is not a move, their relative order is the same */
+		assertEquals(Collections.singletonList("top"), toVideoIds(delta.getAdded()));
+		assertEquals(21, delta.getRemoved().size());
+		assertTrue(delta.getMoved().isEmpty());
+	}
+	
+	@Test
+	public void testDuplicate() throws Exception {
+		sync.sync(PLAYLIST_ID);
+		videoIds.add(5, "v0");
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		/* The second occurrence is a new item, the first one stays */
+		assertEquals(Collections.singletonList("v0"), toVideoIds(delta.getAdded()));
+		assertTrue(delta.getRemoved().isEmpty());
+		assertTrue(delta.getMoved().isEmpty());
+	}
+	
+	@Test
+	public void testFailedSyncKeepSnapshot() throws Exception {
+		sync.sync(PLAYLIST_ID);
+		videoIds.set(0, "new");
+		
+		unavailable = true;
+		try {
+			sync.sync(PLAYLIST_ID);
+			fail("The synchronization succeeded without the api");
+		} catch (IOException exception) {
+			;
+		}
+		
+		unavailable = false;
+		PlaylistDelta delta = sync.sync(PLAYLIST_ID);
+		
+		assertEquals(Collections.singletonList("new"), toVideoIds(delta.getAdded()));
+		assertEquals(Collections.singletonList("v0"), toVideoIds(delta.getRemoved()));
+	}
+	
+	/**
+	 * Answer a page of the playlist, or a <code>304</code> if it has the etag sent by the client.
+	 */
+	private TransportResponse serve(TransportRequest request) {
+		if (unavailable) {
+			return StubHttpTransport.response(request, 503, Collections.<String, String> emptyMap(), new byte[0]);
+		}
+		
+		String pageToken = getParameter(request.getUrl(), "pageToken");
+		int page = pageToken != null ? Integer.parseInt(pageToken.substring(1)) : 0;
+		int from = page * PAGE_SIZE, to = Math.min(videoIds.size(), from + PAGE_SIZE);
+		
+		StringBuilder items = new StringBuilder();
+		for (int index = from; index < to; index++) {
+			items.append(index != from ? "," : "");
+			items.append("{\"kind\":\"youtube#playlistItem\",\"snippet\":{\"position\":" + index + ",\"resourceId\":{\"videoId\":\"" + videoIds.get(index) + "\"}}}");
+		}
+		
+		String etag = "E" + Integer.toHexString((items.toString() + videoIds.size()).hashCode());
+		if (etag.equals(request.getHeader(TransportRequest.HEADER_IF_NONE_MATCH))) {
+			return StubHttpTransport.response(request, 304, Collections.<String, String> emptyMap(), new byte[0]);
+		}
+		
+		String nextPageToken = to < videoIds.size() ? "\"nextPageToken\":\"P" + (page + 1) + "\"," : "";
+		String body = "{\"kind\":\"youtube#playlistItemListResponse\",\"etag\":\"" + etag + "\"," + nextPageToken + "\"pageInfo\":{\"totalResults\":" + videoIds.size() + ",\"resultsPerPage\":" + PAGE_SIZE + "},\"items\":[" + items + "]}";
+		
+		return StubHttpTransport.response(request, 200, Collections.<String, String> emptyMap(), body.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static String getParameter(String url, String name) {
+		for (String parameter : url.substring(url.indexOf('?') + 1).split("&")) {
+			if (parameter.startsWith(name + "=")) {
+				return parameter.substring(name.length() + 1);
+			}
+		}
+		
+		return null;
+	}
+	
+	private static List<String> toVideoIds(List<YoutubePlaylistItem> items) {
+		return items.stream().map(YoutubePlaylistItem::getVideoId).collect(Collectors.toList());
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,158 @@
+package caceresenzo.libs.youtube.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import caceresenzo.libs.youtube.common.JsonReader.Token;
+
+/**
+ * Tests of the streaming json reader.
+ * 
+ * @author Enzo CACERES
+ */
+public class JsonReaderTest {
+	
+	@Test
+	public void testValues() throws IOException {
+		JsonReader reader = reader("{\"string\": \"hello\", \"number\": -42, \"true\": true, \"false\": false, \"null\": null, \"array\": [1, 2.5e3]}");
+		
+		reader.beginObject();
+		assertEquals("string", reader.nextName());
+		assertEquals("hello", reader.nextString());
+		assertEquals("number", reader.nextName());
+		assertEquals(-42, reader.nextInt());
+		assertEquals("true", reader.nextName());
+		assertTrue(reader.nextBoolean());
+		assertEquals("false", reader.nextName());
+		assertFalse(reader.nextBoolean());
+		assertEquals("null", reader.nextName());
+		assertNull(reader.nextStringOrNull());
+		assertEquals("array", reader.nextName());
+		reader.beginArray();
+		assertEquals(1, reader.nextLong());
+		assertEquals(Token.NUMBER, reader.peek());
+		assertEquals("2.5e3", reader.nextString());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertFalse(reader.hasNext());
+		reader.endObject();
+		assertEquals(Token.END_DOCUMENT, reader.peek());
+	}
+	
+	@Test
+	public void testEscapes() throws IOException {
+		JsonReader reader = reader("[\"a\\\"b\\\\c\\/d\\n\\t\", \"\\u00e9t\\u00E9\", \"\\ud83d\\ude00\", \"déjà 😀\"]");
+		
+		reader.beginArray();
+		assertEquals("a\"b\\c/d\n\t", reader.nextString());
+		assertEquals("été", reader.nextString());
+		assertEquals("😀", reader.nextString());
+		assertEquals("déjà 😀", reader.nextString());
+		reader.endArray();
+	}
+	
+	@Test
+	public void testStringNumbers() throws IOException {
+		JsonReader reader = reader("{\"viewCount\": \"9223372036854775807\"}");
+		
+		reader.beginObject();
+		assertEquals("viewCount", reader.nextName());
+		assertEquals(Long.MAX_VALUE, reader.nextLong());
+		reader.endObject();
+	}
+	
+	@Test
+	public void testSkipValue() throws IOException {
+		JsonReader reader = reader("{\"skipped\": {\"a\": [1, {\"b\": \"}]\"}, [], null], \"c\": true}, \"kept\": \"value\", \"last\": 3}");
+		
+		reader.beginObject();
+		assertEquals("skipped", reader.nextName());
+		reader.skipValue();
+		assertEquals("kept", reader.nextName());
+		assertEquals("value", reader.nextString());
+		assertEquals("last", reader.nextName());
+		reader.skipValue();
+		assertFalse(reader.hasNext());
+		reader.endObject();
+	}
+	
+	@Test
+	public void testLargeDocument() throws IOException {
+		/* Larger than the buffer, so tokens are split across reads */
+		StringBuilder builder = new StringBuilder("[");
+		for (int index = 0; index < 5000; index++) {
+			builder.append(index != 0 ? "," : "").append("\"item-").append(index).append("\"");
+		}
+		builder.append("]");
+		
+		JsonReader reader = reader(builder.toString());
+		int count = 0;
+		
+		reader.beginArray();
+		while (reader.hasNext()) {
+			assertEquals("item-" + count++, reader.nextString());
+		}
+		reader.endArray();
+		
+		assertEquals(5000, count);
+	}
+	
+	@Test
+	public void testMalformed() {
+		assertMalformed("{\"a\" 1}");
+		assertMalformed("[1,]");
+		assertMalformed("[\"unterminated");
+	}
+	
+	@Test
+	public void testMalformedLiteral() throws IOException {
+		JsonReader reader = reader("[tru]");
+		
+		reader.beginArray();
+		try {
+			reader.nextBoolean();
+			fail("A truncated literal has been read as a boolean");
+		} catch (IOException exception) {
+			assertTrue(exception.getMessage(), exception.getMessage().contains("at offset"));
+		}
+	}
+	
+	@Test
+	public void testWrongToken() throws IOException {
+		JsonReader reader = reader("[true]");
+		
+		reader.beginArray();
+		try {
+			reader.nextString();
+			fail("A boolean has been read as a string");
+		} catch (IOException exception) {
+			assertTrue(exception.getMessage(), exception.getMessage().contains("at offset"));
+		}
+	}
+	
+	private static void assertMalformed(String json) {
+		try {
+			JsonReader reader = reader(json);
+			
+			reader.skipValue();
+			reader.peek();
+			fail("Malformed json accepted: " + json);
+		} catch (IOException exception) {
+			assertTrue(exception.getMessage(), exception.getMessage().contains("at offset"));
+		}
+	}
+	
+	private static JsonReader reader(String json) {
+		return new JsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package caceresenzo.libs.youtube.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the download journal.
+ * 
+ * @author Enzo CACERES
+ */
+public class DownloadJournalTest {
+	
+	/* Private Constants */
+	private static final String DESCRIPTION = "137 10000 1000";
+	
+	/* Variables */
+	private Path file;
+	
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("download-journal-test", RangeDownloader.JOURNAL_EXTENSION);
+		Files.delete(file);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+	
+	@Test
+	public void testResume() throws IOException {
+		try (DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, true)) {
+			assertTrue(journal.getCompleted().isEmpty());
+			
+			journal.markDone(0);
+			journal.markDone(2);
+		}
+		
+		try (DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, true)) {
+			assertEquals(bits(0, 2), journal.getCompleted());
+		}
+	}
+	
+	@Test
+	public void testDescriptionMismatch() throws IOException {
+		write(DESCRIPTION + "\n0\n1\n");
+		
+		try (DownloadJournal journal = DownloadJournal.open(file, "137 10000 2000", true)) {
+			assertTrue(journal.getCompleted().isEmpty());
+		}
+		
+		assertEquals("137 10000 2000\n", read());
+	}
+	
+	@Test
+	public void testNotResumed() throws IOException {
+		write(DESCRIPTION + "\n0\n1\n");
+		
+		try (DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, false)) {
+			assertTrue(journal.getCompleted().isEmpty());
+		}
+		
+		assertEquals(DESCRIPTION + "\n", read());
+	}
+	
+	@Test
+	public void testTruncatedLine() throws IOException {
+		/* Crashed while writing "12" */
+		write(DESCRIPTION + "\n0\n3\n1");
+		
+		try (DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, true)) {
+			assertEquals(bits(0, 3), journal.getCompleted());
+			
+			journal.markDone(5);
+		}
+		
+		/* The fragment is dropped instead of being completed into "15" */
+		assertEquals(DESCRIPTION + "\n0\n3\n5\n", read());
+	}
+	
+	@Test
+	public void testTruncatedDescription() throws IOException {
+		write(DESCRIPTION.substring(0, 5));
+		
+		try (DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, true)) {
+			assertTrue(journal.getCompleted().isEmpty());
+		}
+		
+		assertEquals(DESCRIPTION + "\n", read());
+	}
+	
+	@Test
+	public void testInvalidLine() throws IOException {
+		write(DESCRIPTION + "\n0\nabc\n-1\n4\n");
+		
+		try (DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, true)) {
+			assertEquals(bits(0, 4), journal.getCompleted());
+		}
+	}
+	
+	@Test
+	public void testDelete() throws IOException {
+		DownloadJournal journal = DownloadJournal.open(file, DESCRIPTION, true);
+		journal.markDone(0);
+		journal.delete();
+		
+		assertFalse(Files.exists(file));
+	}
+	
+	private void write(String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private String read() throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+	
+	private static BitSet bits(int... indexes) {
+		BitSet bits = new BitSet();
+		
+		for (int index : indexes) {
+			bits.set(index);
+		}
+		
+		return bits;
+	}
+	
+}
\ No newline at end of file
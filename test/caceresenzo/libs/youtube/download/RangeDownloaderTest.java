@@ -0,0 +1,248 @@
+package caceresenzo.libs.youtube.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import caceresenzo.libs.youtube.format.FormatRegistry;
+import caceresenzo.libs.youtube.network.HttpStatusException;
+import caceresenzo.libs.youtube.network.StubHttpTransport;
+import caceresenzo.libs.youtube.network.TransportRequest;
+import caceresenzo.libs.youtube.network.TransportResponse;
+import caceresenzo.libs.youtube.video.YoutubeVideo;
+
+/**
+ * Tests of the ranged downloads, against a stub serving a random file.
+ * 
+ * @author Enzo CACERES
+ */
+public class RangeDownloaderTest {
+	
+	/* Private Constants */
+	private static final String MEDIA_URL = "https://media.example/videoplayback";
+	private static final int LENGTH = 10000;
+	private static final int CHUNK_SIZE = 1000;
+	private static final Pattern PATTERN_RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+	
+	/* Variables */
+	private byte[] content;
+	private Path directory, file;
+	private StubHttpTransport transport;
+	private volatile int refusedFrom;
+	private volatile boolean rangeIgnored;
+	private volatile String expiredUrl;
+	
+	@Before
+	public void setUp() throws IOException {
+		content = new byte[LENGTH];
+		new Random(42).nextBytes(content);
+		
+		directory = Files.createTempDirectory("range-downloader-test");
+		file = directory.resolve("video.mp4");
+		
+		refusedFrom = Integer.MAX_VALUE;
+		transport = new StubHttpTransport().register(MEDIA_URL, this::serve);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Collections.reverseOrder()).collect(Collectors.toList())) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+	
+	@Test
+	public void testDownload() throws Exception {
+		assertEquals(LENGTH, createDownloader(CHUNK_SIZE, 3, null).download(video(MEDIA_URL + "?clen=" + LENGTH), file));
+		
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+		assertFalse(Files.exists(journalFile()));
+		assertEquals(LENGTH / CHUNK_SIZE, transport.getRequests().size());
+	}
+	
+	@Test
+	public void testLengthFromRange() throws Exception {
+		assertEquals(LENGTH, createDownloader(CHUNK_SIZE, 2, null).download(video(MEDIA_URL + "?id=1"), file));
+		
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+		assertEquals("bytes=0-0", transport.getRequests().get(0).getHeader(TransportRequest.HEADER_RANGE));
+	}
+	
+	@Test
+	public void testResume() throws Exception {
+		YoutubeVideo video = video(MEDIA_URL + "?clen=" + LENGTH);
+		
+		refusedFrom = 6 * CHUNK_SIZE;
+		assertInterrupted(createDownloader(CHUNK_SIZE, 1, null), video);
+		assertTrue(Files.exists(journalFile()));
+		
+		refusedFrom = Integer.MAX_VALUE;
+		int requests = transport.getRequests().size();
+		
+		/* Only the chunks after the interruption are fetched again */
+		assertEquals(4 * CHUNK_SIZE, createDownloader(CHUNK_SIZE, 1, null).download(video, file));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+		assertEquals(4, transport.getRequests().size() - requests);
+		assertFalse(Files.exists(journalFile()));
+	}
+	
+	@Test
+	public void testDescriptionMismatch() throws Exception {
+		YoutubeVideo video = video(MEDIA_URL + "?clen=" + LENGTH);
+		
+		refusedFrom = 6 * CHUNK_SIZE;
+		assertInterrupted(createDownloader(CHUNK_SIZE, 1, null), video);
+		
+		/* Another chunk size make the journal describe another download, it is started over */
+		refusedFrom = Integer.MAX_VALUE;
+		assertEquals(LENGTH, createDownloader(2 * CHUNK_SIZE, 1, null).download(video, file));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+	}
+	
+	@Test
+	public void testFileDeleted() throws Exception {
+		YoutubeVideo video = video(MEDIA_URL + "?clen=" + LENGTH);
+		
+		refusedFrom = 6 * CHUNK_SIZE;
+		assertInterrupted(createDownloader(CHUNK_SIZE, 1, null), video);
+		Files.delete(file);
+		
+		refusedFrom = Integer.MAX_VALUE;
+		assertEquals(LENGTH, createDownloader(CHUNK_SIZE, 1, null).download(video, file));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+	}
+	
+	@Test
+	public void testUrlRefresh() throws Exception {
+		final String expired = MEDIA_URL + "?clen=" + LENGTH + "&expire=1";
+		final String fresh = MEDIA_URL + "?clen=" + LENGTH + "&expire=2";
+		final AtomicInteger refreshes = new AtomicInteger();
+		
+		/* The url expire once a few chunks are downloaded */
+		transport.register(MEDIA_URL + "?clen=" + LENGTH + "&expire=1", (request) -> {
+			if (transport.countRequests(MEDIA_URL) > 4) {
+				expiredUrl = expired;
+			}
+			
+			return serve(request);
+		});
+		
+		RangeDownloader downloader = createDownloader(CHUNK_SIZE, 2, (video) -> {
+			refreshes.incrementAndGet();
+			return fresh;
+		});
+		
+		assertEquals(LENGTH, downloader.download(video(expired), file));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+		assertEquals(1, refreshes.get());
+		assertTrue(transport.countRequests(fresh) > 0);
+	}
+	
+	@Test
+	public void testUrlRefusedWithoutRefresher() throws Exception {
+		expiredUrl = MEDIA_URL + "?clen=" + LENGTH;
+		
+		try {
+			createDownloader(CHUNK_SIZE, 1, null).download(video(expiredUrl), file);
+			fail("Downloaded with a refused url");
+		} catch (HttpStatusException exception) {
+			assertEquals(403, exception.getStatusCode());
+		}
+	}
+	
+	@Test
+	public void testRangeNotSupported() throws Exception {
+		rangeIgnored = true;
+		
+		/* Probed with a range request answered with the whole file, so it is downloaded as a single chunk */
+		assertEquals(LENGTH, createDownloader(CHUNK_SIZE, 4, null).download(video(MEDIA_URL + "?id=1"), file));
+		assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+		assertEquals(2, transport.getRequests().size());
+	}
+	
+	@Test
+	public void testRangeIgnored() throws Exception {
+		rangeIgnored = true;
+		
+		try {
+			createDownloader(CHUNK_SIZE, 1, null).download(video(MEDIA_URL + "?clen=" + LENGTH), file);
+			fail("A response with the whole file has been written as a chunk");
+		} catch (IOException exception) {
+			assertTrue(exception.getMessage(), exception.getMessage().contains("ignored the range request"));
+		}
+	}
+	
+	private void assertInterrupted(RangeDownloader downloader, YoutubeVideo video) throws InterruptedException {
+		try {
+			downloader.download(video, file);
+			fail("The download succeeded despite the refused chunks");
+		} catch (IOException exception) {
+			;
+		}
+	}
+	
+	/**
+	 * Answer a range of the file, or the whole file if ranges are ignored. Ranges after {@link #refusedFrom} are answered with a <code>404</code>, and an expired url with a <code>403</code>.
+	 */
+	private TransportResponse serve(TransportRequest request) {
+		if (request.getUrl().equals(expiredUrl)) {
+			return StubHttpTransport.response(request, 403, Collections.<String, String> emptyMap(), new byte[0]);
+		}
+		
+		Matcher matcher = PATTERN_RANGE.matcher(String.valueOf(request.getHeader(TransportRequest.HEADER_RANGE)));
+		Map<String, String> headers = new HashMap<>();
+		
+		if (rangeIgnored || !matcher.matches()) {
+			headers.put(TransportResponse.HEADER_CONTENT_LENGTH, String.valueOf(LENGTH));
+			return StubHttpTransport.response(request, 200, headers, content);
+		}
+		
+		int start = Integer.parseInt(matcher.group(1));
+		int end = Math.min(LENGTH - 1, Integer.parseInt(matcher.group(2)));
+		if (start >= refusedFrom) {
+			return StubHttpTransport.response(request, 404, Collections.<String, String> emptyMap(), new byte[0]);
+		}
+		
+		headers.put(TransportResponse.HEADER_CONTENT_RANGE, "bytes " + start + "-" + end + "/" + LENGTH);
+		return StubHttpTransport.response(request, 206, headers, Arrays.copyOfRange(content, start, end + 1));
+	}
+	
+	private RangeDownloader createDownloader(int chunkSize, int connections, UrlRefresher refresher) {
+		return new RangeDownloader.Builder() //
+				.transport(transport) //
+				.chunkSize(chunkSize) //
+				.connections(connections) //
+				.refresher(refresher) //
+				.build();
+	}
+	
+	private Path journalFile() {
+		return file.resolveSibling(file.getFileName() + RangeDownloader.JOURNAL_EXTENSION);
+	}
+	
+	private static YoutubeVideo video(String url) {
+		return new YoutubeVideo(FormatRegistry.getDefault().get(137), url);
+	}
+	
+}
\ No newline at end of file
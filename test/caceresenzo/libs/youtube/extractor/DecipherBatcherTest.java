@@ -0,0 +1,131 @@
+package caceresenzo.libs.youtube.extractor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the batching of the signatures deciphered by the script engine.
+ * 
+ * @author Enzo CACERES
+ */
+public class DecipherBatcherTest {
+	
+	/* Private Constants */
+	private static final DecipherFunction FIRST_PLAYER = new DecipherFunction("player-vflFirst/en_US/base.js", "Xy", "");
+	private static final DecipherFunction SECOND_PLAYER = new DecipherFunction("player-vflSecond/en_US/base.js", "Xy", "");
+	
+	/* Variables */
+	private List<String> batches;
+	private List<String> threads;
+	
+	@Before
+	public void setUp() {
+		batches = new CopyOnWriteArrayList<>();
+		threads = new CopyOnWriteArrayList<>();
+	}
+	
+	@Test
+	public void testSizeFlush() throws Exception {
+		DecipherBatcher batcher = createBatcher(3, TimeUnit.MINUTES.toMillis(1));
+		
+		CompletableFuture<DecipherResult> first = batcher.submit(FIRST_PLAYER, new String[] { "a" });
+		assertFalse(first.isDone());
+		
+		/* Reaching the size flush on the submitting thread, without waiting for the linger */
+		CompletableFuture<DecipherResult> second = batcher.submit(FIRST_PLAYER, new String[] { "b", "c" });
+		assertTrue(first.isDone());
+		assertTrue(second.isDone());
+		
+		assertEquals(Arrays.asList("a b c"), batches);
+		assertEquals(Thread.currentThread().getName(), threads.get(0));
+		assertEquals(Arrays.asList("a!"), Arrays.asList(first.get().getSignatures()));
+		assertEquals(Arrays.asList("b!", "c!"), Arrays.asList(second.get().getSignatures()));
+	}
+	
+	@Test
+	public void testLingerFlush() throws Exception {
+		DecipherBatcher batcher = createBatcher(100, 50);
+		
+		long start = System.nanoTime();
+		CompletableFuture<DecipherResult> first = batcher.submit(FIRST_PLAYER, new String[] { "a", "b" });
+		CompletableFuture<DecipherResult> second = batcher.submit(FIRST_PLAYER, new String[] { "c" });
+		
+		assertEquals(Arrays.asList("c!"), Arrays.asList(second.get(5, TimeUnit.SECONDS).getSignatures()));
+		assertEquals(Arrays.asList("a!", "b!"), Arrays.asList(first.get(5, TimeUnit.SECONDS).getSignatures()));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		
+		/* A single batch, deciphered off the caller thread */
+		assertEquals(Arrays.asList("a b c"), batches);
+		assertTrue(threads.get(0), threads.get(0).startsWith("youtube-decipher-flusher"));
+	}
+	
+	@Test
+	public void testBatchPerPlayer() throws Exception {
+		DecipherBatcher batcher = createBatcher(2, TimeUnit.MINUTES.toMillis(1));
+		
+		CompletableFuture<DecipherResult> first = batcher.submit(FIRST_PLAYER, new String[] { "a" });
+		CompletableFuture<DecipherResult> second = batcher.submit(SECOND_PLAYER, new String[] { "b" });
+		assertFalse(first.isDone());
+		assertFalse(second.isDone());
+		
+		batcher.submit(FIRST_PLAYER, new String[] { "c" });
+		batcher.submit(SECOND_PLAYER, new String[] { "d" });
+		
+		assertEquals(Arrays.asList("a c", "b d"), batches);
+		assertEquals(Arrays.asList("a!"), Arrays.asList(first.get().getSignatures()));
+		assertEquals(Arrays.asList("b!"), Arrays.asList(second.get().getSignatures()));
+	}
+	
+	@Test
+	public void testFailedBatch() throws Exception {
+		DecipherBatcher batcher = new DecipherBatcher(2, 1, TimeUnit.MINUTES, (function, encSignatures) -> {
+			throw new IllegalStateException("Script engine failure");
+		});
+		
+		CompletableFuture<DecipherResult> first = batcher.submit(FIRST_PLAYER, new String[] { "a" });
+		CompletableFuture<DecipherResult> second = batcher.submit(FIRST_PLAYER, new String[] { "b" });
+		
+		/* Every request of the batch get the failure */
+		assertFalse(first.get().isSuccessful());
+		assertFalse(second.get().isSuccessful());
+	}
+	
+	@Test
+	public void testInvalidSize() {
+		try {
+			createBatcher(0, 10);
+			fail("A batcher without any batch size has been created");
+		} catch (IllegalArgumentException exception) {
+			;
+		}
+	}
+	
+	/**
+	 * @return A batcher recording its batches, and appending an exclamation mark to the signatures
+	 */
+	private DecipherBatcher createBatcher(int maxBatchSize, long maxLinger) {
+		return new DecipherBatcher(maxBatchSize, maxLinger, TimeUnit.MILLISECONDS, (function, encSignatures) -> {
+			batches.add(String.join(" ", encSignatures));
+			threads.add(Thread.currentThread().getName());
+			
+			String[] signatures = new String[encSignatures.length];
+			for (int index = 0; index < signatures.length; index++) {
+				signatures[index] = encSignatures[index] + "!";
+			}
+			
+			return DecipherResult.success(signatures);
+		});
+	}
+	
+}
\ No newline at end of file
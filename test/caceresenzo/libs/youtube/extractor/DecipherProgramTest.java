@@ -0,0 +1,93 @@
+package caceresenzo.libs.youtube.extractor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests of the compiled decipher function against player-like snippets.
+ * 
+ * @author Enzo CACERES
+ */
+public class DecipherProgramTest {
+	
+	/* Private Constants */
+	private static final String HELPER = "var Xy={aa:function(a){a.reverse()},bb:function(a,b){a.splice(0,b)},\"cc\":function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c}};";
+	
+	@Test
+	public void testReverse() {
+		assertEquals("fedcba", compile("Xy.aa(a,12)").decipher("abcdef"));
+	}
+	
+	@Test
+	public void testSplice() {
+		assertEquals("cdef", compile("Xy.bb(a,2)").decipher("abcdef"));
+		assertEquals("", compile("Xy.bb(a,10)").decipher("abc"));
+	}
+	
+	@Test
+	public void testSwap() {
+		assertEquals("dbcaef", compile("Xy.cc(a,3)").decipher("abcdef"));
+		
+		/* The index wrap around the length, like in the player */
+		assertEquals("cbadef", compile("Xy.cc(a,8)").decipher("abcdef"));
+	}
+	
+	@Test
+	public void testSwapAfterSplice() {
+		assertEquals("dcef", compile("Xy.bb(a,2);Xy.cc(a,1)").decipher("abcdef"));
+	}
+	
+	@Test
+	public void testSequence() {
+		DecipherProgram program = compile("Xy.cc(a,3);Xy.bb(a,2);Xy[\"aa\"](a,45);Xy.cc(a,1)");
+		
+		assertEquals(4, program.size());
+		assertEquals("ghfeac", program.decipher("abcdefgh"));
+		
+		/* Programs are stateless, so a second run give the same result */
+		assertEquals("ghfeac", program.decipher("abcdefgh"));
+	}
+	
+	@Test
+	public void testFunctionDeclaration() {
+		DecipherProgram program = DecipherProgram.compile("Zz", HELPER + "function Zz(a){a=a.split(\"\");Xy.aa(a,0);return a.join(\"\")}");
+		
+		assertNotNull(program);
+		assertEquals("cba", program.decipher("abc"));
+	}
+	
+	@Test
+	public void testUnknownOperation() {
+		String functions = "var Xy={aa:function(a,b){a.push(b)}};Zz=function(a){a=a.split(\"\");Xy.aa(a,1);return a.join(\"\")}";
+		
+		assertNull(DecipherProgram.compile("Zz", functions));
+	}
+	
+	@Test
+	public void testUnknownStatement() {
+		assertNull(compileOrNull("a=a.slice(1)"));
+		assertNull(compileOrNull("Xy.dd(a,1)"));
+	}
+	
+	@Test
+	public void testMissingFunction() {
+		assertNull(DecipherProgram.compile("Ww", HELPER + "Zz=function(a){return a}"));
+		assertNull(DecipherProgram.compile(null, HELPER));
+		assertNull(DecipherProgram.compile("Zz", null));
+	}
+	
+	private static DecipherProgram compile(String calls) {
+		DecipherProgram program = compileOrNull(calls);
+		assertNotNull(program);
+		
+		return program;
+	}
+	
+	private static DecipherProgram compileOrNull(String calls) {
+		return DecipherProgram.compile("Zz", HELPER + "Zz=function(a){a=a.split(\"\");" + calls + ";return a.join(\"\")}");
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,268 @@
+package caceresenzo.libs.youtube.extractor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import caceresenzo.libs.youtube.network.StubHttpTransport;
+
+/**
+ * Tests of a whole extraction, against a stub serving a canned <code>get_video_info</code>, watch page and player js.
+ * 
+ * @author Enzo CACERES
+ */
+public class YouTubeExtractionEngineTest {
+	
+	/* Private Constants */
+	private static final String VIDEO_ID = "abcdefghijk";
+	private static final String VIDEO_INFO_URL = "https://www.youtube.com/get_video_info";
+	private static final String WATCH_PAGE_URL = "https://youtube.com/watch";
+	private static final String PLAYER_JS_URL = "https://s.ytimg.com/yts/jsbin/";
+	private static final String PLAIN_VIDEO_INFO = "status=ok&title=Plain+video&author=Someone&length_seconds=42&url_encoded_fmt_stream_map=itag%3D22%26url%3Dhttps%253A%252F%252Fx%252Fy%253Fa%253D1%2526signature%253DABC%2Citag%3D18%26url%3Dhttps%253A%252F%252Fx%252Fz";
+	private static final String ENCIPHERED_VIDEO_INFO = "status=ok&url_encoded_fmt_stream_map=itag%3D22%26s%3DABCDEF0123.4567%26url%3Dhttps%253A%252F%252Fx%252Fy%253Fa%253D1";
+	private static final String WATCH_PAGE = "<html>\n<script>var x;\nytplayer.config = {\"assets\":{\"js\":\"\\/yts\\/jsbin\\/player-vflTest\\/en_US\\/base.js\"},\"args\":{\"url_encoded_fmt_stream_map\":\"itag=22\\u0026s=ABCDEF0123.4567\\u0026url=https%3A%2F%2Fx%2Fy%3Fa%3D1\"}};\n</script>\n</html>\n";
+	private static final String PLAYER_JS = "var Ab={rv:function(a){a.reverse()},sw:function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c}};Xy=function(a){a=a.split(\"\");Ab.rv(a,2);Ab.sw(a,5);return a.join(\"\")};";
+	private static final String DECIPHERED_URL = "https://x/y?a=1&signature=3654.7210FEDCBA";
+	private static final int CONCURRENT_CALLERS = 8;
+	private static final long SLOW_RESPONSE_DELAY = 300;
+	
+	/* Variables */
+	private Path directory;
+	private StubHttpTransport transport;
+	
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("extraction-engine-test");
+		transport = new StubHttpTransport() //
+				.respond(WATCH_PAGE_URL, 200, WATCH_PAGE) //
+				.respond(PLAYER_JS_URL, 200, PLAYER_JS);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Collections.reverseOrder()).collect(Collectors.toList())) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+	
+	@Test
+	public void testPlainStreamMap() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, PLAIN_VIDEO_INFO);
+		ExtractionResult result = createEngine(false).extract(VIDEO_ID, false, true);
+		
+		assertNotNull(result);
+		assertEquals(2, result.getVideos().size());
+		assertEquals("https://x/y?a=1&signature=ABC", result.getVideos().get(22).getUrl());
+		assertEquals("https://x/z", result.getVideos().get(18).getUrl());
+		assertEquals(VIDEO_ID, result.getVideoMeta().getVideoId());
+		assertEquals("Plain video", result.getVideoMeta().getTitle());
+		assertEquals("Someone", result.getVideoMeta().getAuthor());
+		assertEquals(42, result.getVideoMeta().getVideoLength());
+		
+		/* Nothing to decipher, so neither the watch page nor the player js are needed */
+		assertEquals(1, transport.getRequests().size());
+	}
+	
+	@Test
+	public void testEncipheredStreamMap() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, ENCIPHERED_VIDEO_INFO);
+		YouTubeExtractionEngine engine = createEngine(false);
+		
+		assertEquals(DECIPHERED_URL, engine.extract(VIDEO_ID, false, true).getVideos().get(22).getUrl());
+		assertEquals(1, transport.countRequests(WATCH_PAGE_URL));
+		assertEquals(1, transport.countRequests(PLAYER_JS_URL));
+		
+		/* The decipher function is cached, only the pages of the video are fetched again */
+		assertEquals(DECIPHERED_URL, engine.extract(VIDEO_ID, false, true).getVideos().get(22).getUrl());
+		assertEquals(2, transport.countRequests(WATCH_PAGE_URL));
+		assertEquals(1, transport.countRequests(PLAYER_JS_URL));
+	}
+	
+	@Test
+	public void testSpeculativeFetch() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, ENCIPHERED_VIDEO_INFO);
+		
+		assertEquals(DECIPHERED_URL, createEngine(true).extract(VIDEO_ID, false, true).getVideos().get(22).getUrl());
+		assertEquals(1, transport.countRequests(WATCH_PAGE_URL));
+		assertEquals(1, transport.countRequests(PLAYER_JS_URL));
+	}
+	
+	@Test
+	public void testSharedCacheDirectory() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, ENCIPHERED_VIDEO_INFO);
+		createEngine(false).extract(VIDEO_ID, false, true);
+		
+		/* Another engine using the same directory find the function already extracted */
+		assertEquals(DECIPHERED_URL, createEngine(false).extract(VIDEO_ID, false, true).getVideos().get(22).getUrl());
+		assertEquals(1, transport.countRequests(PLAYER_JS_URL));
+	}
+	
+	@Test
+	public void testFailedRequest() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 503, "");
+		
+		try {
+			createEngine(false).extract(VIDEO_ID, false, true);
+			fail("The extraction succeeded without the video info");
+		} catch (IOException exception) {
+			;
+		}
+	}
+	
+	@Test
+	public void testConcurrentExtractions() throws Exception {
+		transport.register(VIDEO_INFO_URL, slow(ENCIPHERED_VIDEO_INFO));
+		final YouTubeExtractionEngine engine = createEngine(false);
+		
+		/* Every caller arrive while the first one is still waiting for the video info */
+		List<Future<ExtractionResult>> futures = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CALLERS);
+		try {
+			for (int index = 0; index < CONCURRENT_CALLERS; index++) {
+				futures.add(executor.submit(() -> engine.extract(VIDEO_ID, false, true)));
+			}
+			
+			for (Future<ExtractionResult> future : futures) {
+				assertEquals(DECIPHERED_URL, future.get().getVideos().get(22).getUrl());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		assertEquals(1, transport.countRequests(VIDEO_INFO_URL));
+		assertEquals(1, transport.countRequests(WATCH_PAGE_URL));
+		assertEquals(1, transport.countRequests(PLAYER_JS_URL));
+		
+		/* Each caller get its own copy */
+		assertNotSame(futures.get(0).get().getVideos(), futures.get(1).get().getVideos());
+	}
+	
+	@Test
+	public void testConcurrentPlayerJsDownloads() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, ENCIPHERED_VIDEO_INFO);
+		transport.register(PLAYER_JS_URL + "player-vflTest", slow(PLAYER_JS));
+		final YouTubeExtractionEngine engine = createEngine(false);
+		
+		/* Different videos, so different extractions, but the same player */
+		List<Future<ExtractionResult>> futures = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CALLERS);
+		try {
+			for (int index = 0; index < CONCURRENT_CALLERS; index++) {
+				final String videoId = VIDEO_ID.substring(0, 10) + index;
+				
+				futures.add(executor.submit(() -> engine.extract(videoId, false, true)));
+			}
+			
+			for (Future<ExtractionResult> future : futures) {
+				assertEquals(DECIPHERED_URL, future.get().getVideos().get(22).getUrl());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		assertEquals(CONCURRENT_CALLERS, transport.countRequests(WATCH_PAGE_URL));
+		assertEquals(1, transport.countRequests(PLAYER_JS_URL));
+	}
+	
+	@Test
+	public void testResultCache() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, expiringVideoInfo(TimeUnit.HOURS.toSeconds(6)));
+		YouTubeExtractionEngine engine = createBuilder().resultCache(16, 0).build();
+		
+		ExtractionResult first = engine.extract(VIDEO_ID, false, true);
+		ExtractionResult second = engine.extract("https://www.youtube.com/watch?v=" + VIDEO_ID, false, true);
+		
+		/* A hit makes no request, and still gives its own copy of the videos */
+		assertEquals(1, transport.getRequests().size());
+		assertEquals(first.getVideos().get(22).getUrl(), second.getVideos().get(22).getUrl());
+		assertNotSame(first.getVideos(), second.getVideos());
+		
+		/* Other options are another entry */
+		engine.extract(VIDEO_ID, false, false);
+		assertEquals(2, transport.getRequests().size());
+		
+		engine.evictResult(VIDEO_ID);
+		engine.extract(VIDEO_ID, false, true);
+		assertEquals(3, transport.getRequests().size());
+	}
+	
+	@Test
+	public void testResultExpiringSoon() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, expiringVideoInfo(60));
+		YouTubeExtractionEngine engine = createBuilder().resultCache(16, 0).resultExpiryMargin(5, TimeUnit.MINUTES).build();
+		
+		/* Expiring within the margin, so not cached */
+		engine.extract(VIDEO_ID, false, true);
+		engine.extract(VIDEO_ID, false, true);
+		assertEquals(2, transport.getRequests().size());
+	}
+	
+	@Test
+	public void testResultWithoutExpiration() throws Exception {
+		transport.respond(VIDEO_INFO_URL, 200, PLAIN_VIDEO_INFO);
+		YouTubeExtractionEngine engine = createBuilder().resultCache(16, 0).build();
+		
+		engine.extract(VIDEO_ID, false, true);
+		engine.extract(VIDEO_ID, false, true);
+		assertEquals(2, transport.getRequests().size());
+	}
+	
+	private YouTubeExtractionEngine createEngine(boolean speculativeFetch) {
+		return createBuilder().speculativeFetch(speculativeFetch).build();
+	}
+	
+	private YouTubeExtractionEngine.Builder createBuilder() {
+		return new YouTubeExtractionEngine.Builder() //
+				.transport(transport) //
+				.cacheDirectory(directory.toString());
+	}
+	
+	/**
+	 * @return An handler answering after a delay, long enough for the concurrent callers to pile up
+	 */
+	private static StubHttpTransport.StubHandler slow(String body) {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		
+		return (request) -> {
+			try {
+				Thread.sleep(SLOW_RESPONSE_DELAY);
+			} catch (InterruptedException exception) {
+				throw new InterruptedIOException();
+			}
+			
+			return StubHttpTransport.response(request, 200, Collections.<String, String> emptyMap(), bytes);
+		};
+	}
+	
+	/**
+	 * @return A plain video info whose url expire in some seconds
+	 */
+	private static String expiringVideoInfo(long seconds) {
+		long expire = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + seconds;
+		
+		return "status=ok&url_encoded_fmt_stream_map=itag%3D22%26url%3Dhttps%253A%252F%252Fx%252Fy%253Fexpire%253D" + expire + "%2526signature%253DABC";
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,217 @@
+package caceresenzo.libs.youtube.mux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the fragmented MP4 remuxing, with synthetic streams holding only the boxes the remuxer reads.
+ * 
+ * @author Enzo CACERES
+ */
+public class Mp4RemuxerTest {
+	
+	/* Private Constants */
+	private static final int VIDEO_INPUT_TRACK_ID = 7;
+	private static final int AUDIO_INPUT_TRACK_ID = 3;
+	
+	@Test
+	public void testInterleaving() throws IOException {
+		byte[] video = stream(VIDEO_INPUT_TRACK_ID, 1000, new long[] { 0, 2000, 4000 }, "v");
+		byte[] audio = stream(AUDIO_INPUT_TRACK_ID, 48000, new long[] { 0, 48000, 3 * 48000, 5 * 48000 }, "a");
+		
+		byte[] output = remux(video, audio);
+		List<Integer> boxes = listBoxes(output);
+		
+		assertEquals(Arrays.asList("ftyp", "moov", "moof", "mdat", "moof", "mdat", "moof", "mdat", "moof", "mdat", "moof", "mdat", "moof", "mdat", "moof", "mdat"), toTypes(output, boxes));
+		
+		/* Ordered by decode time in seconds, the video first on a tie */
+		List<String> payloads = new ArrayList<>();
+		for (int index = 3; index < boxes.size(); index += 2) {
+			payloads.add(new String(output, boxes.get(index) + 8, 2, StandardCharsets.US_ASCII));
+		}
+		assertEquals(Arrays.asList("v0", "a0", "a1", "v1", "a2", "v2", "a3"), payloads);
+	}
+	
+	@Test
+	public void testPatchedFragments() throws IOException {
+		byte[] output = remux(stream(VIDEO_INPUT_TRACK_ID, 1000, new long[] { 0, 2000 }, "v"), stream(AUDIO_INPUT_TRACK_ID, 1000, new long[] { 1000, 3000 }, "a"));
+		List<Integer> boxes = listBoxes(output);
+		
+		int sequenceNumber = 1;
+		for (int index = 2; index < boxes.size(); index += 2) {
+			int moof = boxes.get(index);
+			int mfhd = Mp4Remuxer.findChild(output, moof, "mfhd");
+			int tfhd = Mp4Remuxer.findChild(output, Mp4Remuxer.findChild(output, moof, "traf"), "tfhd");
+			boolean isVideo = output[boxes.get(index + 1) + 8] == 'v';
+			
+			assertEquals(sequenceNumber++, Mp4Remuxer.readInt(output, mfhd + 12));
+			assertEquals(isVideo ? 1 : 2, Mp4Remuxer.readInt(output, tfhd + 12));
+			
+			/* The inputs' base data offsets were the position of their moof, so they must still be */
+			assertEquals(moof, Mp4Remuxer.readLong(output, tfhd + 16));
+		}
+	}
+	
+	@Test
+	public void testMoov() throws IOException {
+		byte[] output = remux(stream(VIDEO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "v"), stream(AUDIO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "a"));
+		int moov = listBoxes(output).get(1);
+		
+		int mvhd = Mp4Remuxer.findChild(output, moov, "mvhd");
+		assertEquals(3, Mp4Remuxer.readInt(output, mvhd + Mp4Remuxer.readInt(output, mvhd) - 4));
+		
+		int videoTrak = Mp4Remuxer.findChild(output, moov, "trak");
+		int audioTrak = videoTrak + Mp4Remuxer.readInt(output, videoTrak);
+		assertEquals(1, Mp4Remuxer.readInt(output, Mp4Remuxer.findChild(output, videoTrak, "tkhd") + 20));
+		assertEquals(2, Mp4Remuxer.readInt(output, Mp4Remuxer.findChild(output, audioTrak, "tkhd") + 20));
+		
+		int mvex = Mp4Remuxer.findChild(output, moov, "mvex");
+		int videoTrex = Mp4Remuxer.findChild(output, mvex, "trex");
+		int audioTrex = videoTrex + Mp4Remuxer.readInt(output, videoTrex);
+		assertEquals(1, Mp4Remuxer.readInt(output, videoTrex + 12));
+		assertEquals(2, Mp4Remuxer.readInt(output, audioTrex + 12));
+	}
+	
+	@Test
+	public void testUnknownSizeBox() throws IOException {
+		byte[] video = concat(stream(VIDEO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "v"), new byte[] { 0, 0, 0, 0, 'm', 'd', 'a', 't' });
+		
+		assertRejected(video, stream(AUDIO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "a"), "extending to the end");
+	}
+	
+	@Test
+	public void testOversizedBox() throws IOException {
+		byte[] largeSize = new byte[16];
+		Mp4Remuxer.writeInt(largeSize, 0, 1);
+		System.arraycopy("mdat".getBytes(StandardCharsets.US_ASCII), 0, largeSize, 4, 4);
+		Mp4Remuxer.writeLong(largeSize, 8, Remuxer.MAX_FRAGMENT_SIZE + 1L);
+		
+		byte[] audio = concat(stream(AUDIO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "a"), largeSize);
+		
+		assertRejected(stream(VIDEO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "v"), audio, "Invalid box size");
+	}
+	
+	@Test
+	public void testNotFragmented() throws IOException {
+		byte[] moov = box("moov", mvhd(), trak(VIDEO_INPUT_TRACK_ID, 1000));
+		
+		assertRejected(concat(box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)), moov), stream(AUDIO_INPUT_TRACK_ID, 1000, new long[] { 0 }, "a"), "not a fragmented MP4");
+	}
+	
+	private static void assertRejected(byte[] video, byte[] audio, String message) {
+		try {
+			remux(video, audio);
+			fail("Invalid stream accepted");
+		} catch (IOException exception) {
+			assertTrue(exception.getMessage(), exception.getMessage().contains(message));
+		}
+	}
+	
+	private static byte[] remux(byte[] video, byte[] audio) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DashMuxer.remux(MuxContainer.MP4, new ByteArrayInputStream(video), new ByteArrayInputStream(audio), output);
+		
+		return output.toByteArray();
+	}
+	
+	/**
+	 * @return Offset of every top level box
+	 */
+	private static List<Integer> listBoxes(byte[] data) {
+		List<Integer> boxes = new ArrayList<>();
+		
+		for (int offset = 0; offset < data.length; offset += Mp4Remuxer.readInt(data, offset)) {
+			boxes.add(offset);
+		}
+		
+		return boxes;
+	}
+	
+	private static List<String> toTypes(byte[] data, List<Integer> boxes) {
+		List<String> types = new ArrayList<>();
+		
+		for (int offset : boxes) {
+			types.add(new String(data, offset + 4, 4, StandardCharsets.US_ASCII));
+		}
+		
+		return types;
+	}
+	
+	/**
+	 * Build a stream with an index and one fragment per decode time, whose <code>mdat</code> hold the prefix and the fragment index.
+	 */
+	private static byte[] stream(int trackId, int timescale, long[] decodeTimes, String prefix) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.writeBytes(box("ftyp", "dash".getBytes(StandardCharsets.US_ASCII)));
+		output.writeBytes(box("moov", mvhd(), trak(trackId, timescale), box("mvex", fullBox("trex", 0, 0, intBytes(trackId), new byte[16]))));
+		output.writeBytes(box("sidx", new byte[24]));
+		
+		for (int index = 0; index < decodeTimes.length; index++) {
+			byte[] baseDataOffset = new byte[8];
+			Mp4Remuxer.writeLong(baseDataOffset, 0, output.size());
+			
+			byte[] decodeTime = new byte[8];
+			Mp4Remuxer.writeLong(decodeTime, 0, decodeTimes[index]);
+			
+			output.writeBytes(box("moof", fullBox("mfhd", 0, 0, intBytes(index + 1)), box("traf", fullBox("tfhd", 0, 0x000001, intBytes(trackId), baseDataOffset), fullBox("tfdt", 1, 0, decodeTime))));
+			output.writeBytes(box("mdat", (prefix + index).getBytes(StandardCharsets.US_ASCII)));
+		}
+		
+		return output.toByteArray();
+	}
+	
+	private static byte[] mvhd() {
+		return fullBox("mvhd", 0, 0, new byte[92], intBytes(2));
+	}
+	
+	private static byte[] trak(int trackId, int timescale) {
+		byte[] tkhd = fullBox("tkhd", 0, 0, new byte[8], intBytes(trackId), new byte[60]);
+		byte[] mdhd = fullBox("mdhd", 0, 0, new byte[8], intBytes(timescale), new byte[8]);
+		
+		return box("trak", tkhd, box("mdia", mdhd));
+	}
+	
+	private static byte[] fullBox(String type, int version, int flags, byte[]... payload) {
+		return box(type, concat(intBytes((version << 24) | flags), concat(payload)));
+	}
+	
+	private static byte[] box(String type, byte[]... children) {
+		byte[] content = concat(children);
+		
+		byte[] box = new byte[8 + content.length];
+		Mp4Remuxer.writeInt(box, 0, box.length);
+		System.arraycopy(type.getBytes(StandardCharsets.US_ASCII), 0, box, 4, 4);
+		System.arraycopy(content, 0, box, 8, content.length);
+		
+		return box;
+	}
+	
+	private static byte[] intBytes(int value) {
+		byte[] bytes = new byte[4];
+		Mp4Remuxer.writeInt(bytes, 0, value);
+		
+		return bytes;
+	}
+	
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		for (byte[] part : parts) {
+			output.writeBytes(part);
+		}
+		
+		return output.toByteArray();
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,295 @@
+package caceresenzo.libs.youtube.mux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the WebM remuxing, with synthetic streams holding only the elements the remuxer reads.
+ * 
+ * @author Enzo CACERES
+ */
+public class WebmRemuxerTest {
+	
+	/* Private Constants */
+	private static final int ID_EBML = 0x1A45DFA3;
+	private static final int ID_DOC_TYPE = 0x4282;
+	private static final int ID_SEGMENT = 0x18538067;
+	private static final int ID_INFO = 0x1549A966;
+	private static final int ID_TIMECODE_SCALE = 0x2AD7B1;
+	private static final int ID_TRACKS = 0x1654AE6B;
+	private static final int ID_TRACK_ENTRY = 0xAE;
+	private static final int ID_TRACK_NUMBER = 0xD7;
+	private static final int ID_TRACK_UID = 0x73C5;
+	private static final int ID_CODEC_ID = 0x86;
+	private static final int ID_CUES = 0x1C53BB6B;
+	private static final int ID_CLUSTER = 0x1F43B675;
+	private static final int ID_TIMECODE = 0xE7;
+	private static final int ID_SIMPLE_BLOCK = 0xA3;
+	private static final int ID_BLOCK_GROUP = 0xA0;
+	private static final int ID_BLOCK = 0xA1;
+	
+	private static final byte[] UNKNOWN_SIZE = { 0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+	
+	@Test
+	public void testInterleaving() throws IOException {
+		byte[] video = stream(5, "V_VP9", 1000000, new long[] { 0, 2000, 4000 }, "v");
+		byte[] audio = stream(9, "A_OPUS", 1000000, new long[] { 0, 1000, 3000, 5000 }, "a");
+		
+		List<Element> segment = readSegment(remux(video, audio));
+		
+		assertEquals(ID_INFO, segment.get(0).id);
+		assertEquals(ID_TRACKS, segment.get(1).id);
+		
+		/* Ordered by timecode, the video first on a tie, and without the cues */
+		List<String> payloads = new ArrayList<>();
+		for (Element cluster : segment.subList(2, segment.size())) {
+			assertEquals(ID_CLUSTER, cluster.id);
+			
+			for (Element child : readElements(cluster.data)) {
+				if (child.id == ID_SIMPLE_BLOCK) {
+					payloads.add(new String(child.data, 4, 2, StandardCharsets.US_ASCII));
+				}
+			}
+		}
+		assertEquals(Arrays.asList("v0", "a0", "a1", "v1", "a2", "v2", "a3"), payloads);
+	}
+	
+	@Test
+	public void testRenumberedTracks() throws IOException {
+		List<Element> segment = readSegment(remux(stream(5, "V_VP9", 1000000, new long[] { 0 }, "v"), stream(9, "A_OPUS", 1000000, new long[] { 1000 }, "a")));
+		
+		List<Element> entries = readElements(segment.get(1).data);
+		assertEquals(2, entries.size());
+		
+		for (int index = 0; index < entries.size(); index++) {
+			for (Element child : readElements(entries.get(index).data)) {
+				if (child.id == ID_TRACK_NUMBER || child.id == ID_TRACK_UID) {
+					assertEquals(1, child.data.length);
+					assertEquals(index + 1, child.data[0]);
+				} else if (child.id == ID_CODEC_ID) {
+					assertEquals(index == 0 ? "V_VP9" : "A_OPUS", new String(child.data, StandardCharsets.US_ASCII));
+				}
+			}
+		}
+		
+		/* The blocks start with their track number, the simple ones and the ones in a group */
+		for (int index = 2; index < segment.size(); index++) {
+			byte expected = (byte) (0x80 | (index - 1));
+			int blocks = 0;
+			
+			for (Element child : readElements(segment.get(index).data)) {
+				if (child.id == ID_SIMPLE_BLOCK) {
+					assertEquals(expected, child.data[0]);
+					blocks++;
+				} else if (child.id == ID_BLOCK_GROUP) {
+					Element block = readElements(child.data).get(0);
+					
+					assertEquals(ID_BLOCK, block.id);
+					assertEquals(expected, block.data[0]);
+					blocks++;
+				}
+			}
+			
+			assertEquals(2, blocks);
+		}
+	}
+	
+	@Test
+	public void testDifferentTimecodeScales() throws IOException {
+		assertRejected(stream(5, "V_VP9", 1000000, new long[] { 0 }, "v"), stream(9, "A_OPUS", 1000, new long[] { 0 }, "a"), "Different timecode scales");
+	}
+	
+	@Test
+	public void testUnknownSizeCluster() throws IOException {
+		byte[] audio = concat(stream(9, "A_OPUS", 1000000, new long[] { 0 }, "a"), id(ID_CLUSTER), UNKNOWN_SIZE, element(ID_TIMECODE, new byte[] { 1 }));
+		
+		assertRejected(stream(5, "V_VP9", 1000000, new long[] { 0 }, "v"), audio, "unknown size");
+	}
+	
+	@Test
+	public void testOversizedElement() throws IOException {
+		/* Five bytes size, one more than the maximum fragment size */
+		long size = Remuxer.MAX_FRAGMENT_SIZE + 1L;
+		byte[] oversized = concat(id(ID_CLUSTER), new byte[] { 0x08, (byte) (size >>> 24), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size });
+		
+		byte[] video = concat(stream(5, "V_VP9", 1000000, new long[] { 0 }, "v"), oversized);
+		
+		assertRejected(video, stream(9, "A_OPUS", 1000000, new long[] { 0 }, "a"), "Unsupported element size");
+	}
+	
+	@Test
+	public void testNotWebm() throws IOException {
+		assertRejected(element(ID_INFO, new byte[0]), stream(9, "A_OPUS", 1000000, new long[] { 0 }, "a"), "not a WebM stream");
+	}
+	
+	private static void assertRejected(byte[] video, byte[] audio, String message) {
+		try {
+			remux(video, audio);
+			fail("Invalid stream accepted");
+		} catch (IOException exception) {
+			assertTrue(exception.getMessage(), exception.getMessage().contains(message));
+		}
+	}
+	
+	private static byte[] remux(byte[] video, byte[] audio) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DashMuxer.remux(MuxContainer.WEBM, new ByteArrayInputStream(video), new ByteArrayInputStream(audio), output);
+		
+		return output.toByteArray();
+	}
+	
+	/**
+	 * Build a stream with cues and one cluster per timecode, holding a simple block and a block group whose data are the prefix and the cluster index.
+	 */
+	private static byte[] stream(int trackNumber, String codecId, long timecodeScale, long[] timecodes, String prefix) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.writeBytes(element(ID_EBML, element(ID_DOC_TYPE, "webm".getBytes(StandardCharsets.US_ASCII))));
+		output.writeBytes(id(ID_SEGMENT));
+		output.writeBytes(UNKNOWN_SIZE);
+		output.writeBytes(element(ID_INFO, element(ID_TIMECODE_SCALE, unsigned(timecodeScale))));
+		output.writeBytes(element(ID_TRACKS, element(ID_TRACK_ENTRY, element(ID_TRACK_NUMBER, unsigned(trackNumber)), element(ID_TRACK_UID, unsigned(0x12345678L + trackNumber)), element(ID_CODEC_ID, codecId.getBytes(StandardCharsets.US_ASCII)))));
+		output.writeBytes(element(ID_CUES, new byte[12]));
+		
+		for (int index = 0; index < timecodes.length; index++) {
+			byte[] data = (prefix + index).getBytes(StandardCharsets.US_ASCII);
+			
+			/* Track number, relative timecode and flags */
+			byte[] block = concat(new byte[] { (byte) (0x80 | trackNumber), 0, 0, (byte) 0x80 }, data);
+			
+			output.writeBytes(element(ID_CLUSTER, element(ID_TIMECODE, unsigned(timecodes[index])), element(ID_SIMPLE_BLOCK, block), element(ID_BLOCK_GROUP, element(ID_BLOCK, block))));
+		}
+		
+		return output.toByteArray();
+	}
+	
+	/**
+	 * @return The children of the output segment, which must have an unknown size
+	 */
+	private static List<Element> readSegment(byte[] output) {
+		List<Element> elements = readElements(output);
+		assertEquals(ID_EBML, elements.get(0).id);
+		
+		int offset = elements.get(0).length;
+		assertEquals(ID_SEGMENT, readId(output, offset));
+		assertTrue(Arrays.equals(UNKNOWN_SIZE, Arrays.copyOfRange(output, offset + 4, offset + 12)));
+		
+		return readElements(Arrays.copyOfRange(output, offset + 12, output.length));
+	}
+	
+	/**
+	 * Read elements of known sizes, until the first one of unknown size.
+	 */
+	private static List<Element> readElements(byte[] data) {
+		List<Element> elements = new ArrayList<>();
+		int offset = 0;
+		
+		while (offset < data.length) {
+			int id = readId(data, offset);
+			int idLength = vintLength(data[offset]);
+			
+			int sizeLength = vintLength(data[offset + idLength]);
+			long size = data[offset + idLength] & (0xFF >>> sizeLength);
+			for (int index = 1; index < sizeLength; index++) {
+				size = (size << 8) | (data[offset + idLength + index] & 0xFF);
+			}
+			
+			if (size == (1L << (7 * sizeLength)) - 1) {
+				break;
+			}
+			
+			int start = offset + idLength + sizeLength;
+			elements.add(new Element(id, Arrays.copyOfRange(data, start, start + (int) size), idLength + sizeLength + (int) size));
+			offset = start + (int) size;
+		}
+		
+		return elements;
+	}
+	
+	private static int readId(byte[] data, int offset) {
+		int id = 0;
+		
+		for (int index = 0; index < vintLength(data[offset]); index++) {
+			id = (id << 8) | (data[offset + index] & 0xFF);
+		}
+		
+		return id;
+	}
+	
+	private static int vintLength(byte first) {
+		return Integer.numberOfLeadingZeros(first & 0xFF) - 23;
+	}
+	
+	private static byte[] element(int id, byte[]... children) {
+		byte[] data = concat(children);
+		
+		/* Sizes of the synthetic elements always fit in two bytes */
+		byte[] size = data.length < 0x7F ? new byte[] { (byte) (0x80 | data.length) } : new byte[] { (byte) (0x40 | (data.length >>> 8)), (byte) data.length };
+		
+		return concat(id(id), size, data);
+	}
+	
+	private static byte[] id(int id) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			if ((id >>> shift) != 0) {
+				output.write(id >>> shift);
+			}
+		}
+		
+		return output.toByteArray();
+	}
+	
+	private static byte[] unsigned(long value) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			if ((value >>> shift) != 0 || shift == 0) {
+				output.write((int) (value >>> shift));
+			}
+		}
+		
+		return output.toByteArray();
+	}
+	
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		for (byte[] part : parts) {
+			output.writeBytes(part);
+		}
+		
+		return output.toByteArray();
+	}
+	
+	/**
+	 * Element read from the output.
+	 */
+	private static class Element {
+		
+		/* Variables */
+		private final int id;
+		private final byte[] data;
+		private final int length;
+		
+		/* Constructor */
+		private Element(int id, byte[] data, int length) {
+			this.id = id;
+			this.data = data;
+			this.length = length;
+		}
+		
+	}
+	
+}
\ No newline at end of file